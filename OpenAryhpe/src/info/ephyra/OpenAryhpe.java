@@ -13,6 +13,7 @@ import info.ephyra.nlp.OpenNLP;
 import info.ephyra.nlp.SnowballStemmer;
 import info.ephyra.nlp.StanfordNeTagger;
 import info.ephyra.nlp.StanfordParser;
+import info.ephyra.nlp.TreePatterns;
 import info.ephyra.nlp.indices.FunctionWords;
 import info.ephyra.nlp.indices.IrregularVerbs;
 import info.ephyra.nlp.indices.Prepositions;
@@ -29,15 +30,22 @@ import info.ephyra.questiongeneration.QAPair;
 import info.ephyra.questiongeneration.QuestionGenerator;
 import info.ephyra.search.Result;
 import info.ephyra.search.Search;
+import info.ephyra.treeansweranalysis.AnalyzedSentence;
 import info.ephyra.treeansweranalysis.TreeAnswer;
 import info.ephyra.treeansweranalysis.TreeAnswerAnalyzer;
 import info.ephyra.treeansweranalysis.TreeAnswers;
 import info.ephyra.treeansweranalysis.TreeBreaker;
 import info.ephyra.treeansweranalysis.TreeCompressor;
 import info.ephyra.treeansweranalysis.UnmovableTreeMarker;
+import info.ephyra.treequestiongeneration.BatchQuestionGenerator;
+import info.ephyra.treequestiongeneration.BatchQuestionGenerator.Paragraph;
+import info.ephyra.treequestiongeneration.BatchQuestionGenerator.ParagraphHandler;
 import info.ephyra.treequestiongeneration.QAPhrasePair;
 import info.ephyra.treequestiongeneration.TreeQuestionGenerator;
 import info.ephyra.treequestiongeneration.VerbDecomposer;
+import info.ephyra.util.IdMap;
+import info.ephyra.util.Properties;
+import info.ephyra.util.StartupLoader;
 import info.ephyra.util.StringUtils;
 
 import java.io.BufferedReader;
@@ -45,10 +53,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.StringTokenizer;
 
 import org.apache.log4j.PropertyConfigurator;
 
@@ -115,7 +122,7 @@ public class OpenAryhpe {
 	 *
 	 * @param dir directory of Ephyra
 	 */
-	public OpenAryhpe(String dir) {
+	public OpenAryhpe(final String dir) {
 		this.dir = dir;
 
 		// get logging working
@@ -125,60 +132,115 @@ public class OpenAryhpe {
 
 		MsgPrinter.printInitializing();
 
+		// independent resources are loaded concurrently
+		StartupLoader loader = new StartupLoader();
+		String[] none = new String[0];
+
 		// create tokenizer
-		MsgPrinter.printStatusMsg("Creating tokenizer...");
-		if (!OpenNLP.createTokenizer(dir +
-				"res/nlp/tokenizer/opennlp/EnglishTok.bin.gz"))
-			MsgPrinter.printErrorMsg("Could not create tokenizer.");
-		LingPipe.createTokenizer();
+		loader.add("tokenizer", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating tokenizer...");
+				boolean success = OpenNLP.createTokenizer(dir +
+						"res/nlp/tokenizer/opennlp/EnglishTok.bin.gz");
+				if (!success)
+					MsgPrinter.printErrorMsg("Could not create tokenizer.");
+				LingPipe.createTokenizer();
+				return success;
+			}
+		});
 
 		// create sentence detector
-		MsgPrinter.printStatusMsg("Creating sentence detector...");
-		if (!OpenNLP.createSentenceDetector(dir +
-				"res/nlp/sentencedetector/opennlp/EnglishSD.bin.gz"))
-			MsgPrinter.printErrorMsg("Could not create sentence detector.");
-		LingPipe.createSentenceDetector();
+		loader.add("sentence detector", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating sentence detector...");
+				boolean success = OpenNLP.createSentenceDetector(
+						dir +
+						"res/nlp/sentencedetector/opennlp/EnglishSD.bin.gz");
+				if (!success)
+					MsgPrinter.printErrorMsg("Could not create sentence detector.");
+				LingPipe.createSentenceDetector();
+				return success;
+			}
+		});
 
 		// create stemmer
-		MsgPrinter.printStatusMsg("Creating stemmer...");
-		SnowballStemmer.create();
+		loader.add("stemmer", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating stemmer...");
+				SnowballStemmer.create();
+				return true;
+			}
+		});
 
 		// create part of speech tagger
-		MsgPrinter.printStatusMsg("Creating POS tagger...");
-		if (!OpenNLP.createPosTagger(
-				dir + "res/nlp/postagger/opennlp/tag.bin.gz",
-				dir + "res/nlp/postagger/opennlp/tagdict"))
-			MsgPrinter.printErrorMsg("Could not create OpenNLP POS tagger.");
-//		if (!StanfordPosTagger.init(dir + "res/nlp/postagger/stanford/" +
-//				"wsj3t0-18-bidirectional/train-wsj-0-18.holder"))
-//			MsgPrinter.printErrorMsg("Could not create Stanford POS tagger.");
+		loader.add("POS tagger", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating POS tagger...");
+				boolean success = OpenNLP.createPosTagger(
+						dir + "res/nlp/postagger/opennlp/tag.bin.gz",
+						dir + "res/nlp/postagger/opennlp/tagdict");
+				if (!success)
+					MsgPrinter.printErrorMsg("Could not create OpenNLP POS tagger.");
+//				if (!StanfordPosTagger.init(dir + "res/nlp/postagger/stanford/" +
+//						"wsj3t0-18-bidirectional/train-wsj-0-18.holder"))
+//					MsgPrinter.printErrorMsg("Could not create Stanford POS tagger.");
+				return success;
+			}
+		});
 
 		// create chunker
-		MsgPrinter.printStatusMsg("Creating chunker...");
-		if (!OpenNLP.createChunker(dir +
-				"res/nlp/phrasechunker/opennlp/EnglishChunk.bin.gz"))
-			MsgPrinter.printErrorMsg("Could not create chunker.");
+		loader.add("chunker", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating chunker...");
+				boolean success = OpenNLP.createChunker(dir +
+						"res/nlp/phrasechunker/opennlp/EnglishChunk.bin.gz");
+				if (!success)
+					MsgPrinter.printErrorMsg("Could not create chunker.");
+				return success;
+			}
+		});
 
 		// create syntactic parser
-		MsgPrinter.printStatusMsg("Creating syntactic parser...");
-//		if (!OpenNLP.createParser(dir + "res/nlp/syntacticparser/opennlp/"))
-//			MsgPrinter.printErrorMsg("Could not create OpenNLP parser.");
-		try {
-			StanfordParser.initialize();
-		} catch (Exception e) {
-			MsgPrinter.printErrorMsg("Could not create Stanford parser."+e.toString());
-		}
+		// (its grammatical relations are Tregex patterns, and the Tregex
+		// parser is not thread-safe, so all tasks that compile Tregex
+		// patterns run one after another)
+		loader.add("syntactic parser", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating syntactic parser...");
+//				if (!OpenNLP.createParser(dir + "res/nlp/syntacticparser/opennlp/"))
+//					MsgPrinter.printErrorMsg("Could not create OpenNLP parser.");
+				try {
+					StanfordParser.initialize();
+				} catch (Exception e) {
+					MsgPrinter.printErrorMsg("Could not create Stanford parser."+e.toString());
+					return false;
+				}
+				return true;
+			}
+		});
 
 		// create named entity taggers
-		MsgPrinter.printStatusMsg("Creating NE taggers...");
-		NETagger.loadListTaggers(dir + "res/nlp/netagger/lists/");
-		NETagger.loadRegExTaggers(dir + "res/nlp/netagger/patterns.lst");
-		MsgPrinter.printStatusMsg("  ...loading Standford NETagger");
-//		if (!NETagger.loadNameFinders(dir + "res/nlp/netagger/opennlp/"))
-//			MsgPrinter.printErrorMsg("Could not create OpenNLP NE tagger.");
-		if (!StanfordNeTagger.isInitialized() && !StanfordNeTagger.init())
-			MsgPrinter.printErrorMsg("Could not create Stanford NE tagger.");
-		MsgPrinter.printStatusMsg("  ...done");
+		loader.add("NE lists and patterns", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating NE taggers...");
+				NETagger.loadListTaggers(dir + "res/nlp/netagger/lists/");
+				NETagger.loadRegExTaggers(dir + "res/nlp/netagger/patterns.lst");
+				return true;
+			}
+		});
+		loader.add("Stanford NE tagger", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("  ...loading Standford NETagger");
+//				if (!NETagger.loadNameFinders(dir + "res/nlp/netagger/opennlp/"))
+//					MsgPrinter.printErrorMsg("Could not create OpenNLP NE tagger.");
+				if (!StanfordNeTagger.isInitialized() && !StanfordNeTagger.init()) {
+					MsgPrinter.printErrorMsg("Could not create Stanford NE tagger.");
+					return false;
+				}
+				MsgPrinter.printStatusMsg("  ...done");
+				return true;
+			}
+		});
 
 		// create linker
 //		MsgPrinter.printStatusMsg("Creating linker...");
@@ -186,88 +248,201 @@ public class OpenAryhpe {
 //			MsgPrinter.printErrorMsg("Could not create linker.");
 
 		// create WordNet dictionary
-		MsgPrinter.printStatusMsg("Creating WordNet dictionary...");
-		if (!WordNet.initialize(dir +
-				"res/ontologies/wordnet/file_properties.xml"))
-			MsgPrinter.printErrorMsg("Could not create WordNet dictionary.");
+		loader.add("WordNet", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Creating WordNet dictionary...");
+				if (!WordNet.initialize(dir +
+						"res/ontologies/wordnet/file_properties.xml")) {
+					MsgPrinter.printErrorMsg("Could not create WordNet dictionary.");
+					return false;
+				}
+				return true;
+			}
+		});
+
+		// the indices are tokenized with the NE tagger, whose lists are
+		// loaded when it is first used
+		String[] neTagger = {"NE lists and patterns"};
 
 		// load function words (numbers are excluded)
-		MsgPrinter.printStatusMsg("Loading function verbs...");
-		if (!FunctionWords.loadIndex(dir +
-				"res/indices/functionwords_nonumbers"))
-			MsgPrinter.printErrorMsg("Could not load function words.");
+		loader.add("function words", false, neTagger, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Loading function verbs...");
+				if (!FunctionWords.loadIndex(dir +
+						"res/indices/functionwords_nonumbers")) {
+					MsgPrinter.printErrorMsg("Could not load function words.");
+					return false;
+				}
+				return true;
+			}
+		});
 
 		// load prepositions
-		MsgPrinter.printStatusMsg("Loading prepositions...");
-		if (!Prepositions.loadIndex(dir +
-				"res/indices/prepositions"))
-			MsgPrinter.printErrorMsg("Could not load prepositions.");
+		loader.add("prepositions", false, neTagger, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Loading prepositions...");
+				if (!Prepositions.loadIndex(dir +
+						"res/indices/prepositions")) {
+					MsgPrinter.printErrorMsg("Could not load prepositions.");
+					return false;
+				}
+				return true;
+			}
+		});
 
 		// load irregular verbs
-		MsgPrinter.printStatusMsg("Loading irregular verbs...");
-		if (!IrregularVerbs.loadVerbs(dir + "res/indices/irregularverbs"))
-			MsgPrinter.printErrorMsg("Could not load irregular verbs.");
+		loader.add("irregular verbs", false, none, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Loading irregular verbs...");
+				if (!IrregularVerbs.loadVerbs(dir +
+						"res/indices/irregularverbs")) {
+					MsgPrinter.printErrorMsg("Could not load irregular verbs.");
+					return false;
+				}
+				return true;
+			}
+		});
 
 		// load word frequencies
-		MsgPrinter.printStatusMsg("Loading word frequencies...");
-		if (!WordFrequencies.loadIndex(dir + "res/indices/wordfrequencies"))
-			MsgPrinter.printErrorMsg("Could not load word frequencies.");
+		loader.add("word frequencies", false, neTagger, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Loading word frequencies...");
+				if (!WordFrequencies.loadIndex(dir +
+						"res/indices/wordfrequencies")) {
+					MsgPrinter.printErrorMsg("Could not load word frequencies.");
+					return false;
+				}
+				return true;
+			}
+		});
 
 		if (patternMatching) {
 			// load query reformulators
-			MsgPrinter.printStatusMsg("Loading query reformulators...");
-			if (!QuestionReformulationG.loadReformulators(dir +
-					"res/reformulations/"))
-				MsgPrinter.printErrorMsg("Could not load query reformulators.");
+			loader.add("query reformulators", false, neTagger,
+					new StartupLoader.Task() {
+				public boolean load() {
+					MsgPrinter.printStatusMsg("Loading query reformulators...");
+					if (!QuestionReformulationG.loadReformulators(
+							dir + "res/reformulations/")) {
+						MsgPrinter.printErrorMsg("Could not load query reformulators.");
+						return false;
+					}
+					return true;
+				}
+			});
 
 			// load question patterns
-			MsgPrinter.printStatusMsg("Loading question patterns...");
-			if (!QuestionGenerator.loadPatterns(dir +
-					"res/patternlearning/questionpatternsTest/"))
-				MsgPrinter.printErrorMsg("Could not load question patterns.");
+			loader.add("question patterns", false, neTagger,
+					new StartupLoader.Task() {
+				public boolean load() {
+					MsgPrinter.printStatusMsg("Loading question patterns...");
+					if (!QuestionGenerator.loadPatterns(dir +
+							"res/patternlearning/questionpatternsTest/")) {
+						MsgPrinter.printErrorMsg("Could not load question patterns.");
+						return false;
+					}
+					return true;
+				}
+			});
 
 			// load answer patterns
-			MsgPrinter.printStatusMsg("Loading answer patterns...");
-			if (!AnswerAnalyzer.loadPatterns(dir +
-					"res/patternlearning/answerpatternsTest/"))
-				MsgPrinter.printErrorMsg("Could not load answer patterns.");
+			loader.add("answer patterns", false, neTagger,
+					new StartupLoader.Task() {
+				public boolean load() {
+					MsgPrinter.printStatusMsg("Loading answer patterns...");
+					if (!AnswerAnalyzer.loadPatterns(dir +
+							"res/patternlearning/answerpatternsTest/")) {
+						MsgPrinter.printErrorMsg("Could not load answer patterns.");
+						return false;
+					}
+					return true;
+				}
+			});
 		}
 
 		// load Tregex patterns for unmovable phrases
-		MsgPrinter.printStatusMsg("Loading Tregex patterns for unmovable phrases...");
-		if (!UnmovableTreeMarker.loadUnmvRegex("res/nlp/treetransform/unmovable"))
-			MsgPrinter.printErrorMsg("Could not Tregex patterns for unmovable phrases.");
+		loader.add("unmovable phrase patterns", false,
+				new String[] {"syntactic parser"}, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Loading Tregex patterns for unmovable phrases...");
+				if (!UnmovableTreeMarker.loadUnmvRegex("res/nlp/treetransform/unmovable")) {
+					MsgPrinter.printErrorMsg("Could not Tregex patterns for unmovable phrases.");
+					return false;
+				}
+				return true;
+			}
+		});
+
+		// load Tregex patterns and Tsurgeon operations for question generation
+		loader.add("question generation patterns", true,
+				new String[] {"unmovable phrase patterns"}, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Loading Tregex patterns for question generation...");
+				if (!TreePatterns.loadPatterns("res/nlp/treetransform/patterns")) {
+					MsgPrinter.printErrorMsg("Could not load Tregex patterns for question generation.");
+					return false;
+				}
+				return true;
+			}
+		});
 
 		// Initialize TreeBreaker
-		MsgPrinter.printStatusMsg("Initialize TreeBreaker...");
-		if (!TreeBreaker.initialize()) {
-			MsgPrinter.printErrorMsg("failed.");
-			System.exit(-1);
-		}
-		else
-			MsgPrinter.printStatusMsg("Done");
+		loader.add("TreeBreaker", true,
+				new String[] {"question generation patterns"}, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Initialize TreeBreaker...");
+				return TreeBreaker.initialize();
+			}
+		});
 
 		// Initialize TreeCompressor
-		MsgPrinter.printStatusMsg("Initialize TreeCompressor...");
-		if (!TreeCompressor.initialize()) {
-			MsgPrinter.printErrorMsg("failed.");
-			System.exit(-1);
-		}
-		else
-			MsgPrinter.printStatusMsg("Done");
+		loader.add("TreeCompressor", true,
+				new String[] {"TreeBreaker"}, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Initialize TreeCompressor...");
+				return TreeCompressor.initialize();
+			}
+		});
 
 		// Initialize VerbDecomposer
-		MsgPrinter.printStatusMsg("Initialize VerbDecomposer...");
-		if (!VerbDecomposer.initialize()) {
+		loader.add("VerbDecomposer", true,
+				new String[] {"TreeCompressor"}, new StartupLoader.Task() {
+			public boolean load() {
+				MsgPrinter.printStatusMsg("Initialize VerbDecomposer...");
+				return VerbDecomposer.initialize();
+			}
+		});
+
+		boolean success = loader.run(getStartupThreads());
+		String report = loader.getReport();
+		log.info(report);
+		MsgPrinter.printStatusMsg(report);
+		if (!success) {
 			MsgPrinter.printErrorMsg("failed.");
 			System.exit(-1);
 		}
-		else
-			MsgPrinter.printStatusMsg("Done");
 
 		MsgPrinter.printUsage();
 	}
 
+	/**
+	 * Reads the number of threads that load the resources at startup from the
+	 * properties file.
+	 *
+	 * @return number of threads, 0 for one per processor
+	 */
+	private static int getStartupThreads() {
+		try {
+			Properties properties =
+				Properties.loadFromClassName(OpenAryhpe.class.getName());
+			String threads = properties.getProperty("startupThreads");
+			if (threads != null) return Integer.parseInt(threads.trim());
+		} catch (RuntimeException e) {
+			log.warn("Could not read startupThreads: " + e.getMessage());
+		}
+		return 0;
+	}
+
 	/**
 	 * Reads a line from the command prompt.
 	 *
@@ -419,8 +594,12 @@ public class OpenAryhpe {
 				}
 
 			} else {
-				question = TreeBreaker.doBreak(question);
-				TreeAnswers treeAnswers = new TreeAnswers(question);
+				ArrayList<AnalyzedSentence> analyses = TreeBreaker.breakSentences(question);
+				question = "";
+				for (AnalyzedSentence analysis : analyses)
+					question += analysis.getSentence() + " ";
+				question = question.trim();
+				TreeAnswers treeAnswers = new TreeAnswers(analyses);
 				ArrayList<TreeAnswer> treeAnsList = TreeAnswerAnalyzer.analyze(treeAnswers);
 				Iterator<TreeAnswer> tAnsIter = treeAnsList.iterator();
 				while (tAnsIter.hasNext()) {
@@ -440,6 +619,20 @@ public class OpenAryhpe {
 		}
 	}
 
+	/**
+	 * Prints the throughput of a batch and the statistics of the Tregex
+	 * patterns and the parse cache.
+	 *
+	 * @param batch question generator that processed a file
+	 */
+	private void printStatistics(BatchQuestionGenerator batch) {
+		MsgPrinter.printStatusMsg(batch.getThroughput());
+		MsgPrinter.printStatusMsg(TreePatterns.getStatistics());
+		String cacheStatistics = StanfordParser.getCacheStatistics();
+		if (cacheStatistics != null)
+			MsgPrinter.printStatusMsg(cacheStatistics);
+	}
+
 	/**
 	 * Generate questions from the text of <code>inFile</code> and output to <code>outFile</code>
 	 * in evaluation format.
@@ -450,60 +643,55 @@ public class OpenAryhpe {
 			return;
 		}
 
-		int paragraphCounter=0, wordCounter=0;
-		int oriSentCounter=0, actualSentCounter=0, quesCounter=0;
-
 		try {
 			BufferedReader in = new BufferedReader(new FileReader(new File(inFile)));
-			BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
-			while (in.ready()) {
-				String paragraph = in.readLine().trim();
-				if (paragraph.length() == 0 || paragraph.startsWith("//"))
-					continue;
+			final BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+
+			class TxtWriter implements ParagraphHandler {
+				int paragraphCounter=0, wordCounter=0;
+				int oriSentCounter=0, actualSentCounter=0, quesCounter=0;
+				// sentences printed for the current paragraph
+				int paragraphSentCounter=0;
+
+				public void handle(Paragraph p) throws IOException {
+					oriSentCounter += p.getOriSentCount();
+					wordCounter += p.getWordCount();
+					actualSentCounter += p.getActualSentCount();
+					quesCounter += p.getQuesCount();
+
+					// long paragraphs come in several parts
+					if (p.isFirst()) {
+						paragraphCounter++;
+						paragraphSentCounter = 0;
+						out.write("Paragraph "+p.getId()+": ");
+						out.newLine();
+						out.write(p.getText());
+						out.newLine();
+					}
 
-				paragraphCounter++;
-				MsgPrinter.printStatusMsg("processing paragraph "+paragraphCounter+"...");
-				out.write("Paragraph "+paragraphCounter+": ");
-				out.newLine();
-				out.write(paragraph);
-				out.newLine();
-
-				// break the paragraph
-				String[] sentences = OpenNLP.sentDetect(paragraph);
-				oriSentCounter += sentences.length;
-				for (String sent:sentences) {
-					wordCounter += (new StringTokenizer(sent)).countTokens();
+					// print formatted questions for evaluation
+					paragraphSentCounter = TreeQuestionGenerator.printForICTevaluation(
+							p.getTreeAnsList(), out, paragraphSentCounter);
 				}
-				paragraph = TreeBreaker.doBreak(paragraph);
-				actualSentCounter += OpenNLP.sentDetect(paragraph).length;
-
-				// generate questions
-				TreeAnswers treeAnswers = new TreeAnswers(paragraph);
-				ArrayList<TreeAnswer> treeAnsList = TreeAnswerAnalyzer.analyze(treeAnswers);
-				Iterator<TreeAnswer> tAnsIter = treeAnsList.iterator();
-				while (tAnsIter.hasNext()) {
-					TreeAnswer treeAnswer = tAnsIter.next();
-					TreeQuestionGenerator.generate(treeAnswer);
-					quesCounter += treeAnswer.size();
-				}
-
-				// print formatted questions for evaluation
-				TreeQuestionGenerator.printForICTevaluation(treeAnsList, out);
-
 			}
+			TxtWriter writer = new TxtWriter();
+			BatchQuestionGenerator batch = new BatchQuestionGenerator();
+			batch.process(in, writer);
 			in.close();
 
 			out.write("Summary:");
 			out.newLine();
-			out.write("Paragraph: "+paragraphCounter
-					+". Original Sentences: "+oriSentCounter
-					+". Actual Sentences: "+actualSentCounter
-					+". Words: "+wordCounter
-					+". Questions: "+quesCounter+".");
+			out.write("Paragraph: "+writer.paragraphCounter
+					+". Original Sentences: "+writer.oriSentCounter
+					+". Actual Sentences: "+writer.actualSentCounter
+					+". Words: "+writer.wordCounter
+					+". Questions: "+writer.quesCounter+".");
 			out.newLine();
 			out.newLine();
 
 			out.close();
+
+			printStatistics(batch);
 		} catch (java.io.IOException e) {
 			System.err.println(e);
 		}
@@ -519,17 +707,13 @@ public class OpenAryhpe {
 			return;
 		}
 
-		Hashtable<String, Integer> ansSentHash = new Hashtable<String, Integer>();
-		Hashtable<String, Integer> ansPhraseHash = new Hashtable<String, Integer>();
-		Integer sentIDcount = new Integer(0);
-		Integer phraseIDcount = new Integer(0);
-
-		int paragraphCounter=0, wordCounter=0;
-		int oriSentCounter=0, actualSentCounter=0, quesCounter=0;
+		// IDs of answer sentences and phrases, duplicates get the same ID
+		final IdMap ansSentIds = new IdMap();
+		final IdMap ansPhraseIds = new IdMap();
 
 		try {
 			BufferedReader in = new BufferedReader(new FileReader(new File(inFile)));
-			BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+			final BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
 			out.write("<?xml version=\"1.0\"?>\n");
 			out.write("<Workbook>\n");
 			out.write("\t<Row>\n");
@@ -538,117 +722,96 @@ public class OpenAryhpe {
 			out.write("\t\t<Cell><Data ss:Type=\"String\">ID</Data></Cell>\n");
 			out.write("\t</Row>\n");
 
-			while (in.ready()) {
-				String paragraph = in.readLine().trim();
-				if (paragraph.length() == 0 || paragraph.startsWith("//"))
-					continue;
-
-				paragraphCounter++;
-				MsgPrinter.printStatusMsg("processing paragraph "+paragraphCounter+"...");
-
-				// break the paragraph
-				String[] sentences = OpenNLP.sentDetect(paragraph);
-				oriSentCounter += sentences.length;
-				for (String sent:sentences) {
-					wordCounter += (new StringTokenizer(sent)).countTokens();
-				}
-				paragraph = TreeBreaker.doBreak(paragraph);
-				actualSentCounter += OpenNLP.sentDetect(paragraph).length;
-
-				// generate questions
-				TreeAnswers treeAnswers = new TreeAnswers(paragraph);
-				ArrayList<TreeAnswer> treeAnsList = TreeAnswerAnalyzer.analyze(treeAnswers);
-				Iterator<TreeAnswer> tAnsIter = treeAnsList.iterator();
-				while (tAnsIter.hasNext()) {
-					TreeAnswer treeAnswer = tAnsIter.next();
-					TreeQuestionGenerator.generate(treeAnswer);
-				}
-
-				// print formatted questions to XML files with unique IDs for sentences and answer phrases
-
-				// Entries in treeAnsList are based on sentences
-				// Every sentence has an entry in treeAnsList
-				tAnsIter = treeAnsList.iterator();
-				TreeAnswer treeAnswer;
-				ArrayList<QAPhrasePair> qaPhraseList;
-				Iterator<QAPhrasePair> pPairIter;
-				QAPhrasePair pPair;
-				String question="", ansSent="", ansPhrase="";
-				String sentID="", phraseID="";
-
-				try {
-					while (tAnsIter.hasNext()) {
-						treeAnswer = tAnsIter.next();
-						// don't output y/s questions
-						// if only contains 1 q-a pair, it must be a y/n question
-						if(treeAnswer.size() == 1) continue;
-
-						ansSent = treeAnswer.getSentence();
-						ansSent = StringUtils.replaceXMLspecials(ansSent);
-						if (!ansSentHash.containsKey(ansSent)) {
-							sentIDcount = ansSentHash.size()+1;
-							ansSentHash.put(ansSent, sentIDcount);
-						} else {
-							sentIDcount = ansSentHash.get(ansSent);
-						}
+			class XmlWriter implements ParagraphHandler {
+				int paragraphCounter=0, wordCounter=0;
+				int oriSentCounter=0, quesCounter=0;
+
+				public void handle(Paragraph p) {
+					if (p.isFirst()) paragraphCounter++;
+					oriSentCounter += p.getOriSentCount();
+					wordCounter += p.getWordCount();
+
+					// print formatted questions to XML files with unique IDs for sentences and answer phrases
+
+					// Entries in treeAnsList are based on sentences
+					// Every sentence has an entry in treeAnsList
+					Iterator<TreeAnswer> tAnsIter = p.getTreeAnsList().iterator();
+					TreeAnswer treeAnswer;
+					ArrayList<QAPhrasePair> qaPhraseList;
+					Iterator<QAPhrasePair> pPairIter;
+					QAPhrasePair pPair;
+					String question="", ansSent="", ansPhrase="";
+					String sentID="", phraseID="";
+					int sentIDcount, phraseIDcount;
+
+					try {
+						while (tAnsIter.hasNext()) {
+							treeAnswer = tAnsIter.next();
+							// don't output y/s questions
+							// if only contains 1 q-a pair, it must be a y/n question
+							if(treeAnswer.size() == 1) continue;
+
+							ansSent = treeAnswer.getSentence();
+							ansSent = StringUtils.replaceXMLspecials(ansSent);
+							sentIDcount = ansSentIds.getId(ansSent);
+
+							// For every sentence, there is a list of q-a pairs
+							qaPhraseList = treeAnswer.getQAPhraseList();
+							pPairIter = qaPhraseList.iterator();
+							while (pPairIter.hasNext()) {
+								pPair = pPairIter.next();
+
+								// skip y/n questions
+								if (pPair.getQuesType().equals("Y/N")) continue;
+
+								question = pPair.getQuesSentence();
+								ansPhrase = pPair.getAnsPhrase();
+								question = StringUtils.replaceXMLspecials(question);
+								ansPhrase = StringUtils.replaceXMLspecials(ansPhrase);
+
+								// for every ansPhrase, we output 1 question-ansSent pair and 1 question-ansPhrase pair
+								quesCounter += 2;
+								phraseIDcount = ansPhraseIds.getId(ansPhrase);
+
+								sentID = "S"+sentIDcount;
+								phraseID = "P"+phraseIDcount;
+
+								out.write("\t<Row>\n");
+								out.write("\t\t<Cell><Data ss:Type=\"String\">"+question+"</Data></Cell>\n");
+								out.write("\t\t<Cell><Data ss:Type=\"String\">"+ansSent+"</Data></Cell>\n");
+								out.write("\t\t<Cell><Data ss:Type=\"String\">"+sentID+"</Data></Cell>\n");
+								out.write("\t</Row>\n");
+
+								out.write("\t<Row>\n");
+								out.write("\t\t<Cell><Data ss:Type=\"String\">"+question+"</Data></Cell>\n");
+								out.write("\t\t<Cell><Data ss:Type=\"String\">"+ansPhrase+"</Data></Cell>\n");
+								out.write("\t\t<Cell><Data ss:Type=\"String\">"+phraseID+"</Data></Cell>\n");
+								out.write("\t</Row>\n");
 
-						// For every sentence, there is a list of q-a pairs
-						qaPhraseList = treeAnswer.getQAPhraseList();
-						pPairIter = qaPhraseList.iterator();
-						while (pPairIter.hasNext()) {
-							pPair = pPairIter.next();
-
-							// skip y/n questions
-							if (pPair.getQuesType().equals("Y/N")) continue;
-
-							question = pPair.getQuesSentence();
-							ansPhrase = pPair.getAnsPhrase().replaceAll("-\\d+\\b", "");
-							question = StringUtils.replaceXMLspecials(question);
-							ansPhrase = StringUtils.replaceXMLspecials(ansPhrase);
-
-							// for every ansPhrase, we output 1 question-ansSent pair and 1 question-ansPhrase pair
-							quesCounter += 2;
-							if (!ansPhraseHash.containsKey(ansPhrase)) {
-								phraseIDcount = ansPhraseHash.size()+1;
-								ansPhraseHash.put(ansPhrase, phraseIDcount);
-							} else {
-								phraseIDcount = ansPhraseHash.get(ansPhrase);
 							}
-
-							sentID = "S"+sentIDcount;
-							phraseID = "P"+phraseIDcount;
-
-							out.write("\t<Row>\n");
-							out.write("\t\t<Cell><Data ss:Type=\"String\">"+question+"</Data></Cell>\n");
-							out.write("\t\t<Cell><Data ss:Type=\"String\">"+ansSent+"</Data></Cell>\n");
-							out.write("\t\t<Cell><Data ss:Type=\"String\">"+sentID+"</Data></Cell>\n");
-							out.write("\t</Row>\n");
-
-							out.write("\t<Row>\n");
-							out.write("\t\t<Cell><Data ss:Type=\"String\">"+question+"</Data></Cell>\n");
-							out.write("\t\t<Cell><Data ss:Type=\"String\">"+ansPhrase+"</Data></Cell>\n");
-							out.write("\t\t<Cell><Data ss:Type=\"String\">"+phraseID+"</Data></Cell>\n");
-							out.write("\t</Row>\n");
-
 						}
+					} catch (java.io.IOException e) {
+						System.err.println(e);
 					}
-				} catch (java.io.IOException e) {
-					System.err.println(e);
 				}
 			}
+			XmlWriter writer = new XmlWriter();
+			BatchQuestionGenerator batch = new BatchQuestionGenerator();
+			batch.process(in, writer);
 			in.close();
 			out.write("</Workbook>");
 			out.close();
 
-			int line = quesCounter*5+8;
+			int line = writer.quesCounter*5+8;
 			MsgPrinter.printStatusMsg("Summary (without y/n questions):");
-			MsgPrinter.printStatusMsg("Paragraph: "+paragraphCounter
-					+". Original Sentences: "+oriSentCounter
-					+". Words: "+wordCounter
-					+". Actual Sentences: "+ansSentHash.size()
-					+". Answer phrases: "+ansPhraseHash.size()
-					+". Questions: "+quesCounter
+			MsgPrinter.printStatusMsg("Paragraph: "+writer.paragraphCounter
+					+". Original Sentences: "+writer.oriSentCounter
+					+". Words: "+writer.wordCounter
+					+". Actual Sentences: "+ansSentIds.size()
+					+". Answer phrases: "+ansPhraseIds.size()
+					+". Questions: "+writer.quesCounter
 					+". XML lines: "+line+".");
+			printStatistics(batch);
 		} catch (java.io.IOException e) {
 			System.err.println(e);
 		}
@@ -729,130 +892,106 @@ public class OpenAryhpe {
 			return;
 		}
 
-		Hashtable<String, Integer> ansSentHash = new Hashtable<String, Integer>();
-		Hashtable<String, Integer> ansPhraseHash = new Hashtable<String, Integer>();
-		Integer sentIDcount = new Integer(0);
-		Integer phraseIDcount = new Integer(0);
+		// IDs of answer sentences and phrases, duplicates get the same ID
+		final IdMap ansSentIds = new IdMap();
+		final IdMap ansPhraseIds = new IdMap();
 
-		String firstQ = "001. Is the question understandable?\n\n" +
+		final String firstQ = "001. Is the question understandable?\n\n" +
 			"Understandable as is\n"+
 			"Understandable only when knowing topic context\n"+
 			"None of the above\n\n";
-		String secondQ = "002. Is the question grammatical?\n\n" +
+		final String secondQ = "002. Is the question grammatical?\n\n" +
 			"Yes\n" + "No\n\n";
-		String thirdQ = "003. Is the answer relevant?\n\n" +
+		final String thirdQ = "003. Is the answer relevant?\n\n" +
 			"Relevant as is\n" +
 			"Relevant only when knowing the topic context\n" +
 			"None of the above\n\n";
-		String fourthQ = "004.  If the answer is relevant, is the answer grammatical? (click \"No\" when you answered \"none of the above \" in the last question.)\n\n" +
+		final String fourthQ = "004.  If the answer is relevant, is the answer grammatical? (click \"No\" when you answered \"none of the above \" in the last question.)\n\n" +
 			"Yes\n"+"No\n\n";
-		String pageBreak = "[[PageBreak]]\n\n";
-
-		int paragraphCounter=0, wordCounter=0;
-		int oriSentCounter=0, actualSentCounter=0, quesCounter=0;
+		final String pageBreak = "[[PageBreak]]\n\n";
 
 		try {
 			BufferedReader in = new BufferedReader(new FileReader(new File(inFile)));
-			BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
-
-			while (in.ready()) {
-				String paragraph = in.readLine().trim();
-				if (paragraph.length() == 0 || paragraph.startsWith("//"))
-					continue;
-
-				paragraphCounter++;
-				MsgPrinter.printStatusMsg("processing paragraph "+paragraphCounter+"...");
-
-				//out.write("[[Block: Paragraph "+paragraphCounter+"]]\n\n");
-				out.write(paragraphCounter+". Paragraph "+paragraphCounter+":<br>\n");
-				out.write(paragraph+"\n\n");
-				out.write(pageBreak);
-
-				// break the paragraph
-				String[] sentences = OpenNLP.sentDetect(paragraph);
-				oriSentCounter += sentences.length;
-				for (String sent:sentences) {
-					wordCounter += (new StringTokenizer(sent)).countTokens();
-				}
-				paragraph = TreeBreaker.doBreak(paragraph);
-				actualSentCounter += OpenNLP.sentDetect(paragraph).length;
-
-				// generate questions
-				TreeAnswers treeAnswers = new TreeAnswers(paragraph);
-				ArrayList<TreeAnswer> treeAnsList = TreeAnswerAnalyzer.analyze(treeAnswers);
-				Iterator<TreeAnswer> tAnsIter = treeAnsList.iterator();
-				while (tAnsIter.hasNext()) {
-					TreeAnswer treeAnswer = tAnsIter.next();
-					TreeQuestionGenerator.generate(treeAnswer);
-				}
-
-
-				// Entries in treeAnsList are based on sentences
-				// Every sentence has an entry in treeAnsList
-				tAnsIter = treeAnsList.iterator();
-				TreeAnswer treeAnswer;
-				ArrayList<QAPhrasePair> qaPhraseList;
-				Iterator<QAPhrasePair> pPairIter;
-				QAPhrasePair pPair;
-				String question="", ansSent="", ansPhrase="";
-
-				try {
-					while (tAnsIter.hasNext()) {
-						treeAnswer = tAnsIter.next();
-
-						ansSent = treeAnswer.getSentence();
-						if (!ansSentHash.containsKey(ansSent)) {
-							sentIDcount = ansSentHash.size()+1;
-							ansSentHash.put(ansSent, sentIDcount);
-						} else {
-							sentIDcount = ansSentHash.get(ansSent);
-						}
-
-						// For every sentence, there is a list of q-a pairs
-						qaPhraseList = treeAnswer.getQAPhraseList();
-						pPairIter = qaPhraseList.iterator();
-						while (pPairIter.hasNext()) {
-							pPair = pPairIter.next();
-
+			final BufferedWriter out = new BufferedWriter(new FileWriter(outFile));
+
+			class SurveyWriter implements ParagraphHandler {
+				int paragraphCounter=0, wordCounter=0;
+				int oriSentCounter=0, quesCounter=0;
+
+				public void handle(Paragraph p) throws IOException {
+					oriSentCounter += p.getOriSentCount();
+					wordCounter += p.getWordCount();
+
+					// long paragraphs come in several parts
+					if (p.isFirst()) {
+						paragraphCounter++;
+						//out.write("[[Block: Paragraph "+paragraphCounter+"]]\n\n");
+						out.write(paragraphCounter+". Paragraph "+paragraphCounter+":<br>\n");
+						out.write(p.getText()+"\n\n");
+						out.write(pageBreak);
+					}
 
-							question = pPair.getQuesSentence();
-							ansPhrase = pPair.getAnsPhrase().replaceAll("-\\d+\\b", "");
+					// Entries in treeAnsList are based on sentences
+					// Every sentence has an entry in treeAnsList
+					Iterator<TreeAnswer> tAnsIter = p.getTreeAnsList().iterator();
+					TreeAnswer treeAnswer;
+					ArrayList<QAPhrasePair> qaPhraseList;
+					Iterator<QAPhrasePair> pPairIter;
+					QAPhrasePair pPair;
+					String question="", ansSent="", ansPhrase="";
+
+					try {
+						while (tAnsIter.hasNext()) {
+							treeAnswer = tAnsIter.next();
+
+							ansSent = treeAnswer.getSentence();
+							ansSentIds.getId(ansSent);
+
+							// For every sentence, there is a list of q-a pairs
+							qaPhraseList = treeAnswer.getQAPhraseList();
+							pPairIter = qaPhraseList.iterator();
+							while (pPairIter.hasNext()) {
+								pPair = pPairIter.next();
+
+
+								question = pPair.getQuesSentence();
+								ansPhrase = pPair.getAnsPhrase();
+
+								quesCounter += 1;
+								ansPhraseIds.getId(ansPhrase);
+
+								//out.write("[[Block: Question "+quesCounter+"]]\n\n");
+								out.write(quesCounter+"005. [Sentence]: "+ansSent+"<br>\n");
+								out.write("[Question]: "+question+"\n\n");
+								out.write(quesCounter+firstQ);
+								out.write(quesCounter+secondQ);
+								out.write(quesCounter+"006. [Answer]: "+ansPhrase+"\n\n");
+								out.write(quesCounter+thirdQ);
+								out.write(quesCounter+fourthQ);
+								out.write(pageBreak);
 
-							quesCounter += 1;
-							if (!ansPhraseHash.containsKey(ansPhrase)) {
-								phraseIDcount = ansPhraseHash.size()+1;
-								ansPhraseHash.put(ansPhrase, phraseIDcount);
-							} else {
-								phraseIDcount = ansPhraseHash.get(ansPhrase);
 							}
 
-							//out.write("[[Block: Question "+quesCounter+"]]\n\n");
-							out.write(quesCounter+"005. [Sentence]: "+ansSent+"<br>\n");
-							out.write("[Question]: "+question+"\n\n");
-							out.write(quesCounter+firstQ);
-							out.write(quesCounter+secondQ);
-							out.write(quesCounter+"006. [Answer]: "+ansPhrase+"\n\n");
-							out.write(quesCounter+thirdQ);
-							out.write(quesCounter+fourthQ);
-							out.write(pageBreak);
-
 						}
-
+					} catch (java.io.IOException e) {
+						System.err.println(e);
 					}
-				} catch (java.io.IOException e) {
-					System.err.println(e);
 				}
 			}
+			SurveyWriter writer = new SurveyWriter();
+			BatchQuestionGenerator batch = new BatchQuestionGenerator();
+			batch.process(in, writer);
 			in.close();
 			out.close();
 
 			MsgPrinter.printStatusMsg("Summary:");
-			MsgPrinter.printStatusMsg("Paragraph: "+paragraphCounter
-					+". Original Sentences: "+oriSentCounter
-					+". Words: "+wordCounter
-					+". Actual Sentences: "+ansSentHash.size()
-					+". Answer phrases: "+ansPhraseHash.size()
-					+". Questions: "+quesCounter);
+			MsgPrinter.printStatusMsg("Paragraph: "+writer.paragraphCounter
+					+". Original Sentences: "+writer.oriSentCounter
+					+". Words: "+writer.wordCounter
+					+". Actual Sentences: "+ansSentIds.size()
+					+". Answer phrases: "+ansPhraseIds.size()
+					+". Questions: "+writer.quesCounter);
+			printStatistics(batch);
 		} catch (java.io.IOException e) {
 			System.err.println(e);
 		}
@@ -0,0 +1,87 @@
+package info.ephyra.answeranalysis;
+
+import info.ephyra.answerselection.AnswerPattern;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+/**
+ * <p>Holds the state of a single call to an answer analyzer: the reverse
+ * mappings of the tags inserted in a sentence and the PROPERTY objects that
+ * have been extracted.</p>
+ *
+ * <p>A new context is created for each call, so that several threads can
+ * analyze answers at the same time.</p>
+ */
+public class AnalysisContext {
+	/** Maps tags in the current sentence to the original strings. */
+	private Hashtable<String, String> reverseMap =
+		new Hashtable<String, String>();
+	/** PROPERTY objects extracted from the answers. */
+	private ArrayList<String> extr = new ArrayList<String>();
+	/** For each PROPERTY object the NE types. */
+	private ArrayList<String[]> types = new ArrayList<String[]>();
+	/** For each PROPERTY object the sentence it was extracted from. */
+	private ArrayList<String> sents = new ArrayList<String>();
+	/** For each PROPERTY object the answer pattern used to extract it. */
+	private ArrayList<AnswerPattern> aps = new ArrayList<AnswerPattern>();
+
+	/**
+	 * Clears the reverse mappings before a new sentence is prepared.
+	 */
+	public void clearReverseMap() {
+		reverseMap = new Hashtable<String, String>();
+	}
+
+	/**
+	 * Remembers the original string of a tag.
+	 *
+	 * @param tag tag inserted in the sentence
+	 * @param rep original string
+	 */
+	public void putReverse(String tag, String rep) {
+		reverseMap.put(tag, rep);
+	}
+
+	/**
+	 * Looks up the original string of a tag.
+	 *
+	 * @param tag tag inserted in the sentence
+	 * @return original string or <code>null</code>, if the tag is unknown
+	 */
+	public String getReverse(String tag) {
+		return reverseMap.get(tag);
+	}
+
+	/**
+	 * Stores an extracted PROPERTY object.
+	 *
+	 * @param po PROPERTY object
+	 * @param neTypes NE types of the PROPERTY object
+	 * @param sent sentence it was extracted from
+	 * @param ap answer pattern used to extract it
+	 */
+	public void addExtraction(String po, String[] neTypes, String sent,
+			AnswerPattern ap) {
+		extr.add(po);
+		types.add(neTypes);
+		sents.add(sent);
+		aps.add(ap);
+	}
+
+	public ArrayList<String> getExtractions() {
+		return extr;
+	}
+
+	public ArrayList<String[]> getNeTypes() {
+		return types;
+	}
+
+	public ArrayList<String> getSentences() {
+		return sents;
+	}
+
+	public ArrayList<AnswerPattern> getAnswerPatterns() {
+		return aps;
+	}
+}
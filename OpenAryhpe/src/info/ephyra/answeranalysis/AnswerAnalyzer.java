@@ -1,14 +1,13 @@
 package info.ephyra.answeranalysis;
 
 import info.ephyra.answerselection.AnswerPattern;
+import info.ephyra.answerselection.AnswerPatternIndex;
 import info.ephyra.io.MsgPrinter;
-import info.ephyra.nlp.NETagger;
+import info.ephyra.nlp.NeAnnotation;
 import info.ephyra.nlp.OpenNLP;
 import info.ephyra.questionanalysis.Term;
 import info.ephyra.util.Dictionary;
 import info.ephyra.util.FileUtils;
-import info.ephyra.util.RegexConverter;
-import info.ephyra.util.StringUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -24,98 +23,99 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 public class AnswerAnalyzer {
-	private static Hashtable<String, String> reverseMap =
-		new Hashtable<String, String>();
 	private static Hashtable<String, HashSet<AnswerPattern>> props =
 		new Hashtable<String, HashSet<AnswerPattern>>();
+	/**
+	 * Index over the answer patterns of all PROPERTIES, built when the
+	 * patterns are first applied and dropped when they change.
+	 */
+	private static AnswerPatternIndex index;
 	private static Hashtable<String, Integer> nOfPassages =
 		new Hashtable<String, Integer>();
-	/** PROPERTY objects extracted from a <code>Result</code>. */
-	private static ArrayList<String> extr;
-	/** For each PROPERTY object the NE types. */
-	private static ArrayList<String[]> types;
-	/** For each PROPERTY object the sentence it was extracted from. */
-	private static ArrayList<String> sents;
-	/** For each PROPERTY object the answer pattern used to extract it. */
-	private static ArrayList<AnswerPattern> aps;
 	/** <code>Dictionaries</code> for term extraction. */
 	private static ArrayList<Dictionary> dicts = new ArrayList<Dictionary>();
 	
 	public static ArrayList<Answer> analyze (Answers ans) {
+		return analyze(ans, new AnalysisContext());
+	}
+	
+	/**
+	 * Extracts answers from the sentences, storing the PROPERTY objects in the
+	 * given context.
+	 * 
+	 * @param ans answer sentences
+	 * @param ctx context of this analysis
+	 * @return answers or <code>null</code>, if the terms are not available
+	 */
+	public static ArrayList<Answer> analyze (Answers ans, AnalysisContext ctx) {
 		ArrayList<Answer> answerList = new ArrayList<Answer>();
-		extr = new ArrayList<String>();
-		types = new ArrayList<String[]>();
-		sents = new ArrayList<String>();
-		aps = new ArrayList<AnswerPattern>();
 		String prop;
+		AnswerPatternIndex index = getIndex();
 		
 		String[] cos = new String[0];  // CONTEXT objects are ignored
 		//String prop = "PLACEOFBIRTH";
-		HashSet<AnswerPattern> patterns;
 		String[] sentences = ans.getSentences();
 		String[] originalSentences = ans.getOriginalSentences();
-		String[][][] nes = ans.getNes();
+		NeAnnotation[] nes = ans.getNeAnnotations();
 		Term[][] terms = ans.getTerms();
 		if (terms == null) return null;
 		// looping through every term of every sentence
 		// every term of NE could potentially be a <TO>
 		for (int t=0; t<terms.length; t++){
+			SentenceNes sentenceNes = null;
 			for (Term term:terms[t]) {
 				// if term is not an NE, then continue
 				if (term.getNeTypes().length == 0) continue;
 				String to = term.getText();
 
 				// prepare sentence for answer extraction
-				String sentence = prepSentence(sentences[t], to, cos, nes[t]);
+				if (sentenceNes == null)
+					sentenceNes = new SentenceNes(sentences[t], nes[t]);
+				String sentence = sentenceNes.prepare(to, cos, ctx);
 				if (sentence == null) continue;
-				Enumeration<String> ePattern = props.keys();
-				while (ePattern.hasMoreElements()) {
-					prop = ePattern.nextElement();
-					patterns = props.get(prop);
-					for (AnswerPattern pattern : patterns) {
-						// apply answer pattern
-						String[] NEpos = pattern.apply(sentence);
-											
-						// get NE types of PROPERTY objects
-						String[][] neTypes = new String[NEpos.length][];
-						if (NEpos.length > 0) {
-							String[] pos = new String[NEpos.length];
-							Term[] poTerm = new Term[NEpos.length];
-							for (int j = 0; j < NEpos.length; j++)
-								neTypes[j] = getNeTypes(NEpos[j], pattern);
-							
-							// replace tags and untokenize PROPERTY objects
-							// poTerm may come out null in the following for loop
-							// there are generally 3 reasons:
-							// 1. pos[j] is with extra punctuations, such as "Washington DC.", which doesn't exactly match with term
-							// 2. pos[j] contains multiple terms, such as "August 28, 1958", which doesn't exist in terms
-							// 3. pos[j] contains prepositions, such as "in Washington".
-							// 1 and 3 don't matter too much. for 2 it's critical to retrieve the right NE types
-							// (TODO) it's better to modify the getTerms() function to return contiguous words with the same NE types as a term.
-							for (int j = 0; j < NEpos.length; j++) {
-								pos[j] = replaceTags(NEpos[j]);
-								pos[j] = OpenNLP.untokenize(pos[j], originalSentences[t]);
-								// find out pos's term
-								for (Term tm:terms[t]) {
-									if (tm.getText().equals(pos[j])) {
-										poTerm[j] = new Term(pos[j], tm.getPos(), tm.getNeTypes());
-										break;
-									}
+				// only apply the patterns whose anchors occur in the sentence
+				for (AnswerPattern pattern : index.getCandidates(sentence)) {
+					prop = pattern.getProperty();
+					// apply answer pattern
+					String[] NEpos = pattern.apply(sentence);
+										
+					// get NE types of PROPERTY objects
+					String[][] neTypes = new String[NEpos.length][];
+					if (NEpos.length > 0) {
+						String[] pos = new String[NEpos.length];
+						Term[] poTerm = new Term[NEpos.length];
+						for (int j = 0; j < NEpos.length; j++)
+							neTypes[j] = getNeTypes(NEpos[j], pattern);
+						
+						// replace tags and untokenize PROPERTY objects
+						// poTerm may come out null in the following for loop
+						// there are generally 3 reasons:
+						// 1. pos[j] is with extra punctuations, such as "Washington DC.", which doesn't exactly match with term
+						// 2. pos[j] contains multiple terms, such as "August 28, 1958", which doesn't exist in terms
+						// 3. pos[j] contains prepositions, such as "in Washington".
+						// 1 and 3 don't matter too much. for 2 it's critical to retrieve the right NE types
+						// (TODO) it's better to modify the getTerms() function to return contiguous words with the same NE types as a term.
+						for (int j = 0; j < NEpos.length; j++) {
+							pos[j] = replaceTags(NEpos[j], ctx);
+							pos[j] = OpenNLP.untokenize(pos[j], originalSentences[t]);
+							// find out pos's term
+							for (Term tm:terms[t]) {
+								if (tm.getText().equals(pos[j])) {
+									poTerm[j] = new Term(pos[j], tm.getPos(), tm.getNeTypes());
+									break;
 								}
 							}
-							// store the PROPERTY objects, the sentences they were extracted
-							// from, the patterns used to extract them and the NE types
-							for (int j = 0; j < NEpos.length; j++) {
-								Answer p = new Answer(originalSentences[t],
-										prop, to, term, pos[j], poTerm[j], pattern);
-								if(!answerList.contains(p)) {
-									answerList.add(p);
-								}
-								extr.add(pos[j]);
-								types.add(neTypes[j]);
-								sents.add(originalSentences[t]);
-								aps.add(pattern);
+						}
+						// store the PROPERTY objects, the sentences they were extracted
+						// from, the patterns used to extract them and the NE types
+						for (int j = 0; j < NEpos.length; j++) {
+							Answer p = new Answer(originalSentences[t],
+									prop, to, term, pos[j], poTerm[j], pattern);
+							if(!answerList.contains(p)) {
+								answerList.add(p);
 							}
+							ctx.addExtraction(pos[j], neTypes[j],
+									originalSentences[t], pattern);
 						}
 					}
 				}
@@ -125,6 +125,24 @@ public class AnswerAnalyzer {
 		return answerList;
 	}
 	
+	/**
+	 * Returns the index over the answer patterns, building it if the patterns
+	 * have changed. The patterns are indexed in the order they were applied
+	 * before, i.e. by PROPERTY.
+	 * 
+	 * @return index over all answer patterns
+	 */
+	private static synchronized AnswerPatternIndex getIndex() {
+		if (index == null) {
+			ArrayList<AnswerPattern> patterns = new ArrayList<AnswerPattern>();
+			Enumeration<String> ePattern = props.keys();
+			while (ePattern.hasMoreElements())
+				patterns.addAll(props.get(ePattern.nextElement()));
+			index = new AnswerPatternIndex(patterns);
+		}
+		return index;
+	}
+	
 	/**
 	 * Loads the answer patterns from a directory of PROPERTY files. The first
 	 * line of each file is the total number of passages used to assess the
@@ -182,6 +200,7 @@ public class AnswerAnalyzer {
 					}
 				}
 				props.put(prop, patterns);
+				index = null;
 				
 				in.close();
 			}
@@ -196,18 +215,19 @@ public class AnswerAnalyzer {
 	
 	/**
 	 * Replaces tags in an extracted PROPERTY object with the original strings
-	 * stored in <code>reverseMap</code>.
+	 * stored in the reverse map of the context.
 	 * 
 	 * @param po PROPERTY object
+	 * @param ctx context of the current analysis
 	 * @return PROPERTY object without tags
 	 */
-	private static String replaceTags(String po) {
+	private static String replaceTags(String po, AnalysisContext ctx) {
 		Pattern p = Pattern.compile("<(TO|CO|NE).*?>");
 		Matcher m = p.matcher(po);
 		
 		while (m.find()) {
 			String tag = m.group(0);
-			String rep = reverseMap.get(tag);  // look up replacement
+			String rep = ctx.getReverse(tag);  // look up replacement
 			if (rep != null) po = po.replace(tag, rep);
 		}
 		
@@ -254,6 +274,7 @@ public class AnswerAnalyzer {
 		
 		// if the pattern is not in the set, add it
 		boolean added = patterns.add(new AnswerPattern(expr, prop));
+		if (added) index = null;
 		
 		// print out new patterns
 		if (added) MsgPrinter.printStatusMsg(prop + ": " + expr);
@@ -261,149 +282,6 @@ public class AnswerAnalyzer {
 		return added;
 	}
 	
-	/**
-	 * Replaces all TARGET objects in the sentence. The reverse mappings are
-	 * stored in <code>reverseMap</code>.
-	 * 
-	 * @param sentence input sentence
-	 * @param to the TARGET object of the question
-	 * @param nes the NEs in the sentence
-	 * @return sentence with TARGET tags or <code>null</code>, if the sentence
-	 * 		   does not contain the TARGET
-	 */
-	private static String replaceTarget(String sentence, String to,
-										String[][] nes) {
-		HashSet<String> reps = new HashSet<String>();
-		String tag, result = sentence;
-		int id = 1;
-		
-		for (String[] neType : nes)
-			for (String ne : neType)
-				if (StringUtils.equalsCommonNorm(ne, to)) reps.add(ne);
-		to = "(?i)" + RegexConverter.strToRegexWithBounds(to);
-		Matcher m = Pattern.compile(to).matcher(result);
-		while (m.find()) reps.add(m.group(0));  // get proper case
-		
-		// sort expressions by length
-		String[] sorted = reps.toArray(new String[reps.size()]);
-		StringUtils.sortByLengthDesc(sorted);
-		
-		for (String rep : sorted) {
-			tag = "<TO_" + id++ + ">";  // add unique tag ID
-			reverseMap.put(tag, rep);  // remember reverse mapping
-			rep = RegexConverter.strToRegexWithBounds(rep);
-			result = result.replaceAll(rep, tag);
-		}
-		
-		return (result.equals(sentence)) ? null : result;
-	}
-	
-	/**
-	 * Replaces all CONTEXT objects in the sentence. The reverse mappings are
-	 * stored in <code>reverseMap</code>.
-	 * 
-	 * @param sentence input sentence
-	 * @param cos the CONTEXT objects of the question
-	 * @param nes the NEs in the sentence
-	 * @return sentence with CONTEXT tags
-	 */
-	private static String replaceContext(String sentence, String[] cos,
-										 String[][] nes) {
-		HashSet<String> reps = new HashSet<String>();
-		String tag;
-		int id = 1;
-		
-		for (String[] neType : nes)
-			for (String ne : neType)
-				for (String co : cos)
-					if (StringUtils.equalsCommonNorm(ne, co)) reps.add(ne);
-		for (String co : cos) {
-			co = "(?i)" + RegexConverter.strToRegexWithBounds(co);
-			Matcher m = Pattern.compile(co).matcher(sentence);
-			while (m.find()) reps.add(m.group(0));  // get proper case
-		}
-		
-		// sort expressions by length
-		String[] sorted = reps.toArray(new String[reps.size()]);
-		StringUtils.sortByLengthDesc(sorted);
-		
-		for (String rep : sorted) {
-			tag = "<CO_" + id++ + ">";  // add unique tag ID
-			reverseMap.put(tag, rep);  // remember reverse mapping
-			rep = RegexConverter.strToRegexWithBounds(rep);
-			sentence = sentence.replaceAll(rep, tag);
-		}
-		
-		return sentence;
-	}
-	
-	/**
-	 * Replaces all NEs in the sentence. The reverse mappings are stored in
-	 * <code>reverseMap</code>.
-	 * 
-	 * @param sentence input sentence
-	 * @param nes the NEs in the sentence
-	 * @return sentence with NE tags
-	 */
-	private static String replaceNes(String sentence, String[][] nes) {
-		Hashtable<String, String> reps = new Hashtable<String, String>();
-		String neType, tag;
-		int id = 1;
-		
-		for (int i = 0; i < nes.length; i++) {
-			neType = NETagger.getNeType(i);
-			
-			for (String ne : nes[i]) {
-				tag = reps.get(ne);
-				
-				if (tag == null) tag = "<" + neType;
-				else if (!tag.contains(neType))	tag += "_" + neType;
-				
-				reps.put(ne, tag);
-			}
-		}
-		
-		// sort expressions by length
-		String[] sorted = reps.keySet().toArray(new String[reps.size()]);
-		StringUtils.sortByLengthDesc(sorted);
-		
-		for (String rep : sorted) {
-			tag = reps.get(rep) + "_" + id++ + ">";  // add unique tag ID
-			reverseMap.put(tag, rep);  // remember reverse mapping
-			rep = RegexConverter.strToRegexWithBounds(rep);
-			sentence = sentence.replaceAll(rep, tag);
-		}
-		
-		return sentence;
-	}
-	
-	/**
-	 * Prepares a sentence for answer extraction.
-	 * 
-	 * @param sentence input sentence
-	 * @param to the TARGET object of the question
-	 * @param cos the CONTEXT objects of the question
-	 * @param nes the NEs in the sentence
-	 * @return sentence ready for answer extraction or <code>null</code>, if
-	 * 		   there is no TARGET object in the input sentence
-	 */
-	private static String prepSentence(String sentence, String to, String[] cos,
-									   String[][] nes) {
-		// initialize reverse map
-		reverseMap = new Hashtable<String, String>();
-		
-		// replace TARGET and CONTEXT objects and NEs
-		sentence = replaceTarget(sentence, to, nes);
-		if (sentence == null) return null;
-		sentence = replaceContext(sentence, cos, nes);
-		sentence = replaceNes(sentence, nes);
-		
-		// add '#' at beginning and end of sentence
-		sentence = "# " + sentence + " #";
-		
-		return sentence;
-	}
-	
 	public static void addDictionary(Dictionary dict) {
 		dicts.add(dict);
 	}
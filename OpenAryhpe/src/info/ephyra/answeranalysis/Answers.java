@@ -9,6 +9,7 @@ import java.util.regex.Pattern;
 import info.ephyra.answerselection.AnswerPattern;
 import info.ephyra.io.MsgPrinter;
 import info.ephyra.nlp.NETagger;
+import info.ephyra.nlp.NeAnnotation;
 import info.ephyra.nlp.OpenNLP;
 import info.ephyra.nlp.StanfordParser;
 import info.ephyra.questionanalysis.QuestionNormalizer;
@@ -25,7 +26,7 @@ public class Answers {
 	private String[] originalSentences;
 	private String[][] tokens;
 	private String[] sentences;
-	private String[][][] nes;
+	private NeAnnotation[] nes;
 	private String[] parses;
 	private Term[][] terms;
 
@@ -44,15 +45,15 @@ public class Answers {
 		}
 		this.terms = new Term[this.countOfSents][];
 		// extract named entities
-		this.nes = NETagger.extractNes(this.tokens);
+		this.nes = NETagger.annotateNes(this.tokens);
 		if (this.nes != null) {
 			for (int i=0; i<this.countOfSents; i++){
 				String ansNormalized = QuestionNormalizer.normalize(this.originalSentences[i]);
 				// resolve verb constructions with auxiliaries
 				// TODO return only one best string
 				String verbMod = (QuestionNormalizer.handleAuxiliaries(ansNormalized))[0];
-				this.terms[i] = TermExtractor.getTerms(verbMod, "", this.nes[i],
-						AnswerAnalyzer.getDictionaries());
+				this.terms[i] = TermExtractor.getTerms(verbMod, "",
+						this.nes[i].getNes(), AnswerAnalyzer.getDictionaries());
 			}
 
 		}
@@ -63,6 +64,12 @@ public class Answers {
 	}
 	
 	public String[][][] getNes() {
+		String[][][] nes = new String[this.nes.length][][];
+		for (int i = 0; i < nes.length; i++) nes[i] = this.nes[i].getNes();
+		return nes;
+	}
+	
+	public NeAnnotation[] getNeAnnotations() {
 		return nes;
 	}
 	
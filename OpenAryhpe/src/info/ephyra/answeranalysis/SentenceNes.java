@@ -0,0 +1,208 @@
+package info.ephyra.answeranalysis;
+
+import info.ephyra.nlp.NETagger;
+import info.ephyra.nlp.NeAnnotation;
+import info.ephyra.nlp.OpenNLP;
+import info.ephyra.util.RegexConverter;
+import info.ephyra.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import opennlp.tools.util.Span;
+
+/**
+ * <p>The NEs in a tokenized sentence, prepared once for all TARGET objects in
+ * the sentence.</p>
+ *
+ * <p>The tokens of the NE annotation are aligned with the characters of the
+ * sentence, so that each NE is known by its position. TARGET objects,
+ * CONTEXT objects and NEs are replaced by tags at their positions, and the
+ * tagged sentence is built in a single pass instead of rewriting the
+ * sentence for each expression.</p>
+ */
+public class SentenceNes {
+	/** The tokenized sentence. */
+	private String sentence;
+	/** NEs in the order they were found, without duplicates. */
+	private ArrayList<String> nes = new ArrayList<String>();
+	/** Normalized tokens of each NE, for comparisons with TARGET objects. */
+	private ArrayList<HashSet<String>> normTokens =
+		new ArrayList<HashSet<String>>();
+	/** Character offsets of the start and end of each NE in the sentence. */
+	private HashMap<String, ArrayList<int[]>> positions =
+		new HashMap<String, ArrayList<int[]>>();
+	/** NEs sorted by length, in the order they are replaced. */
+	private String[] reps;
+	/** NE tags, e.g. "&lt;NElocation_NEcity_1&gt;". */
+	private String[] tags;
+
+	/**
+	 * Prepares the NEs of a sentence. The sentence must consist of the tokens
+	 * of the annotation, e.g. separated by blanks.
+	 *
+	 * @param sentence tokenized sentence
+	 * @param annotation NEs in the sentence
+	 */
+	public SentenceNes(String sentence, NeAnnotation annotation) {
+		this.sentence = sentence;
+		Hashtable<String, String> tagsByNe = new Hashtable<String, String>();
+		String neType, tag;
+
+		// character offsets of the tokens, null if they are not in the sentence
+		Span[] tokenSpans = OpenNLP.getSpans(annotation.getTokens(), sentence);
+
+		for (int span = 0; span < annotation.size(); span++) {
+			String ne = annotation.getText(span);
+			neType = NETagger.getNeType(annotation.getNeId(span));
+
+			tag = tagsByNe.get(ne);
+			if (tag == null) {
+				tag = "<" + neType;
+				nes.add(ne);
+				normTokens.add(StringUtils.getCommonNormTokens(ne));
+				positions.put(ne, new ArrayList<int[]>());
+			} else if (!tag.contains(neType)) tag += "_" + neType;
+
+			tagsByNe.put(ne, tag);
+			if (tokenSpans != null)
+				positions.get(ne).add(new int[] {
+						tokenSpans[annotation.getStart(span)].getStart(),
+						tokenSpans[annotation.getEnd(span) - 1].getEnd()});
+		}
+
+		// sort expressions by length
+		reps = tagsByNe.keySet().toArray(new String[tagsByNe.size()]);
+		StringUtils.sortByLengthDesc(reps);
+
+		tags = new String[reps.length];
+		for (int i = 0; i < reps.length; i++)
+			tags[i] = tagsByNe.get(reps[i]) + "_" + (i + 1) + ">";  // add unique tag ID
+	}
+
+	/**
+	 * The tags inserted in the sentence. A position is tagged only if it does
+	 * not overlap with an earlier tag, thus longer expressions and TARGET
+	 * objects take precedence if they are added first.
+	 */
+	private class Tags {
+		/** Tag that starts at each character or <code>null</code>. */
+		private String[] tagAt = new String[sentence.length()];
+		/** End of the tag that starts at each character. */
+		private int[] endAt = new int[sentence.length()];
+		/** Characters covered by a tag. */
+		private boolean[] covered = new boolean[sentence.length()];
+
+		private boolean add(String tag, int start, int end) {
+			for (int i = start; i < end; i++)
+				if (covered[i]) return false;
+			for (int i = start; i < end; i++) covered[i] = true;
+			tagAt[start] = tag;
+			endAt[start] = end;
+			return true;
+		}
+
+		private String apply() {
+			StringBuilder tagged = new StringBuilder();
+			for (int i = 0; i < sentence.length(); i++) {
+				if (tagAt[i] != null) {
+					tagged.append(tagAt[i]);
+					i = endAt[i] - 1;
+				} else {
+					tagged.append(sentence.charAt(i));
+				}
+			}
+			return tagged.toString();
+		}
+	}
+
+	/**
+	 * Prepares the sentence for answer extraction: replaces the TARGET object,
+	 * the CONTEXT objects and the NEs by tags and adds '#' at the beginning
+	 * and end of the sentence. The reverse mappings are stored in the context.
+	 *
+	 * @param to the TARGET object of the question
+	 * @param cos the CONTEXT objects of the question
+	 * @param ctx context of the current analysis
+	 * @return sentence ready for answer extraction or <code>null</code>, if
+	 * 		   there is no TARGET object in the sentence
+	 */
+	public String prepare(String to, String[] cos, AnalysisContext ctx) {
+		// initialize reverse map
+		ctx.clearReverseMap();
+		Tags tagged = new Tags();
+
+		// replace TARGET and CONTEXT objects and NEs
+		if (addObjects(new String[] {to}, "TO", tagged, ctx) == 0) return null;
+		if (cos.length > 0) addObjects(cos, "CO", tagged, ctx);
+		for (int i = 0; i < reps.length; i++) {
+			ctx.putReverse(tags[i], reps[i]);  // remember reverse mapping
+			for (int[] position : positions.get(reps[i]))
+				tagged.add(tags[i], position[0], position[1]);
+		}
+
+		return "# " + tagged.apply() + " #";
+	}
+
+	/**
+	 * Tags the occurrences of TARGET or CONTEXT objects and the NEs that have
+	 * a normalized token in common with them.
+	 *
+	 * @param objects TARGET or CONTEXT objects
+	 * @param type "TO" or "CO"
+	 * @param tagged tags of the sentence
+	 * @param ctx context of the current analysis
+	 * @return number of positions tagged
+	 */
+	private int addObjects(String[] objects, String type, Tags tagged,
+						   AnalysisContext ctx) {
+		HashMap<String, ArrayList<int[]>> found =
+			new HashMap<String, ArrayList<int[]>>();
+
+		ArrayList<HashSet<String>> tks = new ArrayList<HashSet<String>>();
+		for (String object : objects)
+			tks.add(StringUtils.getCommonNormTokens(object));
+		for (int i = 0; i < nes.size(); i++)
+			for (HashSet<String> oTokens : tks)
+				if (intersect(normTokens.get(i), oTokens)) {
+					found.put(nes.get(i),
+							new ArrayList<int[]>(positions.get(nes.get(i))));
+					break;
+				}
+		for (String object : objects) {
+			object = "(?i)" + RegexConverter.strToRegexWithBounds(object);
+			Matcher m = Pattern.compile(object).matcher(sentence);
+			while (m.find()) {  // get proper case
+				ArrayList<int[]> matches = found.get(m.group(0));
+				if (matches == null) {
+					matches = new ArrayList<int[]>();
+					found.put(m.group(0), matches);
+				}
+				matches.add(new int[] {m.start(), m.end()});
+			}
+		}
+
+		// sort expressions by length
+		String[] sorted = found.keySet().toArray(new String[found.size()]);
+		StringUtils.sortByLengthDesc(sorted);
+
+		int count = 0, id = 1;
+		for (String rep : sorted) {
+			String tag = "<" + type + "_" + id++ + ">";  // add unique tag ID
+			ctx.putReverse(tag, rep);  // remember reverse mapping
+			for (int[] position : found.get(rep))
+				if (tagged.add(tag, position[0], position[1])) count++;
+		}
+
+		return count;
+	}
+
+	private static boolean intersect(HashSet<String> s1, HashSet<String> s2) {
+		for (String token : s1) if (s2.contains(token)) return true;
+		return false;
+	}
+}
@@ -1,6 +1,7 @@
 package info.ephyra.answerselection;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -350,6 +351,171 @@ public class AnswerPattern implements Comparable<AnswerPattern> {
 		return neTypes;
 	}
 	
+	/**
+	 * <p>Returns literal strings that occur in every sentence the pattern
+	 * matches, ignoring case. A sentence that lacks one of them does not need
+	 * to be matched against the pattern.</p>
+	 * 
+	 * <p>The strings are taken from the pattern descriptor: runs of literal
+	 * characters outside of groups and character classes, the fixed parts of
+	 * TARGET and CONTEXT tags and the NE types of NE and PROPERTY tags.
+	 * Strings shorter than 2 characters are dropped. If the descriptor
+	 * contains a top-level alternation or an escape sequence that is not
+	 * understood, no strings are returned.</p>
+	 * 
+	 * @return literal strings, possibly an empty array
+	 */
+	public String[] getAnchors() {
+		ArrayList<String> anchors = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		
+		int i = 0;
+		while (i < desc.length()) {
+			char c = desc.charAt(i);
+			boolean atom = false;  // a single literal character was appended
+			
+			if (c == '<' && desc.startsWith("<TO>", i) ||
+					c == '<' && desc.startsWith("<CO>", i)) {
+				// matches "<TO_\d*+>"
+				literal.append(desc, i, i + 3).append('_');
+				addAnchor(anchors, literal);
+				literal.append('>');
+				i += 4;
+				continue;
+			} else if (c == '<' && (desc.startsWith("<PO", i) ||
+					desc.startsWith("<NE", i))) {
+				// PROPERTY and NE tags are replaced by groups
+				addAnchor(anchors, literal);
+				int end = desc.indexOf('>', i);
+				if (end < 0) return new String[0];
+				String[] neTypes = desc.substring(i + 1, end).split("_");
+				if (neTypes[0].equals("PO"))
+					neTypes = Arrays.copyOfRange(neTypes, 1, neTypes.length);
+				if (neTypes.length == 1) {
+					literal.append(neTypes[0]);
+				} else if (neTypes.length > 1) {
+					literal.append("<NE");
+				}
+				addAnchor(anchors, literal);
+				i = end + 1;
+			} else if (c == '\\') {
+				if (i + 1 >= desc.length()) return new String[0];
+				char e = desc.charAt(i + 1);
+				if (Character.isLetterOrDigit(e)) {
+					// character classes and boundaries are not literal, other
+					// escapes may be followed by further characters
+					if ("dDsSwWbBAGZz".indexOf(e) < 0) return new String[0];
+					addAnchor(anchors, literal);
+				} else {
+					literal.append(e);
+					atom = true;
+				}
+				i += 2;
+			} else if (c == '[') {
+				addAnchor(anchors, literal);
+				i = skipClass(i);
+				if (i < 0) return new String[0];
+			} else if (c == '(') {
+				addAnchor(anchors, literal);
+				i = skipGroup(i);
+				if (i < 0) return new String[0];
+			} else if (c == '|' || c == ')') {
+				return new String[0];
+			} else if (c == '.' || c == '^' || c == '$') {
+				addAnchor(anchors, literal);
+				i++;
+			} else if (c == '?' || c == '*' || c == '+' || c == '{') {
+				// quantifier of a group or character class
+				i = skipQuantifier(i);
+				if (i < 0) return new String[0];
+			} else {
+				literal.append(c);
+				atom = true;
+				i++;
+			}
+			
+			// a quantifier makes the last character optional or repeated
+			if (atom && i < desc.length() && "?*+{".indexOf(desc.charAt(i)) >= 0) {
+				boolean optional = desc.charAt(i) == '?' ||
+					desc.charAt(i) == '*' || desc.startsWith("{0", i);
+				literal.setLength(literal.length() - 1);
+				if (!optional) {
+					addAnchor(anchors, literal);
+					literal.append(desc.charAt(i - 1));
+				}
+				addAnchor(anchors, literal);
+				i = skipQuantifier(i);
+				if (i < 0) return new String[0];
+			}
+		}
+		addAnchor(anchors, literal);
+		
+		return anchors.toArray(new String[anchors.size()]);
+	}
+	
+	/**
+	 * Adds the literal string to the anchors if it is long enough and clears
+	 * it.
+	 */
+	private static void addAnchor(ArrayList<String> anchors,
+								  StringBuilder literal) {
+		if (literal.length() >= 2) anchors.add(literal.toString());
+		literal.setLength(0);
+	}
+	
+	/**
+	 * Returns the position after the character class starting at the given
+	 * position or -1, if the class is not closed.
+	 */
+	private int skipClass(int i) {
+		int depth = 0;
+		for (i++; i < desc.length(); i++) {
+			char c = desc.charAt(i);
+			if (c == '\\') i++;
+			else if (c == '[') depth++;
+			else if (c == ']' && depth-- == 0) return i + 1;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the position after the group starting at the given position or
+	 * -1, if the group is not closed.
+	 */
+	private int skipGroup(int i) {
+		int depth = 0;
+		for (; i < desc.length(); i++) {
+			char c = desc.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '[') {
+				i = skipClass(i) - 1;
+				if (i < 0) return -1;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the position after the quantifier starting at the given
+	 * position, including a reluctant or possessive modifier, or -1, if the
+	 * quantifier is not closed.
+	 */
+	private int skipQuantifier(int i) {
+		if (desc.charAt(i) == '{') {
+			i = desc.indexOf('}', i);
+			if (i < 0) return -1;
+		}
+		i++;
+		if (i < desc.length() &&
+				(desc.charAt(i) == '?' || desc.charAt(i) == '+')) i++;
+		return i;
+	}
+	
 	/**
 	 * Applies the pattern to a sentence of space-delimited tokens containing
 	 * a TARGET tag and optionally a number of CONTEXT and NE tags. For each
@@ -0,0 +1,132 @@
+package info.ephyra.answerselection;
+
+import info.ephyra.util.KeywordMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * <p>An index over a set of <code>AnswerPatterns</code> that selects the
+ * patterns that can match a sentence without applying the regular
+ * expressions.</p>
+ *
+ * <p>The anchors of all patterns (literal strings that occur in every
+ * matching sentence, see <code>AnswerPattern.getAnchors()</code>) are found
+ * in the sentence in a single pass. Each pattern is looked up by its longest
+ * anchor and is a candidate if all of its anchors occur. Patterns without
+ * anchors are always candidates.</p>
+ *
+ * <p>The index is not modified after it has been built and can be shared by
+ * several threads.</p>
+ */
+public class AnswerPatternIndex {
+	/** The answer patterns in the order they were added. */
+	private AnswerPattern[] patterns;
+	/** For each pattern the IDs of its anchors. */
+	private int[][] anchors;
+	/** For each anchor the patterns for which it is the longest anchor. */
+	private int[][] triggers;
+	/** Patterns without anchors. */
+	private int[] unanchored;
+	/** Finds the anchors in a sentence. */
+	private KeywordMatcher matcher;
+
+	/**
+	 * Builds an index over the given answer patterns. The candidates for a
+	 * sentence are returned in the iteration order of the collection.
+	 *
+	 * @param patterns answer patterns
+	 */
+	public AnswerPatternIndex(Collection<AnswerPattern> patterns) {
+		this.patterns = patterns.toArray(new AnswerPattern[patterns.size()]);
+		anchors = new int[this.patterns.length][];
+
+		ArrayList<String> keywords = new ArrayList<String>();
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		ArrayList<ArrayList<Integer>> triggerLists =
+			new ArrayList<ArrayList<Integer>>();
+		ArrayList<Integer> unanchoredList = new ArrayList<Integer>();
+
+		for (int p = 0; p < this.patterns.length; p++) {
+			String[] strings = this.patterns[p].getAnchors();
+			anchors[p] = new int[strings.length];
+			int longest = -1;
+			for (int a = 0; a < strings.length; a++) {
+				// same case folding as the keyword matcher
+				char[] chars = strings[a].toCharArray();
+				for (int i = 0; i < chars.length; i++)
+					chars[i] = Character.toLowerCase(chars[i]);
+				String keyword = new String(chars);
+				Integer id = ids.get(keyword);
+				if (id == null) {
+					id = keywords.size();
+					ids.put(keyword, id);
+					keywords.add(keyword);
+					triggerLists.add(new ArrayList<Integer>());
+				}
+				anchors[p][a] = id;
+				if (longest < 0 || strings[a].length() > strings[longest].length())
+					longest = a;
+			}
+
+			if (longest < 0) unanchoredList.add(p);
+			else triggerLists.get(anchors[p][longest]).add(p);
+		}
+
+		triggers = new int[triggerLists.size()][];
+		for (int k = 0; k < triggers.length; k++)
+			triggers[k] = toArray(triggerLists.get(k));
+		unanchored = toArray(unanchoredList);
+		matcher = new KeywordMatcher(keywords);
+	}
+
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+		return array;
+	}
+
+	/**
+	 * Returns the number of answer patterns in the index.
+	 *
+	 * @return number of patterns
+	 */
+	public int size() {
+		return patterns.length;
+	}
+
+	/**
+	 * Returns the answer patterns that may match the sentence. All other
+	 * patterns do not match it.
+	 *
+	 * @param sentence a sentence prepared for answer extraction
+	 * @return candidate patterns
+	 */
+	public AnswerPattern[] getCandidates(String sentence) {
+		boolean[] found = matcher.find(sentence);
+
+		int[] candidates = new int[patterns.length];
+		int n = 0;
+		for (int p : unanchored) candidates[n++] = p;
+		for (int k = 0; k < triggers.length; k++) {
+			if (!found[k]) continue;
+			for (int p : triggers[k]) {
+				boolean all = true;
+				for (int a : anchors[p])
+					if (!found[a]) {
+						all = false;
+						break;
+					}
+				if (all) candidates[n++] = p;
+			}
+		}
+
+		// keep the original order of the patterns
+		Arrays.sort(candidates, 0, n);
+		AnswerPattern[] result = new AnswerPattern[n];
+		for (int i = 0; i < n; i++) result[i] = patterns[candidates[i]];
+		return result;
+	}
+}
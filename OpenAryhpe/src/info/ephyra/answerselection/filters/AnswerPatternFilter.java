@@ -1,6 +1,7 @@
 package info.ephyra.answerselection.filters;
 
 import info.ephyra.answerselection.AnswerPattern;
+import info.ephyra.answerselection.AnswerPatternIndex;
 import info.ephyra.io.MsgPrinter;
 import info.ephyra.nlp.NETagger;
 import info.ephyra.nlp.OpenNLP;
@@ -45,6 +46,12 @@ public class AnswerPatternFilter extends Filter {
 	/** For each PROPERTY the answer patterns that are used to extract it. */
 	private static Hashtable<String, HashSet<AnswerPattern>> props =
 		new Hashtable<String, HashSet<AnswerPattern>>();
+	/**
+	 * For each PROPERTY an index over the answer patterns, built when the
+	 * patterns are first applied and dropped when they change.
+	 */
+	private static Hashtable<String, AnswerPatternIndex> indexes =
+		new Hashtable<String, AnswerPatternIndex>();
 	/**
 	 * For each PROPERTY the number of text passages used to assess the answer
 	 * patterns.
@@ -268,8 +275,8 @@ public class AnswerPatternFilter extends Filter {
 		String prop = qi.getProperty();
 		String answer = result.getAnswer();
 		// get answer patterns
-		HashSet<AnswerPattern> patterns = props.get(prop);
-		if (patterns == null) return;
+		AnswerPatternIndex index = getIndex(prop);
+		if (index == null) return;
 		
 		// tokenize interpretation
 		to = NETagger.tokenizeWithSpaces(to);
@@ -291,7 +298,8 @@ public class AnswerPatternFilter extends Filter {
 			sentences[i] = prepSentence(sentences[i], to, cos, nes[i]);
 			if (sentences[i] == null) continue;
 			
-			for (AnswerPattern pattern : patterns) {
+			// only apply the patterns whose anchors occur in the sentence
+			for (AnswerPattern pattern : index.getCandidates(sentences[i])) {
 				// apply answer pattern
 				String[] pos = pattern.apply(sentences[i]);
 				
@@ -318,6 +326,26 @@ public class AnswerPatternFilter extends Filter {
 		}
 	}
 	
+	/**
+	 * Returns the index over the answer patterns for a PROPERTY, building it
+	 * if the patterns have changed.
+	 * 
+	 * @param prop PROPERTY
+	 * @return index or <code>null</code>, if there are no patterns for the
+	 *         PROPERTY
+	 */
+	private static synchronized AnswerPatternIndex getIndex(String prop) {
+		HashSet<AnswerPattern> patterns = props.get(prop);
+		if (patterns == null) return null;
+		
+		AnswerPatternIndex index = indexes.get(prop);
+		if (index == null) {
+			index = new AnswerPatternIndex(patterns);
+			indexes.put(prop, index);
+		}
+		return index;
+	}
+	
 	/**
 	 * Adds an answer pattern for a specific PROPERTY.
 	 * 
@@ -336,6 +364,7 @@ public class AnswerPatternFilter extends Filter {
 		
 		// if the pattern is not in the set, add it
 		boolean added = patterns.add(new AnswerPattern(expr, prop));
+		if (added) indexes.remove(prop);
 		
 		// print out new patterns
 		if (added) MsgPrinter.printStatusMsg(prop + ": " + expr);
@@ -393,6 +422,7 @@ public class AnswerPatternFilter extends Filter {
 					}
 				}
 				props.put(prop, patterns);
+				indexes.remove(prop);
 				
 				in.close();
 			}
@@ -497,6 +527,7 @@ public class AnswerPatternFilter extends Filter {
 					remaining.add(pattern);
 			
 			props.put(prop, remaining);
+			indexes.remove(prop);
 		}
 	}
 	
@@ -518,6 +549,7 @@ public class AnswerPatternFilter extends Filter {
 					remaining.add(pattern);
 			
 			props.put(prop, remaining);
+			indexes.remove(prop);
 		}
 	}
 	
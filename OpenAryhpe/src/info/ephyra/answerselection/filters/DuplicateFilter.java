@@ -4,6 +4,9 @@ import info.ephyra.search.Result;
 import info.ephyra.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * <p>The <code>DuplicateFilter</code> drops duplicate results. Results are
@@ -11,6 +14,11 @@ import java.util.ArrayList;
  * the answer strings. In this case the result with the higher score is kept
  * and its score is incremented by the score of the other result.</p>
  * 
+ * <p>Two answer strings are equal by that criterion, iff they have a
+ * normalized token in common. The results are indexed by their normalized
+ * tokens, so only results that share a token are compared, and each result is
+ * normalized only once.</p>
+ * 
  * <p>This class extends the class <code>Filter</code>.</p>
  * 
  * @author Nico Schlaefer
@@ -43,35 +51,67 @@ public class DuplicateFilter extends Filter {
 		// sort results by their scores in descending order
 		results = (new ScoreSorterFilter()).apply(results);
 		
+		// normalize each answer string once
+		HashSet<String>[] tokens = normalize(results);
+		
 		// drop results with forbidden answer strings
+		HashSet<String> forbiddenTokens = new HashSet<String>();
 		for (String as : forbidden)
+			forbiddenTokens.addAll(StringUtils.getCommonNormTokens(as));
+		if (forbiddenTokens.size() > 0)
 			for (int i = 0; i < results.length; i++) {
-				if (results[i] == null ||
-					results[i].getScore() == Float.POSITIVE_INFINITY) continue;
-				if (results[i].getScore() == Float.NEGATIVE_INFINITY) break;
-				
-				if (StringUtils.equalsCommonNorm(as, results[i].getAnswer()))
-					results[i] = null;
+				if (tokens[i] == null) continue;
+				for (String token : tokens[i])
+					if (forbiddenTokens.contains(token)) {
+						results[i] = null;
+						tokens[i] = null;
+						break;
+					}
+			}
+		
+		// index the remaining results by their tokens, in the order of their
+		// scores
+		HashMap<String, ArrayList<Integer>> index =
+			new HashMap<String, ArrayList<Integer>>();
+		for (int i = 0; i < results.length; i++) {
+			if (tokens[i] == null) continue;
+			for (String token : tokens[i]) {
+				ArrayList<Integer> block = index.get(token);
+				if (block == null) {
+					block = new ArrayList<Integer>();
+					index.put(token, block);
+				}
+				block.add(i);
 			}
+		}
 		
 		// drop duplicates
-		for (int i = 0; i < results.length - 1; i++) {
-			if (results[i] == null ||
-				results[i].getScore() == Float.POSITIVE_INFINITY) continue;
-			if (results[i].getScore() == Float.NEGATIVE_INFINITY) break;
+		ArrayList<Integer> dups = new ArrayList<Integer>();
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null || tokens[i] == null) continue;
 			
-			for (int j = i + 1; j < results.length; j++) {
-				if (results[j] == null ||
-					results[j].getScore() == Float.POSITIVE_INFINITY) continue;
-				if (results[j].getScore() == Float.NEGATIVE_INFINITY) break;
-				
-				if (StringUtils.equalsCommonNorm(results[i].getAnswer(),
-												 results[j].getAnswer())) {
-					// increment score of higher-scored result
-					results[i].incScore(results[j].getScore());
-					// drop lower-scored result
-					results[j] = null;
-				}
+			// the other results that share a token with this result have lower
+			// scores, a higher-scored one would have dropped this result, so
+			// the blocks of the tokens are not needed anymore
+			dups.clear();
+			for (String token : tokens[i]) {
+				ArrayList<Integer> block = index.remove(token);
+				if (block == null) continue;
+				for (int j : block)
+					if (j != i && results[j] != null) dups.add(j);
+			}
+			
+			// in the order of the scores, as if the results were compared
+			// pairwise
+			Integer[] js = dups.toArray(new Integer[dups.size()]);
+			Arrays.sort(js);
+			for (int j : js) {
+				// a result is in the blocks of all tokens it shares
+				if (results[j] == null) continue;
+				// increment score of higher-scored result
+				results[i].incScore(results[j].getScore());
+				// drop lower-scored result
+				results[j] = null;
 			}
 		}
 		
@@ -82,4 +122,26 @@ public class DuplicateFilter extends Filter {
 		
 		return noDups.toArray(new Result[noDups.size()]);
 	}
+	
+	/**
+	 * Normalizes the answer strings of the results that are compared, i.e.
+	 * the results with finite scores. The results must be sorted by their
+	 * scores in descending order.
+	 * 
+	 * @param results array of <code>Result</code> objects
+	 * @return normalized tokens of each result or <code>null</code>, if the
+	 *         result is not compared
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashSet<String>[] normalize(Result[] results) {
+		HashSet<String>[] tokens = new HashSet[results.length];
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null ||
+				results[i].getScore() == Float.POSITIVE_INFINITY) continue;
+			if (results[i].getScore() == Float.NEGATIVE_INFINITY) break;
+			
+			tokens[i] = StringUtils.getCommonNormTokens(results[i].getAnswer());
+		}
+		return tokens;
+	}
 }
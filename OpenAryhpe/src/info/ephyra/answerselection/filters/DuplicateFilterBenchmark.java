@@ -0,0 +1,175 @@
+package info.ephyra.answerselection.filters;
+
+import info.ephyra.nlp.SnowballStemmer;
+import info.ephyra.nlp.indices.FunctionWords;
+import info.ephyra.search.Result;
+import info.ephyra.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * <p>Compares the running time of the <code>DuplicateFilter</code> to the
+ * pairwise comparison of all results that it replaced, and checks that both
+ * return the same results with the same scores.</p>
+ *
+ * <p>The candidates are random answer strings of one to four words, drawn from
+ * a small vocabulary (many duplicates) or a large one (few duplicates), with
+ * some function words and some infinite scores.</p>
+ */
+public class DuplicateFilterBenchmark {
+	/** Function words that are mixed into the answers. */
+	private static final String[] FUNCTION_WORDS =
+		{"the", "of", "a", "in", "and", "to"};
+	/** Forbidden answers. */
+	private static final String[] FORBIDDEN = {"W1a", "Wz of the"};
+
+	/**
+	 * Generates random candidates.
+	 *
+	 * @param n number of candidates
+	 * @param vocabulary number of distinct words
+	 * @param seed seed of the random number generator
+	 * @return candidates
+	 */
+	private static Result[] getCandidates(int n, int vocabulary, long seed) {
+		Random random = new Random(seed);
+		Result[] results = new Result[n];
+		for (int i = 0; i < n; i++) {
+			StringBuilder answer = new StringBuilder();
+			int length = 1 + random.nextInt(4);
+			for (int w = 0; w < length; w++) {
+				if (w > 0) answer.append(' ');
+				if (random.nextInt(5) == 0) {
+					answer.append(FUNCTION_WORDS[
+						random.nextInt(FUNCTION_WORDS.length)]);
+				} else {
+					// frequent words are more likely
+					int word = (int) Math.pow(vocabulary, random.nextDouble());
+					answer.append("W").append(Integer.toString(word, 36));
+					if (random.nextBoolean()) answer.append("s");
+				}
+			}
+
+			results[i] = new Result(answer.toString());
+			float score = random.nextInt(100) / 7f;
+			if (random.nextInt(200) == 0) score = Float.POSITIVE_INFINITY;
+			if (random.nextInt(300) == 0) score = Float.NEGATIVE_INFINITY;
+			results[i].setScore(score);
+		}
+		return results;
+	}
+
+	/**
+	 * Drops duplicates by comparing each pair of results, as the
+	 * <code>DuplicateFilter</code> did before it indexed the results.
+	 *
+	 * @param results array of <code>Result</code> objects
+	 * @param forbidden forbidden answers
+	 * @return array of <code>Result</code> objects without duplicates
+	 */
+	private static Result[] applyPairwise(Result[] results,
+										  String[] forbidden) {
+		// sort results by their scores in descending order
+		results = (new ScoreSorterFilter()).apply(results);
+
+		// drop results with forbidden answer strings
+		for (String as : forbidden)
+			for (int i = 0; i < results.length; i++) {
+				if (results[i] == null ||
+					results[i].getScore() == Float.POSITIVE_INFINITY) continue;
+				if (results[i].getScore() == Float.NEGATIVE_INFINITY) break;
+
+				if (StringUtils.equalsCommonNorm(as, results[i].getAnswer()))
+					results[i] = null;
+			}
+
+		// drop duplicates
+		for (int i = 0; i < results.length - 1; i++) {
+			if (results[i] == null ||
+				results[i].getScore() == Float.POSITIVE_INFINITY) continue;
+			if (results[i].getScore() == Float.NEGATIVE_INFINITY) break;
+
+			for (int j = i + 1; j < results.length; j++) {
+				if (results[j] == null ||
+					results[j].getScore() == Float.POSITIVE_INFINITY) continue;
+				if (results[j].getScore() == Float.NEGATIVE_INFINITY) break;
+
+				if (StringUtils.equalsCommonNorm(results[i].getAnswer(),
+												 results[j].getAnswer())) {
+					results[i].incScore(results[j].getScore());
+					results[j] = null;
+				}
+			}
+		}
+
+		ArrayList<Result> noDups = new ArrayList<Result>();
+		for (Result result : results)
+			if (result != null) noDups.add(result);
+		return noDups.toArray(new Result[noDups.size()]);
+	}
+
+	private static Result[] copy(Result[] results) {
+		Result[] copies = new Result[results.length];
+		for (int i = 0; i < results.length; i++)
+			copies[i] = results[i].getCopy();
+		return copies;
+	}
+
+	private static boolean equal(Result[] results1, Result[] results2) {
+		if (results1.length != results2.length) return false;
+		for (int i = 0; i < results1.length; i++)
+			if (!results1[i].getAnswer().equals(results2[i].getAnswer()) ||
+				results1[i].getScore() != results2[i].getScore())
+				return false;
+		return true;
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args numbers of candidates, by default 1000, 10000 and 20000
+	 */
+	public static void main(String[] args) {
+		int[] sizes = {1000, 10000, 20000};
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		SnowballStemmer.create();
+		if (!FunctionWords.loadIndex("res/indices/functionwords_nonumbers")) {
+			System.err.println("Could not load function words.");
+			System.exit(1);
+		}
+
+		boolean same = true;
+		for (int n : sizes)
+			for (int vocabulary : new int[] {n / 4, 50 * n}) {
+				Result[] candidates =
+					getCandidates(n, vocabulary, n + vocabulary);
+
+				Result[] results1 = copy(candidates);
+				long start = System.nanoTime();
+				results1 = applyPairwise(results1, FORBIDDEN);
+				long pairwise = System.nanoTime() - start;
+
+				DuplicateFilter filter = new DuplicateFilter();
+				filter.addForbiddenAnswers(FORBIDDEN);
+				Result[] results2 = copy(candidates);
+				start = System.nanoTime();
+				results2 = filter.apply(results2);
+				long indexed = System.nanoTime() - start;
+
+				boolean equal = equal(results1, results2);
+				same &= equal;
+				System.out.printf("%6d candidates, %7d words: %5d kept, " +
+						"pairwise %7dms, indexed %5dms, %s%n", n, vocabulary,
+						results2.length, pairwise / 1000000, indexed / 1000000,
+						equal ? "same results" : "DIFFERENT RESULTS");
+			}
+
+		if (!same) System.exit(1);
+	}
+}
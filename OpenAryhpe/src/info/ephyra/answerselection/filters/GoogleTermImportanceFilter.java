@@ -184,7 +184,7 @@ public class GoogleTermImportanceFilter extends WebTermImportanceFilter {
 						retries++;
 						
 						try {
-							GoogleKM.sleep(1000);
+							Thread.sleep(1000);
 						} catch (InterruptedException ie) {}
 					}
 				
@@ -317,4 +317,4 @@ public class GoogleTermImportanceFilter extends WebTermImportanceFilter {
 		}
 		System.out.println("At least 5 times: " + atLeast5);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
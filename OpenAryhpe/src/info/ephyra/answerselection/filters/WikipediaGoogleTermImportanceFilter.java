@@ -197,7 +197,7 @@ public class WikipediaGoogleTermImportanceFilter extends WebTermImportanceFilter
 					retries++;
 					
 					try {
-						GoogleKM.sleep(1000);
+						Thread.sleep(1000);
 					} catch (InterruptedException ie) {}
 				}
 			
@@ -73,7 +73,7 @@ public class YahooTermImportanceFilter extends WebTermImportanceFilter {
 					retries++;
 					
 					try {
-						YahooKM.sleep(1000);
+						Thread.sleep(1000);
 					} catch (InterruptedException ie) {}
 				}
 			
@@ -103,4 +103,4 @@ public class YahooTermImportanceFilter extends WebTermImportanceFilter {
 		}
 		return termCounters;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,528 @@
+package info.ephyra.indexing;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import org.tartarus.snowball.ext.englishStemmer;
+
+/**
+ * <p>An inverted index of the paragraphs of a text corpus, built by
+ * <code>PassageIndexer</code>. It is searched in-process, without an external
+ * IR system.</p>
+ *
+ * <p>For each term, the index stores the passages that contain the term and
+ * its positions in each passage. The postings are compressed with variable
+ * byte codes and memory-mapped, only the terms are held in memory. Passages
+ * are ranked with BM25.</p>
+ *
+ * <p>An index is safe for use by multiple threads.</p>
+ */
+public class PassageIndex {
+	/** File with the terms and the offsets of their postings. */
+	static final String LEXICON = "lexicon";
+	/** File with the compressed postings. */
+	static final String POSTINGS = "postings";
+	/** File with the number of terms of each passage. */
+	static final String LENGTHS = "lengths";
+	/** File with the offset of each passage in the passage file. */
+	static final String OFFSETS = "offsets";
+	/** File with the document and the text of each passage. */
+	static final String PASSAGES = "passages";
+	/** File with the document numbers. */
+	static final String DOCNOS = "docnos";
+	/**
+	 * Maximum size of a memory-mapped part of the postings. The postings of a
+	 * term never span two parts.
+	 */
+	static final int SEGMENT_SIZE = 1 << 30;
+
+	/** BM25 parameter k1. */
+	private static final float K1 = 1.2f;
+	/** BM25 parameter b. */
+	private static final float B = 0.75f;
+
+	/**
+	 * A passage and its score.
+	 */
+	public static class Hit {
+		private int passage;
+		private float score;
+
+		public Hit(int passage, float score) {
+			this.passage = passage;
+			this.score = score;
+		}
+
+		public int getPassage() {
+			return passage;
+		}
+
+		public float getScore() {
+			return score;
+		}
+	}
+
+	/** Orders hits by descending scores and ascending passage IDs. */
+	public static final Comparator<Hit> RANK = new Comparator<Hit>() {
+		public int compare(Hit h1, Hit h2) {
+			if (h1.score != h2.score) return (h1.score > h2.score) ? -1 : 1;
+			return h1.passage - h2.passage;
+		}
+	};
+
+	/** Document frequency and offset of the postings of a term. */
+	private static class TermInfo {
+		private int df;
+		private long offset;
+	}
+
+	/** Passages and their scores, ordered by passage IDs. */
+	private static class Scores {
+		private int[] passages;
+		private float[] scores;
+		private int size;
+
+		public Scores(int capacity) {
+			passages = new int[Math.max(capacity, 8)];
+			scores = new float[passages.length];
+		}
+
+		public void add(int passage, float score) {
+			if (size == passages.length) {
+				passages = Arrays.copyOf(passages, 2 * size);
+				scores = Arrays.copyOf(scores, 2 * size);
+			}
+			passages[size] = passage;
+			scores[size] = score;
+			size++;
+		}
+
+		/**
+		 * Merges two lists of scores.
+		 *
+		 * @param s1 scores
+		 * @param s2 scores
+		 * @param max if <code>true</code>, the maximum of the scores of a
+		 *            passage is taken, otherwise the sum
+		 * @return merged scores
+		 */
+		public static Scores merge(Scores s1, Scores s2, boolean max) {
+			if (s1 == null) return s2;
+			if (s2 == null) return s1;
+
+			Scores merged = new Scores(s1.size + s2.size);
+			int i = 0, j = 0;
+			while (i < s1.size || j < s2.size) {
+				if (j == s2.size ||
+						(i < s1.size && s1.passages[i] < s2.passages[j])) {
+					merged.add(s1.passages[i], s1.scores[i]);
+					i++;
+				} else if (i == s1.size || s2.passages[j] < s1.passages[i]) {
+					merged.add(s2.passages[j], s2.scores[j]);
+					j++;
+				} else {
+					merged.add(s1.passages[i], max
+							? Math.max(s1.scores[i], s2.scores[j])
+							: s1.scores[i] + s2.scores[j]);
+					i++;
+					j++;
+				}
+			}
+			return merged;
+		}
+	}
+
+	/**
+	 * Iterates over the postings of a term.
+	 */
+	private class Cursor {
+		private MappedByteBuffer buffer;
+		private int pos;
+		/** Number of postings not read yet. */
+		private int remaining;
+		/** Current passage, -1 before the first posting. */
+		private int passage = -1;
+		/** Frequency of the term in the current passage. */
+		private int tf;
+		/** Positions of the term in the current passage. */
+		private int[] positions = new int[8];
+		/** <code>true</code> iff the positions have been read. */
+		private boolean positionsRead = true;
+
+		public Cursor(TermInfo info) {
+			buffer = postings[(int) (info.offset / SEGMENT_SIZE)];
+			pos = (int) (info.offset % SEGMENT_SIZE);
+			remaining = info.df;
+		}
+
+		private int readVInt() {
+			int b = buffer.get(pos++);
+			int value = b & 0x7f;
+			for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+				b = buffer.get(pos++);
+				value |= (b & 0x7f) << shift;
+			}
+			return value;
+		}
+
+		/**
+		 * Moves to the next posting.
+		 *
+		 * @return <code>false</code>, iff there are no more postings
+		 */
+		public boolean next() {
+			if (!positionsRead)
+				for (int i = 0; i < tf; i++) readVInt();
+			if (remaining == 0) {
+				passage = Integer.MAX_VALUE;
+				return false;
+			}
+			remaining--;
+			passage += readVInt();
+			tf = readVInt();
+			positionsRead = false;
+			return true;
+		}
+
+		/**
+		 * Moves to the first posting of a passage with an ID of at least
+		 * <code>target</code>.
+		 *
+		 * @param target passage ID
+		 * @return <code>false</code>, iff there is no such posting
+		 */
+		public boolean advanceTo(int target) {
+			while (passage < target)
+				if (!next()) return false;
+			return true;
+		}
+
+		/**
+		 * Reads the positions of the term in the current passage.
+		 *
+		 * @return positions, the first <code>tf</code> elements are valid
+		 */
+		public int[] getPositions() {
+			if (!positionsRead) {
+				if (positions.length < tf) positions = new int[tf];
+				int position = -1;
+				for (int i = 0; i < tf; i++) {
+					position += readVInt();
+					positions[i] = position;
+				}
+				positionsRead = true;
+			}
+			return positions;
+		}
+	}
+
+	/** Index directory. */
+	private File dir;
+	/** Terms and their postings. */
+	private HashMap<String, TermInfo> lexicon;
+	/** Memory-mapped postings. */
+	private MappedByteBuffer[] postings;
+	/** Number of terms of each passage. */
+	private IntBuffer lengths;
+	/** Offset of each passage in the passage file. */
+	private LongBuffer offsets;
+	/** Documents and texts of the passages. */
+	private FileChannel passages;
+	/** Document numbers. */
+	private String[] docNos;
+	/** Number of passages. */
+	private int passageCount;
+	/** Average number of terms of a passage. */
+	private float avgLength;
+
+	/**
+	 * Opens an index.
+	 *
+	 * @param dir index directory
+	 * @throws IOException if the index could not be read
+	 */
+	public PassageIndex(String dir) throws IOException {
+		this.dir = new File(dir);
+
+		// read terms
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(new File(dir, LEXICON))));
+		int termCount = in.readInt();
+		long totalLength = in.readLong();
+		lexicon = new HashMap<String, TermInfo>(2 * termCount);
+		for (int i = 0; i < termCount; i++) {
+			String term = in.readUTF();
+			TermInfo info = new TermInfo();
+			info.df = in.readInt();
+			info.offset = in.readLong();
+			lexicon.put(term, info);
+		}
+		in.close();
+
+		// read document numbers
+		in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(new File(dir, DOCNOS))));
+		docNos = new String[in.readInt()];
+		for (int i = 0; i < docNos.length; i++) docNos[i] = in.readUTF();
+		in.close();
+
+		// map postings, passage lengths and offsets
+		FileChannel channel =
+			new RandomAccessFile(new File(dir, POSTINGS), "r").getChannel();
+		long size = channel.size();
+		postings = new MappedByteBuffer[(int) ((size - 1) / SEGMENT_SIZE) + 1];
+		for (int i = 0; i < postings.length; i++) {
+			long start = (long) i * SEGMENT_SIZE;
+			postings[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+					Math.min(SEGMENT_SIZE, size - start));
+		}
+		channel.close();
+		lengths = map(LENGTHS).asIntBuffer();
+		offsets = map(OFFSETS).asLongBuffer();
+		passageCount = lengths.capacity();
+		avgLength = (passageCount > 0) ? (float) totalLength / passageCount : 0;
+
+		passages =
+			new RandomAccessFile(new File(dir, PASSAGES), "r").getChannel();
+	}
+
+	private MappedByteBuffer map(String filename) throws IOException {
+		FileChannel channel =
+			new RandomAccessFile(new File(dir, filename), "r").getChannel();
+		MappedByteBuffer buffer =
+			channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		channel.close();
+		return buffer;
+	}
+
+	/**
+	 * Closes the index.
+	 *
+	 * @throws IOException if the passage file could not be closed
+	 */
+	public void close() throws IOException {
+		passages.close();
+	}
+
+	/**
+	 * Splits a text into terms: sequences of letters and digits, including
+	 * periods between digits. The terms are lowercased and stemmed.
+	 *
+	 * @param text a text
+	 * @return terms in the order they occur
+	 */
+	public static String[] getTerms(String text) {
+		ArrayList<String> terms = new ArrayList<String>();
+		englishStemmer stemmer = new englishStemmer();
+
+		int length = text.length();
+		for (int i = 0; i < length; ) {
+			if (!Character.isLetterOrDigit(text.charAt(i))) {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < length && (Character.isLetterOrDigit(text.charAt(i)) ||
+					(text.charAt(i) == '.' && i + 1 < length &&
+					 Character.isDigit(text.charAt(i - 1)) &&
+					 Character.isDigit(text.charAt(i + 1)))))
+				i++;
+
+			stemmer.setCurrent(text.substring(start, i).toLowerCase());
+			stemmer.stem();
+			terms.add(stemmer.getCurrent());
+		}
+
+		return terms.toArray(new String[terms.size()]);
+	}
+
+	/**
+	 * Returns the number of passages in the index.
+	 *
+	 * @return number of passages
+	 */
+	public int getPassageCount() {
+		return passageCount;
+	}
+
+	/**
+	 * Returns the text of a passage.
+	 *
+	 * @param passage passage ID
+	 * @return text of the passage
+	 * @throws IOException if the passage could not be read
+	 */
+	public String getText(int passage) throws IOException {
+		long offset = offsets.get(passage);
+		ByteBuffer header = read(offset, 8);
+		header.getInt();  // document
+		ByteBuffer text = read(offset + 8, header.getInt());
+		return new String(text.array(), "UTF-8");
+	}
+
+	/**
+	 * Returns the number of the document that contains a passage.
+	 *
+	 * @param passage passage ID
+	 * @return document number
+	 * @throws IOException if the passage could not be read
+	 */
+	public String getDocNo(int passage) throws IOException {
+		return docNos[read(offsets.get(passage), 4).getInt()];
+	}
+
+	private ByteBuffer read(long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+			if (passages.read(buffer, offset + buffer.position()) < 0)
+				throw new IOException("Unexpected end of " + PASSAGES);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * <p>Searches the passages that match a query and returns the best ones.</p>
+	 *
+	 * <p>A query is made up of concepts, each given by one or more
+	 * alternatives, e.g. the operands of an <code>OR</code>. An alternative is
+	 * a phrase in double quotes, which occurs in a passage if its terms occur
+	 * in sequence, or one or more words, which occur if all of them occur.</p>
+	 *
+	 * <p>The BM25 score of a passage for a concept is the best score of an
+	 * alternative that occurs in the passage, where an alternative is scored
+	 * like a single term. The scores of the concepts are added up.</p>
+	 *
+	 * @param concepts alternatives of each concept
+	 * @param maxHits maximum number of passages
+	 * @return passages and scores, best first
+	 */
+	public Hit[] search(String[][] concepts, int maxHits) {
+		Scores total = null;
+		for (String[] alternatives : concepts) {
+			Scores best = null;
+			for (String alternative : alternatives) {
+				boolean phrase = alternative.startsWith("\"");
+				String[] terms = getTerms(alternative);
+				if (terms.length > 0)
+					best = Scores.merge(best, score(terms, phrase), true);
+			}
+			total = Scores.merge(total, best, false);
+		}
+		if (total == null || maxHits <= 0) return new Hit[0];
+
+		// select the best passages
+		PriorityQueue<Hit> worst = new PriorityQueue<Hit>(maxHits,
+			new Comparator<Hit>() {
+				public int compare(Hit h1, Hit h2) {
+					return RANK.compare(h2, h1);
+				}
+			});
+		for (int i = 0; i < total.size; i++) {
+			Hit hit = new Hit(total.passages[i], total.scores[i]);
+			if (worst.size() < maxHits) worst.add(hit);
+			else if (RANK.compare(hit, worst.peek()) < 0) {
+				worst.poll();
+				worst.add(hit);
+			}
+		}
+		Hit[] hits = worst.toArray(new Hit[worst.size()]);
+		Arrays.sort(hits, RANK);
+
+		return hits;
+	}
+
+	/**
+	 * Scores the passages that contain a phrase or all of a set of terms.
+	 *
+	 * @param terms terms of the phrase or set
+	 * @param phrase <code>true</code> iff the terms form a phrase
+	 * @return scores of the passages
+	 */
+	private Scores score(String[] terms, boolean phrase) {
+		Cursor[] cursors = new Cursor[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			TermInfo info = lexicon.get(terms[i]);
+			if (info == null) return null;
+			cursors[i] = new Cursor(info);
+		}
+
+		// find the passages and the frequencies
+		Scores matches = new Scores(0);
+		int target = 0;
+		while (true) {
+			boolean aligned = true;
+			for (Cursor cursor : cursors) {
+				if (!cursor.advanceTo(target)) {
+					aligned = false;
+					target = Integer.MAX_VALUE;
+					break;
+				}
+				if (cursor.passage > target) {
+					aligned = false;
+					target = cursor.passage;
+				}
+			}
+			if (target == Integer.MAX_VALUE) break;
+			if (!aligned) continue;
+
+			int tf = (phrase && cursors.length > 1)
+				? countPhrase(cursors)
+				: minTf(cursors);
+			if (tf > 0) matches.add(target, tf);
+			target++;
+		}
+
+		// replace the frequencies by BM25 scores
+		int df = matches.size;
+		float idf = (float) Math.log(1 + (passageCount - df + 0.5) / (df + 0.5));
+		for (int i = 0; i < matches.size; i++) {
+			float tf = matches.scores[i];
+			float norm = 1 - B + B * lengths.get(matches.passages[i]) / avgLength;
+			matches.scores[i] = idf * tf * (K1 + 1) / (tf + K1 * norm);
+		}
+
+		return matches;
+	}
+
+	private static int minTf(Cursor[] cursors) {
+		int tf = Integer.MAX_VALUE;
+		for (Cursor cursor : cursors) tf = Math.min(tf, cursor.tf);
+		return tf;
+	}
+
+	/**
+	 * Counts the occurrences of a phrase in the passage the cursors point to.
+	 */
+	private static int countPhrase(Cursor[] cursors) {
+		int count = 0;
+		int[] starts = cursors[0].getPositions();
+		int[] next = new int[cursors.length];
+		for (int s = 0; s < cursors[0].tf; s++) {
+			boolean found = true;
+			for (int i = 1; i < cursors.length && found; i++) {
+				int[] positions = cursors[i].getPositions();
+				while (next[i] < cursors[i].tf &&
+					   positions[next[i]] < starts[s] + i)
+					next[i]++;
+				found = next[i] < cursors[i].tf &&
+						positions[next[i]] == starts[s] + i;
+			}
+			if (found) count++;
+		}
+		return count;
+	}
+}
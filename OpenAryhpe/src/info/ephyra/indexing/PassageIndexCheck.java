@@ -0,0 +1,283 @@
+package info.ephyra.indexing;
+
+import info.ephyra.indexing.PassageIndex.Hit;
+import info.ephyra.search.searchers.LocalKM;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <p>Checks a <code>PassageIndex</code> against a brute-force search.</p>
+ *
+ * <p>A random corpus is generated and indexed with a small memory limit, so
+ * that several runs are merged. Random queries are then answered both by the
+ * index and by scanning all passages and computing the BM25 scores directly.
+ * The queries are converted with <code>LocalKM.getConcepts()</code> and
+ * include words, phrases, <code>OR</code> and groups of the form
+ * <code>(term OR "expansion phrase")</code> as created by
+ * <code>BagOfTermsG</code>. The conversion of some query strings is also
+ * compared to the expected concepts.</p>
+ */
+public class PassageIndexCheck {
+	/** Number of random queries. */
+	private static final int QUERIES = 300;
+	/** Number of passages retrieved per query. */
+	private static final int MAX_HITS = 10;
+	/** Maximum difference between scores that are considered equal. */
+	private static final double EPSILON = 1e-3;
+
+	/** Query strings and the expected concepts. */
+	private static final String[][] CONCEPTS = {
+		{"born Gore", "[[born], [Gore]]"},
+		{"\"al gore\" OR \"Albert Gore Jr.\" OR Gore born",
+		 "[[\"al gore\", \"Albert Gore Jr.\", Gore], [born]]"},
+		{"(Gore OR \"Albert Gore\") born",
+		 "[[Gore, \"Albert Gore\"], [born]]"},
+		{"(vice president) AND (Gore OR \"al gore\")",
+		 "[[vice], [president], [Gore, \"al gore\"]]"},
+		{"(vice president) OR \"vice president\"",
+		 "[[vice president, \"vice president\"]]"},
+		{"(born OR birth) OR (died OR death)",
+		 "[[born, birth, died, death]]"},
+		{"&quot;Gore&quot; ()", "[[Gore]]"},
+	};
+
+	/**
+	 * Generates a corpus with paragraphs of random words.
+	 *
+	 * @param dir directory of the corpus
+	 * @param vocabulary the words
+	 * @param random random number generator
+	 * @param texts the paragraphs in the order they are indexed
+	 * @return the files of the corpus
+	 */
+	private static File[] writeCorpus(File dir, String[] vocabulary,
+									  Random random, ArrayList<String> texts)
+			throws IOException {
+		File[] files = new File[5];
+		for (int f = 0; f < files.length; f++) {
+			files[f] = new File(dir, "file" + f);
+			PrintWriter out = new PrintWriter(files[f], "UTF-8");
+			for (int d = 0; d < 400; d++) {
+				out.println("<DOC>");
+				out.println("<DOCNO> DOC" + f + "." + d + " </DOCNO>");
+				out.println("<TEXT>");
+				int paragraphs = 1 + random.nextInt(5);
+				for (int p = 0; p < paragraphs; p++) {
+					StringBuilder text = new StringBuilder();
+					int length = 3 + random.nextInt(40);
+					for (int w = 0; w < length; w++) {
+						// frequent words are more likely
+						int word = (int) (Math.pow(random.nextDouble(), 2.5) *
+										  vocabulary.length);
+						if (w > 0) text.append(' ');
+						text.append(vocabulary[word]);
+						if (random.nextInt(10) == 0) text.append(',');
+					}
+					out.println("<P>" + text + "</P>");
+					texts.add(text.toString());
+				}
+				out.println("</TEXT>");
+				out.println("</DOC>");
+			}
+			out.close();
+		}
+		return files;
+	}
+
+	/**
+	 * Generates a random query string.
+	 *
+	 * @param vocabulary the words
+	 * @param random random number generator
+	 * @return query string
+	 */
+	private static String getQuery(String[] vocabulary, Random random) {
+		StringBuilder query = new StringBuilder();
+		int units = 1 + random.nextInt(4);
+		for (int i = 0; i < units; i++) {
+			String w1 = vocabulary[random.nextInt(60)];
+			String w2 = vocabulary[random.nextInt(60)];
+			String w3 = vocabulary[random.nextInt(60)];
+			if (i > 0) query.append(' ');
+			switch (random.nextInt(5)) {
+				case 0: query.append(w1); break;
+				case 1: query.append("\"" + w1 + " " + w2 + "\""); break;
+				case 2: query.append(w1 + " OR " + w2); break;
+				case 3:
+					query.append("(" + w1 + " " + w2 + ") OR \"" + w2 + " " +
+								 w1 + "\"");
+					break;
+				default:
+					query.append("(" + w1 + " OR \"" + w2 + " " + w3 + "\")");
+			}
+		}
+		return query.toString();
+	}
+
+	/**
+	 * Counts the occurrences of a phrase, or the minimum frequency of a set of
+	 * terms, in a passage.
+	 */
+	private static int getFrequency(String[] passage, String[] terms,
+									boolean phrase) {
+		int tf = 0;
+		if (phrase && terms.length > 1) {
+			for (int start = 0; start + terms.length <= passage.length;
+					start++) {
+				int i = 0;
+				while (i < terms.length &&
+					   passage[start + i].equals(terms[i])) i++;
+				if (i == terms.length) tf++;
+			}
+		} else {
+			tf = Integer.MAX_VALUE;
+			for (String term : terms) {
+				int count = 0;
+				for (String word : passage) if (word.equals(term)) count++;
+				tf = Math.min(tf, count);
+			}
+		}
+		return tf;
+	}
+
+	/**
+	 * Scores all passages by scanning them.
+	 *
+	 * @param passages terms of the passages
+	 * @param concepts alternatives of each concept
+	 * @return scores of the passages, <code>NaN</code> if a passage does not
+	 *         match
+	 */
+	private static double[] search(String[][] passages, String[][] concepts) {
+		int n = passages.length;
+		double avgLength = 0;
+		for (String[] passage : passages) avgLength += passage.length;
+		avgLength /= n;
+
+		double[] total = new double[n];
+		Arrays.fill(total, Double.NaN);
+		for (String[] alternatives : concepts) {
+			double[] best = new double[n];
+			Arrays.fill(best, Double.NaN);
+			for (String alternative : alternatives) {
+				String[] terms = PassageIndex.getTerms(alternative);
+				if (terms.length == 0) continue;
+				boolean phrase = alternative.startsWith("\"");
+				int[] tf = new int[n];
+				int df = 0;
+				for (int p = 0; p < n; p++) {
+					tf[p] = getFrequency(passages[p], terms, phrase);
+					if (tf[p] > 0) df++;
+				}
+				double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+				for (int p = 0; p < n; p++) {
+					if (tf[p] == 0) continue;
+					double norm = 0.25 + 0.75 * passages[p].length / avgLength;
+					double score = idf * tf[p] * 2.2 / (tf[p] + 1.2 * norm);
+					if (Double.isNaN(best[p]) || score > best[p])
+						best[p] = score;
+				}
+			}
+			for (int p = 0; p < n; p++)
+				if (!Double.isNaN(best[p]))
+					total[p] = (Double.isNaN(total[p]) ? 0 : total[p]) +
+							   best[p];
+		}
+		return total;
+	}
+
+	/**
+	 * Checks if the hits are the best passages. Passages with equal scores may
+	 * be in any order.
+	 */
+	private static boolean check(Hit[] hits, double[] scores) {
+		double[] sorted = new double[scores.length];
+		int matches = 0;
+		for (double score : scores)
+			if (!Double.isNaN(score)) sorted[matches++] = -score;
+		Arrays.sort(sorted, 0, matches);
+
+		if (hits.length != Math.min(MAX_HITS, matches)) return false;
+		for (int i = 0; i < hits.length; i++)
+			if (Math.abs(hits[i].getScore() + sorted[i]) > EPSILON ||
+					Math.abs(hits[i].getScore() -
+							 scores[hits[i].getPassage()]) > EPSILON)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Runs the check.
+	 *
+	 * @param args a directory for the corpus and the index, which is created
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java PassageIndexCheck work_directory");
+			System.exit(1);
+		}
+		int failed = 0;
+
+		// conversion of query strings
+		for (String[] test : CONCEPTS) {
+			String concepts =
+				Arrays.deepToString(LocalKM.getConcepts(test[0]));
+			if (!concepts.equals(test[1])) {
+				System.out.println("Concepts of " + test[0] + ": " + concepts +
+								   ", expected " + test[1]);
+				failed++;
+			}
+		}
+
+		// index a random corpus
+		Random random = new Random(42);
+		String[] vocabulary = new String[300];
+		for (int i = 0; i < vocabulary.length; i++)
+			vocabulary[i] = "w" + Integer.toString(i, 36) +
+							((i % 3 == 0) ? "ing" : (i % 3 == 1) ? "s" : "");
+		File corpusDir = new File(args[0], "corpus");
+		File indexDir = new File(args[0], "index");
+		corpusDir.mkdirs();
+		ArrayList<String> texts = new ArrayList<String>();
+		File[] files = writeCorpus(corpusDir, vocabulary, random, texts);
+		PassageIndexer indexer =
+			new PassageIndexer(indexDir.getPath(), 20000);
+		for (File file : files) indexer.addFile(file);
+		indexer.close();
+
+		PassageIndex index = new PassageIndex(indexDir.getPath());
+		String[][] passages = new String[texts.size()][];
+		for (int i = 0; i < passages.length; i++)
+			passages[i] = PassageIndex.getTerms(texts.get(i));
+		if (index.getPassageCount() != passages.length) {
+			System.out.println("Passages: " + index.getPassageCount() +
+							   ", expected " + passages.length);
+			failed++;
+		}
+
+		// compare random queries to the brute-force search
+		long time = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			String query = getQuery(vocabulary, random);
+			String[][] concepts = LocalKM.getConcepts(query);
+			long start = System.nanoTime();
+			Hit[] hits = index.search(concepts, MAX_HITS);
+			time += System.nanoTime() - start;
+			if (!check(hits, search(passages, concepts))) {
+				System.out.println("Results differ: " + query);
+				failed++;
+			}
+		}
+		index.close();
+
+		System.out.println(QUERIES + " queries on " + passages.length +
+				" passages, " + (time / QUERIES / 1000) + "us per query, " +
+				failed + " failed checks");
+		if (failed > 0) System.exit(1);
+	}
+}
@@ -0,0 +1,459 @@
+package info.ephyra.indexing;
+
+import info.ephyra.io.MsgPrinter;
+import info.ephyra.util.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Builds a <code>PassageIndex</code> from a text corpus that has been
+ * preprocessed with <code>AQUAINTPreprocessor</code>,
+ * <code>AQUAINT2Preprocessor</code> or <code>Blog06Preprocessor</code>.</p>
+ *
+ * <p>The paragraphs of the documents, i.e. the text between
+ * <code>&lt;P&gt;</code> and <code>&lt;/P&gt;</code>, are indexed as
+ * passages. The postings are compressed in memory and written to temporary
+ * runs when the memory limit is reached. The runs are merged into the index
+ * when the indexer is closed.</p>
+ */
+public class PassageIndexer {
+	/** Default maximum size of the postings held in memory. */
+	private static final int MAX_BUFFERED = 64 << 20;
+	/** Matches a document number. */
+	private static final Pattern DOCNO =
+		Pattern.compile("<DOCNO>\\s*+(.*?)\\s*+</DOCNO>");
+
+	/** Compressed postings of a term. */
+	private static class Postings {
+		private byte[] data = new byte[16];
+		private int size;
+		private int df;
+		private int last = -1;
+
+		public void add(int passage, int[] positions, int tf) {
+			writeVInt(passage - last);
+			writeVInt(tf);
+			int position = -1;
+			for (int i = 0; i < tf; i++) {
+				writeVInt(positions[i] - position);
+				position = positions[i];
+			}
+			last = passage;
+			df++;
+		}
+
+		public void writeVInt(int value) {
+			if (data.length - size < 5)
+				data = Arrays.copyOf(data, 2 * data.length + 5);
+			while ((value & ~0x7f) != 0) {
+				data[size++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			data[size++] = (byte) value;
+		}
+
+		public void write(byte[] bytes, int offset, int length) {
+			if (data.length - size < length)
+				data = Arrays.copyOf(data, Math.max(2 * data.length,
+													size + length));
+			System.arraycopy(bytes, offset, data, size, length);
+			size += length;
+		}
+	}
+
+	/** Positions of a term in a passage. */
+	private static class Positions {
+		private int[] positions = new int[4];
+		private int tf;
+
+		public void add(int position) {
+			if (tf == positions.length)
+				positions = Arrays.copyOf(positions, 2 * tf);
+			positions[tf++] = position;
+		}
+	}
+
+	/** Reads the terms of a run in order. */
+	private static class Run implements Comparable<Run> {
+		private int index;
+		private DataInputStream in;
+		private int remaining;
+		private String term;
+		private int df;
+		private int last;
+		private byte[] data;
+
+		public Run(File file, int index) throws IOException {
+			this.index = index;
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			remaining = in.readInt();
+		}
+
+		/**
+		 * Reads the next term and its postings.
+		 *
+		 * @return <code>false</code>, iff there are no more terms
+		 */
+		public boolean next() throws IOException {
+			if (remaining == 0) {
+				in.close();
+				return false;
+			}
+			remaining--;
+			term = in.readUTF();
+			df = in.readInt();
+			last = in.readInt();
+			data = new byte[in.readInt()];
+			in.readFully(data);
+			return true;
+		}
+
+		public int compareTo(Run run) {
+			int c = term.compareTo(run.term);
+			return (c != 0) ? c : index - run.index;
+		}
+	}
+
+	/** Index directory. */
+	private File dir;
+	/** Maximum size of the postings held in memory. */
+	private int maxBuffered;
+	/** Postings that have not been written to a run yet. */
+	private HashMap<String, Postings> buffered = new HashMap<String, Postings>();
+	/** Size of the buffered postings. */
+	private long bufferedSize;
+	/** Temporary runs. */
+	private ArrayList<File> runs = new ArrayList<File>();
+
+	/** Documents and texts of the passages. */
+	private DataOutputStream passages;
+	/** Offsets of the passages. */
+	private DataOutputStream offsets;
+	/** Numbers of terms of the passages. */
+	private DataOutputStream lengths;
+	/** Offset of the next passage. */
+	private long offset;
+	/** Number of passages. */
+	private int passageCount;
+	/** Total number of terms. */
+	private long totalLength;
+	/** Document numbers. */
+	private ArrayList<String> docNos = new ArrayList<String>();
+
+	/**
+	 * Creates an indexer that writes to the given directory.
+	 *
+	 * @param dir index directory
+	 * @param maxBuffered maximum size of the postings held in memory in bytes
+	 * @throws IOException if the index files could not be created
+	 */
+	public PassageIndexer(String dir, int maxBuffered) throws IOException {
+		this.dir = new File(dir);
+		this.dir.mkdirs();
+		this.maxBuffered = maxBuffered;
+
+		passages = create(PassageIndex.PASSAGES);
+		offsets = create(PassageIndex.OFFSETS);
+		lengths = create(PassageIndex.LENGTHS);
+	}
+
+	/**
+	 * Creates an indexer that writes to the given directory.
+	 *
+	 * @param dir index directory
+	 * @throws IOException if the index files could not be created
+	 */
+	public PassageIndexer(String dir) throws IOException {
+		this(dir, MAX_BUFFERED);
+	}
+
+	private DataOutputStream create(String filename) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(new File(dir, filename)), 1 << 16));
+	}
+
+	/**
+	 * Adds a passage of a document to the index.
+	 *
+	 * @param doc index of the document in the list of document numbers
+	 * @param text text of the passage
+	 * @throws IOException if the passage could not be written
+	 */
+	private void addPassage(int doc, String text) throws IOException {
+		text = text.replaceAll("<[^>]*+>", " ").replaceAll("\\s++", " ").trim();
+		String[] terms = PassageIndex.getTerms(text);
+		if (terms.length == 0) return;
+
+		int passage = passageCount++;
+
+		// collect the positions of the terms
+		HashMap<String, Positions> positions = new HashMap<String, Positions>();
+		for (int i = 0; i < terms.length; i++) {
+			Positions p = positions.get(terms[i]);
+			if (p == null) {
+				p = new Positions();
+				positions.put(terms[i], p);
+			}
+			p.add(i);
+		}
+		for (String term : positions.keySet()) {
+			Postings postings = buffered.get(term);
+			if (postings == null) {
+				postings = new Postings();
+				buffered.put(term, postings);
+				bufferedSize += 2 * term.length() + 64;
+			}
+			int size = postings.size;
+			Positions p = positions.get(term);
+			postings.add(passage, p.positions, p.tf);
+			bufferedSize += postings.size - size;
+		}
+
+		// write the passage
+		byte[] bytes = text.getBytes("UTF-8");
+		offsets.writeLong(offset);
+		lengths.writeInt(terms.length);
+		passages.writeInt(doc);
+		passages.writeInt(bytes.length);
+		passages.write(bytes);
+		offset += 8 + bytes.length;
+		totalLength += terms.length;
+
+		if (bufferedSize >= maxBuffered) writeRun();
+	}
+
+	/**
+	 * Indexes the paragraphs of the documents in a file.
+	 *
+	 * @param file a file of the corpus
+	 * @throws IOException if the file could not be read or the index could not
+	 *                     be written
+	 */
+	public void addFile(File file) throws IOException {
+		BufferedReader in = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		int doc = -1;
+		StringBuilder paragraph = null;
+
+		String line;
+		while ((line = in.readLine()) != null) {
+			Matcher m = DOCNO.matcher(line);
+			if (m.find()) {
+				docNos.add(m.group(1));
+				doc = docNos.size() - 1;
+			}
+
+			int i = 0;
+			while (true) {
+				if (paragraph == null) {
+					int start = line.indexOf("<P>", i);
+					if (start < 0) break;
+					paragraph = new StringBuilder();
+					i = start + 3;
+				} else {
+					int end = line.indexOf("</P>", i);
+					if (end < 0) {
+						paragraph.append(line.substring(i)).append(' ');
+						break;
+					}
+					paragraph.append(line.substring(i, end));
+					if (doc >= 0) addPassage(doc, paragraph.toString());
+					paragraph = null;
+					i = end + 4;
+				}
+			}
+
+			// an unclosed paragraph ends with the text
+			if (paragraph != null &&
+					(line.contains("</TEXT>") || line.contains("</DOC>"))) {
+				if (doc >= 0) addPassage(doc, paragraph.toString());
+				paragraph = null;
+			}
+		}
+
+		in.close();
+	}
+
+	/**
+	 * Writes the buffered postings to a temporary run.
+	 *
+	 * @throws IOException if the run could not be written
+	 */
+	private void writeRun() throws IOException {
+		if (buffered.isEmpty()) return;
+
+		File file = new File(dir, "run" + runs.size() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		ArrayList<String> terms = new ArrayList<String>(buffered.keySet());
+		Collections.sort(terms);
+		out.writeInt(terms.size());
+		for (String term : terms) {
+			Postings postings = buffered.get(term);
+			out.writeUTF(term);
+			out.writeInt(postings.df);
+			out.writeInt(postings.last);
+			out.writeInt(postings.size);
+			out.write(postings.data, 0, postings.size);
+		}
+		out.close();
+
+		runs.add(file);
+		buffered.clear();
+		bufferedSize = 0;
+	}
+
+	/**
+	 * Merges the runs into the postings and the lexicon of the index.
+	 *
+	 * @throws IOException if a run could not be read or the index could not be
+	 *                     written
+	 */
+	private void mergeRuns() throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<Run>();
+		for (int i = 0; i < runs.size(); i++) {
+			Run run = new Run(runs.get(i), i);
+			if (run.next()) queue.add(run);
+		}
+
+		DataOutputStream postingsOut = create(PassageIndex.POSTINGS);
+		DataOutputStream lexicon = create(PassageIndex.LEXICON);
+		lexicon.writeInt(0);  // number of terms, set below
+		lexicon.writeLong(totalLength);
+		long postingsOffset = 0;
+		int termCount = 0;
+
+		while (!queue.isEmpty()) {
+			// concatenate the postings of the term in the order of the runs,
+			// the first passage of each run is stored relative to the last
+			// passage of the previous run
+			String term = queue.peek().term;
+			Postings merged = new Postings();
+			while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+				Run run = queue.poll();
+				int first = 0, length = 0, b;
+				do {
+					b = run.data[length];
+					first |= (b & 0x7f) << (7 * length);
+					length++;
+				} while ((b & 0x80) != 0);
+				first--;  // gaps of a run start at -1
+
+				merged.writeVInt(first - merged.last);
+				merged.write(run.data, length, run.data.length - length);
+				merged.df += run.df;
+				merged.last = run.last;
+
+				if (run.next()) queue.add(run);
+			}
+
+			// the postings of a term must not span two memory-mapped parts
+			if (merged.size > PassageIndex.SEGMENT_SIZE)
+				throw new IOException("Postings of \"" + term + "\" too large");
+			long segmentEnd = (postingsOffset / PassageIndex.SEGMENT_SIZE + 1) *
+							  PassageIndex.SEGMENT_SIZE;
+			if (postingsOffset + merged.size > segmentEnd)
+				for (; postingsOffset < segmentEnd; postingsOffset++)
+					postingsOut.write(0);
+
+			lexicon.writeUTF(term);
+			lexicon.writeInt(merged.df);
+			lexicon.writeLong(postingsOffset);
+			postingsOut.write(merged.data, 0, merged.size);
+			postingsOffset += merged.size;
+			termCount++;
+		}
+
+		postingsOut.close();
+		lexicon.close();
+		RandomAccessFile file =
+			new RandomAccessFile(new File(dir, PassageIndex.LEXICON), "rw");
+		file.writeInt(termCount);
+		file.close();
+
+		for (File run : runs) run.delete();
+		runs.clear();
+	}
+
+	/**
+	 * Writes the remaining postings and completes the index.
+	 *
+	 * @throws IOException if the index could not be written
+	 */
+	public void close() throws IOException {
+		passages.close();
+		offsets.close();
+		lengths.close();
+
+		writeRun();
+		mergeRuns();
+
+		DataOutputStream out = create(PassageIndex.DOCNOS);
+		out.writeInt(docNos.size());
+		for (String docNo : docNos) out.writeUTF(docNo);
+		out.close();
+	}
+
+	/**
+	 * <p>Entry point of the program.</p>
+	 *
+	 * <p>Builds a passage index from a preprocessed corpus.</p>
+	 *
+	 * @param args argument 1: directory of the corpus<br>
+	 *             argument 2: index directory<br>
+	 *             argument 3 (optional): regular expression that matches the
+	 *             names of the files to index, e.g. <code>.*\.parsed</code>
+	 *             for the Blog06 corpus
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			MsgPrinter.printUsage("java PassageIndexer corpus_directory " +
+					"index_directory [file_name_regex]");
+			System.exit(1);
+		}
+		String regex = (args.length > 2) ? args[2] : null;
+
+		// enable output of status and error messages
+		MsgPrinter.enableStatusMsgs(true);
+		MsgPrinter.enableErrorMsgs(true);
+
+		try {
+			PassageIndexer indexer = new PassageIndexer(args[1]);
+			for (File file : FileUtils.getFilesRec(args[0])) {
+				String filename = file.getName();
+				if (filename.startsWith(".") ||
+						(regex != null && !filename.matches(regex)))
+					continue;
+
+				MsgPrinter.printStatusMsg("Indexing " + file.getName() + "...");
+				indexer.addFile(file);
+			}
+			MsgPrinter.printStatusMsg("Merging postings...");
+			indexer.close();
+			MsgPrinter.printStatusMsg("Indexed " + indexer.passageCount +
+					" passages of " + indexer.docNos.size() + " documents.");
+		} catch (IOException e) {
+			MsgPrinter.printErrorMsg("Could not build the index: " +
+					e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package info.ephyra.io;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * <p>An entry of the log written by <code>Logger</code>: an event with a tree
+ * of named values. It is written either in the pseudo-XML format of the log
+ * file or as a line of JSON.</p>
+ *
+ * <p>The values are converted to strings when the record is created, so later
+ * changes to the logged objects do not affect the record.</p>
+ */
+class LogRecord {
+	/** A named value or a group of named values. */
+	static class Element {
+		private String name;
+		private String value;
+		private String attribute;
+		private String attributeValue;
+		/** <code>true</code> iff the element may occur more than once. */
+		private boolean repeated;
+		private ArrayList<Element> children = new ArrayList<Element>();
+
+		/**
+		 * Creates a group of values.
+		 *
+		 * @param name name of the group
+		 * @param repeated <code>true</code> iff the group may occur more than
+		 *                 once, it is written as a JSON array
+		 */
+		public Element(String name, boolean repeated) {
+			this.name = name;
+			this.repeated = repeated;
+		}
+
+		/**
+		 * Creates a named value.
+		 *
+		 * @param name name of the value
+		 * @param value the value
+		 * @param repeated <code>true</code> iff the value may occur more than
+		 *                 once, it is written as a JSON array
+		 */
+		public Element(String name, Object value, boolean repeated) {
+			this(name, repeated);
+			this.value = String.valueOf(value);
+		}
+
+		public Element setAttribute(String attribute, Object value) {
+			this.attribute = attribute;
+			attributeValue = String.valueOf(value);
+			return this;
+		}
+
+		public Element add(Element child) {
+			children.add(child);
+			return this;
+		}
+	}
+
+	/** Name of the event, written to JSON. */
+	private String event;
+	/** XML tag opened by the record or <code>null</code>. */
+	private String open;
+	/** XML tag closed by the record or <code>null</code>. */
+	private String close;
+	/** Indentation of the elements in XML. */
+	private int depth;
+	private ArrayList<Element> elements = new ArrayList<Element>();
+
+	/**
+	 * Creates a record.
+	 *
+	 * @param event name of the event
+	 * @param depth indentation of the elements in XML
+	 */
+	public LogRecord(String event, int depth) {
+		this.event = event;
+		this.depth = depth;
+	}
+
+	public LogRecord setOpen(String tag) {
+		open = tag;
+		return this;
+	}
+
+	public LogRecord setClose(String tag) {
+		close = tag;
+		return this;
+	}
+
+	public LogRecord add(Element element) {
+		elements.add(element);
+		return this;
+	}
+
+	/**
+	 * Writes the record in the pseudo-XML format.
+	 *
+	 * @param out buffer for the lines
+	 * @param newLine line separator
+	 */
+	public void toXml(StringBuilder out, String newLine) {
+		if (open != null) out.append("<" + open + ">").append(newLine);
+		for (Element element : elements) toXml(out, newLine, element, depth);
+		if (close != null) out.append("</" + close + ">").append(newLine);
+	}
+
+	private static void toXml(StringBuilder out, String newLine,
+							  Element element, int depth) {
+		indent(out, depth).append('<').append(element.name);
+		if (element.attribute != null)
+			out.append(' ').append(element.attribute).append("=\"")
+			   .append(element.attributeValue).append('"');
+		out.append('>').append(newLine);
+		if (element.value != null)
+			indent(out, depth + 1).append(element.value).append(newLine);
+		for (Element child : element.children)
+			toXml(out, newLine, child, depth + 1);
+		indent(out, depth).append("</" + element.name + ">").append(newLine);
+	}
+
+	private static StringBuilder indent(StringBuilder out, int depth) {
+		for (int i = 0; i < depth; i++) out.append('\t');
+		return out;
+	}
+
+	/**
+	 * Writes the record as a JSON object on a single line.
+	 *
+	 * @param out buffer for the line
+	 * @param newLine line separator
+	 */
+	public void toJson(StringBuilder out, String newLine) {
+		out.append("{\"event\":");
+		quote(out, event);
+		fields(out, elements, false);
+		out.append('}').append(newLine);
+	}
+
+	/**
+	 * Writes elements as JSON fields. Elements with the same name are written
+	 * as one field.
+	 */
+	private static void fields(StringBuilder out, ArrayList<Element> elements,
+							   boolean first) {
+		LinkedHashMap<String, ArrayList<Element>> fields =
+			new LinkedHashMap<String, ArrayList<Element>>();
+		for (Element element : elements) {
+			ArrayList<Element> field = fields.get(element.name);
+			if (field == null) {
+				field = new ArrayList<Element>();
+				fields.put(element.name, field);
+			}
+			field.add(element);
+		}
+
+		for (ArrayList<Element> field : fields.values()) {
+			if (!first) out.append(',');
+			first = false;
+			quote(out, field.get(0).name).append(':');
+			if (field.get(0).repeated || field.size() > 1) {
+				out.append('[');
+				for (int i = 0; i < field.size(); i++) {
+					if (i > 0) out.append(',');
+					value(out, field.get(i));
+				}
+				out.append(']');
+			} else {
+				value(out, field.get(0));
+			}
+		}
+	}
+
+	private static void value(StringBuilder out, Element element) {
+		if (element.attribute == null && element.children.isEmpty()) {
+			if (element.value == null) out.append("null");
+			else quote(out, element.value);
+			return;
+		}
+
+		out.append('{');
+		boolean first = true;
+		if (element.attribute != null) {
+			quote(out, element.attribute).append(':');
+			quote(out, element.attributeValue);
+			first = false;
+		}
+		if (element.value != null) {
+			if (!first) out.append(',');
+			out.append("\"value\":");
+			quote(out, element.value);
+			first = false;
+		}
+		fields(out, element.children, first);
+		out.append('}');
+	}
+
+	private static StringBuilder quote(StringBuilder out, String s) {
+		out.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+					else out.append(c);
+			}
+		}
+		return out.append('"');
+	}
+}
@@ -0,0 +1,238 @@
+package info.ephyra.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Writes <code>LogRecords</code> to a log file on a background thread.</p>
+ *
+ * <p>Records are passed through a bounded ring buffer without locks and
+ * written in the order they were added. The file is opened once and flushed
+ * after each batch of records. A batch holds at most as many records as the
+ * buffer.</p>
+ *
+ * <p>In bounded-loss mode, <code>write()</code> returns as soon as the record
+ * is in the buffer, and a record is dropped if the buffer is full. Records
+ * that are still buffered are lost if the process dies. In durable mode, the
+ * caller waits until there is room in the buffer and then until the batch
+ * with its record has been written and forced to the storage device.</p>
+ */
+public class LogWriter {
+	/** Time in nanoseconds the writer thread sleeps if it is idle. */
+	private static final long IDLE_WAIT = 10000000;
+	/** Time in nanoseconds a caller waits if the buffer is full. */
+	private static final long FULL_WAIT = 100000;
+
+	/** The log file. */
+	private File logfile;
+	/** <code>true</code> for JSON lines, <code>false</code> for XML. */
+	private boolean json;
+	/** <code>true</code> iff records must not be dropped. */
+	private boolean durable;
+
+	/** Ring buffer of records, empty slots are <code>null</code>. */
+	private AtomicReferenceArray<LogRecord> ring;
+	/** Capacity of the ring buffer minus 1, the capacity is a power of 2. */
+	private int mask;
+	/** Sequence number of the next record that is added. */
+	private AtomicLong tail = new AtomicLong();
+	/** Sequence number of the next record that is written. */
+	private volatile long head;
+	/** Sequence number of the next record that is flushed. */
+	private volatile long flushedHead;
+
+	/** Number of records written and flushed to the file. */
+	private AtomicLong flushed = new AtomicLong();
+	/** Number of records dropped. */
+	private AtomicLong dropped = new AtomicLong();
+
+	/** Writes the records. */
+	private Thread thread;
+	/** <code>true</code> iff the writer thread waits for records. */
+	private volatile boolean idle;
+	/** <code>true</code> iff no more records are added. */
+	private volatile boolean closed;
+
+	/**
+	 * Creates a writer and starts its background thread. The log file is
+	 * opened in append mode when the first record is written.
+	 *
+	 * @param logfile the log file
+	 * @param json <code>true</code> to write JSON lines, <code>false</code> to
+	 *             write the pseudo-XML format
+	 * @param durable <code>true</code> for durable mode, <code>false</code> for
+	 *                bounded-loss mode
+	 * @param capacity maximum number of buffered records, rounded up to a
+	 *                 power of 2
+	 */
+	public LogWriter(File logfile, boolean json, boolean durable,
+					 int capacity) {
+		this.logfile = logfile;
+		this.json = json;
+		this.durable = durable;
+
+		int size = 1;
+		while (size < capacity) size <<= 1;
+		ring = new AtomicReferenceArray<LogRecord>(size);
+		mask = size - 1;
+
+		thread = new Thread(new Runnable() {
+			public void run() {
+				writeRecords();
+			}
+		}, "logger");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Adds a record. In bounded-loss mode, the record is dropped if the buffer
+	 * is full. In durable mode, the method waits until there is room and
+	 * returns when the record has been written to the file and forced to the
+	 * storage device, or counted as dropped if the file could not be written.
+	 *
+	 * @param record the record
+	 * @return <code>true</code>, iff the record was added
+	 */
+	public boolean write(LogRecord record) {
+		long seq;
+		while (true) {
+			if (closed) {
+				dropped.incrementAndGet();
+				return false;
+			}
+			seq = tail.get();
+			if (seq - head > mask) {
+				// buffer is full
+				if (!durable) {
+					dropped.incrementAndGet();
+					return false;
+				}
+				LockSupport.unpark(thread);
+				LockSupport.parkNanos(FULL_WAIT);
+			} else if (tail.compareAndSet(seq, seq + 1)) {
+				break;
+			}
+		}
+
+		ring.set((int) seq & mask, record);
+		if (idle) LockSupport.unpark(thread);
+		
+		if (durable) {
+			// wait for the batch that contains the record
+			while (flushedHead <= seq && thread.isAlive()) {
+				if (idle) LockSupport.unpark(thread);
+				LockSupport.parkNanos(FULL_WAIT);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until all records that have been added so far are flushed to the
+	 * file or dropped.
+	 */
+	public void flush() {
+		long target = tail.get();
+		while (flushedHead < target && thread.isAlive()) {
+			LockSupport.unpark(thread);
+			LockSupport.parkNanos(FULL_WAIT);
+		}
+	}
+
+	/**
+	 * Writes the remaining records and closes the log file. Records added
+	 * afterwards are dropped.
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {}
+	}
+
+	/**
+	 * Returns the number of records that have been written and flushed to the
+	 * file.
+	 *
+	 * @return number of flushed records
+	 */
+	public long getFlushedCount() {
+		return flushed.get();
+	}
+
+	/**
+	 * Returns the number of records that have been dropped because the buffer
+	 * was full, the writer was closed or the file could not be written.
+	 *
+	 * @return number of dropped records
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Takes the records from the buffer and writes them to the file until the
+	 * writer is closed and the buffer is empty.
+	 */
+	private void writeRecords() {
+		FileOutputStream stream = null;
+		Writer out = null;
+		String newLine = System.getProperty("line.separator");
+		StringBuilder batch = new StringBuilder();
+
+		while (true) {
+			// take the records that are available, at most one buffer full
+			long seq = head;
+			int count = 0;
+			LogRecord record;
+			while (count <= mask && (record = ring.get((int) seq & mask)) != null) {
+				if (json) record.toJson(batch, newLine);
+				else record.toXml(batch, newLine);
+				ring.set((int) seq & mask, null);
+				head = ++seq;
+				count++;
+			}
+
+			if (count > 0) {
+				// write and flush them
+				try {
+					if (out == null) {
+						stream = new FileOutputStream(logfile, true);
+						out = new OutputStreamWriter(stream);
+					}
+					out.write(batch.toString());
+					out.flush();
+					if (durable) stream.getFD().sync();
+					flushed.addAndGet(count);
+				} catch (IOException e) {
+					MsgPrinter.printErrorMsg("Could not write to log file " +
+							logfile + ": " + e.getMessage());
+					dropped.addAndGet(count);
+				}
+				batch.setLength(0);
+				flushedHead = seq;
+			} else if (closed && seq == tail.get()) {
+				break;
+			} else {
+				// wait for more records
+				idle = true;
+				if (ring.get((int) seq & mask) == null)
+					LockSupport.parkNanos(IDLE_WAIT);
+				idle = false;
+			}
+		}
+
+		if (out != null)
+			try {
+				out.close();
+			} catch (IOException e) {}
+	}
+}
@@ -1,38 +1,79 @@
 package info.ephyra.io;
 
+import info.ephyra.io.LogRecord.Element;
 import info.ephyra.nlp.semantics.Predicate;
 import info.ephyra.querygeneration.Query;
 import info.ephyra.questionanalysis.QuestionInterpretation;
 import info.ephyra.search.Result;
+import info.ephyra.util.Properties;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.util.Date;
 
 /**
- * Logs all questions that are posed to the system and the answers that are
+ * <p>Logs all questions that are posed to the system and the answers that are
  * returned to a file. Logging can be enabled or disabled. By default, logging
- * is enabled.
+ * is enabled.</p>
+ * 
+ * <p>The entries are written by a <code>LogWriter</code> on a background
+ * thread, which keeps the log file open. The format (<code>xml</code> or
+ * <code>json</code>), the mode (<code>durable</code> or
+ * <code>bounded-loss</code>) and the number of buffered entries are read from
+ * <code>conf/info.ephyra.io.Logger.properties</code>.</p>
  * 
  * @author Nico Schlaefer
  * @version 2005-09-30
  */
 public class Logger {
+	/** Default maximum number of buffered entries. */
+	private static final int CAPACITY = 4096;
+	
 	/** The log file. */
 	private static File logfile;
 	/** True, iff logging is enabled. */
 	private static boolean enabled = true;
+	/** Writes the entries to the log file. */
+	private static LogWriter writer;
+	
+	static {
+		// write the remaining entries when the JVM exits
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				LogWriter writer = getWriter();
+				if (writer != null) writer.close();
+			}
+		});
+	}
 	
 	/**
 	 * Sets the log file.
 	 * 
 	 * @param filename name of the log file
 	 */
-	public static void setLogfile(String filename) {
+	public static synchronized void setLogfile(String filename) {
+		if (writer != null) writer.close();
+		
 		logfile = new File(filename);
+		
+		String format = "xml", mode = "durable";
+		int capacity = CAPACITY;
+		try {
+			Properties properties =
+				Properties.loadFromClassName(Logger.class.getName());
+			format = properties.getProperty("format", format).trim();
+			mode = properties.getProperty("mode", mode).trim();
+			capacity = Integer.parseInt(properties.getProperty("capacity",
+					Integer.toString(capacity)).trim());
+		} catch (RuntimeException e) {
+			// use the defaults
+		}
+		writer = new LogWriter(logfile, format.equalsIgnoreCase("json"),
+				!mode.equalsIgnoreCase("bounded-loss"), capacity);
+	}
+	
+	private static synchronized LogWriter getWriter() {
+		return writer;
 	}
 	
 	/**
@@ -46,56 +87,91 @@ public class Logger {
 	}
 	
 	/**
-	 * Starts an entry for a factoid question.
+	 * Waits until all entries have been written to the log file.
+	 */
+	public static void flush() {
+		LogWriter writer = getWriter();
+		if (writer != null) writer.flush();
+	}
+	
+	/**
+	 * Returns the number of entries that have been written to the log file.
+	 * 
+	 * @return number of written entries
+	 */
+	public static long getFlushedCount() {
+		LogWriter writer = getWriter();
+		return (writer != null) ? writer.getFlushedCount() : 0;
+	}
+	
+	/**
+	 * Returns the number of entries that have been dropped.
+	 * 
+	 * @return number of dropped entries
+	 */
+	public static long getDroppedCount() {
+		LogWriter writer = getWriter();
+		return (writer != null) ? writer.getDroppedCount() : 0;
+	}
+	
+	/**
+	 * Passes an entry to the writer.
+	 * 
+	 * @param record the entry
+	 * @return true, iff the entry was accepted
+	 */
+	private static boolean log(LogRecord record) {
+		LogWriter writer = getWriter();
+		return writer != null && writer.write(record);
+	}
+	
+	/**
+	 * Starts an entry for a question.
 	 * 
+	 * @param tag tag of the entry
 	 * @param question question string
 	 * @return true, iff logging was successful
 	 */
-	public static boolean logFactoidStart(String question) {
+	private static boolean logStart(String tag, String question) {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("<factoid>");
-			out.println("\t<time>");
-			out.println("\t\t" + (new Date()).toString());
-			out.println("\t</time>");
-			out.println("\t<question>");
-			out.println("\t\t" + question);
-			out.println("\t</question>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return log(new LogRecord(tag + "Start", 1)
+			.setOpen(tag)
+			.add(new Element("time", new Date(), false))
+			.add(new Element("question", question, false)));
 	}
 	
 	/**
-	 * Ends an entry for a factoid question.
+	 * Ends an entry for a question.
 	 * 
+	 * @param tag tag of the entry
 	 * @return true, iff logging was successful
 	 */
-	public static boolean logFactoidEnd() {
+	private static boolean logEnd(String tag) {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("</factoid>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return log(new LogRecord(tag + "End", 1).setClose(tag));
+	}
+	
+	/**
+	 * Starts an entry for a factoid question.
+	 * 
+	 * @param question question string
+	 * @return true, iff logging was successful
+	 */
+	public static boolean logFactoidStart(String question) {
+		return logStart("factoid", question);
+	}
+	
+	/**
+	 * Ends an entry for a factoid question.
+	 * 
+	 * @return true, iff logging was successful
+	 */
+	public static boolean logFactoidEnd() {
+		return logEnd("factoid");
 	}
 	
 	/**
@@ -105,27 +181,7 @@ public class Logger {
 	 * @return true, iff logging was successful
 	 */
 	public static boolean logListStart(String question) {
-		// logging is disabled or log file is not specified
-		if (!enabled || logfile == null) return false;
-		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("<list>");
-			out.println("\t<time>");
-			out.println("\t\t" + (new Date()).toString());
-			out.println("\t</time>");
-			out.println("\t<question>");
-			out.println("\t\t" + question);
-			out.println("\t</question>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return logStart("list", question);
 	}
 	
 	/**
@@ -134,21 +190,7 @@ public class Logger {
 	 * @return true, iff logging was successful
 	 */
 	public static boolean logListEnd() {
-		// logging is disabled or log file is not specified
-		if (!enabled || logfile == null) return false;
-		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("</list>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return logEnd("list");
 	}
 	
 	/**
@@ -158,27 +200,7 @@ public class Logger {
 	 * @return true, iff logging was successful
 	 */
 	public static boolean logOtherStart(String question) {
-		// logging is disabled or log file is not specified
-		if (!enabled || logfile == null) return false;
-		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("<other>");
-			out.println("\t<time>");
-			out.println("\t\t" + (new Date()).toString());
-			out.println("\t</time>");
-			out.println("\t<question>");
-			out.println("\t\t" + question);
-			out.println("\t</question>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return logStart("other", question);
 	}
 	
 	/**
@@ -187,21 +209,7 @@ public class Logger {
 	 * @return true, iff logging was successful
 	 */
 	public static boolean logOtherEnd() {
-		// logging is disabled or log file is not specified
-		if (!enabled || logfile == null) return false;
-		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("</other>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return logEnd("other");
 	}
 	
 	/**
@@ -214,20 +222,8 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("\t<normalization>");
-			out.println("\t\t" + qn);
-			out.println("\t</normalization>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
-		
-		return true;
+		return log(new LogRecord("normalization", 1)
+			.add(new Element("normalization", qn, false)));
 	}
 	
 	/**
@@ -240,22 +236,28 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			for (String at : ats) {
-				out.println("\t<answertype>");
-				out.println("\t\t" + at);
-				out.println("\t</answertype>");
-			}
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
+		LogRecord record = new LogRecord("answerTypes", 1);
+		for (String at : ats) record.add(new Element("answertype", at, true));
 		
-		return true;
+		return log(record);
+	}
+	
+	/**
+	 * Creates an element for a question interpretation.
+	 * 
+	 * @param qi question interpretation
+	 * @param repeated <code>true</code> iff there may be more than one
+	 * @return element with the property, target and context
+	 */
+	private static Element getElement(QuestionInterpretation qi,
+									  boolean repeated) {
+		Element element = new Element("interpretation", repeated)
+			.add(new Element("property", qi.getProperty(), false))
+			.add(new Element("target", qi.getTarget(), false));
+		for (String context : qi.getContext())
+			element.add(new Element("context", context, true));
+		
+		return element;
 	}
 	
 	/**
@@ -268,32 +270,10 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			for (QuestionInterpretation qi : qis) {
-				out.println("\t<interpretation>");
-				out.println("\t\t<property>");
-				out.println("\t\t\t" + qi.getProperty());
-				out.println("\t\t</property>");
-				out.println("\t\t<target>");
-				out.println("\t\t\t" + qi.getTarget());
-				out.println("\t\t</target>");
-				for (String context : qi.getContext()) {
-					out.println("\t\t<context>");
-					out.println("\t\t\t" + context);
-					out.println("\t\t</context>");
-				}
-				out.println("\t</interpretation>");
-			}
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
+		LogRecord record = new LogRecord("interpretations", 1);
+		for (QuestionInterpretation qi : qis) record.add(getElement(qi, true));
 		
-		return true;
+		return log(record);
 	}
 	
 	/**
@@ -306,22 +286,11 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			for (Predicate p : ps) {
-				out.println("\t<predicate>");
-				out.println("\t\t" + p.getAnnotated());
-				out.println("\t</predicate>");
-			}
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
+		LogRecord record = new LogRecord("predicates", 1);
+		for (Predicate p : ps)
+			record.add(new Element("predicate", p.getAnnotated(), true));
 		
-		return true;
+		return log(record);
 	}
 	
 	/**
@@ -334,22 +303,12 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			for (Query query : queries) {
-				out.println("\t<querystring>");
-				out.println("\t\t" + query.getQueryString());
-				out.println("\t</querystring>");
-			}
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
+		LogRecord record = new LogRecord("queryStrings", 1);
+		for (Query query : queries)
+			record.add(new Element("querystring", query.getQueryString(),
+								   true));
 		
-		return true;
+		return log(record);
 	}
 	
 	/**
@@ -362,54 +321,20 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			for (Result result : results) {
-				out.println("\t<result>");
-				
-				out.println("\t\t<answer>");
-				out.println("\t\t\t" + result.getAnswer());
-				out.println("\t\t</answer>");
-				
-				out.println("\t\t<score>");
-				out.println("\t\t\t" + result.getScore());
-				out.println("\t\t</score>");
-				
-				if (result.getDocID() != null) {
-					out.println("\t\t<docid>");
-					out.println("\t\t\t" + result.getDocID());
-					out.println("\t\t</docid>");
-				}
-				
-				QuestionInterpretation qi =
-					result.getQuery().getInterpretation();
-				if (qi != null) {
-					out.println("\t\t<interpretation>");
-					out.println("\t\t\t<property>");
-					out.println("\t\t\t\t" + qi.getProperty());
-					out.println("\t\t\t</property>");
-					out.println("\t\t\t<target>");
-					out.println("\t\t\t\t" + qi.getTarget());
-					out.println("\t\t\t</target>");
-					for (String context : qi.getContext()) {
-						out.println("\t\t\t<context>");
-						out.println("\t\t\t\t" + context);
-						out.println("\t\t\t</context>");
-					}
-					out.println("\t\t</interpretation>");
-				}
-				
-				out.println("\t</result>");
-			}
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
+		LogRecord record = new LogRecord("results", 1);
+		for (Result result : results) {
+			Element element = new Element("result", true)
+				.add(new Element("answer", result.getAnswer(), false))
+				.add(new Element("score", result.getScore(), false));
+			if (result.getDocID() != null)
+				element.add(new Element("docid", result.getDocID(), false));
+			QuestionInterpretation qi = result.getQuery().getInterpretation();
+			if (qi != null) element.add(getElement(qi, false));
+			
+			record.add(element);
 		}
 		
-		return true;
+		return log(record);
 	}
 	
 	/**
@@ -424,38 +349,19 @@ public class Logger {
 		// logging is disabled or log file is not specified
 		if (!enabled || logfile == null) return false;
 		
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			for (int i = 0; i < results.length; i++) {
-				out.println("\t<result>");
-				out.println("\t\t<answer>");
-				out.println("\t\t\t" + results[i].getAnswer());
-				out.println("\t\t</answer>");
-				out.println("\t\t<score>");
-				out.println("\t\t\t" + results[i].getScore());
-				out.println("\t\t</score>");
-				if (results[i].getDocID() != null) {
-					out.println("\t\t<docid>");
-					out.println("\t\t\t" + results[i].getDocID());
-					out.println("\t\t</docid>");
-				}
-				out.println("\t\t<correct>");
-				out.println(
-					(correct[i])
-					? "\t\t\ttrue"
-					: "\t\t\tfalse");
-				out.println("\t\t</correct>");
-				out.println("\t</result>");
-			}
+		LogRecord record = new LogRecord("resultsJudged", 1);
+		for (int i = 0; i < results.length; i++) {
+			Element element = new Element("result", true)
+				.add(new Element("answer", results[i].getAnswer(), false))
+				.add(new Element("score", results[i].getScore(), false));
+			if (results[i].getDocID() != null)
+				element.add(new Element("docid", results[i].getDocID(), false));
+			element.add(new Element("correct", correct[i], false));
 			
-			out.close();
-		} catch (IOException e) {
-			return false;
+			record.add(element);
 		}
 		
-		return true;
+		return log(record);
 	}
 	
 	/**
@@ -472,25 +378,11 @@ public class Logger {
 		DecimalFormat df = new DecimalFormat();
 		df.setMaximumFractionDigits(3);
 		df.setMinimumFractionDigits(3);
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("<scores>");
-			out.println("\t<precision>");
-			out.println("\t\t" + df.format(precision));
-			out.println("\t</precision>");
-			out.println("\t<mrr>");
-			out.println("\t\t" + df.format(mrr));
-			out.println("\t</mrr>");
-			out.println("</scores>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
 		
-		return true;
+		return log(new LogRecord("scores", 0)
+			.add(new Element("scores", false)
+				.add(new Element("precision", df.format(precision), false))
+				.add(new Element("mrr", df.format(mrr), false))));
 	}
 	
 	/**
@@ -506,20 +398,10 @@ public class Logger {
 		DecimalFormat df = new DecimalFormat();
 		df.setMaximumFractionDigits(3);
 		df.setMinimumFractionDigits(3);
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("<factoidscore abs_thresh=\"" + absThresh + "\">");
-			out.println("\t" + df.format(score));
-			out.println("</factoidscore>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
 		
-		return true;
+		return log(new LogRecord("factoidScore", 0)
+			.add(new Element("factoidscore", df.format(score), false)
+				.setAttribute("abs_thresh", absThresh)));
 	}
 	
 	/**
@@ -535,19 +417,9 @@ public class Logger {
 		DecimalFormat df = new DecimalFormat();
 		df.setMaximumFractionDigits(3);
 		df.setMinimumFractionDigits(3);
-		try {
-			PrintWriter out =
-				new PrintWriter(new FileOutputStream(logfile, true));
-			
-			out.println("<listscore rel_thresh=\"" + relThresh + "\">");
-			out.println("\t" + df.format(score));
-			out.println("</listscore>");
-			
-			out.close();
-		} catch (IOException e) {
-			return false;
-		}
 		
-		return true;
+		return log(new LogRecord("listScore", 0)
+			.add(new Element("listscore", df.format(score), false)
+				.setAttribute("rel_thresh", relThresh)));
 	}
 }
@@ -0,0 +1,119 @@
+package info.ephyra.nlp;
+
+import info.ephyra.util.HashDictionary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>A binary snapshot of the gazetteers used by the list-based NE taggers.</p>
+ *
+ * <p>Loading the gazetteers from the list files is dominated by tokenizing
+ * each entry. The snapshot stores the entries after tokenization, so they can
+ * be read back without any text processing. A snapshot is only used if it was
+ * written from list files with the same names, sizes and modification times,
+ * otherwise the lists are loaded from the files and the snapshot is
+ * rewritten.</p>
+ */
+public class GazetteerSnapshot {
+	private static final Logger log = Logger.getLogger(GazetteerSnapshot.class);
+	/** Identifies the snapshot format. */
+	private static final int MAGIC = 0x47415a31;
+
+	/**
+	 * Reads the gazetteers from a snapshot.
+	 *
+	 * @param snapshotFile snapshot of the gazetteers
+	 * @param listFiles the list files, in the order of the gazetteers
+	 * @return the gazetteers or <code>null</code>, if the snapshot is missing,
+	 *         out of date or cannot be read
+	 */
+	public static HashDictionary[] read(String snapshotFile, File[] listFiles) {
+		File file = new File(snapshotFile);
+		if (!file.exists()) return null;
+
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC ||
+					!in.readUTF().equals(getSignature(listFiles))) {
+					log.info("Gazetteers changed, rebuilding " + snapshotFile);
+					return null;
+				}
+
+				HashDictionary[] dictionaries =
+					new HashDictionary[listFiles.length];
+				for (int i = 0; i < dictionaries.length; i++)
+					dictionaries[i] = HashDictionary.read(in);
+				return dictionaries;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			log.warn("Could not read gazetteer snapshot " + snapshotFile + ": " +
+					 e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the gazetteers to a snapshot. The snapshot is written to a
+	 * temporary file first, so readers never see an incomplete snapshot.
+	 *
+	 * @param snapshotFile snapshot of the gazetteers
+	 * @param listFiles the list files, in the order of the gazetteers
+	 * @param dictionaries the gazetteers
+	 * @return <code>true</code>, iff the snapshot was written
+	 */
+	public static boolean write(String snapshotFile, File[] listFiles,
+			HashDictionary[] dictionaries) {
+		File file = new File(snapshotFile);
+		if (file.getParentFile() != null) file.getParentFile().mkdirs();
+		File tmp = new File(snapshotFile + ".tmp");
+
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmp), 1 << 16));
+			try {
+				out.writeInt(MAGIC);
+				out.writeUTF(getSignature(listFiles));
+				for (HashDictionary dictionary : dictionaries)
+					dictionary.write(out);
+			} finally {
+				out.close();
+			}
+
+			file.delete();
+			if (!tmp.renameTo(file))
+				throw new IOException("Could not rename " + tmp + " to " + file);
+			return true;
+		} catch (IOException e) {
+			log.warn("Could not write gazetteer snapshot " + snapshotFile + ": " +
+					 e);
+			tmp.delete();
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a signature from the names, sizes and modification times of the
+	 * list files.
+	 */
+	private static String getSignature(File[] listFiles) {
+		StringBuilder signature = new StringBuilder();
+		for (File listFile : listFiles)
+			signature.append(listFile.getName()).append(':')
+					 .append(listFile.length()).append(':')
+					 .append(listFile.lastModified()).append(';');
+		return signature.toString();
+	}
+}
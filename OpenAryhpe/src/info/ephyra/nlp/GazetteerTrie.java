@@ -0,0 +1,145 @@
+package info.ephyra.nlp;
+
+import info.ephyra.util.HashDictionary;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * <p>A token-level trie over the entries of several gazetteers. All
+ * gazetteers are applied to a token sequence in a single left-to-right pass,
+ * which yields the same markers as calling
+ * <code>RegExMatcher.markAllContained()</code> once per gazetteer: for each
+ * gazetteer the longest match is marked and the search continues after the
+ * end of the match.</p>
+ *
+ * <p>Entries of case-insensitive gazetteers are kept in a separate trie that
+ * is walked with the lower-cased tokens.</p>
+ */
+public class GazetteerTrie {
+	private static final int[] NO_LISTS = new int[0];
+
+	/** A node of the trie, representing a sequence of tokens. */
+	private static class Node {
+		/** Child nodes by the next token or <code>null</code>. */
+		private HashMap<String, Node> children;
+		/** Gazetteers that contain the token sequence. */
+		private int[] lists = NO_LISTS;
+	}
+
+	/** Entries of case-sensitive gazetteers. */
+	private Node caseSensitive = new Node();
+	/** Entries of case-insensitive gazetteers, in lower case. */
+	private Node caseInsensitive = new Node();
+	/** Number of gazetteers. */
+	private int numLists;
+
+	/**
+	 * Builds a trie over the entries of the given gazetteers. The gazetteers
+	 * are identified by their index in the array.
+	 *
+	 * @param dictionaries gazetteers
+	 */
+	public GazetteerTrie(HashDictionary[] dictionaries) {
+		numLists = dictionaries.length;
+
+		for (int list = 0; list < dictionaries.length; list++) {
+			Node root = dictionaries[list].isCaseInsensitive()
+				? caseInsensitive : caseSensitive;
+
+			// the entries are already tokenized and normalized
+			Iterator<String> entries = dictionaries[list].getIterator();
+			while (entries.hasNext()) {
+				Node node = root;
+				for (String token : entries.next().split(" ")) {
+					if (node.children == null)
+						node.children = new HashMap<String, Node>(4);
+					Node child = node.children.get(token);
+					if (child == null) {
+						child = new Node();
+						node.children.put(token, child);
+					}
+					node = child;
+				}
+				addList(node, list);
+			}
+		}
+	}
+
+	private static void addList(Node node, int list) {
+		for (int l : node.lists) if (l == list) return;
+		node.lists = Arrays.copyOf(node.lists, node.lists.length + 1);
+		node.lists[node.lists.length - 1] = list;
+	}
+
+	/**
+	 * Marks all parts of a token sequence that are contained in the
+	 * gazetteers.
+	 *
+	 * @param tokens the token sequence to be rooted through
+	 * @return for each gazetteer an array of marker Strings
+	 */
+	public String[][] markAllContained(String[] tokens) {
+		String[][] markers = new String[numLists][tokens.length];
+		for (String[] listMarkers : markers)
+			Arrays.fill(listMarkers, RegExMatcher.OTHER);
+		if (tokens.length == 0) return markers;
+
+		String[] lowerCase = null;
+		if (caseInsensitive.children != null) {
+			lowerCase = new String[tokens.length];
+			for (int i = 0; i < tokens.length; i++)
+				lowerCase[i] = tokens[i].toLowerCase();
+		}
+
+		// first token that may start a match, per gazetteer
+		int[] next = new int[numLists];
+		// end of the longest match starting at the current token or -1
+		int[] end = new int[numLists];
+		Arrays.fill(end, -1);
+		// gazetteers with a match starting at the current token
+		int[] matched = new int[numLists];
+
+		for (int start = 0; start < tokens.length; start++) {
+			int numMatched = walk(caseSensitive, tokens, start, next, end,
+								  matched, 0);
+			if (lowerCase != null)
+				numMatched = walk(caseInsensitive, lowerCase, start, next, end,
+								  matched, numMatched);
+
+			for (int m = 0; m < numMatched; m++) {
+				int list = matched[m];
+				markers[list][start] = RegExMatcher.START;
+				for (int i = start + 1; i <= end[list]; i++)
+					markers[list][i] = RegExMatcher.CONTINUE;
+				next[list] = end[list] + 1;
+				end[list] = -1;
+			}
+		}
+
+		return markers;
+	}
+
+	/**
+	 * Follows the tokens from the given position down the trie and records
+	 * the end of the longest match for each gazetteer.
+	 *
+	 * @return number of gazetteers with a match
+	 */
+	private static int walk(Node node, String[] tokens, int start, int[] next,
+							int[] end, int[] matched, int numMatched) {
+		for (int i = start; i < tokens.length && node.children != null; i++) {
+			node = node.children.get(tokens[i]);
+			if (node == null) break;
+
+			for (int list : node.lists) {
+				// skip gazetteers that are still within a previous match
+				if (next[list] > start) continue;
+				if (end[list] < 0) matched[numMatched++] = list;
+				end[list] = i;
+			}
+		}
+		return numMatched;
+	}
+}
@@ -2,6 +2,8 @@ package info.ephyra.nlp;
 
 import info.ephyra.io.MsgPrinter;
 import info.ephyra.util.FileUtils;
+import info.ephyra.util.HashDictionary;
+import info.ephyra.util.Properties;
 import info.ephyra.util.StringUtils;
 
 import java.io.BufferedReader;
@@ -64,6 +66,12 @@ public class NETagger {
 		"NEorganization",
 		};
 	
+	/**
+	 * IDs of the NE types recognized by the taggers, indexed by tagger ID.
+	 * Created on demand and dropped when taggers are loaded.
+	 */
+	private static volatile int[] neTypeIds;
+	
 	/**
 	 * Creates the OpenNLP name finders and sets the named entity types that are
 	 * recognized by the finders.
@@ -88,6 +96,8 @@ public class NETagger {
 		    }
 		} catch (IOException e) {
 			return false;
+		} finally {
+			neTypeIds = null;
 		}
 		
 		return true;
@@ -109,6 +119,9 @@ public class NETagger {
 	/** Edit distance threshold for fuzzy-lookups in dictionaries. */
 	private static int fuzzyListLookupThreshold = 0;
 	
+	/** Trie over the entries of all lists, applies them in a single pass. */
+	private static GazetteerTrie listTrie;
+	
 	static {
 		loadListTaggers("./res/nlp/netagger/lists/");
 	}
@@ -143,6 +156,58 @@ public class NETagger {
 		
 		lists = listsList.toArray(new String[listsList.size()]);
 		listNames = listNamesList.toArray(new String[listNamesList.size()]);
+		neTypeIds = null;
+		
+		// use the snapshot of the lists if it is up to date
+		String snapshotFile = getListSnapshot();
+		HashDictionary[] dictionaries = (snapshotFile != null)
+			? GazetteerSnapshot.read(snapshotFile, listFiles)
+			: null;
+		if (dictionaries != null) {
+			for (int i = 0; i < lists.length; i++)
+				RegExMatcher.putDictionary(lists[i], dictionaries[i]);
+		} else {
+			dictionaries = new HashDictionary[lists.length];
+			for (int i = 0; i < lists.length; i++)
+				dictionaries[i] = RegExMatcher.getDictionary(lists[i]);
+			if (snapshotFile != null)
+				GazetteerSnapshot.write(snapshotFile, listFiles, dictionaries);
+		}
+		listTrie = new GazetteerTrie(dictionaries);
+	}
+	
+	/**
+	 * Reads the location of the snapshot of the lists from the properties
+	 * file.
+	 * 
+	 * @return snapshot file or <code>null</code>, if no snapshot is used
+	 */
+	private static String getListSnapshot() {
+		try {
+			Properties properties =
+				Properties.loadFromClassName(NETagger.class.getName());
+			String snapshotFile = properties.getProperty("listSnapshot");
+			if (snapshotFile != null && snapshotFile.trim().length() > 0)
+				return snapshotFile.trim();
+		} catch (RuntimeException e) {}  // no properties file
+		return null;
+	}
+	
+	/**
+	 * Marks the entries of all lists in a token sequence. Exact lookups are
+	 * done in a single pass over the tokens, fuzzy lookups per list.
+	 * 
+	 * @param tokens the token sequence
+	 * @return for each list an array of marker Strings
+	 */
+	private static String[][] markListEntries(String[] tokens) {
+		if (fuzzyListLookupThreshold == 0)
+			return listTrie.markAllContained(tokens);
+		
+		String[][] listTags = new String[lists.length][];
+		for (int i = 0; i < lists.length; i++)
+			listTags[i] = RegExMatcher.markAllContained(tokens, RegExMatcher.getDictionary(lists[i]), fuzzyListLookupThreshold);
+		return listTags;
 	}
 	
 	// =====================
@@ -308,6 +373,7 @@ public class NETagger {
 		for (int i = 0; i < patternNames.length; i++) allPatternNames[i] = patternNames[i];
 		allPatternNames[patternNames.length] = "NEnumber";
 		for (int i = 0; i < quantityPatternNames.length; i++) allPatternNames[patternNames.length + i + 1] = quantityPatternNames[i];
+		neTypeIds = null;
 	}
 	
 	// =================
@@ -346,6 +412,24 @@ public class NETagger {
 		return null;
 	}
 	
+	/**
+	 * Returns the ID of the NE type that is recognized by the tagger with the
+	 * given ID, as assigned by <code>NeTypes</code>.
+	 * 
+	 * @param neId ID of a NE tagger
+	 * @return ID of the NE type
+	 */
+	public static int getNeTypeId(int neId) {
+		int[] typeIds = neTypeIds;
+		if (typeIds == null) {
+			typeIds = new int[getNumberOfTaggers()];
+			for (int i = 0; i < typeIds.length; i++)
+				typeIds[i] = NeTypes.getId(getNeType(i));
+			neTypeIds = typeIds;
+		}
+		return typeIds[neId];
+	}
+	
 	/**
 	 * Returns the IDs of the taggers for the given NE type (there may be more
 	 * than one).
@@ -598,9 +682,7 @@ public class NETagger {
 				regExTags[patterns.length + i + 1] = RegExMatcher.extractQuantities(tokens, numberMarkers, quantityUnitPatterns[i], quantityUnitPatternMaxTokens[i]);
 			
 			//	apply lists
-			String[][] listTags = new String[lists.length][];
-			for (int i = 0; i < lists.length; i++)
-				listTags[i] = RegExMatcher.markAllContained(tokens, RegExMatcher.getDictionary(lists[i]), fuzzyListLookupThreshold);
+			String[][] listTags = markListEntries(tokens);
 			
 			for (int i = 0; i < tokens.length; i++) {
 				//check for end tags
@@ -738,19 +820,43 @@ public class NETagger {
 	 * @param sentences array of tokenized sentences
 	 * @return NEs per sentence and NE type
 	 */
-	// TODO only works with OpenNLP taggers, lists and patterns so far
-	@SuppressWarnings("unchecked")
 	public static String[][][] extractNes(String[][] sentences) {
+		NeAnnotation[] annotations = annotateNes(sentences);
+		
 		String[][][] nes = new String[sentences.length][][];
+		for (int s = 0; s < sentences.length; s++)
+			nes[s] = annotations[s].getNes();
+		
+		return nes;
+	}
+	
+	/**
+	 * Extracts NEs from an array of tokenized sentences and returns them as
+	 * token spans, indexed by the IDs of the taggers.
+	 * 
+	 * @param sentences array of tokenized sentences
+	 * @return NE annotation per sentence
+	 */
+	// TODO only works with OpenNLP taggers, lists and patterns so far
+	@SuppressWarnings("unchecked")
+	public static NeAnnotation[] annotateNes(String[][] sentences) {
+		NeAnnotation[] annotations = new NeAnnotation[sentences.length];
+		int stanfordStart = getStanfordStart();
+		int neIdCount = stanfordStart + stanfordNames.length;
 		
 		// initialize prevTokenMaps
 		Map[] prevTokenMaps = new HashMap[finders.length];
 		for (int i = 0; i < finders.length; i++)
 			prevTokenMaps[i] = new HashMap();
 		
+		// apply stanford tagger to all sentences at once
+		StanfordNeTagger.NeSpan[][] stanfordSpans =
+			StanfordNeTagger.extractNeSpans(sentences);
+		
 		for (int s = 0; s < sentences.length; s++) {
 			String[] tokens = sentences[s];
-			nes[s] = new String[finders.length + allPatternNames.length + lists.length + stanfordNames.length][];
+			NeAnnotation annotation = new NeAnnotation(tokens, neIdCount);
+			annotations[s] = annotation;
 			
 			// find named entities
 			String[][] finderTags = new String[finders.length][];
@@ -763,28 +869,8 @@ public class NETagger {
 					prevTokenMaps[i].put(tokens[j], finderTags[i][j]);
 			
 			// extract named entities
-			for (int i = 0; i < finders.length; i++) {
-				ArrayList<String> neList = new ArrayList<String>();
-				
-				String ne = "";
-				for (int j = 0; j < tokens.length; j++) {
-					if ((finderTags[i][j].equals(NameFinderME.START) ||
-						finderTags[i][j].equals(NameFinderME.OTHER)) &&
-						ne.length() > 0) {
-						neList.add(ne.trim());
-						ne = "";
-					}
-					
-					if (finderTags[i][j].equals(NameFinderME.START))
-						ne = tokens[j];
-					
-					if (finderTags[i][j].equals(NameFinderME.CONTINUE))
-						ne += " " + tokens[j];
-				}
-		        if (ne.length() > 0) neList.add(ne);
-		        
-		        nes[s][i] = neList.toArray(new String[neList.size()]);
-			}
+			for (int i = 0; i < finders.length; i++)
+				addSpans(annotation, i, finderTags[i]);
 			
 			// apply regular expressions
 			String[][] regExTags = new String[allPatternNames.length][];
@@ -802,67 +888,47 @@ public class NETagger {
 			for (int i = 0; i < quantityUnitPatterns.length; i++)
 				regExTags[patterns.length + i + 1] = RegExMatcher.extractQuantities(tokens, numberMarkers, quantityUnitPatterns[i], quantityUnitPatternMaxTokens[i]);
 			
-			for (int i = 0; i < allPatternNames.length; i++) {
-				ArrayList<String> neList = new ArrayList<String>();
-				
-				String ne = "";
-				for (int j = 0; j < tokens.length; j++) {
-					if ((regExTags[i][j].equals(NameFinderME.START) ||
-							regExTags[i][j].equals(NameFinderME.OTHER)) &&
-						ne.length() > 0) {
-						neList.add(ne.trim());
-						ne = "";
-					}
-					
-					if (regExTags[i][j].equals(NameFinderME.START))
-						ne = tokens[j];
-					
-					if (regExTags[i][j].equals(NameFinderME.CONTINUE))
-						ne += " " + tokens[j];
-				}
-		        if (ne.length() > 0) neList.add(ne);
-		        
-		        nes[s][finders.length + i] = neList.toArray(new String[neList.size()]);
-			}
+			for (int i = 0; i < allPatternNames.length; i++)
+				addSpans(annotation, finders.length + i, regExTags[i]);
 			
 			// apply lists
-			String[][] listTags = new String[listNames.length][];
+			String[][] listTags = markListEntries(tokens);
+			
 			for (int i = 0; i < lists.length; i++)
-				listTags[i] = RegExMatcher.markAllContained(tokens, RegExMatcher.getDictionary(lists[i]), fuzzyListLookupThreshold);
+				addSpans(annotation, finders.length + allPatternNames.length + i, listTags[i]);
 			
-			for (int i = 0; i < lists.length; i++) {
-				ArrayList<String> neList = new ArrayList<String>();
-				
-				String ne = "";
-				for (int j = 0; j < tokens.length; j++) {
-					if ((listTags[i][j].equals(NameFinderME.START) ||
-							listTags[i][j].equals(NameFinderME.OTHER)) &&
-						ne.length() > 0) {
-						neList.add(ne.trim());
-						ne = "";
-					}
-					
-					if (listTags[i][j].equals(NameFinderME.START))
-						ne = tokens[j];
-					
-					if (listTags[i][j].equals(NameFinderME.CONTINUE))
-						ne += " " + tokens[j];
-				}
-		        if (ne.length() > 0) neList.add(ne);
-		        
-		        nes[s][finders.length + allPatternNames.length + i] = neList.toArray(new String[neList.size()]);
+			//	add NEs from stanford tagger
+			for (int i = 0; i < stanfordNames.length; i++)
+				for (StanfordNeTagger.NeSpan span : stanfordSpans[s])
+					if (span.getType().equals(stanfordNames[i]))
+						annotation.add(stanfordStart + i, span.getStart(), span.getEnd());
+		}
+		
+		return annotations;
+	}
+	
+	/**
+	 * Adds the NEs marked by a tagger to an annotation. A CONTINUE tag that
+	 * does not follow a START tag starts a new NE.
+	 * 
+	 * @param annotation NE annotation of the sentence
+	 * @param neId ID of the tagger
+	 * @param tags START, CONTINUE or OTHER tag for each token
+	 */
+	private static void addSpans(NeAnnotation annotation, int neId, String[] tags) {
+		int start = -1;
+		for (int j = 0; j < tags.length; j++) {
+			if ((tags[j].equals(NameFinderME.START) ||
+					tags[j].equals(NameFinderME.OTHER)) && start >= 0) {
+				annotation.add(neId, start, j);
+				start = -1;
 			}
 			
-			//	apply stanford tagger
-			HashMap <String, String[]> allStanfordNEs = StanfordNeTagger.extractNEs(StringUtils.concatWithSpaces(sentences[s]));
-			for (int i = 0; i < stanfordNames.length; i++) {
-				String[] stanfordNEs = allStanfordNEs.get(stanfordNames[i]);
-				if (stanfordNEs == null) stanfordNEs = new String[0];
-				nes[s][finders.length + allPatternNames.length + lists.length + i] = stanfordNEs;
-			}
+			if (tags[j].equals(NameFinderME.START) ||
+					(tags[j].equals(NameFinderME.CONTINUE) && start < 0))
+				start = j;
 		}
-		
-		return nes;
+		if (start >= 0) annotation.add(neId, start, tags.length);
 	}
 	
 	/**
@@ -948,12 +1014,10 @@ public class NETagger {
 					i -= listNames.length;
 					
 					//	apply stanford tagger
-					for (int s = 0; s < sentences.length; s++) {
-						HashMap <String, String[]> allStanfordNEs = StanfordNeTagger.extractNEs(StringUtils.concatWithSpaces(sentences[s]));
-						String[] stanfordNEs = allStanfordNEs.get(stanfordNames[i]);
-						if (stanfordNEs == null) stanfordNEs = new String[0];
-						nes[s] = stanfordNEs;
-					}
+					String[][] stanfordNEs =
+						StanfordNeTagger.extractNEs(sentences).get(stanfordNames[i]);
+					for (int s = 0; s < sentences.length; s++)
+						nes[s] = (stanfordNEs == null) ? new String[0] : stanfordNEs[s];
 				}
 			}
 		}
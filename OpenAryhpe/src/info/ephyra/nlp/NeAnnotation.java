@@ -0,0 +1,233 @@
+package info.ephyra.nlp;
+
+import java.util.HashMap;
+
+/**
+ * <p>The named entities in a tokenized sentence.</p>
+ *
+ * <p>NEs are stored column-wise as spans of tokens: the offsets of the first
+ * token and of the token after the last one, and the ID of the tagger that
+ * found the NE (see <code>NETagger.getNeType()</code>). Spans are ordered by
+ * tagger ID and, for each tagger, by position.</p>
+ *
+ * <p>The tagger IDs of an NE with a given text are looked up in constant time.
+ * The NEs as strings per tagger, as returned by
+ * <code>NETagger.extractNes()</code>, are derived from the spans.</p>
+ */
+public class NeAnnotation {
+	private static final int[] NO_IDS = new int[0];
+
+	/** Tokens of the sentence. */
+	private String[] tokens;
+	/** Number of NE taggers. */
+	private int neIdCount;
+
+	/** Number of spans. */
+	private int size;
+	/** Offset of the first token of each span. */
+	private int[] starts = new int[8];
+	/** Offset after the last token of each span. */
+	private int[] ends = new int[8];
+	/** ID of the tagger that found each span. */
+	private int[] neIds = new int[8];
+
+	/** First span of each tagger, followed by the number of spans. */
+	private int[] firstOfNeId;
+	/** Text of each span. */
+	private String[] texts;
+	/** NEs as strings per tagger. */
+	private String[][] nes;
+	/** Tagger IDs by NE text, in ascending order. */
+	private HashMap<String, int[]> neIdsByText;
+
+	/**
+	 * Creates an empty annotation.
+	 *
+	 * @param tokens tokens of the sentence
+	 * @param neIdCount number of NE taggers
+	 */
+	public NeAnnotation(String[] tokens, int neIdCount) {
+		this.tokens = tokens;
+		this.neIdCount = neIdCount;
+	}
+
+	/**
+	 * Adds a span. Spans must be added in the order of the tagger IDs.
+	 *
+	 * @param neId ID of the tagger that found the NE
+	 * @param start offset of the first token
+	 * @param end offset after the last token
+	 */
+	public void add(int neId, int start, int end) {
+		if (neId < 0 || neId >= neIdCount)
+			throw new IllegalArgumentException("Invalid tagger ID: " + neId);
+		if (size > 0 && neId < neIds[size - 1])
+			throw new IllegalArgumentException("Spans not ordered by tagger ID");
+		if (start < 0 || end > tokens.length || start >= end)
+			throw new IllegalArgumentException("Invalid span: " + start + "-" +
+					end);
+
+		if (size == starts.length) {
+			int capacity = 2 * size;
+			starts = grow(starts, capacity);
+			ends = grow(ends, capacity);
+			neIds = grow(neIds, capacity);
+		}
+		starts[size] = start;
+		ends[size] = end;
+		neIds[size] = neId;
+		size++;
+
+		// invalidate the indices
+		firstOfNeId = null;
+		texts = null;
+		nes = null;
+		neIdsByText = null;
+	}
+
+	private static int[] grow(int[] a, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(a, 0, grown, 0, a.length);
+		return grown;
+	}
+
+	public String[] getTokens() {
+		return tokens;
+	}
+
+	public int getNeIdCount() {
+		return neIdCount;
+	}
+
+	/**
+	 * Returns the number of spans.
+	 *
+	 * @return number of spans
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getStart(int span) {
+		return starts[span];
+	}
+
+	public int getEnd(int span) {
+		return ends[span];
+	}
+
+	public int getNeId(int span) {
+		return neIds[span];
+	}
+
+	/**
+	 * Returns the tokens of a span, separated by blanks.
+	 *
+	 * @param span index of the span
+	 * @return the NE
+	 */
+	public String getText(int span) {
+		if (texts == null) texts = new String[size];
+		if (texts[span] == null) {
+			StringBuilder text = new StringBuilder(tokens[starts[span]]);
+			for (int i = starts[span] + 1; i < ends[span]; i++)
+				text.append(' ').append(tokens[i]);
+			texts[span] = text.toString();
+		}
+		return texts[span];
+	}
+
+	/**
+	 * Returns the first span of a tagger.
+	 *
+	 * @param neId ID of a tagger
+	 * @return index of the first span
+	 */
+	public int getFirstSpan(int neId) {
+		indexNeIds();
+		return firstOfNeId[2 * neId];
+	}
+
+	/**
+	 * Returns the number of spans of a tagger.
+	 *
+	 * @param neId ID of a tagger
+	 * @return number of spans
+	 */
+	public int getSpanCount(int neId) {
+		indexNeIds();
+		return firstOfNeId[2 * neId + 1];
+	}
+
+	private void indexNeIds() {
+		if (firstOfNeId != null) return;
+		firstOfNeId = new int[2 * neIdCount];
+		for (int span = size - 1; span >= 0; span--) {
+			firstOfNeId[2 * neIds[span]] = span;
+			firstOfNeId[2 * neIds[span] + 1]++;
+		}
+	}
+
+	/**
+	 * Returns the IDs of the taggers that found an NE with the given text.
+	 *
+	 * @param text an NE
+	 * @return IDs of the taggers in ascending order, empty if the text is not
+	 *         an NE
+	 */
+	public int[] getNeIds(String text) {
+		int[] ids = getTextIndex().get(text);
+		return (ids != null) ? ids : NO_IDS;
+	}
+
+	/**
+	 * Returns the IDs of the taggers by NE text. The map must not be modified.
+	 *
+	 * @return IDs of the taggers in ascending order by NE text
+	 */
+	public HashMap<String, int[]> getTextIndex() {
+		if (neIdsByText == null) neIdsByText = indexNes(getNes());
+		return neIdsByText;
+	}
+
+	/**
+	 * Returns the NEs as strings per tagger.
+	 *
+	 * @return NEs per tagger, in the order they occur
+	 */
+	public String[][] getNes() {
+		if (nes == null) {
+			nes = new String[neIdCount][];
+			for (int neId = 0; neId < neIdCount; neId++) {
+				int first = getFirstSpan(neId);
+				nes[neId] = new String[getSpanCount(neId)];
+				for (int i = 0; i < nes[neId].length; i++)
+					nes[neId][i] = getText(first + i);
+			}
+		}
+		return nes;
+	}
+
+	/**
+	 * Indexes NEs as strings per tagger by their text.
+	 *
+	 * @param nes NEs per tagger
+	 * @return IDs of the taggers in ascending order by NE text
+	 */
+	public static HashMap<String, int[]> indexNes(String[][] nes) {
+		HashMap<String, int[]> index = new HashMap<String, int[]>();
+		for (int neId = 0; neId < nes.length; neId++)
+			for (String ne : nes[neId]) {
+				int[] ids = index.get(ne);
+				if (ids == null) {
+					index.put(ne, new int[] {neId});
+				} else if (ids[ids.length - 1] != neId) {
+					int[] more = new int[ids.length + 1];
+					System.arraycopy(ids, 0, more, 0, ids.length);
+					more[ids.length] = neId;
+					index.put(ne, more);
+				}
+			}
+		return index;
+	}
+}
@@ -0,0 +1,114 @@
+package info.ephyra.nlp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * <p>Assigns small integer IDs to NE types, e.g. "NEperson".</p>
+ *
+ * <p>IDs are consecutive and start from 0, so sets of NE types can be stored
+ * as bitsets of <code>long</code> words and tables of per-type data can be
+ * indexed by ID. An ID is assigned when a type is first seen and never
+ * changes.</p>
+ */
+public class NeTypes {
+	private static final long[] EMPTY = new long[0];
+
+	/** IDs by NE type. */
+	private static HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	/** NE types by ID. */
+	private static ArrayList<String> types = new ArrayList<String>();
+
+	/**
+	 * Returns the ID of an NE type, assigning the next ID if the type has not
+	 * been seen before.
+	 *
+	 * @param type NE type
+	 * @return ID of the type
+	 */
+	public static synchronized int getId(String type) {
+		Integer id = ids.get(type);
+		if (id == null) {
+			id = types.size();
+			ids.put(type, id);
+			types.add(type);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the NE type with the given ID.
+	 *
+	 * @param id ID of an NE type
+	 * @return NE type
+	 */
+	public static synchronized String getType(int id) {
+		return types.get(id);
+	}
+
+	/**
+	 * Returns the IDs of NE types.
+	 *
+	 * @param types NE types
+	 * @return IDs in the same order
+	 */
+	public static int[] getIds(String[] types) {
+		int[] ids = new int[types.length];
+		for (int i = 0; i < types.length; i++) ids[i] = getId(types[i]);
+		return ids;
+	}
+
+	/**
+	 * Creates a bitset of NE types.
+	 *
+	 * @param ids IDs of NE types
+	 * @return bitset with the bits of the types set
+	 */
+	public static long[] toBits(int[] ids) {
+		if (ids.length == 0) return EMPTY;
+		long[] bits = EMPTY;
+		for (int id : ids) bits = add(bits, id);
+		return bits;
+	}
+
+	/**
+	 * Creates a bitset of NE types.
+	 *
+	 * @param types NE types
+	 * @return bitset with the bits of the types set
+	 */
+	public static long[] toBits(String... types) {
+		return toBits(getIds(types));
+	}
+
+	/**
+	 * Adds an NE type to a bitset. The bitset is grown if necessary.
+	 *
+	 * @param bits bitset of NE types
+	 * @param id ID of an NE type
+	 * @return bitset with the bit of the type set, either <code>bits</code> or
+	 *         a larger copy
+	 */
+	public static long[] add(long[] bits, int id) {
+		int word = id >>> 6;
+		if (word >= bits.length) {
+			long[] grown = new long[word + 1];
+			System.arraycopy(bits, 0, grown, 0, bits.length);
+			bits = grown;
+		}
+		bits[word] |= 1L << id;
+		return bits;
+	}
+
+	/**
+	 * Checks if a bitset contains an NE type.
+	 *
+	 * @param bits bitset of NE types
+	 * @param id ID of an NE type
+	 * @return <code>true</code>, iff the bit of the type is set
+	 */
+	public static boolean contains(long[] bits, int id) {
+		int word = id >>> 6;
+		return word < bits.length && (bits[word] & (1L << id)) != 0;
+	}
+}
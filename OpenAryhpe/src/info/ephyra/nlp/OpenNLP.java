@@ -1,6 +1,6 @@
 package info.ephyra.nlp;
 
-import info.ephyra.util.RegexConverter;
+import info.ephyra.util.ResourcePool;
 import info.ephyra.util.StringUtils;
 
 import java.io.IOException;
@@ -23,6 +23,7 @@ import opennlp.tools.lang.english.TreebankParser;
 import opennlp.tools.parser.Parse;
 import opennlp.tools.parser.ParserME;
 import opennlp.tools.postag.POSDictionary;
+import opennlp.tools.util.Span;
 
 /**
  * <p>This class provides a common interface to the
@@ -59,8 +60,8 @@ public class OpenNLP {
 	private static SentenceDetector sentenceDetector;
 	/** Tokenizer from the OpenNLP project. */
 	private static Tokenizer tokenizer;
-	/** Part of speech tagger from the OpenNLP project. */
-	private static PosTagger tagger;
+	/** Part of speech taggers from the OpenNLP project. */
+	private static ResourcePool<PosTagger> taggers;
 	/** Chunker from the OpenNLP project. */
 	private static TreebankChunker chunker;
 	/** Full parser from the OpenNLP project. */
@@ -110,8 +111,13 @@ public class OpenNLP {
 	 */
 	public static boolean createPosTagger(String model, String tagdict) {
 		try {
-			// create POS tagger, use case sensitive tag dictionary
-			tagger = new PosTagger(model, new POSDictionary(tagdict, true));
+			// create POS taggers, use case sensitive tag dictionary
+			POSDictionary dict = new POSDictionary(tagdict, true);
+			int poolSize = ResourcePool.getPoolSize(OpenNLP.class.getName());
+			ResourcePool<PosTagger> pool = new ResourcePool<PosTagger>();
+			for (int i = 0; i < poolSize; i++)
+				pool.add(new PosTagger(model, dict));
+			taggers = pool;
 		} catch (IOException e) {
 			return false;
 		}
@@ -177,9 +183,10 @@ public class OpenNLP {
 	 * 		   sentence detector is not initialized
 	 */
 	public static String[] sentDetect(String text) {
-		return (sentenceDetector != null)
-			? sentenceDetector.sentDetect(text)
-			: null;
+		if (sentenceDetector == null) return null;
+		synchronized (sentenceDetector) {
+			return sentenceDetector.sentDetect(text);
+		}
 	}
 	
 	/**
@@ -190,7 +197,46 @@ public class OpenNLP {
 	 * 		   initialized
 	 */
 	public static String[] tokenize(String text) {
-		return (tokenizer != null) ? tokenizer.tokenize(text) : null;
+		if (tokenizer == null) return null;
+		synchronized (tokenizer) {
+			return tokenizer.tokenize(text);
+		}
+	}
+	
+	/**
+	 * A model-based tokenizer that returns the character offsets of the tokens
+	 * in the text.
+	 * 
+	 * @param text text to tokenize
+	 * @return spans of the tokens or <code>null</code>, if the tokenizer is not
+	 * 		   initialized
+	 */
+	public static Span[] tokenizePos(String text) {
+		if (tokenizer == null) return null;
+		synchronized (tokenizer) {
+			return tokenizer.tokenizePos(text);
+		}
+	}
+	
+	/**
+	 * Determines the character offsets of tokens that were extracted from a
+	 * text. The tokens must occur in the text in the given order.
+	 * 
+	 * @param tokens tokens of the text
+	 * @param text the text
+	 * @return spans of the tokens or <code>null</code>, if a token does not
+	 * 		   occur in the text
+	 */
+	public static Span[] getSpans(String[] tokens, String text) {
+		Span[] spans = new Span[tokens.length];
+		int end = 0;
+		for (int i = 0; i < tokens.length; i++) {
+			int start = text.indexOf(tokens[i], end);
+			if (start < 0) return null;
+			end = start + tokens[i].length();
+			spans[i] = new Span(start, end);
+		}
+		return spans;
 	}
 	
 	/**
@@ -225,12 +271,34 @@ public class OpenNLP {
 		return text;
 	}
 	
+	/**
+	 * <p>Untokenizes a range of tokens by returning the part of the original
+	 * text they were extracted from.</p>
+	 * 
+	 * @param original the original text
+	 * @param spans spans of the tokens in the original text
+	 * @param from index of the first token
+	 * @param to index after the last token
+	 * @return subsequence of the original text
+	 */
+	public static String untokenize(String original, Span[] spans, int from,
+			int to) {
+		return original.substring(spans[from].getStart(),
+								  spans[to - 1].getEnd());
+	}
+	
 	/**
 	 * <p>Untokenizes a text by mapping it to a string that contains the
 	 * original text as a subsequence.</p>
 	 * 
+	 * <p>The blanks in the text match any number of whitespace characters. The
+	 * first match is returned, preferring matches that do not start or end
+	 * within a word.</p>
+	 * 
 	 * <p>Note that it is not guaranteed that this method exactly reverts the
-	 * effect of <code>tokenize()</code>.</p>
+	 * effect of <code>tokenize()</code>. If the offsets of the tokens are
+	 * known, <code>untokenize(String, Span[], int, int)</code> should be used
+	 * instead.</p>
 	 * 
 	 * @param text text to untokenize
 	 * @param original string that contains the original text as a subsequence
@@ -239,21 +307,80 @@ public class OpenNLP {
 	 */
 	public static String untokenize(String text, String original) {
 		// try with boundary matchers
-		String regex = RegexConverter.strToRegexWithBounds(text);
-		regex = regex.replace(" ", "\\s*+");
-		Matcher m = Pattern.compile(regex).matcher(original);
-		if (m.find()) return m.group(0);
+		String match = find(text, original, true);
+		if (match != null) return match;
 		
 		// try without boundary matchers
-		regex = RegexConverter.strToRegex(text);
-		regex = regex.replace(" ", "\\s*+");
-		m = Pattern.compile(regex).matcher(original);
-		if (m.find()) return m.group(0);
+		match = find(text, original, false);
+		if (match != null) return match;
 		
 		// untokenization failed
 		return text;
 	}
 	
+	/**
+	 * Finds the first occurrence of a text in the original string, allowing
+	 * any number of whitespace characters where the text has a blank.
+	 * 
+	 * @param text text to look for
+	 * @param original string to search
+	 * @param bounds if <code>true</code>, a text that starts or ends with a
+	 * 				 word character must start or end at a word boundary
+	 * @return subsequence of the original string or <code>null</code>
+	 */
+	private static String find(String text, String original, boolean bounds) {
+		boolean startBound = bounds && text.length() > 0 &&
+			isWordChar(text.charAt(0));
+		boolean endBound = bounds && text.length() > 0 &&
+			isWordChar(text.charAt(text.length() - 1));
+		
+		for (int start = 0; start <= original.length(); start++) {
+			if (startBound && !isBoundary(original, start)) continue;
+			
+			int end = start;
+			for (int i = 0; i < text.length() && end >= 0; i++) {
+				char c = text.charAt(i);
+				if (c == ' ') {
+					while (end < original.length() &&
+						   isWhitespace(original.charAt(end))) end++;
+				} else if (end < original.length() &&
+						   original.charAt(end) == c) {
+					end++;
+				} else {
+					end = -1;
+				}
+			}
+			
+			if (end < 0 || (endBound && !isBoundary(original, end))) continue;
+			return original.substring(start, end);
+		}
+		
+		return null;
+	}
+	
+	private static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ||
+			   (c >= '0' && c <= '9') || c == '_';
+	}
+	
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' ||
+			   c == '\f' || c == '\r';
+	}
+	
+	/**
+	 * Checks for a word boundary as defined for regular expressions.
+	 */
+	private static boolean isBoundary(String s, int i) {
+		boolean left = i > 0 && isLetterOrDigit(s.charAt(i - 1));
+		boolean right = i < s.length() && isLetterOrDigit(s.charAt(i));
+		return left != right;
+	}
+	
+	private static boolean isLetterOrDigit(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+	
 	/**
 	 * Assigns POS tags to a sentence of space-delimited tokens.
 	 * 
@@ -262,7 +389,13 @@ public class OpenNLP {
 	 * 		   initialized
 	 */
 	public static String tagPos(String sentence) {
-		return (tagger != null) ? tagger.tag(sentence) : null;
+		if (taggers == null) return null;
+		PosTagger tagger = taggers.acquire();
+		try {
+			return tagger.tag(sentence);
+		} finally {
+			taggers.release(tagger);
+		}
 	}
 	
 	/**
@@ -273,7 +406,13 @@ public class OpenNLP {
 	 * 		   initialized
 	 */
 	public static String[] tagPos(String[] sentence) {
-		return (tagger != null) ? tagger.tag(sentence) : null;
+		if (taggers == null) return null;
+		PosTagger tagger = taggers.acquire();
+		try {
+			return tagger.tag(sentence);
+		} finally {
+			taggers.release(tagger);
+		}
 	}
 	
 	/**
@@ -285,7 +424,10 @@ public class OpenNLP {
 	 * 		   initialized
 	 */
 	public static String[] tagChunks(String[] tokens, String[] pos) {
-		return (chunker != null) ? chunker.chunk(tokens, pos) : null;
+		if (chunker == null) return null;
+		synchronized (chunker) {
+			return chunker.chunk(tokens, pos);
+		}
 	}
 	
 	/**
@@ -0,0 +1,408 @@
+package info.ephyra.nlp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import edu.stanford.nlp.ling.CategoryWordTag;
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.StringLabel;
+import edu.stanford.nlp.trees.LabeledScoredTreeLeaf;
+import edu.stanford.nlp.trees.LabeledScoredTreeNode;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * <p>A cache for parse trees, keyed by the token sequence of a sentence.</p>
+ *
+ * <p>The cache has two tiers: a fixed number of recently used trees are kept
+ * in memory, all trees are stored in a file. The trees are stored in a
+ * compact binary encoding and a new copy is created for each lookup, so
+ * callers may modify the trees they get.</p>
+ *
+ * <p>The file starts with a signature of the parser model. If the model
+ * changes, the cached trees are discarded. Each record is protected by a CRC32
+ * checksum of the key and the tree. When the file is opened, it is truncated
+ * at the first record that is incomplete or damaged. Trees that would make the
+ * file exceed its maximum size are only kept in memory.</p>
+ *
+ * <p>Only one process can write to the file. It holds a lock on a file next to
+ * it, and if the lock is held by another process, the file is opened
+ * read-only: it provides the trees that existed when it was opened and new
+ * trees are only kept in memory.</p>
+ */
+public class ParseCache {
+	private static final Logger log = Logger.getLogger(ParseCache.class);
+	/** Identifies the file format. */
+	private static final int MAGIC = 0x50415254;
+	/** Suffix of the name of the lock file. */
+	private static final String LOCK = ".lock";
+
+	/** Signature of the parser model. */
+	private String signature;
+	/** Recently used trees, the least recently used tree is dropped first. */
+	private LinkedHashMap<String, byte[]> memory;
+	/** File that stores all trees or <code>null</code>. */
+	private RandomAccessFile file;
+	/** Lock held while the file is open, <code>null</code> if read-only. */
+	private FileLock lock;
+	/** Maximum size of the file in bytes, 0 for no limit. */
+	private long maxFileSize;
+	/** Length of the file that is known to contain valid records. */
+	private long fileLength;
+	/** Whether a tree did not fit into the file. */
+	private boolean full = false;
+	/** Positions of the trees in the file. */
+	private HashMap<String, Long> index = new HashMap<String, Long>();
+
+	/** Number of trees found in memory. */
+	private long memoryHits = 0;
+	/** Number of trees read from the file. */
+	private long diskHits = 0;
+	/** Number of sentences that had to be parsed. */
+	private long misses = 0;
+
+	/**
+	 * Creates a cache for trees produced with the given model.
+	 *
+	 * @param modelFile parser model
+	 * @param size number of trees kept in memory
+	 * @param path file that stores the trees or <code>null</code>
+	 * @param maxFileSize maximum size of the file in bytes, 0 for no limit
+	 */
+	public ParseCache(String modelFile, final int size, String path,
+			long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+		File model = new File(modelFile);
+		signature = modelFile + ":" + model.length() + ":" + model.lastModified();
+		memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+				return size() > size;
+			}
+		};
+
+		if (path != null) {
+			try {
+				open(new File(path));
+			} catch (IOException e) {
+				log.warn("Could not open parse cache " + path + ": " + e);
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Opens the file and reads the positions of the trees. If no other process
+	 * writes to the file, it is cleared if it was written for a different
+	 * model and truncated after the last valid record.
+	 *
+	 * @param f cache file
+	 */
+	private void open(File f) throws IOException {
+		if (f.getParentFile() != null) f.getParentFile().mkdirs();
+
+		// the lock is released when the process exits
+		FileChannel lockChannel =
+			new RandomAccessFile(new File(f.getPath() + LOCK), "rw").getChannel();
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// held by another cache in this process
+		}
+		if (lock == null) {
+			lockChannel.close();
+			log.info("Parse cache " + f + " is in use by another process, " +
+					"opening it read-only.");
+			if (!f.exists()) return;
+			file = new RandomAccessFile(f, "r");
+		} else {
+			file = new RandomAccessFile(f, "rw");
+		}
+
+		boolean valid = false;
+		try {
+			valid = file.length() > 0 && file.readInt() == MAGIC &&
+					file.readUTF().equals(signature);
+		} catch (EOFException e) {}
+		if (!valid) {
+			if (isReadOnly()) {
+				close();
+				return;
+			}
+			if (file.length() > 0) log.info("Parse cache is outdated, clearing " + f);
+			file.setLength(0);
+			file.writeInt(MAGIC);
+			file.writeUTF(signature);
+			fileLength = file.length();
+			return;
+		}
+
+		// records: key, length of the tree, checksum, tree
+		long pos = file.getFilePointer();
+		long length = file.length();
+		try {
+			while (pos < length) {
+				String key = file.readUTF();
+				int size = file.readInt();
+				int checksum = file.readInt();
+				long start = file.getFilePointer();
+				if (size < 0 || start + size > length) break;
+				byte[] bytes = new byte[size];
+				file.readFully(bytes);
+				if (getChecksum(key, bytes) != checksum) break;
+				index.put(key, start);
+				pos = file.getFilePointer();
+			}
+		} catch (EOFException e) {
+		} catch (UTFDataFormatException e) {}
+		// drop an incomplete or damaged record at the end, unless another
+		// process may still be writing it
+		if (!isReadOnly()) file.setLength(pos);
+		fileLength = pos;
+	}
+
+	/**
+	 * Checks if the file is read-only because another process writes to it.
+	 *
+	 * @return <code>true</code> iff new trees are not written to the file
+	 */
+	public synchronized boolean isReadOnly() {
+		return lock == null;
+	}
+
+	private static int getChecksum(String key, byte[] bytes) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(key.getBytes("UTF-8"));
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Creates the key for a tokenized sentence.
+	 *
+	 * @param words tokens
+	 * @return key
+	 */
+	public static String getKey(List<? extends HasWord> words) {
+		StringBuilder key = new StringBuilder();
+		for (HasWord word : words) {
+			if (key.length() > 0) key.append(' ');
+			key.append(word.word());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Looks up the parse tree for a sentence.
+	 *
+	 * @param key key of the sentence
+	 * @return a new copy of the tree or <code>null</code>, if it is not cached
+	 */
+	public synchronized Tree get(String key) {
+		byte[] bytes = memory.get(key);
+		if (bytes != null) {
+			memoryHits++;
+			return decode(bytes);
+		}
+
+		Long pos = index.get(key);
+		if (pos != null && file != null) {
+			try {
+				file.seek(pos - 8);
+				int size = file.readInt();
+				int checksum = file.readInt();
+				if (size >= 0 && pos + size <= file.length()) {
+					bytes = new byte[size];
+					file.readFully(bytes);
+				}
+				// the record may have been overwritten by the process that
+				// writes to the file
+				if (bytes != null && getChecksum(key, bytes) == checksum) {
+					memory.put(key, bytes);
+					diskHits++;
+					return decode(bytes);
+				}
+				index.remove(key);
+				bytes = null;
+			} catch (IOException e) {
+				log.warn("Could not read parse cache: " + e);
+			}
+		}
+
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Adds the parse tree of a sentence to the cache.
+	 *
+	 * @param key key of the sentence
+	 * @param tree parse tree
+	 */
+	public synchronized void put(String key, Tree tree) {
+		byte[] bytes;
+		try {
+			bytes = encode(tree);
+		} catch (IOException e) {
+			return;
+		}
+		memory.put(key, bytes);
+
+		if (file == null || isReadOnly() || index.containsKey(key)) return;
+		try {
+			ByteArrayOutputStream record = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(record);
+			out.writeUTF(key);
+			out.writeInt(bytes.length);
+			out.writeInt(getChecksum(key, bytes));
+			out.write(bytes);
+			if (maxFileSize > 0 && fileLength + record.size() > maxFileSize) {
+				if (!full)
+					log.info("Parse cache is full, keeping new trees in memory only.");
+				full = true;
+				return;
+			}
+			long pos = fileLength;
+			file.seek(pos);
+			file.write(record.toByteArray());
+			fileLength = pos + record.size();
+			index.put(key, fileLength - bytes.length);
+		} catch (UTFDataFormatException e) {
+			// sentence is too long for the file
+		} catch (IOException e) {
+			log.warn("Could not write parse cache: " + e);
+		}
+	}
+
+	/**
+	 * Closes the cache file and releases the lock.
+	 */
+	public synchronized void close() {
+		if (file != null)
+			try {
+				file.close();
+			} catch (IOException e) {}
+		file = null;
+		index.clear();
+		if (lock != null)
+			try {
+				lock.channel().close();
+			} catch (IOException e) {}
+		lock = null;
+	}
+
+	/**
+	 * Returns the hit counts in a human-readable form.
+	 *
+	 * @return cache statistics
+	 */
+	public synchronized String getStatistics() {
+		return "Parse cache hits: " + memoryHits + " (memory), " + diskHits +
+				" (disk). Sentences parsed: " + misses + ".";
+	}
+
+	/**
+	 * Encodes a tree as a table of the distinct labels followed by the nodes
+	 * in preorder, each given by its label and number of children.
+	 *
+	 * @param tree parse tree
+	 * @return encoded tree
+	 */
+	static byte[] encode(Tree tree) throws IOException {
+		HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		ArrayList<String> labels = new ArrayList<String>();
+		ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+		encodeNode(tree, ids, labels, nodes);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeVarInt(out, labels.size());
+		for (String label : labels) out.writeUTF(label);
+		nodes.writeTo(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void encodeNode(Tree node, HashMap<String, Integer> ids,
+			ArrayList<String> labels, ByteArrayOutputStream out) {
+		String label = node.value();
+		Integer id = ids.get(label);
+		if (id == null) {
+			id = labels.size();
+			ids.put(label, id);
+			labels.add(label);
+		}
+		writeVarInt(out, id);
+		Tree[] children = node.children();
+		writeVarInt(out, children.length);
+		for (Tree child : children) encodeNode(child, ids, labels, out);
+	}
+
+	/**
+	 * Decodes a tree. Inner nodes get <code>CategoryWordTag</code> labels and
+	 * leaves get <code>StringLabel</code> labels, like the trees returned by
+	 * the parser. The scores of the nodes are not stored.
+	 *
+	 * @param bytes encoded tree
+	 * @return parse tree
+	 */
+	static Tree decode(byte[] bytes) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			String[] labels = new String[readVarInt(in)];
+			for (int i = 0; i < labels.length; i++) labels[i] = in.readUTF();
+			return decodeNode(in, labels);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static Tree decodeNode(DataInputStream in, String[] labels)
+			throws IOException {
+		String label = labels[readVarInt(in)];
+		int n = readVarInt(in);
+		if (n == 0) return new LabeledScoredTreeLeaf(new StringLabel(label));
+		List<Tree> children = new ArrayList<Tree>(n);
+		for (int i = 0; i < n; i++) children.add(decodeNode(in, labels));
+		return new LabeledScoredTreeNode(new CategoryWordTag(label), children);
+	}
+
+	private static void writeVarInt(java.io.OutputStream out, int value) {
+		try {
+			while ((value & ~0x7f) != 0) {
+				out.write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		} catch (IOException e) {
+			// not thrown by byte array streams
+		}
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+	}
+}
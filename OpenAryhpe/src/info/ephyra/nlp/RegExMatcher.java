@@ -168,6 +168,14 @@ public class RegExMatcher {
 	//	register for lists already loaded
 	private static HashMap<String, HashDictionary> dictionariesByName = new HashMap<String, HashDictionary>(); 
 	
+	/**	register a list that was loaded elsewhere, e.g. from a snapshot
+	 * @param	name		the name of the list
+	 * @param	dictionary	the gazetteer
+	 */
+	static void putDictionary(String name, HashDictionary dictionary) {
+		dictionariesByName.put(name, dictionary);
+	}
+	
 	/**	mark all parts of a String that are contained in a list of Strings
 	 * @param	tokens		the token sequence to be rooted through
 	 * @param	dictionary	the gazetteer containing the Strings to be found
@@ -1444,4 +1452,4 @@ public class RegExMatcher {
 	public static final String PHONE_NUMBER = "(((\\1\\s\\-\\s[0-9]{3}+)|(\\(\\s[0-9]{3}+\\s\\))|([0-9]{3}+\\s\\-))\\s([0-9]{3}+\\s\\-\\s[0-9]{4}+))";
 	public static final int PHONE_NUMBER_MAX_TOKENS = 7;
 	public static final Pattern PHONE_NUMBER_PATTERN = compile(PHONE_NUMBER, false);
-}
\ No newline at end of file
+}
\ No newline at end of file
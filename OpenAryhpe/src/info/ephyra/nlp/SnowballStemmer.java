@@ -27,9 +27,11 @@ public class SnowballStemmer {
      * @return stemmed word
      */
 	public static String stem(String word) {
-		stemmer.setCurrent(word);
-		stemmer.stem();
-		return stemmer.getCurrent();
+		synchronized (stemmer) {
+			stemmer.setCurrent(word);
+			stemmer.stem();
+			return stemmer.getCurrent();
+		}
     }
 	
 	/**
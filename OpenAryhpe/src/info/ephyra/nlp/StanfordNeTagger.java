@@ -1,12 +1,21 @@
 package info.ephyra.nlp;
 
 import info.ephyra.io.MsgPrinter;
+import info.ephyra.util.ResourcePool;
+import info.ephyra.util.StringUtils;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import edu.stanford.nlp.ie.AbstractSequenceClassifier;
 import edu.stanford.nlp.ie.crf.CRFClassifier;
+import edu.stanford.nlp.ling.FeatureLabel;
+import edu.stanford.nlp.process.PTBTokenizer;
 
 /**
  * Wrapper for the Stanford named entity recognizer.
@@ -15,7 +24,51 @@ import edu.stanford.nlp.ie.crf.CRFClassifier;
  * @version 2008-02-10
  */
 public class StanfordNeTagger {
-	private static AbstractSequenceClassifier classifier;
+	/**
+	 * An NE in a tokenized sentence.
+	 */
+	public static class NeSpan {
+		/** NE type, e.g. "NEperson". */
+		private String type;
+		/** Index of the first token. */
+		private int start;
+		/** Index after the last token. */
+		private int end;
+		
+		public NeSpan(String type, int start, int end) {
+			this.type = type;
+			this.start = start;
+			this.end = end;
+		}
+		
+		public String getType() {
+			return type;
+		}
+		
+		public int getStart() {
+			return start;
+		}
+		
+		public int getEnd() {
+			return end;
+		}
+		
+		/**
+		 * Returns the tokens of the NE, separated by blanks.
+		 * 
+		 * @param tokens the tokens of the sentence
+		 * @return the NE
+		 */
+		public String getText(String[] tokens) {
+			StringBuilder ne = new StringBuilder(tokens[start]);
+			for (int i = start + 1; i < end; i++)
+				ne.append(' ').append(tokens[i]);
+			return ne.toString();
+		}
+	}
+	
+	/** Classifiers loaded from the same model; they are not thread-safe. */
+	private static ResourcePool<AbstractSequenceClassifier> classifiers;
 	private static String defaultSerializedClassifier =
 		"./res/nlp/netagger/stanford/ner-eng-ie.crf-3-all2006-distsim.ser.gz";
 	private static String serializedClassifier;
@@ -26,7 +79,7 @@ public class StanfordNeTagger {
 	 * @return <code>true</code> iff the StanfordNeTagger is initialized
 	 */
 	public static boolean isInitialized() {
-		return (classifier != null);
+		return (classifiers != null);
 	}
 	
 	/**
@@ -52,8 +105,13 @@ public class StanfordNeTagger {
 	 */
 	public static boolean init(String customSerializedClassifier) {
 		try {
-			classifier =
-				CRFClassifier.getClassifier(customSerializedClassifier);
+			int poolSize =
+				ResourcePool.getPoolSize(StanfordNeTagger.class.getName());
+			ResourcePool<AbstractSequenceClassifier> pool =
+				new ResourcePool<AbstractSequenceClassifier>();
+			for (int i = 0; i < poolSize; i++)
+				pool.add(CRFClassifier.getClassifier(customSerializedClassifier));
+			classifiers = pool;
 			serializedClassifier = customSerializedClassifier;
 			return true;
 		} catch (Exception e) {
@@ -90,6 +148,144 @@ public class StanfordNeTagger {
 		return results;
 	}
 	
+	/**
+	 * Extracts NEs from an array of tokenized sentences.
+	 * 
+	 * @param sentences array of tokenized sentences
+	 * @return NEs per sentence and NE type, using a HashMap since the types
+	 *         might change with the model
+	 */
+	public static HashMap<String, String[][]> extractNEs(String[][] sentences) {
+		HashMap<String, String[][]> results = new HashMap<String, String[][]>();
+		
+		NeSpan[][] spans = extractNeSpans(sentences);
+		for (int s = 0; s < sentences.length; s++) {
+			HashMap<String, ArrayList<String>> nesByType =
+				new HashMap<String, ArrayList<String>>();
+			for (NeSpan span : spans[s]) {
+				ArrayList<String> nes = nesByType.get(span.getType());
+				if (nes == null) {
+					nes = new ArrayList<String>();
+					nesByType.put(span.getType(), nes);
+				}
+				nes.add(span.getText(sentences[s]));
+			}
+			for (String type : nesByType.keySet()) {
+				String[][] nes = results.get(type);
+				if (nes == null) {
+					nes = new String[sentences.length][];
+					for (int i = 0; i < sentences.length; i++)
+						nes[i] = new String[0];
+					results.put(type, nes);
+				}
+				ArrayList<String> sentenceNEs = nesByType.get(type);
+				nes[s] = sentenceNEs.toArray(new String[sentenceNEs.size()]);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Extracts NEs from an array of tokenized sentences. All sentences are
+	 * tagged with the same classifier, but each sentence is a sequence of its
+	 * own. The classifier has no call that tags several sequences:
+	 * <code>testString()</code> also splits its input into sentences and tags
+	 * them one after the other. Tagging the batch as one sequence would not be
+	 * faster, since the cost is linear in its length, and the tags would
+	 * depend on the neighboring sentences.
+	 * 
+	 * @param sentences array of tokenized sentences
+	 * @return NEs per sentence, in the order they occur
+	 */
+	public static NeSpan[][] extractNeSpans(String[][] sentences) {
+		NeSpan[][] results = new NeSpan[sentences.length][];
+		if (!isInitialized()) {
+			for (int s = 0; s < sentences.length; s++)
+				results[s] = new NeSpan[0];
+			return results;
+		}
+		
+		AbstractSequenceClassifier classifier = classifiers.acquire();
+		try {
+			for (int s = 0; s < sentences.length; s++)
+				results[s] = extractNeSpans(classifier, sentences[s]);
+		} finally {
+			classifiers.release(classifier);
+		}
+		return results;
+	}
+	
+	/**
+	 * Extracts NEs from a tokenized sentence. The sentence is tokenized again
+	 * with the PTB tokenizer as in <code>testString()</code>, so that the
+	 * classifier sees the same words as for a sentence string, e.g. "-LRB-"
+	 * instead of "(". If the PTB tokenizer splits a token, e.g. "...Japan",
+	 * the token gets the tag of the first part that is not tagged as
+	 * background.
+	 * 
+	 * @param classifier classifier used to tag the sentence
+	 * @param tokens the tokens of the sentence
+	 * @return NEs in the order they occur
+	 */
+	private static NeSpan[] extractNeSpans(AbstractSequenceClassifier classifier,
+			String[] tokens) {
+		String sentence = StringUtils.concatWithSpaces(tokens);
+		if (sentence.length() <= 1 || sentence.matches("\\W*+"))
+			return new NeSpan[0];
+		
+		// PTB tokens and the tokens they start in
+		PTBTokenizer<FeatureLabel> tokenizer =
+			PTBTokenizer.newPTBTokenizer(new StringReader(sentence), false, true);
+		List<FeatureLabel> words = new ArrayList<FeatureLabel>(tokens.length);
+		ArrayList<Integer> owners = new ArrayList<Integer>(tokens.length);
+		int token = 0;
+		int tokenEnd = tokens[0].length();
+		while (tokenizer.hasNext()) {
+			FeatureLabel word = tokenizer.next();
+			while (word.beginPosition() >= tokenEnd) {
+				token++;
+				tokenEnd += 1 + tokens[token].length();
+			}
+			words.add(word);
+			owners.add(token);
+		}
+		List<FeatureLabel> labels;
+		try {
+			labels = classifier.testSentence(words);
+		} catch (Exception e) {
+			MsgPrinter.printErrorMsg("Stanford NE Recognizer failed to tag " +
+					"the following sentence:");
+			MsgPrinter.printErrorMsg(sentence);
+			MsgPrinter.printErrorMsg("Error message:");
+			MsgPrinter.printErrorMsg(e.toString());
+			return new NeSpan[0];
+		}
+		
+		String background = classifier.backgroundSymbol();
+		String[] tags = new String[tokens.length];
+		Arrays.fill(tags, background);
+		for (int i = labels.size() - 1; i >= 0; i--) {
+			String tag = labels.get(i).answer();
+			if (tag != null && !tag.equals(background))
+				tags[owners.get(i)] = tag;
+		}
+		
+		// merge consecutive tokens with the same tag
+		ArrayList<NeSpan> spans = new ArrayList<NeSpan>();
+		int start = 0;
+		String mark = background;
+		for (int i = 0; i <= tokens.length; i++) {
+			String tag = (i < tokens.length) ? tags[i] : background;
+			if (tag.equals(mark)) continue;
+			if (!mark.equals(background))
+				spans.add(new NeSpan("NE" + mark.toLowerCase(), start, i));
+			start = i;
+			mark = tag;
+		}
+		
+		return spans.toArray(new NeSpan[spans.size()]);
+	}
+	
 	/**
 	 * Extracts NEs from an individual sentence. Initializes the
 	 * StanfordNeTagger if not done before.
@@ -105,6 +301,7 @@ public class StanfordNeTagger {
 			return new HashMap<String, String[]>();
 		
 		String neString = "";
+		AbstractSequenceClassifier classifier = classifiers.acquire();
 		try {
 			neString = classifier.testString(sentence);
 		} catch (Exception e) {
@@ -113,6 +310,8 @@ public class StanfordNeTagger {
 			MsgPrinter.printErrorMsg(sentence);
 			MsgPrinter.printErrorMsg("Error message:");
 			MsgPrinter.printErrorMsg(e.toString());
+		} finally {
+			classifiers.release(classifier);
 		}
 		
 		String[] neTokens = neString.split("\\s");
@@ -157,4 +356,64 @@ public class StanfordNeTagger {
 		
 		return results;
 	}
+	
+	/**
+	 * Compares the throughput of tagging the sentences one at a time as
+	 * strings with tagging them in batches of tokenized sentences.
+	 * 
+	 * @param args input file with one sentence per line, optionally the
+	 *             number of sentences per batch and the path of the model
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("USAGE: StanfordNeTagger <inputSentencesFile> " +
+					"[<batchSize> [<serializedClassifier>]]");
+			System.exit(0);
+		}
+		int batchSize = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+		String model = (args.length > 2) ? args[2] : defaultSerializedClassifier;
+		
+		OpenNLP.createTokenizer("res/nlp/tokenizer/opennlp/EnglishTok.bin.gz");
+		if (!init(model)) {
+			System.out.println("Could not load " + model);
+			System.exit(1);
+		}
+		
+		ArrayList<String[]> sentences = new ArrayList<String[]>();
+		BufferedReader in = new BufferedReader(new FileReader(args[0]));
+		String sentence;
+		while ((sentence = in.readLine()) != null)
+			if (sentence.trim().length() > 0)
+				sentences.add(OpenNLP.tokenize(sentence));
+		in.close();
+		
+		// warm up both paths
+		String[][] all = sentences.toArray(new String[sentences.size()][]);
+		for (int s = 0; s < Math.min(all.length, batchSize); s++)
+			extractNEs(StringUtils.concatWithSpaces(all[s]));
+		extractNeSpans(Arrays.copyOf(all, Math.min(all.length, batchSize)));
+		
+		long start = System.currentTimeMillis();
+		int stringNes = 0;
+		for (String[] tokens : all)
+			for (String[] nes : extractNEs(StringUtils.concatWithSpaces(tokens)).values())
+				stringNes += nes.length;
+		long stringTime = Math.max(System.currentTimeMillis() - start, 1);
+		
+		start = System.currentTimeMillis();
+		int batchNes = 0;
+		for (int from = 0; from < all.length; from += batchSize) {
+			String[][] batch = Arrays.copyOfRange(all, from,
+					Math.min(from + batchSize, all.length));
+			for (NeSpan[] spans : extractNeSpans(batch))
+				batchNes += spans.length;
+		}
+		long batchTime = Math.max(System.currentTimeMillis() - start, 1);
+		
+		System.out.println(String.format("Sentences: %d", all.length));
+		System.out.println(String.format("Per sentence: %dms, %.1f sentences/sec, %d NEs",
+				stringTime, all.length * 1000.0 / stringTime, stringNes));
+		System.out.println(String.format("Batches of %d: %dms, %.1f sentences/sec, %d NEs",
+				batchSize, batchTime, all.length * 1000.0 / batchTime, batchNes));
+	}
 }
@@ -1,6 +1,7 @@
 package info.ephyra.nlp;
 
 import info.ephyra.util.Properties;
+import info.ephyra.util.ResourcePool;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -59,8 +60,11 @@ public class StanfordParser
     }
 
     protected static TreebankLanguagePack tlp = null;
-    protected static LexicalizedParser parser = null;
+    /** Parsers that share the grammar; the parsers are not thread-safe. */
+    protected static ResourcePool<LexicalizedParser> parsers = null;
     protected static GrammaticalStructureFactory gsf = null;
+    /** Cache for parse trees or <code>null</code>, if caching is disabled. */
+    protected static ParseCache cache = null;
     
     /**
      * Hide default ctor.
@@ -74,7 +78,7 @@ public class StanfordParser
      */
     public static void initialize() throws Exception
     {
-        if (parser != null) return;
+        if (parsers != null) return;
         Properties properties = Properties.loadFromClassName(StanfordParser.class.getName());
         tlp = new PennTreebankLanguagePack();
         gsf = tlp.grammaticalStructureFactory();
@@ -82,7 +86,20 @@ public class StanfordParser
         if (modelFile == null)
             throw new Exception("Required property '" 
                 + "modelFile' is undefined");
-        parser = new LexicalizedParser(modelFile);
+        LexicalizedParser parser = new LexicalizedParser(modelFile);
+        // additional parsers share the grammar of the first one
+        int poolSize = ResourcePool.getPoolSize(StanfordParser.class.getName());
+        ResourcePool<LexicalizedParser> pool = new ResourcePool<LexicalizedParser>();
+        pool.add(parser);
+        for (int i = 1; i < poolSize; i++)
+            pool.add(new LexicalizedParser(parser.parserData()));
+        parsers = pool;
+        
+        // trees are cached by token sequence, the file is cleared if the model changes
+        int cacheSize = Integer.parseInt(properties.getProperty("cacheSize", "0").trim());
+        if (cacheSize > 0)
+            cache = new ParseCache(modelFile, cacheSize, properties.getProperty("cacheFile"),
+                    Long.parseLong(properties.getProperty("cacheFileSize", "0").trim()));
     }
 
     /**
@@ -93,7 +110,53 @@ public class StanfordParser
     public static void destroy() throws Exception
     {
         tlp = null;
-        parser = null;
+        parsers = null;
+        if (cache != null) cache.close();
+        cache = null;
+    }
+    
+    /**
+     * Returns the best parse of a sentence, from the cache if possible.
+     * 
+     * @param sentence a sentence
+     * @return Tree
+     */
+    @SuppressWarnings("unchecked")
+    protected static Tree getBestParse(String sentence)
+    {
+        Tokenizer tokenizer = tlp.getTokenizerFactory().getTokenizer(new StringReader(sentence));
+        List<Word> words = tokenizer.tokenize();
+        log.debug("Tokenization: "+words);
+        
+        String key = null;
+        if (cache != null) {
+            key = ParseCache.getKey(words);
+            Tree tree = cache.get(key);
+            if (tree != null) return tree;
+        }
+        
+        log.debug("Parsing sentence");
+        Tree tree = null;
+        LexicalizedParser parser = parsers.acquire();
+        try {
+            parser.parse(new Sentence(words));
+            tree = parser.getBestParse();
+        } finally {
+            parsers.release(parser);
+        }
+        
+        if (cache != null && tree != null) cache.put(key, tree);
+        return tree;
+    }
+    
+    /**
+     * Returns the hit counts of the parse cache.
+     * 
+     * @return cache statistics or <code>null</code>, if caching is disabled
+     */
+    public static String getCacheStatistics()
+    {
+        return (cache != null) ? cache.getStatistics() : null;
     }
     
     /**
@@ -106,19 +169,11 @@ public class StanfordParser
 	@SuppressWarnings("unchecked")
     public static String parse(String sentence)
     {
-        if (tlp == null || parser == null)
+        if (tlp == null || parsers == null)
             throw new RuntimeException("Parser has not been initialized");
         
         // parse the sentence to produce stanford Tree
-        log.debug("Parsing sentence");
-        Tree tree = null;
-        synchronized (parser) {
-            Tokenizer tokenizer = tlp.getTokenizerFactory().getTokenizer(new StringReader(sentence));
-            List<Word> words = tokenizer.tokenize();
-            log.debug("Tokenization: "+words);
-            parser.parse(new Sentence(words));
-            tree = parser.getBestParse();
-        }
+        Tree tree = getBestParse(sentence);
         
         // label tree with character extents
         //log.debug("Setting character extents");
@@ -142,19 +197,11 @@ public class StanfordParser
 	@SuppressWarnings("unchecked")
     public static Tree parseTree(String sentence)
     {
-        if (tlp == null || parser == null)
+        if (tlp == null || parsers == null)
             throw new RuntimeException("Parser has not been initialized");
         
         // parse the sentence to produce stanford Tree
-        log.debug("Parsing sentence");
-        Tree tree = null;
-        synchronized (parser) {
-            Tokenizer tokenizer = tlp.getTokenizerFactory().getTokenizer(new StringReader(sentence));
-            List<Word> words = tokenizer.tokenize();
-            log.debug("Tokenization: "+words);
-            parser.parse(new Sentence(words));
-            tree = parser.getBestParse();
-        }
+        Tree tree = getBestParse(sentence);
         
         // label tree with character extents
         //log.debug("Setting character extents");
@@ -168,30 +215,66 @@ public class StanfordParser
         return tree;
     }
 	
-	// https://mailman.stanford.edu/pipermail/parser-user/2009-July/000246.html
-	// let's not be dead sure...
-	public static String getSubject(Tree parse) {
-		TypedDependency t;
-		String sub=null;
-		Collection<TypedDependency> tdl;
-		Iterator<TypedDependency> ite;
+	/**
+	 * Computes the collapsed typed dependencies of a parse tree.
+	 * 
+	 * @param parse a parse tree
+	 * @return typed dependencies or <code>null</code>, if the dependencies
+	 *         could not be computed
+	 */
+	public static Collection<TypedDependency> getTypedDependencies(Tree parse) {
 		GrammaticalStructure gs = gsf.newGrammaticalStructure(parse);
 		try {
-			tdl = gs.typedDependenciesCollapsed();
-			ite = tdl.iterator();
+			return gs.typedDependenciesCollapsed();
 		} catch (java.lang.NoSuchMethodError e) {
-			return sub;
+			return null;
 		}
+	}
+	
+	// https://mailman.stanford.edu/pipermail/parser-user/2009-July/000246.html
+	// let's not be dead sure...
+	public static String getSubject(Tree parse) {
+		return getSubject(getTypedDependencies(parse));
+	}
+	
+	/**
+	 * Looks up the subject among typed dependencies that have been computed
+	 * before.
+	 * 
+	 * @param tdl typed dependencies of a parse tree
+	 * @return the subject or <code>null</code>, if there is none
+	 */
+	public static String getSubject(Collection<TypedDependency> tdl) {
+		TypedDependency t = getSubjectDependency(tdl);
+		return (t != null) ? t.dep().value() : null;
+	}
+	
+	/**
+	 * Looks up the leaf index of the subject among typed dependencies that
+	 * have been computed before. This is the index given by
+	 * <code>TreeUtil.indexLeaves()</code> if the leaves of the parse tree were
+	 * indexed, otherwise the position of the subject, starting from 1.
+	 * 
+	 * @param tdl typed dependencies of a parse tree
+	 * @return index of the subject or -1, if there is none
+	 */
+	public static int getSubjectIndex(Collection<TypedDependency> tdl) {
+		TypedDependency t = getSubjectDependency(tdl);
+		return (t != null) ? t.dep().index() : -1;
+	}
+	
+	private static TypedDependency getSubjectDependency(Collection<TypedDependency> tdl) {
+		TypedDependency t;
+		if (tdl == null) return null;
+		Iterator<TypedDependency> ite = tdl.iterator();
 		while (ite.hasNext()) {
 			t = ite.next();
 			// two cases here: nsubjpass and nsubj.
 			if (t.reln().getShortName().contains("nsubj")) {
-				sub = t.dep().toString();
-				sub = sub.replaceAll("-\\d+$", "");
-				break;
+				return t;
 			};
 		}
-		return sub;
+		return null;
 	}
 	/**
 	 * Parses a sentence and returns the PCFG score as a confidence measure.
@@ -201,18 +284,21 @@ public class StanfordParser
 	 */
 	@SuppressWarnings("unchecked")
 	public static double getPCFGScore(String sentence) {
-        if (tlp == null || parser == null)
+        if (tlp == null || parsers == null)
             throw new RuntimeException("Parser has not been initialized");
         
         // parse the sentence to produce PCFG score
         log.debug("Parsing sentence");
         double score;
-        synchronized (parser) {
+        LexicalizedParser parser = parsers.acquire();
+        try {
             Tokenizer tokenizer = tlp.getTokenizerFactory().getTokenizer(new StringReader(sentence));
             List<Word> words = tokenizer.tokenize();
             log.debug("Tokenization: "+words);
             parser.parse(new Sentence(words));
             score = parser.getPCFGScore();
+        } finally {
+            parsers.release(parser);
         }
         
         return score;
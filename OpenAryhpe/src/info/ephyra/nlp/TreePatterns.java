@@ -0,0 +1,243 @@
+package info.ephyra.nlp;
+
+import info.ephyra.io.MsgPrinter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.tregex.TregexMatcher;
+import edu.stanford.nlp.trees.tregex.TregexPattern;
+import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
+import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
+
+/**
+ * <p>A registry of named Tregex patterns and Tsurgeon operations. All
+ * expressions are compiled when the registry is loaded, so syntax errors are
+ * reported at startup. The compiled Tregex patterns are shared by all threads.
+ * A compiled Tsurgeon operation keeps state while it is applied to a tree, so
+ * each thread gets its own instance, which is compiled on first use and then
+ * reused.</p>
+ *
+ * <p>The patterns are read from a file with one expression per line:</p>
+ *
+ * <pre>
+ * tregex   &lt;name&gt; &lt;Tregex pattern&gt;
+ * tsurgeon &lt;name&gt; &lt;Tsurgeon operation&gt;
+ * </pre>
+ *
+ * <p>The registry also keeps track of the time spent on compiling expressions
+ * and on matching them against trees, so that the two can be compared in
+ * profiles.</p>
+ */
+public class TreePatterns {
+	/** Compiled Tregex patterns by name. */
+	private static HashMap<String, TregexPattern> tregexPatterns =
+		new HashMap<String, TregexPattern>();
+	/** Tsurgeon operations by name. */
+	private static HashMap<String, String> tsurgeonOperations =
+		new HashMap<String, String>();
+	/** Compiled Tsurgeon operations of the current thread. */
+	private static ThreadLocal<HashMap<String, TsurgeonPattern>>
+		tsurgeonPatterns = new ThreadLocal<HashMap<String, TsurgeonPattern>>() {
+			protected HashMap<String, TsurgeonPattern> initialValue() {
+				return new HashMap<String, TsurgeonPattern>();
+			}
+		};
+
+	/** Number of expressions compiled. */
+	private static AtomicLong compileCount = new AtomicLong();
+	/** Time spent on compiling expressions in nanoseconds. */
+	private static AtomicLong compileTime = new AtomicLong();
+	/** Number of matches and Tsurgeon operations performed. */
+	private static AtomicLong matchCount = new AtomicLong();
+	/** Time spent on matching patterns in nanoseconds. */
+	private static AtomicLong matchTime = new AtomicLong();
+
+	/**
+	 * Loads and compiles the expressions in the given file. Existing
+	 * expressions with the same names are replaced.
+	 *
+	 * @param path path of the pattern file
+	 * @return true, iff all expressions were compiled successfully
+	 */
+	public static boolean loadPatterns(String path) {
+		HashMap<String, TregexPattern> tregex =
+			new HashMap<String, TregexPattern>(tregexPatterns);
+		HashMap<String, String> tsurgeon =
+			new HashMap<String, String>(tsurgeonOperations);
+
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new FileReader(new File(path)));
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;  // skip blank lines and comments
+
+				String[] cols = line.split("\\s+", 3);
+				if (cols.length < 3) {
+					MsgPrinter.printErrorMsg("Malformed pattern: " + line);
+					return false;
+				}
+				if (cols[0].equals("tregex")) {
+					TregexPattern pattern = compileTregex(cols[2]);
+					if (pattern == null) return false;
+					tregex.put(cols[1], pattern);
+				} else if (cols[0].equals("tsurgeon")) {
+					// only checks the syntax, each thread compiles its own
+					if (compileTsurgeon(cols[2]) == null) return false;
+					tsurgeon.put(cols[1], cols[2]);
+				} else {
+					MsgPrinter.printErrorMsg("Unknown pattern type: " + cols[0]);
+					return false;
+				}
+			}
+		} catch (IOException e) {
+			MsgPrinter.printErrorMsg("Could not read patterns from " + path +
+					": " + e.getMessage());
+			return false;
+		} finally {
+			if (in != null)
+				try {
+					in.close();
+				} catch (IOException e) {}
+		}
+
+		tregexPatterns = tregex;
+		tsurgeonOperations = tsurgeon;
+		return true;
+	}
+
+	/**
+	 * Compiles a Tregex pattern and adds the time to the compile counter.
+	 *
+	 * @param regex Tregex pattern
+	 * @return compiled pattern or <code>null</code>, if the pattern is invalid
+	 */
+	public static TregexPattern compileTregex(String regex) {
+		long start = System.nanoTime();
+		try {
+			return TregexPattern.compile(regex);
+		} catch (edu.stanford.nlp.trees.tregex.ParseException e) {
+			MsgPrinter.printErrorMsg("Error parsing regex pattern: " + regex);
+			return null;
+		} finally {
+			compileCount.incrementAndGet();
+			compileTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Compiles a Tsurgeon operation and adds the time to the compile counter.
+	 *
+	 * @param operation Tsurgeon operation
+	 * @return compiled operation or <code>null</code>, if the operation is
+	 *         invalid
+	 */
+	public static TsurgeonPattern compileTsurgeon(String operation) {
+		long start = System.nanoTime();
+		try {
+			return Tsurgeon.parseOperation(operation);
+		} catch (RuntimeException e) {
+			// the Tsurgeon parser reports syntax errors as unchecked exceptions
+			MsgPrinter.printErrorMsg("Error parsing Tsurgeon operation: " +
+					operation);
+			return null;
+		} finally {
+			compileCount.incrementAndGet();
+			compileTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Returns the Tregex pattern with the given name.
+	 *
+	 * @param name name of the pattern
+	 * @return compiled pattern
+	 * @throws IllegalArgumentException if there is no such pattern
+	 */
+	public static TregexPattern getTregex(String name) {
+		TregexPattern pattern = tregexPatterns.get(name);
+		if (pattern == null)
+			throw new IllegalArgumentException("Unknown Tregex pattern: " + name);
+		return pattern;
+	}
+
+	/**
+	 * Returns the Tsurgeon operation with the given name. The compiled
+	 * operation belongs to the current thread and must not be passed to other
+	 * threads.
+	 *
+	 * @param name name of the operation
+	 * @return compiled operation
+	 * @throws IllegalArgumentException if there is no such operation
+	 */
+	public static TsurgeonPattern getTsurgeon(String name) {
+		String operation = tsurgeonOperations.get(name);
+		if (operation == null)
+			throw new IllegalArgumentException("Unknown Tsurgeon operation: " + name);
+
+		// cached by the operation, so reloaded operations are compiled again
+		HashMap<String, TsurgeonPattern> patterns = tsurgeonPatterns.get();
+		TsurgeonPattern pattern = patterns.get(operation);
+		if (pattern == null) {
+			pattern = compileTsurgeon(operation);
+			patterns.put(operation, pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Finds the next match and adds the time to the match counter.
+	 *
+	 * @param matcher a Tregex matcher
+	 * @return true, iff there is another match
+	 */
+	public static boolean find(TregexMatcher matcher) {
+		long start = System.nanoTime();
+		try {
+			return matcher.find();
+		} finally {
+			matchCount.incrementAndGet();
+			matchTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Applies a Tsurgeon operation to all matches of a Tregex pattern and adds
+	 * the time to the match counter.
+	 *
+	 * @param tregex Tregex pattern
+	 * @param tsurgeon Tsurgeon operation
+	 * @param tree the tree to transform
+	 * @return transformed tree
+	 */
+	public static Tree process(TregexPattern tregex, TsurgeonPattern tsurgeon,
+			Tree tree) {
+		long start = System.nanoTime();
+		try {
+			return Tsurgeon.processPattern(tregex, tsurgeon, tree);
+		} finally {
+			matchCount.incrementAndGet();
+			matchTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Returns the compile and match counters in a human-readable form.
+	 *
+	 * @return compile and match statistics
+	 */
+	public static String getStatistics() {
+		return String.format("Tree patterns compiled: %d (%.1fms). " +
+				"Matches: %d (%.1fms).",
+				compileCount.get(), compileTime.get() / 1e6,
+				matchCount.get(), matchTime.get() / 1e6);
+	}
+}
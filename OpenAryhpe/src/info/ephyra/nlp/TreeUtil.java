@@ -1,108 +1,203 @@
 package info.ephyra.nlp;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 
-import edu.stanford.nlp.ling.LabeledWord;
+import edu.stanford.nlp.ling.AbstractMapLabel;
+import edu.stanford.nlp.ling.Label;
+import edu.stanford.nlp.ling.MapLabel;
 import edu.stanford.nlp.trees.Tree;
 
 public class TreeUtil {
 	
-    /** Index all the leaves in a tree and return the tree. This appends
-     * "dash-index", such as -1, -2, -3, ..., to the leaves
+    /** Index all the leaves in a tree and return the tree. The index, 1, 2,
+     * 3, ..., is stored in the MapLabel of each leaf, the word itself is not
+     * changed, so the words can still be matched by Tregex patterns. Indexing
+     * a tree again gives the same indices.
      * @param tree the Tree whose leaves need to be indexed
      * @return the tree whose leaves are indexed
      * @ref another way to do this: https://mailman.stanford.edu/pipermail/parser-user/2009-July/000247.html
      */
+    @SuppressWarnings("unchecked")
     public static Tree indexLeaves (Tree tree) {
     	if (tree == null) return null;
     	List<Tree> leavesList = tree.getLeaves();
     	int i=1;
-    	String lab;
     	for (Tree leaf:leavesList) {
-    		lab = leaf.label().value();
-    		lab = lab+"-"+i;
-    		leaf.label().setValue(lab);
+    		setIndex(leaf, i);
     		i++;
     	}
 
     	return tree;
     }
+    
+    /** Return the index of a leaf given by indexLeaves(), or -1 if the leaf
+     * is not indexed, e.g. a word inserted by a Tsurgeon operation.
+     */
+    public static int getIndex(Tree leaf) {
+    	Label label = leaf.label();
+    	if (label instanceof AbstractMapLabel)
+    		return ((AbstractMapLabel) label).index();
+    	return -1;
+    }
+    
+    private static void setIndex(Tree leaf, int index) {
+    	MapLabel label = new MapLabel(leaf.label());
+    	label.setIndex(index);
+    	leaf.setLabel(label);
+    }
+    
+    /** Return a deep copy of a tree, keeping the indices of the leaves.
+     * Tree.deeperCopy() creates all labels with the label factory of the root,
+     * which drops the indices.
+     */
+    @SuppressWarnings("unchecked")
+    public static Tree copy(Tree tree) {
+    	Tree copy = tree.deeperCopy();
+    	List<Tree> leaves = tree.getLeaves();
+    	List<Tree> copies = copy.getLeaves();
+    	for (int i = 0; i < leaves.size(); i++) {
+    		int index = getIndex(leaves.get(i));
+    		if (index >= 0) setIndex(copies.get(i), index);
+    	}
+    	return copy;
+    }
+    
+    /** Return the words of a tree, i.e. the leaves under preterminals as in
+     * Tree.labeledYield(), skipping empty elements tagged "-NONE-".
+     */
+    public static List<Tree> getWords(Tree tree) {
+    	List<Tree> words = new ArrayList<Tree>();
+    	addWords(tree, words);
+    	return words;
+    }
+    
+    private static void addWords(Tree tree, List<Tree> words) {
+    	Tree[] kids = tree.children();
+    	if (kids.length == 1 && kids[0].isLeaf()) {
+    		if (!tree.label().value().equals("-NONE-")) words.add(kids[0]);
+    	} else {
+    		for (Tree kid : kids) addWords(kid, words);
+    	}
+    }
+    
+    /** Return the indices of the words of a tree.
+     */
+    public static int[] getIndices(Tree tree) {
+    	List<Tree> words = getWords(tree);
+    	int[] indices = new int[words.size()];
+    	for (int i = 0; i < indices.length; i++)
+    		indices[i] = getIndex(words.get(i));
+    	return indices;
+    }
+    
+    /** Return the surface form of a word, with brackets recovered from their
+     * parser tokens "-LRB-" and "-RRB-".
+     */
+    public static String getSurface(String word) {
+    	if (word.indexOf("-LRB-") >= 0) word = word.replace("-LRB-", "(");
+    	if (word.indexOf("-RRB-") >= 0) word = word.replace("-RRB-", ")");
+    	return word;
+    }
     	
+	/** Views of the yield of a tree. */
+	private static final int TIGHT = 0, SPACED = 1, SURFACE = 2;
+	
+	/** Buffer for rendering yields, reused by each thread. */
+	private static final ThreadLocal<StringBuilder> buffers =
+		new ThreadLocal<StringBuilder>() {
+			protected StringBuilder initialValue() {
+				return new StringBuilder(256);
+			}
+		};
+	
 	/* Return the labels of a tree, without any spaces
 	 */
 	public static String getTightLabel(Tree tree) {
-		List<LabeledWord> labelList = tree.labeledYield();
-		
-		String label = "";
-		Iterator<LabeledWord> labelIter = labelList.iterator();
-		LabeledWord labeledWord;
-		while (labelIter.hasNext()) {
-			// this is a bit confusing, but don't blame me...
-			// labeled Word has a form of paper/NN, paper is the value() and NN is the tag()
-			labeledWord = labelIter.next();
-			if (labeledWord.tag().value().equals("-NONE-")) continue;
-			//label += labeledWord.value().replaceAll("-LRB-", "(").replaceAll("-RRB-", ")");
-			label += labeledWord.value();
-		}
-		
-		return label;
+		return render(tree, TIGHT);
 	}
 	
-	/* Return the labels of a tree, without any spaces, and removed the index of leaves
+	/** Same as getTightLabel(), the indices of the leaves are not part of the
+	 * labels.
+	 * @deprecated use getTightLabel()
 	 */
+	@Deprecated
 	public static String getTightLabelNoIndex(Tree tree) {
-		List<LabeledWord> labelList = tree.labeledYield();
-		
-		String label = "";
-		Iterator<LabeledWord> labelIter = labelList.iterator();
-		LabeledWord labeledWord;
-		while (labelIter.hasNext()) {
-			// this is a bit confusing, but don't blame me...
-			// labeled Word has a form of paper/NN, paper is the value() and NN is the tag()
-			labeledWord = labelIter.next();
-			if (labeledWord.tag().value().equals("-NONE-")) continue;
-			label += labeledWord.value().replaceFirst("-\\d+$", "");
-		}
-		
-		return label;
+		return getTightLabel(tree);
 	}
 	
-	/* Return the labels of a tree, joined with spaces
+	/* Return the surface string of a tree, the labels joined with spaces and
+	 * brackets recovered
 	 */
 	public static String getLabel(Tree tree) {
-		List<LabeledWord> labelList = tree.labeledYield();
+		return render(tree, SURFACE);
+	}
+	
+	/* Return the labels of a tree, joined with spaces
+	 */
+	public static String getLabelNoIndex(Tree tree) {
+		return render(tree, SPACED);
+	}
+	
+	/**
+	 * Caches the labels of the nodes of a tree. The tree must not be changed
+	 * while the cache is in use.
+	 */
+	public static class LabelCache {
+		private IdentityHashMap<Tree, String[]> labels =
+			new IdentityHashMap<Tree, String[]>();
 		
-		String label = "";
-		Iterator<LabeledWord> labelIter = labelList.iterator();
-		LabeledWord labeledWord;
-		while (labelIter.hasNext()) {
-			// this is a bit confusing, but don't blame me...
-			// labeled Word has a form of paper/NN, paper is the value() and NN is the tag()
-			labeledWord = labelIter.next();
-			if (labeledWord.tag().value().equals("-NONE-")) continue;
-			label += labeledWord.value().replaceAll("-LRB-", "(").replaceAll("-RRB-", ")")+" ";
-			//label += labeledWord.value()+" ";
+		public String getTightLabel(Tree tree) {
+			return get(tree, TIGHT);
+		}
+		
+		public String getLabel(Tree tree) {
+			return get(tree, SURFACE);
 		}
 		
-		return label.trim();
+		public String getLabelNoIndex(Tree tree) {
+			return get(tree, SPACED);
+		}
+		
+		private String get(Tree tree, int view) {
+			String[] views = labels.get(tree);
+			if (views == null) {
+				views = new String[3];
+				labels.put(tree, views);
+			}
+			if (views[view] == null) views[view] = render(tree, view);
+			return views[view];
+		}
 	}
-	/* Return the labels of a tree, joined with spaces, and removed the index of leaves
+	
+	/**
+	 * Renders the words of a tree, i.e. the leaves under preterminals as in
+	 * <code>Tree.labeledYield()</code>, skipping empty elements tagged
+	 * "-NONE-".
 	 */
-	public static String getLabelNoIndex(Tree tree) {
-		List<LabeledWord> labelList = tree.labeledYield();
+	private static String render(Tree tree, int view) {
+		StringBuilder label = buffers.get();
+		label.setLength(0);
+		appendYield(tree, view, label);
+		String s = label.toString();
+		if (label.capacity() > 1 << 16) buffers.remove();
 		
-		String label = "";
-		Iterator<LabeledWord> labelIter = labelList.iterator();
-		LabeledWord labeledWord;
-		while (labelIter.hasNext()) {
+		return (view == TIGHT) ? s : s.trim();
+	}
+	
+	private static void appendYield(Tree tree, int view, StringBuilder label) {
+		Tree[] kids = tree.children();
+		if (kids.length == 1 && kids[0].isLeaf()) {
 			// this is a bit confusing, but don't blame me...
-			// labeled Word has a form of paper/NN, paper is the value() and NN is the tag()
-			labeledWord = labelIter.next();
-			if (labeledWord.tag().value().equals("-NONE-")) continue;
-			label += labeledWord.value().replaceFirst("-\\d+$", "")+" ";
+			// the preterminal is the tag of the word, e.g. paper/NN
+			if (tree.label().value().equals("-NONE-")) return;
+			String word = kids[0].label().value();
+			
+			if (view != TIGHT && label.length() > 0) label.append(' ');
+			label.append((view == SURFACE) ? getSurface(word) : word);
+		} else {
+			for (Tree kid : kids) appendYield(kid, view, label);
 		}
-		
-		return label.trim();
 	}
 }
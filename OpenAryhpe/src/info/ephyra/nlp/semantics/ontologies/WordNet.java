@@ -1,25 +1,22 @@
 package info.ephyra.nlp.semantics.ontologies;
 
 import info.ephyra.questionanalysis.TermExpander;
+import info.ephyra.util.Properties;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
-import net.didion.jwnl.JWNL;
-import net.didion.jwnl.JWNLException;
-import net.didion.jwnl.data.IndexWord;
-import net.didion.jwnl.data.IndexWordSet;
+import javax.xml.parsers.DocumentBuilderFactory;
+
 import net.didion.jwnl.data.POS;
-import net.didion.jwnl.data.PointerUtils;
-import net.didion.jwnl.data.Synset;
-import net.didion.jwnl.data.Word;
-import net.didion.jwnl.data.list.PointerTargetNode;
-import net.didion.jwnl.data.list.PointerTargetNodeList;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 /**
  * <p>An interface to <a href="http://wordnet.princeton.edu/">WordNet</a>, a
@@ -27,10 +24,16 @@ import net.didion.jwnl.data.list.PointerTargetNodeList;
  * 
  * <p>This class implements the interface <code>Ontology</code>.</p>
  * 
+ * <p>The database files are loaded into a <code>WordNetIndex</code>, which is
+ * stored in a snapshot between runs, so lookups do not access the files.
+ * Lookups do not lock and can be made from several threads.</p>
+ * 
  * @author Nico Schlaefer
  * @version 2007-05-30
  */
 public class WordNet implements Ontology {
+	private static Logger log = Logger.getLogger(WordNet.class);
+	
 	/** Indicates that a word is an adjective. */
 	public static final POS ADJECTIVE = POS.ADJECTIVE;
 	/** Indicates that a word is an adverb. */
@@ -82,7 +85,7 @@ public class WordNet implements Ontology {
 //	private static final double PERTAINYM_WEIGHT = 0.5;
 	
 	/** WordNet dictionary. */
-	private static net.didion.jwnl.dictionary.Dictionary dict;
+	private static WordNetIndex dict;
 	
 	/**
 	 * Initializes the wrapper for the WordNet dictionary.
@@ -91,10 +94,18 @@ public class WordNet implements Ontology {
 	 */
 	public static boolean initialize(String properties) {
 		try {
-			File file = new File(properties);
-			JWNL.initialize(new FileInputStream(file));
+			String dictPath = getDictionaryPath(properties);
+			
+			// snapshot of the dictionary, rebuilt if the files change
+			String snapshotFile = null;
+			try {
+				snapshotFile = Properties.loadFromClassName(
+						WordNet.class.getName()).getProperty("snapshotFile");
+			} catch (RuntimeException e) {
+				log.warn("Could not read snapshotFile: " + e.getMessage());
+			}
 			
-			dict = net.didion.jwnl.dictionary.Dictionary.getInstance();
+			dict = WordNetIndex.load(dictPath, snapshotFile);
 		} catch (Exception e) {
 			return false;
 		}
@@ -102,6 +113,38 @@ public class WordNet implements Ontology {
 		return true;
 	}
 	
+	/**
+	 * Reads the directory of the database files from the JWNL property file.
+	 * 
+	 * @param properties property file
+	 * @return directory of the database files
+	 */
+	private static String getDictionaryPath(String properties)
+			throws Exception {
+		NodeList params = DocumentBuilderFactory.newInstance()
+			.newDocumentBuilder().parse(new File(properties))
+			.getElementsByTagName("param");
+		for (int i = 0; i < params.getLength(); i++) {
+			Element param = (Element) params.item(i);
+			if (param.getAttribute("name").equals("dictionary_path"))
+				return param.getAttribute("value");
+		}
+		throw new Exception("No dictionary path in " + properties);
+	}
+	
+	/**
+	 * Converts a part of speech to its constant in <code>WordNetIndex</code>.
+	 * 
+	 * @param pos part of speech
+	 * @return part of speech in <code>WordNetIndex</code>
+	 */
+	private static int getPos(POS pos) {
+		if (pos.equals(NOUN)) return WordNetIndex.NOUN;
+		if (pos.equals(VERB)) return WordNetIndex.VERB;
+		if (pos.equals(ADJECTIVE)) return WordNetIndex.ADJECTIVE;
+		return WordNetIndex.ADVERB;
+	}
+	
 	/**
 	 * Checks if the word exists in WordNet.
 	 * 
@@ -111,12 +154,9 @@ public class WordNet implements Ontology {
 	public static boolean isWord(String word) {
 		if (dict == null) return false;
 		
-		IndexWordSet indexWordSet = null;
-		try {
-			indexWordSet = dict.lookupAllIndexWords(word);
-		} catch (JWNLException e) {}
-		
-		return indexWordSet.size() > 0;
+		for (int pos = WordNetIndex.NOUN; pos <= WordNetIndex.ADVERB; pos++)
+			if (dict.lookupIndexWord(pos, word) >= 0) return true;
+		return false;
 	}
 	
 	/**
@@ -131,16 +171,13 @@ public class WordNet implements Ontology {
 		// do not look up words with special characters other than '.'
 		if (word.matches(".*?[^\\w\\s\\.].*+")) return false;
 		
-		IndexWordSet indexWordSet = null;
-		try {
-			indexWordSet = dict.lookupAllIndexWords(word);
-		} catch (JWNLException e) {}
-		
 		// ensure that the word, and not just a substring, was found in WordNet
 		int wordTokens = word.split("\\s", -1).length;
 		int wordDots = word.split("\\.", -1).length;
-		for (IndexWord indexWord : indexWordSet.getIndexWordArray()) {
-			String lemma = indexWord.getLemma();
+		for (int pos = WordNetIndex.NOUN; pos <= WordNetIndex.ADVERB; pos++) {
+			int indexWord = dict.lookupIndexWord(pos, word);
+			if (indexWord < 0) continue;
+			String lemma = dict.getLemma(pos, indexWord);
 			int lemmaTokens = lemma.split("\\s", -1).length;
 			int lemmaDots = lemma.split("\\.", -1).length;
 			if (wordTokens == lemmaTokens && wordDots == lemmaDots) return true;
@@ -157,12 +194,7 @@ public class WordNet implements Ontology {
 	public static boolean isAdjective(String word) {
 		if (dict == null) return false;
 		
-		IndexWord indexWord = null;
-		try {
-			indexWord = dict.lookupIndexWord(POS.ADJECTIVE, word);
-		} catch (JWNLException e) {}
-		
-		return (indexWord != null) ? true : false;
+		return dict.lookupIndexWord(WordNetIndex.ADJECTIVE, word) >= 0;
 	}
 	
 	/**
@@ -174,12 +206,7 @@ public class WordNet implements Ontology {
 	public static boolean isAdverb(String word) {
 		if (dict == null) return false;
 		
-		IndexWord indexWord = null;
-		try {
-			indexWord = dict.lookupIndexWord(POS.ADVERB, word);
-		} catch (JWNLException e) {}
-		
-		return (indexWord != null) ? true : false;
+		return dict.lookupIndexWord(WordNetIndex.ADVERB, word) >= 0;
 	}
 	
 	/**
@@ -191,12 +218,7 @@ public class WordNet implements Ontology {
 	public static boolean isNoun(String word) {
 		if (dict == null) return false;
 		
-		IndexWord indexWord = null;
-		try {
-			indexWord = dict.lookupIndexWord(POS.NOUN, word);
-		} catch (JWNLException e) {}
-		
-		return (indexWord != null) ? true : false;
+		return dict.lookupIndexWord(WordNetIndex.NOUN, word) >= 0;
 	}
 	
 	/**
@@ -211,16 +233,13 @@ public class WordNet implements Ontology {
 		// do not look up words with special characters other than '.'
 		if (word.matches(".*?[^\\w\\s\\.].*+")) return false;
 		
-		IndexWord indexWord = null;
-		try {
-			indexWord = dict.lookupIndexWord(POS.NOUN, word);
-		} catch (JWNLException e) {}
-		if (indexWord == null) return false;
+		int indexWord = dict.lookupIndexWord(WordNetIndex.NOUN, word);
+		if (indexWord < 0) return false;
 		
 		// ensure that the word, and not just a substring, was found in WordNet
 		int wordTokens = word.split("\\s", -1).length;
 		int wordDots = word.split("\\.", -1).length;
-		String lemma = indexWord.getLemma();
+		String lemma = dict.getLemma(WordNetIndex.NOUN, indexWord);
 		int lemmaTokens = lemma.split("\\s", -1).length;
 		int lemmaDots = lemma.split("\\.", -1).length;
 		return wordTokens == lemmaTokens && wordDots == lemmaDots;
@@ -235,12 +254,7 @@ public class WordNet implements Ontology {
 	public static boolean isVerb(String word) {
 		if (dict == null) return false;
 		
-		IndexWord indexWord = null;
-		try {
-			indexWord = dict.lookupIndexWord(POS.VERB, word);
-		} catch (JWNLException e) {}
-		
-		return (indexWord != null) ? true : false;
+		return dict.lookupIndexWord(WordNetIndex.VERB, word) >= 0;
 	}
 	
 	/**
@@ -253,14 +267,10 @@ public class WordNet implements Ontology {
 	public static String getLemma(String word, POS pos) {
 		if (dict == null) return null;
 		
-		IndexWord indexWord = null;
-		try {
-			indexWord = dict.lookupIndexWord(pos, word);
-		} catch (JWNLException e) {}
-		if (indexWord == null) return null;
+		int indexWord = dict.lookupIndexWord(getPos(pos), word);
+		if (indexWord < 0) return null;
 		
-		String lemma = indexWord.getLemma();
-		lemma = lemma.replace("_", " ");
+		String lemma = dict.getLemma(getPos(pos), indexWord);
 		
 		return lemma;
 	}
@@ -294,36 +304,15 @@ public class WordNet implements Ontology {
 	 * 
 	 * @param word a word
 	 * @param pos its part of speech
-	 * @return synset or <code>null</code> if lookup failed
+	 * @return synset or -1 if lookup failed
 	 */
-	private static Synset getCommonSynset(String word, POS pos) {
-		if (dict == null) return null;
+	private static int getCommonSynset(String word, POS pos) {
+		if (dict == null) return -1;
 		
-		Synset synset = null;
-		try {
-			IndexWord indexWord = dict.lookupIndexWord(pos, word);
-			if (indexWord == null) return null;
-			synset = indexWord.getSense(1);
-		} catch (JWNLException e) {}
+		int indexWord = dict.lookupIndexWord(getPos(pos), word);
+		if (indexWord < 0) return -1;
 		
-		return synset;
-	}
-	
-	/**
-	 * Looks up the synsets that correspond to the nodes in a node list.
-	 * 
-	 * @param nodes node list
-	 * @return synsets
-	 */
-	private static Synset[] getSynsets(PointerTargetNodeList nodes) {
-		Synset[] synsets = new Synset[nodes.size()];
-		
-		for (int i = 0; i < nodes.size(); i++) {
-			PointerTargetNode node  = (PointerTargetNode) nodes.get(i);
-			synsets[i] = node.getSynset();
-		}
-		
-		return synsets;
+		return dict.getSense(getPos(pos), indexWord, 1);
 	}
 	
 	/**
@@ -332,16 +321,8 @@ public class WordNet implements Ontology {
 	 * @param synset a synset
 	 * @return lemmas
 	 */
-	private static String[] getLemmas(Synset synset) {
-		Word[] words = synset.getWords();
-		String[] lemmas = new String[words.length];
-		
-		for (int i = 0; i < words.length; i++) {
-			lemmas[i] = words[i].getLemma();
-			lemmas[i] = lemmas[i].replace("_", " ");
-		}
-		
-		return lemmas;
+	private static String[] getLemmas(int synset) {
+		return dict.getWords(synset);
 	}
 	
 	/**
@@ -350,10 +331,10 @@ public class WordNet implements Ontology {
 	 * @param synsets the synsets
 	 * @return lemmas
 	 */
-	private static String[] getLemmas(Synset[] synsets) {
+	private static String[] getLemmas(int[] synsets) {
 		HashSet<String> lemmaSet = new HashSet<String>();
 		
-		for (Synset synset : synsets) {
+		for (int synset : synsets) {
 			String[] lemmas = getLemmas(synset);
 			for (String lemma : lemmas) lemmaSet.add(lemma);
 		}
@@ -372,8 +353,8 @@ public class WordNet implements Ontology {
 	 * @return synonyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getSynonyms(String word, POS pos) {
-		Synset synset = getCommonSynset(word, pos);
-		if (synset == null) return null;
+		int synset = getCommonSynset(word, pos);
+		if (synset < 0) return null;
 		
 		return getLemmas(synset);
 	}
@@ -387,24 +368,18 @@ public class WordNet implements Ontology {
 	 * @return hypernyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getHypernyms(String word, POS pos) {
-		Synset synset = getCommonSynset(word, pos);
-		if (synset == null) return null;
+		int synset = getCommonSynset(word, pos);
+		if (synset < 0) return null;
 		
-		Synset[] hypernyms = getHypernymSynsets(synset);
+		int[] hypernyms = getHypernymSynsets(synset);
 		if (hypernyms == null) return null;
 		
 		return getLemmas(hypernyms);
 	}
 	
 	// get 'hypernym' synsets
-	private static Synset[] getHypernymSynsets(Synset synset) {
-		PointerTargetNodeList hypernyms = null;
-		try {
-			hypernyms = PointerUtils.getInstance().getDirectHypernyms(synset);
-		} catch (JWNLException e) {}
-		if (hypernyms == null) return null;
-		
-		return getSynsets(hypernyms);
+	private static int[] getHypernymSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.HYPERNYM);
 	}
 	
 	/**
@@ -416,10 +391,10 @@ public class WordNet implements Ontology {
 	 * @return hyponyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getHyponyms(String word, POS pos) {
-		Synset synset = getCommonSynset(word, pos);
-		if (synset == null) return null;
+		int synset = getCommonSynset(word, pos);
+		if (synset < 0) return null;
 		
-		Synset[] hyponyms = getHyponymSynsets(synset);
+		int[] hyponyms = getHyponymSynsets(synset);
 		if (hyponyms == null) return null;
 		
 		return getLemmas(hyponyms);
@@ -433,13 +408,12 @@ public class WordNet implements Ontology {
 	 * @return hyponyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getHyponyms(POS pos, long offset) {
-		Synset synset = null;
-		try {
-			synset = dict.getSynsetAt(pos, offset);
-		} catch (JWNLException e) {}
-		if (synset == null) return null;
+		if (dict == null) return null;
+		
+		int synset = dict.getSynset(getPos(pos), offset);
+		if (synset < 0) return null;
 		
-		Synset[] hyponyms = getHyponymSynsets(synset);
+		int[] hyponyms = getHyponymSynsets(synset);
 		if (hyponyms == null) return null;
 		
 		return getLemmas(hyponyms);
@@ -456,14 +430,8 @@ public class WordNet implements Ontology {
 	}
 	
 	// get 'hyponym' synsets
-	private static Synset[] getHyponymSynsets(Synset synset) {
-		PointerTargetNodeList hyponyms = null;
-		try {
-			hyponyms = PointerUtils.getInstance().getDirectHyponyms(synset);
-		} catch (JWNLException e) {}
-		if (hyponyms == null) return null;
-		
-		return getSynsets(hyponyms);
+	private static int[] getHyponymSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.HYPONYM);
 	}
 	
 	// relations for verbs
@@ -476,24 +444,18 @@ public class WordNet implements Ontology {
 	 * @return entailing verbs or <code>null</code> if lookup failed
 	 */
 	public static String[] getEntailing(String verb) {
-		Synset synset = getCommonSynset(verb, VERB);
-		if (synset == null) return null;
+		int synset = getCommonSynset(verb, VERB);
+		if (synset < 0) return null;
 		
-		Synset[] entailing = getEntailingSynsets(synset);
+		int[] entailing = getEntailingSynsets(synset);
 		if (entailing == null) return null;
 		
 		return getLemmas(entailing);
 	}
 	
 	// get 'entailing' synsets
-	private static Synset[] getEntailingSynsets(Synset synset) {
-		PointerTargetNodeList entailing = null;
-		try {
-			entailing = PointerUtils.getInstance().getEntailments(synset);
-		} catch (JWNLException e) {}
-		if (entailing == null) return null;
-		
-		return getSynsets(entailing);
+	private static int[] getEntailingSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.ENTAILMENT);
 	}
 	
 	/**
@@ -504,24 +466,18 @@ public class WordNet implements Ontology {
 	 * @return causing verbs or <code>null</code> if lookup failed
 	 */
 	public static String[] getCausing(String verb) {
-		Synset synset = getCommonSynset(verb, VERB);
-		if (synset == null) return null;
+		int synset = getCommonSynset(verb, VERB);
+		if (synset < 0) return null;
 		
-		Synset[] causing = getCausingSynsets(synset);
+		int[] causing = getCausingSynsets(synset);
 		if (causing == null) return null;
 		
 		return getLemmas(causing);
 	}
 	
 	// get 'causing' synsets
-	private static Synset[] getCausingSynsets(Synset synset) {
-		PointerTargetNodeList causing = null;
-		try {
-			causing = PointerUtils.getInstance().getCauses(synset);
-		} catch (JWNLException e) {}
-		if (causing == null) return null;
-		
-		return getSynsets(causing);
+	private static int[] getCausingSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.CAUSE);
 	}
 	
 	// relations for nouns
@@ -534,24 +490,18 @@ public class WordNet implements Ontology {
 	 * @return member holonyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getMembersOf(String noun) {
-		Synset synset = getCommonSynset(noun, NOUN);
-		if (synset == null) return null;
+		int synset = getCommonSynset(noun, NOUN);
+		if (synset < 0) return null;
 		
-		Synset[] membersOf = getMemberOfSynsets(synset);
+		int[] membersOf = getMemberOfSynsets(synset);
 		if (membersOf == null) return null;
 		
 		return getLemmas(membersOf);
 	}
 	
 	// get 'member-of' synsets
-	private static Synset[] getMemberOfSynsets(Synset synset) {
-		PointerTargetNodeList membersOf = null;
-		try {
-			membersOf = PointerUtils.getInstance().getMemberHolonyms(synset);
-		} catch (JWNLException e) {}
-		if (membersOf == null) return null;
-		
-		return getSynsets(membersOf);
+	private static int[] getMemberOfSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.MEMBER_HOLONYM);
 	}
 	
 	/**
@@ -562,24 +512,18 @@ public class WordNet implements Ontology {
 	 * @return substance holonyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getSubstancesOf(String noun) {
-		Synset synset = getCommonSynset(noun, NOUN);
-		if (synset == null) return null;
+		int synset = getCommonSynset(noun, NOUN);
+		if (synset < 0) return null;
 		
-		Synset[] substancesOf = getSubstanceOfSynsets(synset);
+		int[] substancesOf = getSubstanceOfSynsets(synset);
 		if (substancesOf == null) return null;
 		
 		return getLemmas(substancesOf);
 	}
 	
 	// get 'substance-of' synsets
-	private static Synset[] getSubstanceOfSynsets(Synset synset) {
-		PointerTargetNodeList substancesOf = null;
-		try {
-			substancesOf = PointerUtils.getInstance().getSubstanceHolonyms(synset);
-		} catch (JWNLException e) {}
-		if (substancesOf == null) return null;
-		
-		return getSynsets(substancesOf);
+	private static int[] getSubstanceOfSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.SUBSTANCE_HOLONYM);
 	}
 	
 	/**
@@ -590,24 +534,18 @@ public class WordNet implements Ontology {
 	 * @return part holonyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getPartsOf(String noun) {
-		Synset synset = getCommonSynset(noun, NOUN);
-		if (synset == null) return null;
+		int synset = getCommonSynset(noun, NOUN);
+		if (synset < 0) return null;
 		
-		Synset[] partsOf = getPartOfSynsets(synset);
+		int[] partsOf = getPartOfSynsets(synset);
 		if (partsOf == null) return null;
 		
 		return getLemmas(partsOf);
 	}
 	
 	// get 'part-of' synsets
-	private static Synset[] getPartOfSynsets(Synset synset) {
-		PointerTargetNodeList partsOf = null;
-		try {
-			partsOf = PointerUtils.getInstance().getPartHolonyms(synset);
-		} catch (JWNLException e) {}
-		if (partsOf == null) return null;
-		
-		return getSynsets(partsOf);
+	private static int[] getPartOfSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.PART_HOLONYM);
 	}
 	
 	/**
@@ -618,24 +556,18 @@ public class WordNet implements Ontology {
 	 * @return member meronyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getHaveMember(String noun) {
-		Synset synset = getCommonSynset(noun, NOUN);
-		if (synset == null) return null;
+		int synset = getCommonSynset(noun, NOUN);
+		if (synset < 0) return null;
 		
-		Synset[] haveMember = getHasMemberSynsets(synset);
+		int[] haveMember = getHasMemberSynsets(synset);
 		if (haveMember == null) return null;
 		
 		return getLemmas(haveMember);
 	}
 	
 	// get 'has-member' synsets
-	private static Synset[] getHasMemberSynsets(Synset synset) {
-		PointerTargetNodeList haveMember = null;
-		try {
-			haveMember = PointerUtils.getInstance().getMemberMeronyms(synset);
-		} catch (JWNLException e) {}
-		if (haveMember == null) return null;
-		
-		return getSynsets(haveMember);
+	private static int[] getHasMemberSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.MEMBER_MERONYM);
 	}
 	
 	/**
@@ -646,24 +578,18 @@ public class WordNet implements Ontology {
 	 * @return substance meronyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getHaveSubstance(String noun) {
-		Synset synset = getCommonSynset(noun, NOUN);
-		if (synset == null) return null;
+		int synset = getCommonSynset(noun, NOUN);
+		if (synset < 0) return null;
 		
-		Synset[] haveSubstance = getHasSubstanceSynsets(synset);
+		int[] haveSubstance = getHasSubstanceSynsets(synset);
 		if (haveSubstance == null) return null;
 		
 		return getLemmas(haveSubstance);
 	}
 	
 	// get 'has-substance' synsets
-	private static Synset[] getHasSubstanceSynsets(Synset synset) {
-		PointerTargetNodeList haveSubstance = null;
-		try {
-			haveSubstance = PointerUtils.getInstance().getSubstanceMeronyms(synset);
-		} catch (JWNLException e) {}
-		if (haveSubstance == null) return null;
-		
-		return getSynsets(haveSubstance);
+	private static int[] getHasSubstanceSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.SUBSTANCE_MERONYM);
 	}
 	
 	/**
@@ -674,24 +600,18 @@ public class WordNet implements Ontology {
 	 * @return part meronyms or <code>null</code> if lookup failed
 	 */
 	public static String[] getHavePart(String noun) {
-		Synset synset = getCommonSynset(noun, NOUN);
-		if (synset == null) return null;
+		int synset = getCommonSynset(noun, NOUN);
+		if (synset < 0) return null;
 		
-		Synset[] havePart = getHasPartSynsets(synset);
+		int[] havePart = getHasPartSynsets(synset);
 		if (havePart == null) return null;
 		
 		return getLemmas(havePart);
 	}
 	
 	// get 'has-part' synsets
-	private static Synset[] getHasPartSynsets(Synset synset) {
-		PointerTargetNodeList havePart = null;
-		try {
-			havePart = PointerUtils.getInstance().getPartMeronyms(synset);
-		} catch (JWNLException e) {}
-		if (havePart == null) return null;
-		
-		return getSynsets(havePart);
+	private static int[] getHasPartSynsets(int synset) {
+		return dict.getTargets(synset, WordNetIndex.PART_MERONYM);
 	}
 	
 	// implement the interface 'Ontology'
@@ -719,29 +639,29 @@ public class WordNet implements Ontology {
 		if (!isVerb(event)) return new Hashtable<String, Double>();
 		
 		// synsets of related concepts
-		Map<Synset, Double> synsets = new Hashtable<Synset, Double>();
+		Map<Integer, Double> synsets = new Hashtable<Integer, Double>();
 		// synsets that have already been expanded
-		Map<Synset, Double> expanded = new Hashtable<Synset, Double>();
+		Map<Integer, Double> expanded = new Hashtable<Integer, Double>();
 		
 		// get most common synset
 		double hurdle = TermExpander.MIN_EXPANSION_WEIGHT;
 		if (SYNONYM_WEIGHT >= hurdle) {
-			Synset synset = getCommonSynset(event, VERB);
-			if (synset != null) synsets.put(synset, 1d);
+			int synset = getCommonSynset(event, VERB);
+			if (synset >= 0) synsets.put(synset, 1d);
 		}
 		
 		// expand synsets
 		int pathLength = 0;
 		while (pathLength++ < MAX_PATH_LENGTH && synsets.size() > 0) {
 			// get synsets and their weights
-			Synset[] currSynsets =
-				synsets.keySet().toArray(new Synset[synsets.size()]);
+			Integer[] currSynsets =
+				synsets.keySet().toArray(new Integer[synsets.size()]);
 			double[] currWeights = new double[synsets.size()];
 			for (int i = 0; i < synsets.size(); i++)
 				currWeights[i] = synsets.get(currSynsets[i]);
 			
 			for (int i = 0; i < currSynsets.length; i++) {
-				Synset synset = currSynsets[i];
+				int synset = currSynsets[i];
 				double weight = currWeights[i];
 				
 				// move to expanded synsets
@@ -755,8 +675,8 @@ public class WordNet implements Ontology {
 				// 'hypernym' relation
 				double hypernymWeight = weight * HYPERNYM_WEIGHT;
 				if (hypernymWeight >= hurdle) {
-					Synset[] hypernyms = getHypernymSynsets(synset);
-					for (Synset hypernym : hypernyms)
+					int[] hypernyms = getHypernymSynsets(synset);
+					for (int hypernym : hypernyms)
 						if (!synsets.containsKey(hypernym) ||
 								synsets.get(hypernym) < hypernymWeight)
 						synsets.put(hypernym, hypernymWeight);
@@ -764,8 +684,8 @@ public class WordNet implements Ontology {
 				// 'hyponym' relation
 				double hyponymWeight = weight * HYPONYM_WEIGHT;
 				if (hyponymWeight >= hurdle) {
-					Synset[] hyponyms = getHyponymSynsets(synset);
-					for (Synset hyponym : hyponyms)
+					int[] hyponyms = getHyponymSynsets(synset);
+					for (int hyponym : hyponyms)
 						if (!synsets.containsKey(hyponym) ||
 								synsets.get(hyponym) < hyponymWeight)
 						synsets.put(hyponym, hyponymWeight);
@@ -773,8 +693,8 @@ public class WordNet implements Ontology {
 				// 'entailing' relation
 				double entailingWeight = weight * ENTAILING_WEIGHT;
 				if (entailingWeight >= hurdle) {
-					Synset[] entailing = getEntailingSynsets(synset);
-					for (Synset entails : entailing)
+					int[] entailing = getEntailingSynsets(synset);
+					for (int entails : entailing)
 						if (!synsets.containsKey(entails) ||
 								synsets.get(entails) < entailingWeight)
 						synsets.put(entails, entailingWeight);
@@ -782,8 +702,8 @@ public class WordNet implements Ontology {
 				// 'causing' relation
 				double causingWeight = weight * CAUSING_WEIGHT;
 				if (causingWeight >= hurdle) {
-					Synset[] causing = getCausingSynsets(synset);
-					for (Synset causes : causing)
+					int[] causing = getCausingSynsets(synset);
+					for (int causes : causing)
 						if (!synsets.containsKey(causes) ||
 								synsets.get(causes) < causingWeight)
 						synsets.put(causes, causingWeight);
@@ -791,7 +711,7 @@ public class WordNet implements Ontology {
 			}
 		}
 		
-		for (Synset synset : synsets.keySet()) {
+		for (int synset : synsets.keySet()) {
 			double weight = synsets.get(synset);
 			if (!expanded.containsKey(synset) ||
 					expanded.get(synset) < weight)
@@ -800,7 +720,7 @@ public class WordNet implements Ontology {
 		
 		// get concepts in synsets
 		Map<String, Double> expansions = new Hashtable<String, Double>();
-		for (Synset synset : expanded.keySet()) {
+		for (int synset : expanded.keySet()) {
 			double weight = expanded.get(synset);
 			if (weight == 1) weight = SYNONYM_WEIGHT;  // direct synonyms
 			for (String expansion : getLemmas(synset))
@@ -826,29 +746,29 @@ public class WordNet implements Ontology {
 		if (!isCompoundNoun(entity)) return new Hashtable<String, Double>();
 		
 		// synsets of related concepts
-		Map<Synset, Double> synsets = new Hashtable<Synset, Double>();
+		Map<Integer, Double> synsets = new Hashtable<Integer, Double>();
 		// synsets that have already been expanded
-		Map<Synset, Double> expanded = new Hashtable<Synset, Double>();
+		Map<Integer, Double> expanded = new Hashtable<Integer, Double>();
 		
 		// get most common synset
 		double hurdle = TermExpander.MIN_EXPANSION_WEIGHT;
 		if (SYNONYM_WEIGHT >= hurdle) {
-			Synset synset = getCommonSynset(entity, NOUN);
-			if (synset != null) synsets.put(synset, 1d);
+			int synset = getCommonSynset(entity, NOUN);
+			if (synset >= 0) synsets.put(synset, 1d);
 		}
 		
 		// expand synsets
 		int pathLength = 0;
 		while (pathLength++ < MAX_PATH_LENGTH && synsets.size() > 0) {
 			// get synsets and their weights
-			Synset[] currSynsets =
-				synsets.keySet().toArray(new Synset[synsets.size()]);
+			Integer[] currSynsets =
+				synsets.keySet().toArray(new Integer[synsets.size()]);
 			double[] currWeights = new double[synsets.size()];
 			for (int i = 0; i < synsets.size(); i++)
 				currWeights[i] = synsets.get(currSynsets[i]);
 			
 			for (int i = 0; i < currSynsets.length; i++) {
-				Synset synset = currSynsets[i];
+				int synset = currSynsets[i];
 				double weight = currWeights[i];
 				
 				// move to expanded synsets
@@ -862,8 +782,8 @@ public class WordNet implements Ontology {
 				// 'hypernym' relation
 				double hypernymWeight = weight * HYPERNYM_WEIGHT;
 				if (hypernymWeight >= hurdle) {
-					Synset[] hypernyms = getHypernymSynsets(synset);
-					for (Synset hypernym : hypernyms)
+					int[] hypernyms = getHypernymSynsets(synset);
+					for (int hypernym : hypernyms)
 						if (!synsets.containsKey(hypernym) ||
 								synsets.get(hypernym) < hypernymWeight)
 						synsets.put(hypernym, hypernymWeight);
@@ -871,8 +791,8 @@ public class WordNet implements Ontology {
 				// 'hyponym' relation
 				double hyponymWeight = weight * HYPONYM_WEIGHT;
 				if (hyponymWeight >= hurdle) {
-					Synset[] hyponyms = getHyponymSynsets(synset);
-					for (Synset hyponym : hyponyms)
+					int[] hyponyms = getHyponymSynsets(synset);
+					for (int hyponym : hyponyms)
 						if (!synsets.containsKey(hyponym) ||
 								synsets.get(hyponym) < hyponymWeight)
 						synsets.put(hyponym, hyponymWeight);
@@ -880,8 +800,8 @@ public class WordNet implements Ontology {
 				// 'member-of' relation
 				double memberOfWeight = weight * MEMBER_OF_WEIGHT;
 				if (memberOfWeight >= hurdle) {
-					Synset[] membersOf = getMemberOfSynsets(synset);
-					for (Synset memberOf : membersOf)
+					int[] membersOf = getMemberOfSynsets(synset);
+					for (int memberOf : membersOf)
 						if (!synsets.containsKey(memberOf) ||
 								synsets.get(memberOf) < memberOfWeight)
 						synsets.put(memberOf, memberOfWeight);
@@ -889,8 +809,8 @@ public class WordNet implements Ontology {
 				// 'substance-of' relation
 				double substanceOfWeight = weight * SUBSTANCE_OF_WEIGHT;
 				if (substanceOfWeight >= hurdle) {
-					Synset[] substancesOf = getSubstanceOfSynsets(synset);
-					for (Synset substanceOf : substancesOf)
+					int[] substancesOf = getSubstanceOfSynsets(synset);
+					for (int substanceOf : substancesOf)
 						if (!synsets.containsKey(substanceOf) ||
 								synsets.get(substanceOf) < substanceOfWeight)
 						synsets.put(substanceOf, substanceOfWeight);
@@ -898,8 +818,8 @@ public class WordNet implements Ontology {
 				// 'part-of' relation
 				double partOfWeight = weight * PART_OF_WEIGHT;
 				if (partOfWeight >= hurdle) {
-					Synset[] partsOf = getPartOfSynsets(synset);
-					for (Synset partOf : partsOf)
+					int[] partsOf = getPartOfSynsets(synset);
+					for (int partOf : partsOf)
 						if (!synsets.containsKey(partOf) ||
 								synsets.get(partOf) < partOfWeight)
 						synsets.put(partOf, partOfWeight);
@@ -907,8 +827,8 @@ public class WordNet implements Ontology {
 				// 'has-member' relation
 				double hasMemberWeight = weight * HAS_MEMBER_WEIGHT;
 				if (hasMemberWeight >= hurdle) {
-					Synset[] haveMember = getHasMemberSynsets(synset);
-					for (Synset hasMember : haveMember)
+					int[] haveMember = getHasMemberSynsets(synset);
+					for (int hasMember : haveMember)
 						if (!synsets.containsKey(hasMember) ||
 								synsets.get(hasMember) < hasMemberWeight)
 						synsets.put(hasMember, hasMemberWeight);
@@ -916,8 +836,8 @@ public class WordNet implements Ontology {
 				// 'has-substance' relation
 				double hasSubstanceWeight = weight * HAS_SUBSTANCE_WEIGHT;
 				if (hasSubstanceWeight >= hurdle) {
-					Synset[] haveSubstance = getHasSubstanceSynsets(synset);
-					for (Synset hasSubstance : haveSubstance)
+					int[] haveSubstance = getHasSubstanceSynsets(synset);
+					for (int hasSubstance : haveSubstance)
 						if (!synsets.containsKey(hasSubstance) ||
 								synsets.get(hasSubstance) < hasSubstanceWeight)
 						synsets.put(hasSubstance, hasSubstanceWeight);
@@ -925,8 +845,8 @@ public class WordNet implements Ontology {
 				// 'has-part' relation
 				double hasPartWeight = weight * HAS_PART_WEIGHT;
 				if (hasPartWeight >= hurdle) {
-					Synset[] havePart = getHasPartSynsets(synset);
-					for (Synset hasPart : havePart)
+					int[] havePart = getHasPartSynsets(synset);
+					for (int hasPart : havePart)
 						if (!synsets.containsKey(hasPart) ||
 								synsets.get(hasPart) < hasPartWeight)
 						synsets.put(hasPart, hasPartWeight);
@@ -934,7 +854,7 @@ public class WordNet implements Ontology {
 			}
 		}
 		
-		for (Synset synset : synsets.keySet()) {
+		for (int synset : synsets.keySet()) {
 			double weight = synsets.get(synset);
 			if (!expanded.containsKey(synset) ||
 					expanded.get(synset) < weight)
@@ -943,7 +863,7 @@ public class WordNet implements Ontology {
 		
 		// get concepts in synsets
 		Map<String, Double> expansions = new Hashtable<String, Double>();
-		for (Synset synset : expanded.keySet()) {
+		for (int synset : expanded.keySet()) {
 			double weight = expanded.get(synset);
 			if (weight == 1) weight = SYNONYM_WEIGHT;  // direct synonyms
 			for (String expansion : getLemmas(synset))
@@ -973,29 +893,29 @@ public class WordNet implements Ontology {
 			return new Hashtable<String, Double>();
 		
 		// synsets of related concepts
-		Map<Synset, Double> synsets = new Hashtable<Synset, Double>();
+		Map<Integer, Double> synsets = new Hashtable<Integer, Double>();
 		// synsets that have already been expanded
-		Map<Synset, Double> expanded = new Hashtable<Synset, Double>();
+		Map<Integer, Double> expanded = new Hashtable<Integer, Double>();
 		
 		// get most common synset
 		double hurdle = TermExpander.MIN_EXPANSION_WEIGHT;
 		if (SYNONYM_WEIGHT >= hurdle) {
-			Synset synset = getCommonSynset(modifier, pos);
-			if (synset != null) synsets.put(synset, 1d);
+			int synset = getCommonSynset(modifier, pos);
+			if (synset >= 0) synsets.put(synset, 1d);
 		}
 		
 		// expand synsets
 		int pathLength = 0;
 		while (pathLength++ < MAX_PATH_LENGTH && synsets.size() > 0) {
 			// get synsets and their weights
-			Synset[] currSynsets =
-				synsets.keySet().toArray(new Synset[synsets.size()]);
+			Integer[] currSynsets =
+				synsets.keySet().toArray(new Integer[synsets.size()]);
 			double[] currWeights = new double[synsets.size()];
 			for (int i = 0; i < synsets.size(); i++)
 				currWeights[i] = synsets.get(currSynsets[i]);
 			
 			for (int i = 0; i < currSynsets.length; i++) {
-				Synset synset = currSynsets[i];
+				int synset = currSynsets[i];
 				double weight = currWeights[i];
 				
 				// move to expanded synsets
@@ -1010,7 +930,7 @@ public class WordNet implements Ontology {
 			}
 		}
 		
-		for (Synset synset : synsets.keySet()) {
+		for (int synset : synsets.keySet()) {
 			double weight = synsets.get(synset);
 			if (!expanded.containsKey(synset) ||
 					expanded.get(synset) < weight)
@@ -1019,7 +939,7 @@ public class WordNet implements Ontology {
 		
 		// get concepts in synsets
 		Map<String, Double> expansions = new Hashtable<String, Double>();
-		for (Synset synset : expanded.keySet()) {
+		for (int synset : expanded.keySet()) {
 			double weight = expanded.get(synset);
 			if (weight == 1) weight = SYNONYM_WEIGHT;  // direct synonyms
 			for (String expansion : getLemmas(synset))
@@ -0,0 +1,833 @@
+package info.ephyra.nlp.semantics.ontologies;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>A compact in-memory copy of the WordNet database files.</p>
+ *
+ * <p>The lemmas, exception lists, synsets and the pointers used by
+ * <code>WordNet</code> are kept in arrays and hash tables, so lookups do not
+ * read from the files. Synsets are identified by consecutive integers and
+ * words by their position in a table of interned strings.</p>
+ *
+ * <p>Lookups follow the morphological processing that is configured in
+ * <code>res/ontologies/wordnet/file_properties.xml</code>: exception lists,
+ * then detaching suffixes, then looking up the tokens of a compound term.</p>
+ *
+ * <p>The index is built from the database files once and stored in a binary
+ * snapshot, which is rebuilt if one of the files changes. An index is not
+ * modified after it has been loaded and can be shared by several threads
+ * without locking.</p>
+ */
+public class WordNetIndex {
+	private static final Logger log = Logger.getLogger(WordNetIndex.class);
+	/** Identifies the snapshot format. */
+	private static final int MAGIC = 0x574e4958;
+
+	// parts of speech, in the order they are looked up by JWNL
+	public static final int NOUN = 0;
+	public static final int VERB = 1;
+	public static final int ADJECTIVE = 2;
+	public static final int ADVERB = 3;
+	/** Names of the parts of speech in the database files. */
+	private static final String[] POS_NAMES = {"noun", "verb", "adj", "adv"};
+
+	// pointer types
+	public static final int HYPERNYM = 0;
+	public static final int HYPONYM = 1;
+	public static final int ENTAILMENT = 2;
+	public static final int CAUSE = 3;
+	public static final int MEMBER_HOLONYM = 4;
+	public static final int SUBSTANCE_HOLONYM = 5;
+	public static final int PART_HOLONYM = 6;
+	public static final int MEMBER_MERONYM = 7;
+	public static final int SUBSTANCE_MERONYM = 8;
+	public static final int PART_MERONYM = 9;
+	/** Pointer symbols of the pointer types, other pointers are dropped. */
+	private static final String[][] POINTER_SYMBOLS = {
+		{"@", "@i"}, {"~", "~i"}, {"*"}, {">"}, {"#m"}, {"#s"}, {"#p"},
+		{"%m"}, {"%s"}, {"%p"}
+	};
+
+	/** Suffixes and their replacements, by part of speech. */
+	private static final String[][][] SUFFIXES = {
+		{{"s", ""}, {"ses", "s"}, {"xes", "x"}, {"zes", "z"}, {"ches", "ch"},
+		 {"shes", "sh"}, {"men", "man"}, {"ies", "y"}},
+		{{"s", ""}, {"ies", "y"}, {"es", "e"}, {"es", ""}, {"ed", "e"},
+		 {"ed", ""}, {"ing", "e"}, {"ing", ""}},
+		{{"er", ""}, {"est", ""}, {"er", "e"}, {"est", "e"}},
+		{}
+	};
+	/** Delimiters tried between the tokens of a compound term. */
+	private static final String[] DELIMITERS = {" ", "-"};
+
+	/** Lemmas, exceptions and synset offsets of a part of speech. */
+	private static class PartOfSpeech {
+		/** IDs of the lemmas plus 1, by lemma as it appears in the files. */
+		private TObjectIntHashMap lemmaIds = new TObjectIntHashMap();
+		/** Lemmas with spaces between the words, by ID. */
+		private String[] lemmas;
+		/** Synsets of the lemmas, ordered by sense number. */
+		private int[][] senses;
+		/** Base forms of irregular inflections. */
+		private HashMap<String, String[]> exceptions =
+			new HashMap<String, String[]>();
+		/** ID of the first synset of this part of speech. */
+		private int firstSynset;
+		/** Offsets of the synsets in the data file, in ascending order. */
+		private int[] offsets;
+	}
+
+	/** Signature of the database files. */
+	private final String signature;
+	/** Lemmas and synsets by part of speech. */
+	private final PartOfSpeech[] parts;
+	/** Interned words of the synsets, with spaces between the tokens. */
+	private final String[] words;
+	/** Words of the synsets, as positions in the word table. */
+	private final int[][] synsetWords;
+	/** Pointers of the synsets as pairs of pointer type and target synset. */
+	private final int[][] pointers;
+
+	private WordNetIndex(String signature, PartOfSpeech[] parts,
+			String[] words, int[][] synsetWords, int[][] pointers) {
+		this.signature = signature;
+		this.parts = parts;
+		this.words = words;
+		this.synsetWords = synsetWords;
+		this.pointers = pointers;
+	}
+
+	/**
+	 * Loads the index from the snapshot or, if the snapshot is missing or out
+	 * of date, builds it from the database files and writes the snapshot.
+	 *
+	 * @param dictPath directory of the WordNet database files
+	 * @param snapshotFile snapshot of the index or <code>null</code>
+	 * @return the index
+	 * @throws IOException if a database file could not be read
+	 */
+	public static WordNetIndex load(String dictPath, String snapshotFile)
+			throws IOException {
+		String signature = getSignature(dictPath);
+
+		if (snapshotFile != null && new File(snapshotFile).exists()) {
+			try {
+				WordNetIndex index = read(snapshotFile, signature);
+				if (index != null) return index;
+				log.info("WordNet changed, rebuilding " + snapshotFile);
+			} catch (IOException e) {
+				log.warn("Could not read WordNet snapshot " + snapshotFile +
+						": " + e);
+			}
+		}
+
+		WordNetIndex index = build(dictPath, signature);
+		if (snapshotFile != null) {
+			try {
+				index.write(snapshotFile);
+			} catch (IOException e) {
+				log.warn("Could not write WordNet snapshot " + snapshotFile +
+						": " + e);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Creates a signature from the sizes and modification times of the
+	 * database files.
+	 *
+	 * @param dictPath directory of the database files
+	 * @return signature
+	 * @throws IOException if a file is missing
+	 */
+	private static String getSignature(String dictPath) throws IOException {
+		StringBuilder signature = new StringBuilder(dictPath);
+		for (String pos : POS_NAMES)
+			for (String name : new String[] {"index." + pos, "data." + pos,
+											 pos + ".exc"}) {
+				File file = new File(dictPath, name);
+				if (!file.exists())
+					throw new IOException("Missing WordNet file " + file);
+				signature.append(':').append(file.length()).append(':')
+						 .append(file.lastModified());
+			}
+		return signature.toString();
+	}
+
+	// building the index
+
+	/**
+	 * Builds the index from the database files.
+	 *
+	 * @param dictPath directory of the database files
+	 * @param signature signature of the database files
+	 * @return the index
+	 */
+	private static WordNetIndex build(String dictPath, String signature)
+			throws IOException {
+		PartOfSpeech[] parts = new PartOfSpeech[POS_NAMES.length];
+		HashMap<String, Integer> wordIds = new HashMap<String, Integer>();
+		ArrayList<String> wordList = new ArrayList<String>();
+		ArrayList<int[]> synsetWordList = new ArrayList<int[]>();
+		// pointers by synset: type, part of speech and offset of the target
+		ArrayList<int[]> pointerList = new ArrayList<int[]>();
+
+		for (int pos = 0; pos < parts.length; pos++) {
+			PartOfSpeech part = parts[pos] = new PartOfSpeech();
+			part.firstSynset = synsetWordList.size();
+			ArrayList<Integer> offsets = new ArrayList<Integer>();
+			BufferedReader in =
+				openFile(new File(dictPath, "data." + POS_NAMES[pos]));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.startsWith(" ")) continue;  // license
+					StringTokenizer st = new StringTokenizer(line, " ");
+					offsets.add(Integer.parseInt(st.nextToken()));
+					st.nextToken();  // lexicographer file
+					st.nextToken();  // synset type
+
+					int[] ids = new int[Integer.parseInt(st.nextToken(), 16)];
+					for (int i = 0; i < ids.length; i++) {
+						String word = st.nextToken().replace('_', ' ');
+						st.nextToken();  // lexical ID
+						Integer id = wordIds.get(word);
+						if (id == null) {
+							id = wordList.size();
+							wordIds.put(word, id);
+							wordList.add(word);
+						}
+						ids[i] = id;
+					}
+					synsetWordList.add(ids);
+
+					int count = Integer.parseInt(st.nextToken());
+					int[] targets = new int[3 * count];
+					int n = 0;
+					for (int i = 0; i < count; i++) {
+						int type = getPointerType(st.nextToken());
+						int offset = Integer.parseInt(st.nextToken());
+						int targetPos = getPos(st.nextToken().charAt(0));
+						st.nextToken();  // source and target words
+						if (type < 0) continue;
+						targets[n++] = type;
+						targets[n++] = targetPos;
+						targets[n++] = offset;
+					}
+					int[] copy = new int[n];
+					System.arraycopy(targets, 0, copy, 0, n);
+					pointerList.add(copy);
+				}
+			} finally {
+				in.close();
+			}
+			part.offsets = toArray(offsets);
+		}
+
+		String[] words = wordList.toArray(new String[wordList.size()]);
+		int[][] synsetWords =
+			synsetWordList.toArray(new int[synsetWordList.size()][]);
+
+		// resolve the targets of the pointers
+		int[][] pointers = new int[pointerList.size()][];
+		for (int synset = 0; synset < pointers.length; synset++) {
+			int[] targets = pointerList.get(synset);
+			int[] resolved = new int[targets.length / 3 * 2];
+			int n = 0;
+			for (int i = 0; i < targets.length; i += 3) {
+				int target = findSynset(parts, targets[i + 1], targets[i + 2]);
+				if (target < 0) continue;
+				resolved[n++] = targets[i];
+				resolved[n++] = target;
+			}
+			pointers[synset] = new int[n];
+			System.arraycopy(resolved, 0, pointers[synset], 0, n);
+		}
+
+		for (int pos = 0; pos < parts.length; pos++) {
+			readIndexFile(parts, pos,
+						  new File(dictPath, "index." + POS_NAMES[pos]));
+			readExceptionFile(parts[pos],
+							  new File(dictPath, POS_NAMES[pos] + ".exc"));
+		}
+
+		return new WordNetIndex(signature, parts, words, synsetWords, pointers);
+	}
+
+	/**
+	 * Reads the lemmas and their senses from an index file.
+	 */
+	private static void readIndexFile(PartOfSpeech[] parts, int pos, File file)
+			throws IOException {
+		PartOfSpeech part = parts[pos];
+		ArrayList<String> lemmas = new ArrayList<String>();
+		ArrayList<int[]> senses = new ArrayList<int[]>();
+
+		BufferedReader in = openFile(file);
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(" ")) continue;  // license
+				StringTokenizer st = new StringTokenizer(line, " ");
+				String lemma = st.nextToken();
+				st.nextToken();  // part of speech
+				st.nextToken();  // number of synsets
+				int pointerCount = Integer.parseInt(st.nextToken());
+				for (int i = 0; i < pointerCount; i++) st.nextToken();
+				int[] synsets = new int[Integer.parseInt(st.nextToken())];
+				st.nextToken();  // number of tagged senses
+				for (int i = 0; i < synsets.length; i++)
+					synsets[i] = findSynset(parts, pos,
+											Integer.parseInt(st.nextToken()));
+
+				part.lemmaIds.put(lemma, lemmas.size() + 1);
+				lemmas.add(lemma.replace('_', ' '));
+				senses.add(synsets);
+			}
+		} finally {
+			in.close();
+		}
+
+		part.lemmas = lemmas.toArray(new String[lemmas.size()]);
+		part.senses = senses.toArray(new int[senses.size()][]);
+	}
+
+	/**
+	 * Reads the base forms of irregular inflections from an exception file.
+	 * 
+	 * If an inflection occurs in several lines, the line that is found by the
+	 * binary search of JWNL is used, so that the base forms do not change.
+	 */
+	private static void readExceptionFile(PartOfSpeech part, File file)
+			throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		ArrayList<Integer> starts = new ArrayList<Integer>();
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		int length = 0;
+		BufferedReader in = openFile(file);
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines.add(line);
+				starts.add(length);
+				length += line.length() + 1;
+				String key = getKey(line);
+				Integer count = counts.get(key);
+				counts.put(key, (count == null) ? 1 : count + 1);
+			}
+		} finally {
+			in.close();
+		}
+		int[] offsets = toArray(starts);
+
+		for (int i = 0; i < lines.size(); i++) {
+			String inflection = getKey(lines.get(i));
+			if (inflection.length() == 0 ||
+				part.exceptions.containsKey(inflection)) continue;
+			int index = (counts.get(inflection) > 1)
+				? searchLine(lines, offsets, length, inflection)
+				: i;
+			if (index < 0) continue;
+
+			StringTokenizer st = new StringTokenizer(lines.get(index));
+			st.nextToken();
+			String[] baseForms = new String[st.countTokens()];
+			for (int j = 0; j < baseForms.length; j++)
+				baseForms[j] = st.nextToken().replace('_', ' ');
+			part.exceptions.put(inflection, baseForms);
+		}
+	}
+
+	/**
+	 * Returns the first word of a line, as it is compared by JWNL.
+	 */
+	private static String getKey(String line) {
+		int end = line.indexOf(' ');
+		return (end < 0) ? line : line.substring(0, end);
+	}
+
+	/**
+	 * Emulates the binary search of JWNL over the byte offsets of a sorted
+	 * file: the search bisects the offsets, compares the line that starts
+	 * after the middle and scans the remaining range linearly.
+	 *
+	 * @param lines lines of the file
+	 * @param starts offsets of the lines
+	 * @param length length of the file
+	 * @param key first word of the line
+	 * @return index of the line or -1, if it is not found
+	 */
+	private static int searchLine(ArrayList<String> lines, int[] starts,
+			int length, String key) {
+		int start = 0;
+		int stop = length;
+		while (true) {
+			int mid = (start + stop) / 2;
+			// first line that starts after the middle
+			int index = Arrays.binarySearch(starts, mid + 1);
+			if (index < 0) index = -index - 1;
+			int offset = (index < starts.length) ? starts[index] : length;
+
+			if (offset == stop) {
+				index = Arrays.binarySearch(starts, start);
+				if (index < 0) index = -index - 1;
+				for (; index < starts.length && starts[index] < stop; index++)
+					if (getKey(lines.get(index)).equals(key)) return index;
+				return -1;
+			}
+
+			int cmp = getKey(lines.get(index)).compareTo(key);
+			if (cmp == 0) return index;
+			if (cmp > 0) stop = offset;
+			else start = offset;
+		}
+	}
+
+	/**
+	 * Opens a database file. The files are read byte by byte, as by JWNL.
+	 */
+	private static BufferedReader openFile(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "ISO-8859-1"));
+	}
+
+	/**
+	 * Looks up a synset by its offset in the data file.
+	 *
+	 * @param parts lemmas and synsets by part of speech
+	 * @param pos part of speech
+	 * @param offset offset of the synset
+	 * @return ID of the synset or -1, if there is no such synset
+	 */
+	private static int findSynset(PartOfSpeech[] parts, int pos, long offset) {
+		if (pos < 0 || offset < 0 || offset > Integer.MAX_VALUE) return -1;
+		PartOfSpeech part = parts[pos];
+		int i = Arrays.binarySearch(part.offsets, (int) offset);
+		return (i >= 0) ? part.firstSynset + i : -1;
+	}
+
+	private static int getPointerType(String symbol) {
+		for (int type = 0; type < POINTER_SYMBOLS.length; type++)
+			for (String s : POINTER_SYMBOLS[type])
+				if (s.equals(symbol)) return type;
+		return -1;
+	}
+
+	private static int getPos(char key) {
+		switch (key) {
+			case 'n': return NOUN;
+			case 'v': return VERB;
+			case 'a': case 's': return ADJECTIVE;
+			case 'r': return ADVERB;
+			default: return -1;
+		}
+	}
+
+	private static int[] toArray(ArrayList<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+		return array;
+	}
+
+	// snapshot
+
+	/**
+	 * Reads the index from a snapshot.
+	 *
+	 * @param snapshotFile snapshot of the index
+	 * @param signature signature of the current database files
+	 * @return the index or <code>null</code>, if the snapshot was built from
+	 *         different files
+	 */
+	private static WordNetIndex read(String snapshotFile, String signature)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(snapshotFile), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a WordNet snapshot");
+			if (!in.readUTF().equals(signature)) return null;
+
+			String[] words = new String[in.readInt()];
+			for (int i = 0; i < words.length; i++) words[i] = in.readUTF();
+			int[][] synsetWords = new int[in.readInt()][];
+			int[][] pointers = new int[synsetWords.length][];
+			for (int synset = 0; synset < synsetWords.length; synset++) {
+				synsetWords[synset] = readInts(in);
+				pointers[synset] = readInts(in);
+			}
+
+			PartOfSpeech[] parts = new PartOfSpeech[POS_NAMES.length];
+			for (int pos = 0; pos < parts.length; pos++) {
+				PartOfSpeech part = parts[pos] = new PartOfSpeech();
+				part.firstSynset = in.readInt();
+				part.offsets = readInts(in);
+				part.lemmas = new String[in.readInt()];
+				part.senses = new int[part.lemmas.length][];
+				for (int i = 0; i < part.lemmas.length; i++) {
+					part.lemmas[i] = in.readUTF();
+					part.senses[i] = readInts(in);
+					part.lemmaIds.put(part.lemmas[i].replace(' ', '_'), i + 1);
+				}
+				int exceptions = in.readInt();
+				for (int i = 0; i < exceptions; i++) {
+					String inflection = in.readUTF();
+					String[] baseForms = new String[in.readInt()];
+					for (int j = 0; j < baseForms.length; j++)
+						baseForms[j] = in.readUTF();
+					part.exceptions.put(inflection, baseForms);
+				}
+			}
+
+			return new WordNetIndex(signature, parts, words, synsetWords,
+									pointers);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the index to a snapshot. The snapshot is written to a temporary
+	 * file first, so readers never see an incomplete snapshot.
+	 *
+	 * @param snapshotFile snapshot of the index
+	 */
+	private void write(String snapshotFile) throws IOException {
+		File file = new File(snapshotFile);
+		if (file.getParentFile() != null) file.getParentFile().mkdirs();
+		File tmp = new File(snapshotFile + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeUTF(signature);
+
+			out.writeInt(words.length);
+			for (String word : words) out.writeUTF(word);
+			out.writeInt(synsetWords.length);
+			for (int synset = 0; synset < synsetWords.length; synset++) {
+				writeInts(out, synsetWords[synset]);
+				writeInts(out, pointers[synset]);
+			}
+
+			for (PartOfSpeech part : parts) {
+				out.writeInt(part.firstSynset);
+				writeInts(out, part.offsets);
+				out.writeInt(part.lemmas.length);
+				for (int i = 0; i < part.lemmas.length; i++) {
+					out.writeUTF(part.lemmas[i]);
+					writeInts(out, part.senses[i]);
+				}
+				out.writeInt(part.exceptions.size());
+				for (Map.Entry<String, String[]> entry :
+						part.exceptions.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().length);
+					for (String baseForm : entry.getValue())
+						out.writeUTF(baseForm);
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		file.delete();
+		if (!tmp.renameTo(file))
+			throw new IOException("Could not rename " + tmp + " to " + file);
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] ints = new int[in.readInt()];
+		for (int i = 0; i < ints.length; i++) ints[i] = in.readInt();
+		return ints;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] ints)
+			throws IOException {
+		out.writeInt(ints.length);
+		for (int i : ints) out.writeInt(i);
+	}
+
+	// lookups
+
+	/**
+	 * Looks up the lemma of a word, applying the morphological processing if
+	 * the word itself is not in WordNet.
+	 *
+	 * @param pos part of speech
+	 * @param word a word
+	 * @return ID of the lemma or -1, if the lookup failed
+	 */
+	public int lookupIndexWord(int pos, String word) {
+		word = word.trim().toLowerCase();
+		int lemma = getIndexWord(pos, word);
+		if (lemma < 0 && word.length() > 0) {
+			String baseForm = getBaseForm(pos, word);
+			if (baseForm != null) lemma = getIndexWord(pos, baseForm);
+		}
+		return lemma;
+	}
+
+	/**
+	 * Looks up a lemma without morphological processing.
+	 *
+	 * @param pos part of speech
+	 * @param lemma a lemma
+	 * @return ID of the lemma or -1, if it is not in WordNet
+	 */
+	private int getIndexWord(int pos, String lemma) {
+		lemma = lemma.trim().toLowerCase();
+		if (lemma.length() == 0) return -1;
+		return parts[pos].lemmaIds.get(lemma.replace(' ', '_')) - 1;
+	}
+
+	/**
+	 * Looks up the base forms of an irregular inflection.
+	 *
+	 * @param pos part of speech
+	 * @param word an inflected word
+	 * @return base forms or <code>null</code>
+	 */
+	private String[] getExceptions(int pos, String word) {
+		return parts[pos].exceptions.get(word.replace(' ', '_'));
+	}
+
+	/**
+	 * Determines the first base form of a word that is found by the
+	 * morphological processing.
+	 *
+	 * @param pos part of speech
+	 * @param word a word in lower case
+	 * @return base form or <code>null</code>
+	 */
+	private String getBaseForm(int pos, String word) {
+		// irregular inflections
+		String[] exceptions = getExceptions(pos, word);
+		if (exceptions != null && exceptions.length > 0) return exceptions[0];
+
+		// regular inflections
+		String baseForm = detachSuffixes(pos, word, null);
+		if (baseForm != null) return baseForm;
+
+		// compound terms
+		return lookupTokens(pos, word);
+	}
+
+	/**
+	 * Detaches the suffixes of regular inflections and looks up the stems in
+	 * the index and the exception lists.
+	 *
+	 * @param pos part of speech
+	 * @param word a word
+	 * @param forms receives all stems that were found or <code>null</code>
+	 * @return the first stem that was found, if <code>forms</code> is
+	 *         <code>null</code>, otherwise <code>null</code>
+	 */
+	private String detachSuffixes(int pos, String word, ArrayList<String> forms) {
+		for (String[] suffix : SUFFIXES[pos]) {
+			if (!word.endsWith(suffix[0])) continue;
+			String stem = word.substring(0, word.length() - suffix[0].length()) +
+						  suffix[1];
+
+			if (getIndexWord(pos, stem) >= 0) {
+				if (forms == null) return stem;
+				addForm(forms, stem);
+			}
+			String[] exceptions = getExceptions(pos, stem);
+			if (exceptions != null)
+				for (String exception : exceptions) {
+					if (forms == null) return exception;
+					addForm(forms, exception);
+				}
+		}
+		return null;
+	}
+
+	private static void addForm(ArrayList<String> forms, String form) {
+		if (!forms.contains(form)) forms.add(form);
+	}
+
+	/**
+	 * Looks up compound terms that are formed from the base forms of the
+	 * tokens of a word. Spans of tokens are tried from left to right and from
+	 * longest to shortest, the tokens are joined with either delimiter or no
+	 * delimiter.
+	 *
+	 * @param pos part of speech
+	 * @param word a word in lower case
+	 * @return the first compound term that was found or <code>null</code>
+	 */
+	private String lookupTokens(int pos, String word) {
+		String[] tokens = split(word);
+
+		// forms of the tokens: the token itself and its base forms
+		String[][] forms = new String[tokens.length][];
+		for (int i = 0; i < tokens.length; i++) {
+			ArrayList<String> tokenForms = new ArrayList<String>();
+			tokenForms.add(tokens[i]);
+			String[] exceptions = getExceptions(pos, tokens[i]);
+			if (exceptions != null)
+				for (String exception : exceptions) addForm(tokenForms, exception);
+			detachSuffixes(pos, tokens[i], tokenForms);
+			forms[i] = tokenForms.toArray(new String[tokenForms.size()]);
+		}
+
+		for (int start = 0; start < tokens.length; start++)
+			for (int end = tokens.length - 1; end >= start; end--) {
+				// all combinations of the forms of the tokens in the span
+				int[] choice = new int[end - start + 1];
+				String[] span = new String[choice.length];
+				while (true) {
+					for (int i = 0; i < span.length; i++)
+						span[i] = forms[start + i][choice[i]];
+					for (String delimiter : DELIMITERS) {
+						String compound = lookupCompound(pos, span, delimiter);
+						if (compound != null) return compound;
+					}
+
+					int i = choice.length - 1;
+					while (i >= 0 && choice[i] == forms[start + i].length - 1)
+						choice[i--] = 0;
+					if (i < 0) break;
+					choice[i]++;
+				}
+			}
+		return null;
+	}
+
+	/**
+	 * Looks up the terms formed by joining the tokens with or without the
+	 * delimiter.
+	 *
+	 * @param pos part of speech
+	 * @param tokens the tokens
+	 * @param delimiter delimiter between the tokens
+	 * @return the first term that was found or <code>null</code>
+	 */
+	private String lookupCompound(int pos, String[] tokens, String delimiter) {
+		// bit i is set if tokens i and i+1 are joined without the delimiter
+		boolean[] joined = new boolean[tokens.length - 1];
+		while (true) {
+			StringBuilder term = new StringBuilder(tokens[0]);
+			for (int i = 1; i < tokens.length; i++) {
+				if (!joined[i - 1]) term.append(delimiter);
+				term.append(tokens[i]);
+			}
+			String compound = term.toString();
+			if (getIndexWord(pos, compound) >= 0) return compound;
+
+			int i = joined.length - 1;
+			while (i >= 0 && joined[i]) joined[i--] = false;
+			if (i < 0) return null;
+			joined[i] = true;
+		}
+	}
+
+	/**
+	 * Splits a word into tokens that consist of lower case letters and
+	 * apostrophes.
+	 *
+	 * @param word a word in lower case
+	 * @return tokens
+	 */
+	private static String[] split(String word) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		int start = -1;
+		for (int i = 0; i <= word.length(); i++) {
+			char c = (i < word.length()) ? word.charAt(i) : ' ';
+			boolean letter = (c >= 'a' && c <= 'z') || c == '\'';
+			if (letter && start < 0) start = i;
+			else if (!letter && start >= 0) {
+				tokens.add(word.substring(start, i));
+				start = -1;
+			}
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * Returns a lemma.
+	 *
+	 * @param pos part of speech
+	 * @param lemma ID of the lemma
+	 * @return the lemma, with spaces between the words
+	 */
+	public String getLemma(int pos, int lemma) {
+		return parts[pos].lemmas[lemma];
+	}
+
+	/**
+	 * Returns a sense of a lemma.
+	 *
+	 * @param pos part of speech
+	 * @param lemma ID of the lemma
+	 * @param sense sense number, starting from 1
+	 * @return ID of the synset or -1, if there is no such sense
+	 */
+	public int getSense(int pos, int lemma, int sense) {
+		int[] senses = parts[pos].senses[lemma];
+		return (sense >= 1 && sense <= senses.length) ? senses[sense - 1] : -1;
+	}
+
+	/**
+	 * Looks up a synset by its offset in the data file.
+	 *
+	 * @param pos part of speech
+	 * @param offset offset of the synset
+	 * @return ID of the synset or -1, if there is no such synset
+	 */
+	public int getSynset(int pos, long offset) {
+		return findSynset(parts, pos, offset);
+	}
+
+	/**
+	 * Returns the words in a synset.
+	 *
+	 * @param synset ID of the synset
+	 * @return the words, with spaces between the tokens
+	 */
+	public String[] getWords(int synset) {
+		int[] ids = synsetWords[synset];
+		String[] result = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) result[i] = words[ids[i]];
+		return result;
+	}
+
+	/**
+	 * Returns the targets of the pointers of a given type.
+	 *
+	 * @param synset ID of the synset
+	 * @param type pointer type
+	 * @return IDs of the target synsets, in the order of the pointers
+	 */
+	public int[] getTargets(int synset, int type) {
+		int[] p = pointers[synset];
+		int count = 0;
+		for (int i = 0; i < p.length; i += 2) if (p[i] == type) count++;
+		int[] targets = new int[count];
+		count = 0;
+		for (int i = 0; i < p.length; i += 2)
+			if (p[i] == type) targets[count++] = p[i + 1];
+		return targets;
+	}
+}
@@ -2,6 +2,7 @@ package info.ephyra.questionanalysis;
 
 import info.ephyra.io.Logger;
 import info.ephyra.io.MsgPrinter;
+import info.ephyra.nlp.StanfordParser;
 import info.ephyra.nlp.indices.WordFrequencies;
 import info.ephyra.nlp.semantics.Predicate;
 import info.ephyra.nlp.semantics.ontologies.Ontology;
@@ -20,6 +21,7 @@ import java.util.regex.Pattern;
 
 import edu.cmu.lti.javelin.util.Language;
 import edu.cmu.lti.util.Pair;
+import edu.stanford.nlp.trees.Tree;
 
 /**
  * Analyzes a question string:
@@ -159,10 +161,11 @@ public class QuestionAnalysis {
 		predicates = null;
 	}
 	
-    private static String[] getAtypes (String question) {
+    private static String[] getAtypes (String question, Tree parse) {
         List<AnswerType> atypes = new ArrayList<AnswerType>();
         try {
-            atypes = qc.getAnswerTypes(question);
+            if (parse != null) atypes = qc.getAnswerTypes(question, parse);
+            else atypes = qc.getAnswerTypes(question);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -223,12 +226,20 @@ public class QuestionAnalysis {
 		for (Term term : terms)
 			term.setRelFrequency(WordFrequencies.lookupRel(term.getText()));
 		
+		// parse the question once for the focus word and the answer types
+		Tree parse = null;
+		try {
+			parse = StanfordParser.parseTree(question);
+		} catch (Exception e) {
+			MsgPrinter.printErrorMsg("Could not parse the question: " + e);
+		}
+		
 		// extract focus word
-		String focus = FocusFinder.findFocusWord(question);
+		String focus = (parse != null) ? FocusFinder.findFocusWord(parse) : null;
 		
 		// determine answer types
 		//String[] ats = AnswerTypeTester.getAnswerTypes(qn, stemmed);
-        String[] ats = getAtypes(question);
+        String[] ats = getAtypes(question, parse);
 		MsgPrinter.printAnswerTypes(ats);
 		Logger.logAnswerTypes(ats);
 		
@@ -253,7 +264,7 @@ public class QuestionAnalysis {
 	}
     
     public static void main (String[] args) {
-        String[] atypes = getAtypes(args[0]);
+        String[] atypes = getAtypes(args[0], null);
         System.out.println(args[0]);
         for (String atype : atypes) {
             System.out.println(atype);
@@ -1,5 +1,6 @@
 package info.ephyra.questionanalysis;
 
+import info.ephyra.nlp.NeTypes;
 import info.ephyra.nlp.indices.FunctionWords;
 import info.ephyra.nlp.semantics.ontologies.WordNet;
 import info.ephyra.util.StringUtils;
@@ -41,6 +42,10 @@ public class Term implements Serializable {
 	private String pos;
 	/** The named entity types of the term (optional). */
 	private String[] neTypes = new String[0];
+	/** IDs of the named entity types, created on demand. */
+	private transient int[] neTypeIds;
+	/** Bitset of the named entity types, created on demand. */
+	private transient long[] neTypeBits;
 	/** Relative frequency of the term. */
 	private double relFrequency;
 	/** Maps expansions of the term to their weights. */
@@ -53,7 +58,10 @@ public class Term implements Serializable {
 	public String getLemma() {return lemma;}
 	public String getPos() {return pos;}
 	public String[] getNeTypes() {return neTypes;}
-	public void setNeTypes(String[] neTypes) {this.neTypes = neTypes;}
+	public void setNeTypes(String[] neTypes) {
+		this.neTypes = neTypes;
+		neTypeIds = null;
+		neTypeBits = null;}
 	public double getRelFrequency() {return relFrequency;}
 	public void setRelFrequency(double relFrequency) {
 		this.relFrequency = relFrequency;}
@@ -104,6 +112,28 @@ public class Term implements Serializable {
 		this.lemma = term.getLemma();
 		this.neTypes = neTypes;
 	}
+	/**
+	 * Returns the IDs of the named entity types, as assigned by
+	 * <code>NeTypes</code>.
+	 * 
+	 * @return IDs in the order of <code>getNeTypes()</code>
+	 */
+	public int[] getNeTypeIds() {
+		if (neTypeIds == null) neTypeIds = NeTypes.getIds(neTypes);
+		return neTypeIds;
+	}
+	
+	/**
+	 * Checks if the term has the named entity type with the given ID.
+	 * 
+	 * @param neTypeId ID of a named entity type
+	 * @return <code>true</code>, iff the term has the type
+	 */
+	public boolean hasNeType(int neTypeId) {
+		if (neTypeBits == null) neTypeBits = NeTypes.toBits(getNeTypeIds());
+		return NeTypes.contains(neTypeBits, neTypeId);
+	}
+	
 	/**
 	 * Generates the lemma of the term.
 	 */
@@ -2,16 +2,21 @@ package info.ephyra.questionanalysis;
 
 import info.ephyra.answerselection.filters.TruncationFilter;
 import info.ephyra.nlp.NETagger;
+import info.ephyra.nlp.NeAnnotation;
+import info.ephyra.nlp.NeTypes;
 import info.ephyra.nlp.OpenNLP;
 import info.ephyra.util.Dictionary;
 import info.ephyra.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import opennlp.tools.util.Span;
+
 /**
  * Extracts single- and multi-token terms from a sentence. Multi-token terms are
  * named entities or compound terms found in dictionaries.
@@ -23,40 +28,59 @@ public class TermExtractor {
 	/** Maximum length of a term in tokens. */
 	private static final int MAX_TERM_LENGTH = 4;
 	
+	/** ID of the NE type assigned by the Stanford tagger to persons. */
+	private static final int PERSON = NeTypes.getId("NEperson");
+	/** NE types that are kept if a term is a person. */
+	private static final long[] PERSON_TYPES = NeTypes.toBits("NEactor",
+			"NEauthor", "NEdirector", "NEfirstName", "NEscientist",
+			"NEusPresident", "NEperson");
+	
 	/**
 	 * Checks if the given term is among the named entities and returns the
 	 * types of the entities that match it.
 	 * 
 	 * @param term a term, potentially a named entity
-	 * @param nes named entities
+	 * @param nes IDs of the taggers by named entity, as returned by
+	 *            <code>NeAnnotation.indexNes()</code>
+	 * @param neIdCount number of NE taggers
 	 * @return types of matching entities
 	 */
 	// BUG fix. when a term such as "Gary, Indiana" (all single words are NElocation) comes,
 	// it will recognize it as a term and return NElocation.
-	private static String[] getNeTypes(String term, String[][] nes) {
-		List<String> neTypes = new ArrayList<String>();
-		Set<String> neTypesSet = new HashSet<String>();
+	private static String[] getNeTypes(String term, HashMap<String, int[]> nes,
+			int neIdCount) {
+		// IDs of the NE types in the order they are found, without duplicates
+		int[] neTypeIds = new int[4];
+		int count = 0;
+		long[] neTypeSet = new long[1];
 		int stanfordStart = NETagger.getStanfordStart();
 		
-		for (int neId = 0; neId < nes.length; neId++)
-			for (String ne : nes[neId])
-				if (term.equals(ne)) {
-					String neType = NETagger.getNeType(neId);
-					if (neTypesSet.add(neType))
-						// there may be multiple taggers (IDs) for one type
-						neTypes.add(neType);
-					break;
+		int[] neIds = nes.get(term);
+		if (neIds != null)
+			for (int neId : neIds) {
+				int neTypeId = NETagger.getNeTypeId(neId);
+				if (!NeTypes.contains(neTypeSet, neTypeId)) {
+					// there may be multiple taggers (IDs) for one type
+					neTypeSet = NeTypes.add(neTypeSet, neTypeId);
+					if (count == neTypeIds.length)
+						neTypeIds = Arrays.copyOf(neTypeIds, 2 * count);
+					neTypeIds[count++] = neTypeId;
 				}
+			}
 		
 		// NEs for stanford tagger. let's try again
 		// remove all punctuation since Stanford tagger doesn't contain any 
-		String[] termNoPunc = term.replaceAll("\\p{Punct}+", "").split("\\s+");
-		for (int neId = stanfordStart; neId < nes.length; neId++) {
+		String[] termNoPunc = null;
+		for (int neId = stanfordStart; neId < neIdCount; neId++) {
+			int neTypeId = NETagger.getNeTypeId(neId);
+			// there may be multiple taggers (IDs) for one type
+			if (NeTypes.contains(neTypeSet, neTypeId)) continue;
+			if (termNoPunc == null)
+				termNoPunc = term.replaceAll("\\p{Punct}+", "").split("\\s+");
 			boolean contain = false;
-			ArrayList<String> nesList = new ArrayList<String>(Arrays.asList(nes[neId]));
 			// check if every term in termNoPunc has the same NE type
 			for (String t: termNoPunc) {
-				if (nesList.contains(t)) {
+				if (contains(nes.get(t), neId)) {
 						contain = true;
 				} else {
 					contain = false;
@@ -64,28 +88,29 @@ public class TermExtractor {
 				}
 			}
 			if (contain) {
-				String neType = NETagger.getNeType(neId);
-				if (neTypesSet.add(neType))
-					// there may be multiple taggers (IDs) for one type
-					neTypes.add(neType);
+				neTypeSet = NeTypes.add(neTypeSet, neTypeId);
+				if (count == neTypeIds.length)
+					neTypeIds = Arrays.copyOf(neTypeIds, 2 * count);
+				neTypeIds[count++] = neTypeId;
 			}
 		}
 		
 		// disambiguate with the priority of stanford NE tagger
 		// if Jackson is a person, then the following removes NEprovince, NEcapital from neTypes
-		if (neTypes.contains("NEperson")) {
-			String[] persons = {"NEactor", "NEauthor", "NEdirector", "NEfirstName", "NEscientist", "NEusPresident", "NEperson"};
-			ArrayList<String> list = new ArrayList<String>(Arrays.asList(persons));
-			String[] types = neTypes.toArray(new String[neTypes.size()]);
-			for (String type:types) {
-				if (!list.contains(type)) {
-					neTypes.remove(type);
-				}
-			}
-		}
+		boolean person = NeTypes.contains(neTypeSet, PERSON);
+		ArrayList<String> neTypes = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			if (!person || NeTypes.contains(PERSON_TYPES, neTypeIds[i]))
+				neTypes.add(NeTypes.getType(neTypeIds[i]));
 		return neTypes.toArray(new String[neTypes.size()]);
 	}
 	
+	private static boolean contains(int[] neIds, int neId) {
+		if (neIds != null)
+			for (int id : neIds) if (id == neId) return true;
+		return false;
+	}
+	
 	/**
 	 * Extracts named entities from the given sentence.
 	 * 
@@ -164,9 +189,58 @@ public class TermExtractor {
 		String[] pos = OpenNLP.tagPos(tokens);
 		// tag phrase chunks
 		String[] chunks = OpenNLP.tagChunks(tokens, pos);
+		
+		return getTerms(sentence, tokens, pos, chunks, nes, dicts);
+	}
+	
+	/**
+	 * Extracts terms from the given sentence, reusing tokens, part of speech
+	 * tags, chunk tags and named entities that have been extracted before.
+	 * 
+	 * @param sentence sentence to analyze
+	 * @param tokens tokens of the sentence (OpenNLP tokenizer)
+	 * @param pos part of speech tags of the tokens
+	 * @param chunks chunk tags of the tokens
+	 * @param nes named entities in the sentence
+	 * @param dicts dictionaries with compound terms
+	 * @return terms in the sentence
+	 */
+	public static Term[] getTerms(String sentence, String[] tokens,
+			String[] pos, String[] chunks, String[][] nes, Dictionary[] dicts) {
+		return getTerms(sentence, tokens, pos, chunks,
+				NeAnnotation.indexNes(nes), nes.length, dicts);
+	}
+	
+	/**
+	 * Extracts terms from the given sentence, reusing tokens, part of speech
+	 * tags, chunk tags and the named entity annotation of the sentence.
+	 * 
+	 * @param sentence sentence to analyze
+	 * @param tokens tokens of the sentence (OpenNLP tokenizer)
+	 * @param pos part of speech tags of the tokens
+	 * @param chunks chunk tags of the tokens
+	 * @param nes named entities in the sentence
+	 * @param dicts dictionaries with compound terms
+	 * @return terms in the sentence
+	 */
+	public static Term[] getTerms(String sentence, String[] tokens,
+			String[] pos, String[] chunks, NeAnnotation nes, Dictionary[] dicts) {
+		return getTerms(sentence, tokens, pos, chunks, nes.getTextIndex(),
+				nes.getNeIdCount(), dicts);
+	}
+	
+	/**
+	 * Extracts terms from the given sentence. Named entities are looked up by
+	 * their text.
+	 */
+	private static Term[] getTerms(String sentence, String[] tokens,
+			String[] pos, String[] chunks, HashMap<String, int[]> nes,
+			int neIdCount, Dictionary[] dicts) {
 		// mark tokens as not yet assigned to a term
 		boolean[] assigned = new boolean[tokens.length];
 		Arrays.fill(assigned, false);
+		// offsets of the tokens in the sentence, if they can be determined
+		Span[] spans = OpenNLP.getSpans(tokens, sentence);
 		
 		List<Term> termsL = new ArrayList<Term>();
 
@@ -186,10 +260,15 @@ public class TermExtractor {
 				if (skip) continue;
 				
 				// get phrase spanning the tokens
-				String text = tokens[id];
-				for (int offset = 1; offset < length; offset++)
-					text += " " + tokens[id + offset];
-				text = OpenNLP.untokenize(text, sentence);
+				String text;
+				if (spans != null) {
+					text = OpenNLP.untokenize(sentence, spans, id, id + length);
+				} else {
+					text = tokens[id];
+					for (int offset = 1; offset < length; offset++)
+						text += " " + tokens[id + offset];
+					text = OpenNLP.untokenize(text, sentence);
+				}
 				
 				// phrase is a duplicate?
 				if (!termSet.add(StringUtils.normalize(text))) continue;
@@ -199,7 +278,7 @@ public class TermExtractor {
 				// phrase is a named entity?
 				// BUG fix: the RegEx tagger will recognize a NEdate, such as "August 29, 1958",
 				// as "August 29 , 1958", thus all tokens in the text should be concatenated with space
-				String[] neTypes = getNeTypes(StringUtils.concatWithSpaces(OpenNLP.tokenize(text)), nes);
+				String[] neTypes = getNeTypes(StringUtils.concatWithSpaces(OpenNLP.tokenize(text)), nes, neIdCount);
 				if (neTypes.length > 0) {
 					// construct term
 					Term t = new Term(text, Term.COMPOUND, neTypes);
@@ -251,7 +330,7 @@ public class TermExtractor {
 			if (KeywordExtractor.getKeywords(tokens[id]).length == 0) continue;
 			
 			// get named entity types and construct term
-			String[] neTypes = getNeTypes(tokens[id], nes);
+			String[] neTypes = getNeTypes(tokens[id], nes, neIdCount);
 			Term t = new Term(tokens[id], pos[id], neTypes);
 			termsL.add(t);
 		}
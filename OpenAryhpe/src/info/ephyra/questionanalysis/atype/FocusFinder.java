@@ -263,6 +263,16 @@ public class FocusFinder {
         }
     }
     
+    /**
+     * Finds the focus word, given a parse tree from the Stanford parser.
+     * 
+     * @param parse The syntactic parse tree from the Stanford parser
+     * @return the focus word as a String or null, if one does not exist
+     */
+    public static String findFocusWord (edu.stanford.nlp.trees.Tree parse) {
+        return findFocusWord(TreeConverter.convert(parse));
+    }
+    
     /**
      * Given a list of Terms, builds a parse tree using Charniak's parser, and 
      * then uses the resulting parse tree to find the focus words.
@@ -277,8 +287,7 @@ public class FocusFinder {
                 question += term + " ";
             }
             Tree t = findFocusNode(
-                    TreeHelper.buildTree(
-                            StanfordParser.parse(question), Tree.ENGLISH));
+                    TreeConverter.convert(StanfordParser.parseTree(question)));
             if (t != null) return TreeHelper.getLeaves(t);
             return null;
         }
@@ -297,10 +306,9 @@ public class FocusFinder {
      */
     public static String findFocusWord (String question) {
         try{
-            String treeStr = StanfordParser.parse(question);
-            log.debug("Parse: " + treeStr);
-            Tree t = findFocusNode(
-                    TreeHelper.buildTree(treeStr, Tree.ENGLISH));
+            edu.stanford.nlp.trees.Tree parse = StanfordParser.parseTree(question);
+            if (log.isDebugEnabled()) log.debug("Parse: " + parse);
+            Tree t = findFocusNode(TreeConverter.convert(parse));
             if (t != null) {
                 log.debug("Focus: " + TreeHelper.getLeaves(t));
                 return TreeHelper.getLeaves(t);
@@ -327,8 +335,7 @@ public class FocusFinder {
                 question += term + " ";
             }
             Tree t = findFocusNode(
-                    TreeHelper.buildTree(
-                            StanfordParser.parse(question), Tree.ENGLISH));
+                    TreeConverter.convert(StanfordParser.parseTree(question)));
             if (t != null) {
                 Term res = new Term(0,0,TreeHelper.getLeaves(t));
                 res.setPOS(t.getLabel());
@@ -352,8 +359,7 @@ public class FocusFinder {
     public static Term findFocusTerm (String question) {
         try{
             Tree t = findFocusNode(
-                    TreeHelper.buildTree(
-                            StanfordParser.parse(question), Tree.ENGLISH));
+                    TreeConverter.convert(StanfordParser.parseTree(question)));
             if (t != null) {
                 Term res = new Term(0,0,TreeHelper.getLeaves(t));
                 res.setPOS(t.getLabel());
@@ -413,8 +419,7 @@ public class FocusFinder {
        }
        
        for (String q : questions) {
-           Tree t = TreeHelper.buildTree(
-                           StanfordParser.parse(q), Tree.ENGLISH);
+           Tree t = TreeConverter.convert(StanfordParser.parseTree(q));
            TreeHelper.markHeadNode(t);
            String focus = findFocusWord(t);
            if (focus == null) focus = "-";
@@ -124,6 +124,56 @@ public abstract class QuestionClassifier
         return getAnswerTypes(terms, parseTreeStr);
     }
 
+    /**
+     * Classifies the question represented by the given List of Terms and 
+     * parse tree from the Stanford parser as having a particular answer type 
+     * and possibly subtype.  The parse tree is used as it is, without 
+     * printing and reparsing it.
+     * 
+     * @param terms the Terms that make up the question to classify
+     * @param parse the syntactic parse tree of the question
+     * 
+     * @return the candidate answer type / subtypes.
+     * @throws Exception
+     */
+    public List<AnswerType> getAnswerTypes(List<Term> terms, edu.stanford.nlp.trees.Tree parse) throws Exception {
+        if(!isInitialized())
+            throw new Exception("getAnswerTypes called while not initialized");
+
+        String question = "";
+        for (Term term : terms) question += term.getText()+" ";
+
+        // create the instance
+        Instance instance = new MutableInstance(question);
+        if (extractor != null)
+            instance = extractor.createInstance(terms,parse);
+
+        return classify(instance);
+    }    
+
+    /**
+     * Classifies the question represented by the given String and parse tree
+     * from the Stanford parser as having a particular answer type and 
+     * possibly subtype. 
+     * 
+     * @param question the question to classify
+     * @param parse the syntactic parse tree of the question
+     * 
+     * @return the candidate answer type / subtypes.
+     * @throws Exception
+     */
+    public List<AnswerType> getAnswerTypes(String question, edu.stanford.nlp.trees.Tree parse) throws Exception {
+        if(!isInitialized())
+            throw new Exception("getAnswerTypes called while not initialized");
+
+        String[] tokens = question.split("\\s+");
+        List<Term> terms = new ArrayList<Term>();
+        for (String token : tokens) {
+            terms.add(new Term(0,0,token));
+        }
+        return getAnswerTypes(terms, parse);
+    }
+
     /**
      * Classifies the question represented by the given String
      * as having a particular answer type and possibly subtype. 
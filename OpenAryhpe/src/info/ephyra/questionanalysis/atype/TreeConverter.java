@@ -0,0 +1,57 @@
+package info.ephyra.questionanalysis.atype;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import edu.cmu.lti.chineseNLP.util.Tree;
+
+/**
+ * <p>Converts parse trees of the Stanford parser into the trees used for
+ * answer type classification.</p>
+ * 
+ * <p>The result is the same as building the tree from the string representation
+ * of the parse with <code>TreeHelper.buildTree(parse, Tree.ENGLISH)</code>,
+ * but the tree is copied node by node instead of being printed and parsed
+ * again.</p>
+ */
+public class TreeConverter {
+    
+    private static Logger log = Logger.getLogger(TreeConverter.class);
+    // labels that TreeHelper.buildTree accepts for phrase nodes
+    private static final Pattern PHRASE_LABEL = Pattern.compile("[0-9A-Z[-=|]]+");
+    
+    /**
+     * Converts a Stanford parse tree.
+     * 
+     * @param parse the parse tree from the Stanford parser
+     * @return the converted tree, or <code>null</code> if the parse tree 
+     * contains a phrase label that is not supported
+     */
+    public static Tree convert(edu.stanford.nlp.trees.Tree parse) {
+        String label = parse.label().value();
+        
+        if (parse.isPreTerminal()) {
+            String word = parse.firstChild().label().value();
+            Tree preterminal = Tree.newPreterminal(label, word, Tree.ENGLISH);
+            if (label.startsWith("*")) {
+                preterminal.setMarked(true);
+                preterminal.setLabel(label.substring(1));
+            }
+            return preterminal;
+        }
+        
+        if (!PHRASE_LABEL.matcher(label).matches()) {
+            log.debug("Unsupported label for an intermediate node: " + label);
+            return null;
+        }
+        List<edu.stanford.nlp.trees.Tree> kids = parse.getChildrenAsList();
+        Tree[] children = new Tree[kids.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = convert(kids.get(i));
+            if (children[i] == null) return null;
+        }
+        return Tree.newNode(label, children);
+    }
+}
@@ -2,6 +2,7 @@ package info.ephyra.questionanalysis.atype.extractor;
 
 import info.ephyra.nlp.StanfordParser;
 import info.ephyra.questionanalysis.atype.FocusFinder;
+import info.ephyra.questionanalysis.atype.TreeConverter;
 import info.ephyra.questionanalysis.atype.WordNetAnswerTypeMapping;
 
 import java.util.ArrayList;
@@ -146,12 +147,11 @@ public class EnglishFeatureExtractor extends FeatureExtractor{
         }
     }
     
-    private static void addSyntacticFeatures(MutableInstance instance, List<Term> terms, String parseTree, Term focusTerm) {
-        if (parseTree == null) {
+    private static void addSyntacticFeatures(MutableInstance instance, List<Term> terms, Tree tree, Term focusTerm) {
+        if (tree == null) {
             log.error("Syntactic parse of the question is null.");
             return;
         }
-        Tree tree = TreeHelper.buildTree(parseTree, Tree.ENGLISH);
         
         // MAIN_VERB
         TreeHelper.markHeadNode(tree);
@@ -226,6 +226,38 @@ public class EnglishFeatureExtractor extends FeatureExtractor{
      * @throws Exception
      */
     public Instance createInstance(List<Term> terms, String parseTree){
+        log.debug("Parse: " + parseTree);
+        Tree tree = TreeHelper.buildTree(parseTree, Tree.ENGLISH);
+        Tree syntaxTree = null;
+        if (parseTree != null) syntaxTree = TreeHelper.buildTree(parseTree, Tree.ENGLISH);
+        return createInstance(terms, tree, syntaxTree);
+    }
+    
+    /**
+     * Creates and populates an Instance from the parse tree of the Stanford 
+     * parser.  The parse tree is converted directly, without printing it and 
+     * building a tree from its string representation.  The features are the 
+     * same as for {@link #createInstance(List, String)}.
+     */
+    public Instance createInstance(List<Term> terms, edu.stanford.nlp.trees.Tree parse){
+        if (log.isDebugEnabled()) log.debug("Parse: " + parse);
+        Tree tree = null, syntaxTree = null;
+        if (parse != null) {
+            tree = TreeConverter.convert(parse);
+            syntaxTree = TreeConverter.convert(parse);
+        }
+        return createInstance(terms, tree, syntaxTree);
+    }
+    
+    /**
+     * Creates and populates an Instance.  The focus finder modifies the tree 
+     * it is given, so the syntactic features are extracted from a second copy.
+     * 
+     * @param terms the Terms of the question
+     * @param tree the parse tree used to find the focus word
+     * @param syntaxTree a copy of the parse tree used for the syntactic features
+     */
+    private Instance createInstance(List<Term> terms, Tree tree, Tree syntaxTree){
         String question = "";
         for (Term term : terms) question += term + " ";
         question = question.trim();
@@ -233,13 +265,11 @@ public class EnglishFeatureExtractor extends FeatureExtractor{
         MutableInstance instance = new MutableInstance(question);
 
         // find the focus word
-        log.debug("Parse: " + parseTree);
-        Tree tree = TreeHelper.buildTree(parseTree, Tree.ENGLISH);
         Term focus = FocusFinder.findFocusTerm(tree);
         if (focus != null) log.debug("Focus: " + focus.getText());
         
         addWordLevelFeatures(instance, terms, focus);
-        addSyntacticFeatures(instance, terms, parseTree, focus);
+        addSyntacticFeatures(instance, terms, syntaxTree, focus);
         addSemanticFeatures(instance, focus);
         return instance;
     }
@@ -249,7 +279,7 @@ public class EnglishFeatureExtractor extends FeatureExtractor{
         List<String> words = new ArrayList<String>();
         for (String token : tokens) words.add(token);
         try {
-            String parse = StanfordParser.parse(question);
+            edu.stanford.nlp.trees.Tree parse = StanfordParser.parseTree(question);
             return createInstance(question,parse);
         } catch (Exception e) {
             log.error("Failed to parse question, using only word-level features.",e);
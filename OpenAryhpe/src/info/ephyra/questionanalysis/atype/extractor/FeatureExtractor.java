@@ -109,6 +109,17 @@ public abstract class FeatureExtractor{
      */
     public abstract Instance createInstance(List<Term> terms, String parseTree);
 
+    /**
+     * Given a question as a list of Terms and it's parse tree from the 
+     * Stanford parser, creates a Instance for question classification by 
+     * extracting the appropriate features.
+     * 
+     * @param terms the Terms of the question
+     * @param parse the syntactic parse tree of the question
+     * @return an Instance which can be used for question classification
+     */
+    public abstract Instance createInstance(List<Term> terms, edu.stanford.nlp.trees.Tree parse);
+
     /**
      * Convenience method that tokenizes the given question by whitespace, creates
      * Terms, and calls {@link #createInstance(List, String)}.
@@ -125,6 +136,22 @@ public abstract class FeatureExtractor{
         return createInstance(terms,parseTree);
     }
 
+    /**
+     * Convenience method that tokenizes the given question by whitespace, creates
+     * Terms, and calls {@link #createInstance(List, edu.stanford.nlp.trees.Tree)}.
+     * 
+     * @param question the question to create an Instance from
+     * @param parse the syntactic parse tree of the question
+     */
+    public Instance createInstance(String question, edu.stanford.nlp.trees.Tree parse){
+        String[] tokens = question.split("\\s+");
+        List<Term> terms = new ArrayList<Term>();
+        for (String token : tokens) {
+            terms.add(new Term(0,0,token));
+        }
+        return createInstance(terms,parse);
+    }
+
     /**
      * Creates an Instance for question classification when nothing but the
      * original question is available for feature extraction. Assumes words 
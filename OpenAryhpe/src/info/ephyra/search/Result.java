@@ -545,6 +545,19 @@ public class Result implements Comparable<Result>, Serializable {
 		return result;
 	}
 	
+	/**
+	 * Returns a copy of this <code>Result</code> object for a different query.
+	 * 
+	 * @param query <code>Query</code> object
+	 * @return copy of this object with the given query
+	 */
+	public Result getCopy(Query query) {
+		Result result = getCopy();
+		result.query = query;
+		
+		return result;
+	}
+	
 	/**	add an extra score to this Result for storage, extra score will not influence sorting
 	 * @param	sourceName	the name of the source of the score
 	 * @param	score		the value of the score
@@ -21,9 +21,6 @@ import java.util.Set;
  * @version 2007-05-29
  */
 public class Search {
-	/** The maximum number of parallel queries. */
-	private static final int MAX_PENDING = 30;
-	
 	/**
 	 * <code>KnowledgeAnnotators</code> used to query (semi)structured knowledge
 	 * sources.
@@ -36,41 +33,27 @@ public class Search {
 	 */
 	private static ArrayList<KnowledgeMiner> kms =
 		new ArrayList<KnowledgeMiner>();
-	/** Results from different searches are aggregated in this field. */
-	private static ArrayList<Result> results;
-	/** Number pending of queries. */
-	private static int pending;
 	
 	/**
 	 * Searches the (semi)structured knowledge sources.
 	 * 
 	 * @param query query to be processed
+	 * @param request collects the results
 	 */
-	private static void queryKAs(Query query) {
+	private static void queryKAs(Query query, SearchRequest request) {
 		for (int i = 0; i < kas.size(); i++)
-			kas.get(i).start(query);
+			kas.get(i).start(query, request);
 	}
 	
 	/**
 	 * Searches the unstructured knowledge sources.
 	 * 
 	 * @param query query to be processed
+	 * @param request collects the results
 	 */
-	private static void queryKMs(Query query) {
+	private static void queryKMs(Query query, SearchRequest request) {
 		for (int i = 0; i < kms.size(); i++)
-			kms.get(i).start(query);
-	}
-	
-	/**
-	 * Delays the main thread until all queries have been completed.
-	 */
-	private static void waitForResults() {
-		synchronized (results) {
-			while (pending > 0)
-				try {
-					results.wait();
-				} catch (InterruptedException e) {}
-		}
+			kms.get(i).start(query, request);
 	}
 	
 	/**
@@ -130,63 +113,41 @@ public class Search {
 	
 	/**
 	 * Sends several alternative queries to all the searchers that have been
-	 * registered and returns the aggregated results.
+	 * registered and returns immediately. The results of each search can be
+	 * consumed with <code>SearchRequest.nextResults()</code> as soon as it is
+	 * done.
 	 * 
 	 * @param queries queries to be processed
-	 * @return results returned by the searchers
+	 * @return request that collects the results
 	 */
-	public static Result[] doSearch(Query[] queries) {
-		results = new ArrayList<Result>();
-		pending = 0;
+	public static SearchRequest startSearch(Query[] queries) {
+		SearchRequest request = new SearchRequest();
 		
 		// send only the first query to the KnowledgeAnnotators
-		if (queries.length > 0) queryKAs(queries[0]);
+		if (queries.length > 0) queryKAs(queries[0], request);
 		
 		// send all queries to the KnowledgeMiners
-		for (Query query : queries) queryKMs(query);
+		for (Query query : queries) queryKMs(query, request);
 		
-		// wait until all queries have been completed
-		waitForResults();
-		
-		// drop duplicates among results from KnowledgeMiners
-		results = dropDuplicates(results);
-		
-		return results.toArray(new Result[results.size()]);
-	}
-	
-	/**
-	 * Delays a thread until there are less than MAX_PENDING pending queries.
-	 */
-	public static void waitForPending() {
-		synchronized (results) {
-			while (pending >= MAX_PENDING)
-				try {
-					results.wait();
-				} catch (InterruptedException e) {}
-		}
+		return request;
 	}
 	
 	/**
-	 * Increments the number of pending queries by 1.
-	 */
-	public static void incPending() {
-		synchronized (results) {
-			pending++;
-		}
-	}
-	
-	/**
-	 * Used by <code>Searchers</code> to return the results found in the
-	 * knowledge sources.
+	 * Sends several alternative queries to all the searchers that have been
+	 * registered and returns the aggregated results.
 	 * 
-	 * @param results results found in the knowledge sources
+	 * @param queries queries to be processed
+	 * @return results returned by the searchers
 	 */
-	public static void addResults(Result[] results) {
-		synchronized (Search.results) {
-			for (Result result : results) Search.results.add(result);
-
-			pending--;
-			Search.results.notify();  // signal that the query is completed
-		}
+	public static Result[] doSearch(Query[] queries) {
+		SearchRequest request = startSearch(queries);
+		
+		// wait until all queries have been completed
+		request.waitForResults();
+		
+		// drop duplicates among results from KnowledgeMiners
+		ArrayList<Result> results = dropDuplicates(request.getResults());
+		
+		return results.toArray(new Result[results.size()]);
 	}
 }
@@ -0,0 +1,109 @@
+package info.ephyra.search;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Future;
+
+/**
+ * <p>A <code>SearchRequest</code> collects the results of the
+ * <code>Searchers</code> started for one call to
+ * <code>Search.doSearch()</code> and keeps track of the pending queries.</p>
+ *
+ * <p>Each call to <code>Search.doSearch()</code> uses its own request, so
+ * several searches can run at the same time.</p>
+ *
+ * <p>The results can also be consumed as a stream with
+ * <code>nextResults()</code>, which returns the results of each search as soon
+ * as it is done.</p>
+ */
+public class SearchRequest {
+	/** Results from different searches are aggregated in this field. */
+	private ArrayList<Result> results = new ArrayList<Result>();
+	/** Results of completed searches not yet returned by nextResults(). */
+	private LinkedList<Result[]> stream = new LinkedList<Result[]>();
+	/** Searches submitted for this request. */
+	private ArrayList<Future<Result[]>> searches =
+		new ArrayList<Future<Result[]>>();
+	/** Number of pending queries. */
+	private int pending = 0;
+
+	/**
+	 * Delays the calling thread until all queries have been completed.
+	 */
+	public synchronized void waitForResults() {
+		while (pending > 0)
+			try {
+				wait();
+			} catch (InterruptedException e) {}
+	}
+
+	/**
+	 * Delays the calling thread until a query has been completed and returns
+	 * its results. Each completed query is returned once.
+	 *
+	 * @return results of a query or <code>null</code>, if all queries have
+	 *         been completed and their results have been returned
+	 */
+	public synchronized Result[] nextResults() {
+		while (stream.isEmpty() && pending > 0)
+			try {
+				wait();
+			} catch (InterruptedException e) {}
+		return stream.poll();
+	}
+
+	/**
+	 * Checks if all queries have been completed.
+	 *
+	 * @return <code>true</code>, iff there are no pending queries
+	 */
+	public synchronized boolean isDone() {
+		return pending == 0;
+	}
+
+	/**
+	 * Cancels the pending queries. A query that is no longer needed by any
+	 * request is interrupted, the others return no results for this request.
+	 */
+	public void cancel() {
+		ArrayList<Future<Result[]>> searches;
+		synchronized (this) {
+			searches = new ArrayList<Future<Result[]>>(this.searches);
+		}
+		for (Future<Result[]> search : searches) search.cancel(true);
+	}
+
+	/**
+	 * Used by the <code>SearchScheduler</code> to register a search that was
+	 * submitted for this request.
+	 *
+	 * @param search results of the search
+	 */
+	synchronized void addSearch(Future<Result[]> search) {
+		searches.add(search);
+		pending++;
+	}
+
+	/**
+	 * Used by the <code>SearchScheduler</code> to return the results found in
+	 * the knowledge sources.
+	 *
+	 * @param results results found in the knowledge sources
+	 */
+	synchronized void addResults(Result[] results) {
+		for (Result result : results) this.results.add(result);
+		stream.add(results);
+
+		pending--;
+		notifyAll();  // signal that the query is completed
+	}
+
+	/**
+	 * Returns the results that have been collected so far.
+	 *
+	 * @return results
+	 */
+	public synchronized ArrayList<Result> getResults() {
+		return new ArrayList<Result>(results);
+	}
+}
@@ -0,0 +1,303 @@
+package info.ephyra.search;
+
+import info.ephyra.search.searchers.Searcher;
+import info.ephyra.util.Properties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>Runs the queries of <code>Searchers</code> on a shared pool of
+ * threads.</p>
+ *
+ * <p>A search is submitted for a <code>SearchRequest</code> and returns a
+ * <code>Future</code> of its results. As soon as the search is done, the
+ * results are passed to the request, so the results of fast knowledge sources
+ * are available before the slowest source has finished. If an equal search,
+ * e.g. the same query string for the same <code>KnowledgeMiner</code>, is
+ * already pending, it is not performed again and the request receives copies
+ * of its results.</p>
+ *
+ * <p>The number of threads and a time limit for each knowledge source are
+ * read from <code>conf/info.ephyra.search.SearchScheduler.properties</code>.
+ * A search that exceeds its time limit, or that is cancelled by all the
+ * requests it was submitted for, is interrupted and returns no results.</p>
+ */
+public class SearchScheduler {
+	private static Logger log = Logger.getLogger(SearchScheduler.class);
+
+	/** Default maximum number of parallel queries. */
+	private static final int THREADS = 30;
+
+	/** Runs the searches. */
+	private static ThreadPoolExecutor executor;
+	/** Interrupts searches that exceed their time limits. */
+	private static ScheduledExecutorService timer;
+	/** Configuration, loaded when it is first needed. */
+	private static Properties properties;
+	/** Pending searches by their keys. */
+	private static HashMap<Object, SharedSearch> pending =
+		new HashMap<Object, SharedSearch>();
+
+	/**
+	 * A search that is performed once for all the requests it was submitted
+	 * for.
+	 */
+	private static class SharedSearch extends FutureTask<Result[]> {
+		/** <code>Searcher</code> that performs the search. */
+		private Searcher searcher;
+		/** Key of the search or <code>null</code>. */
+		private Object key;
+		/** Time limit in milliseconds, 0 for none. */
+		private long timeout;
+		/** Subscriptions of the requests that wait for the results. */
+		private ArrayList<Subscription> subscriptions =
+			new ArrayList<Subscription>();
+		/** Interrupts the search when the time limit is exceeded. */
+		private ScheduledFuture<?> timeoutTask;
+
+		public SharedSearch(Searcher searcher, Object key, long timeout) {
+			super(searcher);
+			this.searcher = searcher;
+			this.key = key;
+			this.timeout = timeout;
+		}
+
+		/**
+		 * Starts the timer and performs the search.
+		 */
+		public void run() {
+			if (timeout > 0 && !isDone())
+				synchronized (SearchScheduler.class) {
+					timeoutTask = getTimer().schedule(new Runnable() {
+						public void run() {
+							if (cancel(true))
+								log.warn("Search timed out: " + key);
+						}
+					}, timeout, TimeUnit.MILLISECONDS);
+				}
+
+			super.run();
+		}
+
+		/**
+		 * Passes the results to the subscriptions when the search is done.
+		 */
+		protected void done() {
+			ArrayList<Subscription> subscriptions;
+			synchronized (SearchScheduler.class) {
+				if (key != null && pending.get(key) == this)
+					pending.remove(key);
+				if (timeoutTask != null) timeoutTask.cancel(false);
+				subscriptions = new ArrayList<Subscription>(this.subscriptions);
+			}
+
+			Result[] results = new Result[0];
+			try {
+				results = get();
+			} catch (CancellationException e) {
+				// search timed out or is no longer needed
+			} catch (ExecutionException e) {
+				log.error("Search failed: " + key, e.getCause());
+			} catch (InterruptedException e) {}
+
+			// requests that joined the search receive copies of the results
+			for (Subscription subscription : subscriptions)
+				subscription.deliver(results,
+									 subscription.searcher != searcher);
+		}
+
+		/**
+		 * Removes a subscription and cancels the search if no subscriptions
+		 * remain. The search is removed from the pending searches at the same
+		 * time, so later requests with the same key start a new search instead
+		 * of joining the cancelled one.
+		 */
+		public void unsubscribe(Subscription subscription) {
+			synchronized (SearchScheduler.class) {
+				if (subscriptions.remove(subscription) &&
+						subscriptions.isEmpty()) {
+					if (key != null && pending.get(key) == this)
+						pending.remove(key);
+					cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The results of a <code>SharedSearch</code> for one request.
+	 */
+	private static class Subscription extends FutureTask<Result[]> {
+		private static final Runnable NOTHING = new Runnable() {
+			public void run() {}
+		};
+
+		private SharedSearch search;
+		private Searcher searcher;
+		private SearchRequest request;
+
+		public Subscription(SharedSearch search, Searcher searcher,
+							SearchRequest request) {
+			super(NOTHING, null);
+			this.search = search;
+			this.searcher = searcher;
+			this.request = request;
+		}
+
+		/**
+		 * Sets the results of the search.
+		 *
+		 * @param results results of the search
+		 * @param copy if <code>true</code>, the results are copied and assigned
+		 *             the query of this subscription
+		 */
+		public void deliver(Result[] results, boolean copy) {
+			if (copy) {
+				Result[] copies = new Result[results.length];
+				for (int i = 0; i < results.length; i++)
+					copies[i] = results[i].getCopy(searcher.getQuery());
+				results = copies;
+			}
+			set(results);
+		}
+
+		/**
+		 * Passes the results to the request.
+		 */
+		protected void done() {
+			Result[] results = new Result[0];
+			if (isCancelled()) search.unsubscribe(this);
+			else
+				try {
+					results = get();
+				} catch (Exception e) {}
+
+			request.addResults(results);
+		}
+	}
+
+	/**
+	 * Creates daemon threads, so pending searches do not keep the JVM alive.
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private String name;
+		private AtomicInteger count = new AtomicInteger();
+
+		public DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			int threads = getConfiguredValue("threads", THREADS);
+			if (threads <= 0) threads = THREADS;
+			executor = new ThreadPoolExecutor(threads, threads,
+					60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new DaemonThreadFactory("search"));
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer == null)
+			timer = new ScheduledThreadPoolExecutor(1,
+					new DaemonThreadFactory("search-timer"));
+		return timer;
+	}
+
+	/**
+	 * Reads an integer property from the properties file.
+	 *
+	 * @param name name of the property
+	 * @param defaultValue value used if the property is not configured
+	 * @return value of the property
+	 */
+	private static synchronized int getConfiguredValue(String name,
+													   int defaultValue) {
+		if (properties == null)
+			try {
+				properties = Properties.loadFromClassName(
+						SearchScheduler.class.getName());
+			} catch (RuntimeException e) {
+				log.warn("Could not read properties: " + e.getMessage());
+				properties = new Properties();
+			}
+
+		String value = properties.getProperty(name);
+		try {
+			if (value != null) return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			log.warn("Could not read " + name + ": " + e.getMessage());
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the time limit for searches of the given
+	 * <code>Searcher</code>, configured as
+	 * <code>timeout.[class name]</code> or as <code>timeout</code> for all
+	 * knowledge sources.
+	 *
+	 * @param searcher a <code>Searcher</code>
+	 * @return time limit in milliseconds, 0 for none
+	 */
+	private static long getTimeout(Searcher searcher) {
+		String name = "timeout." + searcher.getClass().getSimpleName();
+		return getConfiguredValue(name, getConfiguredValue("timeout", 0));
+	}
+
+	/**
+	 * Submits a search for a request. The results are passed to the request
+	 * when the search is done, or an empty array if it failed, timed out or was
+	 * cancelled.
+	 *
+	 * @param searcher <code>Searcher</code> with the query to perform
+	 * @param request collects the results
+	 * @return results of the search
+	 */
+	public static Future<Result[]> submit(Searcher searcher,
+										  SearchRequest request) {
+		Object key = searcher.getKey();
+		SharedSearch search;
+		Subscription subscription;
+		boolean start = false;
+		synchronized (SearchScheduler.class) {
+			search = (key != null) ? pending.get(key) : null;
+			if (search == null) {
+				search = new SharedSearch(searcher, key, getTimeout(searcher));
+				if (key != null) pending.put(key, search);
+				start = true;
+			}
+			subscription = new Subscription(search, searcher, request);
+			request.addSearch(subscription);
+			search.subscriptions.add(subscription);
+		}
+
+		if (start) getExecutor().execute(search);
+
+		return subscription;
+	}
+}
@@ -84,8 +84,10 @@ public class GoogleKM extends KnowledgeMiner {
 				retries++;
 				
 				try {
-					GoogleKM.sleep(1000);
-				} catch (InterruptedException ie) {}
+					Thread.sleep(1000);
+				} catch (InterruptedException ie) {
+					return new Result[0];  // search was cancelled
+				}
 			}
 		
 		// get snippets and URLs of the corresponding websites
@@ -2,13 +2,15 @@ package info.ephyra.search.searchers;
 
 import info.ephyra.querygeneration.Query;
 import info.ephyra.search.Result;
-import info.ephyra.search.Search;
+import info.ephyra.search.SearchRequest;
+import info.ephyra.search.SearchScheduler;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,8 +21,8 @@ import java.util.regex.Pattern;
  * one of the patterns in the field <code>qPatterns</code> are supported by a
  * <code>KnowledgeAnnotator</code>.</p>
  * 
- * <p>It runs as a separate thread, so several queries can be performed in
- * parallel.</p>
+ * <p>It runs on a thread of the <code>SearchScheduler</code>, so several
+ * queries can be performed in parallel.</p>
  * 
  * <p>This class extends the class <code>Searcher</code> and is abstract.</p>
  * 
@@ -190,31 +192,20 @@ public abstract class KnowledgeAnnotator extends Searcher {
 	public abstract KnowledgeAnnotator getCopy();
 	
 	/**
-	 * <p>Sets the query and starts the thread if the knowledge annotator is
-	 * appropriate for the user question.</p>
-	 * 
-	 * <p>This method should be used instead of the inherited
-	 * <code>start()</code> method without arguments.</p>
+	 * Sets the query and submits the search to the
+	 * <code>SearchScheduler</code> if the knowledge annotator is appropriate
+	 * for the user question.
 	 * 
 	 * @param query query object
-	 * @return true, iff the knowledge annotator is appropriate and the thread
-	 * 		   was started
+	 * @param request collects the results
+	 * @return results of the search or <code>null</code>, if the knowledge
+	 * 		   annotator is not appropriate
 	 */
-	public boolean start(Query query) {
+	public Future<Result[]> start(Query query, SearchRequest request) {
 		KnowledgeAnnotator ka = getCopy();
 		
-		if (ka.matches(query)) {
-			// wait until there are less than MAX_PENDING pending queries
-			Search.waitForPending();
-			
-			ka.start();
-			
-			// one more pending query
-			Search.incPending();
-			
-			return true;
-		}
+		if (ka.matches(query)) return SearchScheduler.submit(ka, request);
 		
-		return false;
+		return null;
 	}
 }
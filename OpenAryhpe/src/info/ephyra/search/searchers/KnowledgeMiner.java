@@ -2,18 +2,21 @@ package info.ephyra.search.searchers;
 
 import info.ephyra.querygeneration.Query;
 import info.ephyra.search.Result;
-import info.ephyra.search.Search;
+import info.ephyra.search.SearchRequest;
+import info.ephyra.search.SearchScheduler;
 import info.ephyra.util.HTMLConverter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Future;
 
 /**
  * <p>A <code>KnowledgeMiner</code> deploys a document retrieval system to
  * search an unstructured knowledge source, e.g. Google to search the World Wide
  * Web.</p>
  * 
- * <p>It runs as a separate thread, so several queries can be performed in
- * parallel.</p>
+ * <p>It runs on a thread of the <code>SearchScheduler</code>, so several
+ * queries can be performed in parallel.</p>
  * 
  * <p>This class extends the class <code>Searcher</code> and is abstract.</p>
  * 
@@ -21,6 +24,8 @@ import java.util.ArrayList;
  * @version 2007-05-29
  */
 public abstract class KnowledgeMiner extends Searcher {
+	/** The registered KnowledgeMiner this instance was copied from. */
+	protected KnowledgeMiner source;
 	/** The hit position of the first result to be fetched. */
 	protected int firstResult;
 	/** The maximum number of results to be fetched. */
@@ -102,28 +107,34 @@ public abstract class KnowledgeMiner extends Searcher {
 	}
 	
 	/**
-	 * <p>Sets the query, the hit position of the first result and the number of
-	 * results to be fetched and starts the thread.</p>
+	 * Returns a key that identifies the search: the registered
+	 * <code>KnowledgeMiner</code>, the query string and the range of results.
 	 * 
-	 * <p>This method should be used instead of the inherited
-	 * <code>start()</code> method without arguments.</p>
+	 * @return key of the search
+	 */
+	public Object getKey() {
+		return Arrays.asList(source, query.getQueryString(), firstResult,
+							 maxResults);
+	}
+	
+	/**
+	 * Sets the query, the hit position of the first result and the number of
+	 * results to be fetched and submits the search to the
+	 * <code>SearchScheduler</code>.
 	 * 
 	 * @param query <code>Query</code> object
 	 * @param firstResult hit position of the first result
+	 * @param request collects the results
+	 * @return results of the search
 	 */
-	protected void start(Query query, int firstResult) {
+	protected Future<Result[]> start(Query query, int firstResult,
+									 SearchRequest request) {
 		this.query = query;
 		this.firstResult = firstResult;
 		this.maxResults = Math.min(getMaxResultsPerQuery(),
 								   getMaxResultsTotal() - firstResult + 1);
 		
-		// wait until there are less than MAX_PENDING pending queries
-		Search.waitForPending();
-		
-		start();
-		
-		// one more pending query
-		Search.incPending();
+		return SearchScheduler.submit(this, request);
 	}
 	
 	/**
@@ -138,21 +149,27 @@ public abstract class KnowledgeMiner extends Searcher {
 	public abstract KnowledgeMiner getCopy();
 	
 	/**
-	 * <p>Creates <code>[MAX_RESULTS_TOTAL / MAX_RESULTS_PERQUERY]</code>
-	 * threads that fetch up to <code>MAX_RESULTS_TOTAL</code> results.</p>
-	 * 
-	 * <p>This method should be used instead of the inherited
-	 * <code>start()</code> method without arguments.</p>
+	 * Submits <code>[MAX_RESULTS_TOTAL / MAX_RESULTS_PERQUERY]</code>
+	 * searches that fetch up to <code>MAX_RESULTS_TOTAL</code> results.
 	 * 
 	 * @param query <code>Query</code> object
+	 * @param request collects the results
+	 * @return results of the searches
 	 */
-	public void start(Query query) {
+	public ArrayList<Future<Result[]>> start(Query query,
+											 SearchRequest request) {
+		ArrayList<Future<Result[]>> searches =
+			new ArrayList<Future<Result[]>>();
 		int firstResult = 1;
 		
 		while (firstResult <= getMaxResultsTotal()) {
-			getCopy().start(query, firstResult);
+			KnowledgeMiner km = getCopy();
+			km.source = this;
+			searches.add(km.start(query, firstResult, request));
 			
 			firstResult += getMaxResultsPerQuery();
 		}
+		
+		return searches;
 	}
 }
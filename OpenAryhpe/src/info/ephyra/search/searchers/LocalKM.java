@@ -0,0 +1,249 @@
+package info.ephyra.search.searchers;
+
+import info.ephyra.indexing.PassageIndex;
+import info.ephyra.indexing.PassageIndex.Hit;
+import info.ephyra.io.MsgPrinter;
+import info.ephyra.search.Result;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>A <code>KnowledgeMiner</code> that searches local passage indices built
+ * with <code>PassageIndexer</code>. The indices are searched in-process, so no
+ * external IR system is needed. The search results are paragraphs.</p>
+ *
+ * <p>It supports the same query strings as <code>IndriKM</code>: words,
+ * phrases in double quotes and alternatives combined with
+ * <code>OR</code>.</p>
+ *
+ * <p>This class extends the class <code>KnowledgeMiner</code>.</p>
+ */
+public class LocalKM extends KnowledgeMiner {
+	/** Maximum total number of search results. */
+	private static final int MAX_RESULTS_TOTAL = 10;
+	/** Maximum number of search results per query. */
+	private static final int MAX_RESULTS_PERQUERY = 10;
+	/** Matches a unit of a query string: a group, a phrase or a word. */
+	private static final Pattern UNIT =
+		Pattern.compile("\\([^\\(\\)]*+\\)|\"[^\"]*+\"|[^\\s\\(\\)\"]++");
+
+	/** Indices that have been opened, by directory. */
+	private static HashMap<String, PassageIndex> opened =
+		new HashMap<String, PassageIndex>();
+
+	/** Passage indices. */
+	private PassageIndex[] indices;
+
+	/**
+	 * Gets a list of all passage index directories that have been specified
+	 * with environment variables 'LOCAL_INDEX', 'LOCAL_INDEX2', 'LOCAL_INDEX3'
+	 * etc. One environment variable can specify multiple indices which are
+	 * queried with the same knowledge miner.
+	 *
+	 * @return passage index directories grouped by knowledge miners
+	 */
+	public static String[][] getLocalIndices() {
+		ArrayList<String[]> indices = new ArrayList<String[]>();
+
+		String index = System.getenv("LOCAL_INDEX");
+		if (index != null && index.length() > 0)
+			indices.add(index.split(";"));
+		for (int i = 2; ; i++) {
+			index = System.getenv("LOCAL_INDEX" + i);
+			if (index != null && index.length() > 0)
+				indices.add(index.split(";"));
+			else break;
+		}
+
+		return indices.toArray(new String[indices.size()][]);
+	}
+
+	/**
+	 * <p>Splits a query string into the concepts of a passage index query.
+	 * Each word, phrase or group in parentheses is a concept, unless it is
+	 * combined with the previous one by <code>OR</code>. <code>AND</code> is
+	 * ignored, as all concepts are combined.</p>
+	 *
+	 * <p>A group is split in the same way, e.g. the group
+	 * <code>(term OR "expansion phrase")</code> created by
+	 * <code>BagOfTermsG</code> is a concept with the alternatives
+	 * <code>term</code> and <code>"expansion phrase"</code>. A group of several
+	 * concepts is added as these concepts, or, if it is combined with other
+	 * units by <code>OR</code>, as an alternative that requires all of its
+	 * words.</p>
+	 *
+	 * @param qs query string
+	 * @return alternatives of each concept
+	 */
+	public static String[][] getConcepts(String qs) {
+		qs = qs.replaceAll("&\\w++;", " ");
+
+		ArrayList<String[]> concepts = new ArrayList<String[]>();
+		for (ArrayList<String> operands : getOperands(qs)) {
+			if (operands.size() == 1 && operands.get(0).startsWith("(")) {
+				String group = operands.get(0);
+				concepts.addAll(Arrays.asList(
+						getConcepts(group.substring(1, group.length() - 1))));
+				continue;
+			}
+
+			ArrayList<String> alternatives = new ArrayList<String>();
+			for (String operand : operands) {
+				if (operand.startsWith("(")) {
+					String group = operand.substring(1, operand.length() - 1);
+					String[][] inner = getConcepts(group);
+					if (inner.length == 1)
+						alternatives.addAll(Arrays.asList(inner[0]));
+					else if (inner.length > 1)
+						alternatives.add(group.replace('"', ' '));
+				} else {
+					alternatives.add(operand);
+				}
+			}
+			if (alternatives.size() > 0)
+				concepts.add(alternatives.toArray(new String[0]));
+		}
+
+		return concepts.toArray(new String[concepts.size()][]);
+	}
+
+	/**
+	 * Splits a query string into words, phrases and groups, which are
+	 * combined with the previous ones if they are preceded by
+	 * <code>OR</code>.
+	 *
+	 * @param qs query string
+	 * @return operands of <code>OR</code>
+	 */
+	private static ArrayList<ArrayList<String>> getOperands(String qs) {
+		ArrayList<ArrayList<String>> operands =
+			new ArrayList<ArrayList<String>>();
+		boolean or = false;
+		Matcher m = UNIT.matcher(qs);
+		while (m.find()) {
+			String unit = m.group();
+			if (unit.equals("OR")) {
+				or = operands.size() > 0;
+			} else if (!unit.equals("AND")) {
+				if (!or) operands.add(new ArrayList<String>());
+				operands.get(operands.size() - 1).add(unit);
+				or = false;
+			}
+		}
+		return operands;
+	}
+
+	/**
+	 * Opens a passage index or returns it if it has already been opened.
+	 *
+	 * @param dir index directory
+	 * @return passage index
+	 * @throws IOException if the index could not be read
+	 */
+	private static synchronized PassageIndex open(String dir)
+			throws IOException {
+		PassageIndex index = opened.get(dir);
+		if (index == null) {
+			index = new PassageIndex(dir);
+			opened.put(dir, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Creates a new local knowledge miner and opens the indices.
+	 *
+	 * @param dirs directories of passage indices
+	 * @throws IOException if an index could not be read
+	 */
+	public LocalKM(String[] dirs) throws IOException {
+		indices = new PassageIndex[dirs.length];
+		for (int i = 0; i < dirs.length; i++) indices[i] = open(dirs[i]);
+	}
+
+	/**
+	 * Protected constructor used by the <code>getCopy()</code> method.
+	 *
+	 * @param indices passage indices
+	 */
+	protected LocalKM(PassageIndex[] indices) {
+		this.indices = indices;
+	}
+
+	/**
+	 * Returns the maximum total number of search results.
+	 *
+	 * @return maximum total number of search results
+	 */
+	protected int getMaxResultsTotal() {
+		return MAX_RESULTS_TOTAL;
+	}
+
+	/**
+	 * Returns the maximum number of search results per query.
+	 *
+	 * @return maximum total number of search results
+	 */
+	protected int getMaxResultsPerQuery() {
+		return MAX_RESULTS_PERQUERY;
+	}
+
+	/**
+	 * Queries the passage indices and returns an array containing up to
+	 * <code>maxResults</code> search results, starting at
+	 * <code>firstResult</code>.
+	 *
+	 * @return search results or an empty array, if the search failed
+	 */
+	protected Result[] doSearch() {
+		String[][] concepts = getConcepts(query.getQueryString());
+		int maxHits = firstResult - 1 + maxResults;
+
+		// search the indices and merge the results by score
+		ArrayList<Hit> hits = new ArrayList<Hit>();
+		HashMap<Hit, PassageIndex> hitIndices =
+			new HashMap<Hit, PassageIndex>();
+		for (PassageIndex index : indices)
+			for (Hit hit : index.search(concepts, maxHits)) {
+				hits.add(hit);
+				hitIndices.put(hit, index);
+			}
+		Collections.sort(hits, PassageIndex.RANK);
+
+		// get passages and document numbers
+		int first = Math.min(firstResult - 1, hits.size());
+		int count = Math.min(maxHits, hits.size()) - first;
+		String[] passages = new String[count];
+		String[] docNos = new String[count];
+		try {
+			for (int i = 0; i < count; i++) {
+				Hit hit = hits.get(first + i);
+				PassageIndex index = hitIndices.get(hit);
+				passages[i] = index.getText(hit.getPassage());
+				docNos[i] = index.getDocNo(hit.getPassage());
+			}
+		} catch (IOException e) {
+			MsgPrinter.printSearchError(e);  // print search error message
+
+			return new Result[0];
+		}
+
+		return getResults(passages, docNos, false);
+	}
+
+	/**
+	 * Returns a new instance of <code>LocalKM</code> that shares the indices.
+	 * A new instance is created for each query.
+	 *
+	 * @return new instance of <code>LocalKM</code>
+	 */
+	public KnowledgeMiner getCopy() {
+		return new LocalKM(indices);
+	}
+}
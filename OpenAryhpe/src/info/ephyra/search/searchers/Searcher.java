@@ -2,22 +2,24 @@ package info.ephyra.search.searchers;
 
 import info.ephyra.querygeneration.Query;
 import info.ephyra.search.Result;
-import info.ephyra.search.Search;
+
+import java.util.concurrent.Callable;
 
 /**
  * <p>A <code>Searcher</code> queries an unstructured or (semi)structured
- * knowledge source and passes the results to the static class
- * <code>Search</code>.</p>
+ * knowledge source. It is submitted to the <code>SearchScheduler</code>, which
+ * passes the results to the <code>SearchRequest</code> it was started for.</p>
  * 
- * <p>It runs as a separate thread, so several queries can be performed in
- * parallel.</p>
+ * <p>It runs on a thread of the <code>SearchScheduler</code>, so several
+ * queries can be performed in parallel.</p>
  * 
- * <p>This class extends the class <code>Thread</code> and is abstract.</p>
+ * <p>This class implements the interface <code>Callable</code> and is
+ * abstract.</p>
  * 
  * @author Nico Schlaefer
  * @version 2005-11-01
  */
-public abstract class Searcher extends Thread {
+public abstract class Searcher implements Callable<Result[]> {
 	/** Query that is performed. */
 	protected Query query;
 	/** The results found in the knowledge source. */
@@ -32,16 +34,34 @@ public abstract class Searcher extends Thread {
 	protected abstract Result[] doSearch();
 	
 	/**
-	 * Performs the search and passes the results to the static class
-	 * <code>Search</code>.
+	 * Returns the query that is performed.
+	 * 
+	 * @return <code>Query</code> object
+	 */
+	public Query getQuery() {
+		return query;
+	}
+	
+	/**
+	 * Returns a key that identifies the search. Searches with equal keys return
+	 * the same results, so a search is not performed again while an equal
+	 * search is pending.
+	 * 
+	 * @return key of the search or <code>null</code>, if it should always be
+	 * 		   performed
+	 */
+	public Object getKey() {
+		return null;
+	}
+	
+	/**
+	 * Performs the search.
+	 * 
+	 * @return search results or an empty array, if the search failed
 	 */
-	public void run() {
-		if (query != null) {
-			// perform search
-			Result[] results = doSearch();
-			
-			// pass results to class Search
-			Search.addResults(results);
-		}
+	public Result[] call() {
+		if (query == null) return new Result[0];
+		
+		return doSearch();
 	}
 }
@@ -95,8 +95,10 @@ public class YahooKM extends KnowledgeMiner {
 				retries++;
 				
 				try {
-					YahooKM.sleep(1000);
-				} catch (InterruptedException ie) {}
+					Thread.sleep(1000);
+				} catch (InterruptedException ie) {
+					return new Result[0];  // search was cancelled
+				}
 			}
 		
 		// get snippets and URLs of the corresponding websites
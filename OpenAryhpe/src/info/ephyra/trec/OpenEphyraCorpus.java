@@ -33,8 +33,10 @@ import info.ephyra.questionanalysis.QuestionNormalizer;
 import info.ephyra.search.Result;
 import info.ephyra.search.Search;
 import info.ephyra.search.searchers.IndriKM;
+import info.ephyra.search.searchers.LocalKM;
 import info.ephyra.search.searchers.YahooKM;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -97,6 +99,13 @@ public class OpenEphyraCorpus extends OpenEphyra {
 			Search.addKnowledgeMiner(new IndriKM(indriIndices, false));
 		for (String[] indriServers : IndriKM.getIndriServers())
 			Search.addKnowledgeMiner(new IndriKM(indriServers, true));
+		for (String[] localIndices : LocalKM.getLocalIndices())
+			try {
+				Search.addKnowledgeMiner(new LocalKM(localIndices));
+			} catch (IOException e) {
+				MsgPrinter.printErrorMsg("Could not open passage index: " +
+						e.getMessage());
+			}
 		// - knowledge annotators for (semi-)structured knowledge sources
 		Search.clearKnowledgeAnnotators();
 		
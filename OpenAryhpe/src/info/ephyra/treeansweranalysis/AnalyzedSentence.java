@@ -0,0 +1,183 @@
+package info.ephyra.treeansweranalysis;
+
+import info.ephyra.nlp.NeAnnotation;
+import info.ephyra.nlp.StanfordParser;
+import info.ephyra.questionanalysis.Term;
+import info.ephyra.util.StringUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TypedDependency;
+
+/**
+ * <p>An <code>AnalyzedSentence</code> holds the linguistic analysis of a single
+ * answer sentence: tokens, part of speech tags, chunks, named entities, the
+ * parse tree and its typed dependencies.</p>
+ *
+ * <p>The analysis is computed once and carried from <code>TreeBreaker</code>
+ * through <code>TreeAnswers</code> and <code>TreeAnswerAnalyzer</code> to
+ * <code>TreeQuestionGenerator</code>, so that every sentence is parsed only
+ * once. The parse tree is computed lazily for sentences that have not been
+ * parsed before.</p>
+ */
+public class AnalyzedSentence {
+	/** The sentence. */
+	private String sentence;
+	/** Tokens of the sentence (rule-based tokenizer for NE extraction). */
+	private String[] tokens;
+	/** Tokens of the normalized sentence used for term extraction. */
+	private String[] termTokens;
+	/** Part of speech tags of <code>termTokens</code>. */
+	private String[] pos;
+	/** Chunk tags of <code>termTokens</code>. */
+	private String[] chunks;
+	/** Named entities found by the NE taggers. */
+	private NeAnnotation nes;
+	/** Terms in the sentence. */
+	private Term[] terms;
+	/** Parse tree of the sentence. */
+	private Tree tree;
+	/** Typed dependencies of the parse tree. */
+	private Collection<TypedDependency> deps;
+	/** Indicates that the typed dependencies have been computed. */
+	private boolean depsComputed = false;
+
+	public AnalyzedSentence(String sentence) {
+		this.sentence = sentence;
+	}
+
+	/**
+	 * Creates an analysis for a sentence that has already been parsed.
+	 *
+	 * @param sentence the sentence
+	 * @param tree parse tree of the sentence
+	 */
+	public AnalyzedSentence(String sentence, Tree tree) {
+		this(sentence);
+		this.tree = tree;
+	}
+
+	public String getSentence() {
+		return sentence;
+	}
+
+	public String[] getTokens() {
+		return tokens;
+	}
+
+	public void setTokens(String[] tokens) {
+		this.tokens = tokens;
+	}
+
+	public String[] getTermTokens() {
+		return termTokens;
+	}
+
+	public String[] getPos() {
+		return pos;
+	}
+
+	public String[] getChunks() {
+		return chunks;
+	}
+
+	public void setTermTokens(String[] termTokens, String[] pos,
+			String[] chunks) {
+		this.termTokens = termTokens;
+		this.pos = pos;
+		this.chunks = chunks;
+	}
+
+	public String[][] getNes() {
+		return (nes != null) ? nes.getNes() : null;
+	}
+
+	public NeAnnotation getNeAnnotation() {
+		return nes;
+	}
+
+	public void setNeAnnotation(NeAnnotation nes) {
+		this.nes = nes;
+	}
+
+	public Term[] getTerms() {
+		return terms;
+	}
+
+	public void setTerms(Term[] terms) {
+		this.terms = terms;
+	}
+
+	/**
+	 * Checks whether the sentence has been parsed.
+	 *
+	 * @return <code>true</code> iff the parse tree is available
+	 */
+	public boolean isParsed() {
+		return tree != null;
+	}
+
+	/**
+	 * Returns the parse tree, parsing the sentence if this has not been done
+	 * before.
+	 *
+	 * @return parse tree
+	 */
+	public Tree getTree() {
+		if (tree == null) tree = StanfordParser.parseTree(sentence);
+		return tree;
+	}
+
+	/**
+	 * Returns the typed dependencies of the parse tree. They are computed on
+	 * the first call and cached.
+	 *
+	 * @return typed dependencies or <code>null</code>, if they could not be
+	 *         computed
+	 */
+	public Collection<TypedDependency> getTypedDependencies() {
+		if (!depsComputed) {
+			deps = StanfordParser.getTypedDependencies(getTree());
+			depsComputed = true;
+		}
+		return deps;
+	}
+
+	/**
+	 * Lowercases the first occurrence of the given word in the sentence, the
+	 * tokens and the parse tree. This is applied to the first word of a
+	 * sentence when it moves to a non-initial position in a question, without
+	 * parsing the sentence again.
+	 *
+	 * @param firstWord first word of the sentence
+	 */
+	public void lowercaseFirst(String firstWord) {
+		String lowered = StringUtils.lowercaseFirst(firstWord);
+		if (lowered.equals(firstWord)) return;
+
+		Matcher m = Pattern.compile(Pattern.quote(firstWord)).matcher(sentence);
+		sentence = m.replaceFirst(Matcher.quoteReplacement(lowered));
+
+		if (tokens != null)
+			for (int i = 0; i < tokens.length; i++)
+				if (tokens[i].equals(firstWord)) {
+					tokens[i] = lowered;
+					break;
+				}
+
+		if (tree != null) {
+			List<Tree> leaves = tree.getLeaves();
+			for (Tree leaf : leaves)
+				if (leaf.label().value().equals(firstWord)) {
+					leaf.label().setValue(lowered);
+					break;
+				}
+			// the subject may have changed its case
+			depsComputed = false;
+		}
+	}
+}
@@ -26,6 +26,8 @@ public class TreeAnswer {
 	private String sentence;
 	// the subject phrase
 	private String subject = null;
+	// the leaf index of the subject
+	private int subjectIndex = -1;
 	// all the terms this sentence contains
 	private Term[] terms = null;
 	// the tree structure of this sentence
@@ -42,6 +44,8 @@ public class TreeAnswer {
 	private Tree invTree = null;
 	// lists of possible qa phrase pairs
 	private ArrayList<QAPhrasePair> qaPhraseList = null;
+	// the analysis of the sentence (parse tree, typed dependencies, NEs)
+	private AnalyzedSentence analysis = null;
 	
 	public TreeAnswer(String sent, Term[] terms, Tree tree) {
 		this.sentence = sent;
@@ -54,6 +58,16 @@ public class TreeAnswer {
 		this.unmvTree = unmvTree;
 	}
 	
+	public TreeAnswer(String sent, Term[] terms, Tree tree, Tree unmvTree,
+			AnalyzedSentence analysis) {
+		this(sent, terms, tree, unmvTree);
+		this.analysis = analysis;
+	}
+	
+	public AnalyzedSentence getAnalysis() {
+		return analysis;
+	}
+	
 	public void setQAPhraseList(ArrayList<QAPhrasePair> qaPhraseList) {
 		this.qaPhraseList = qaPhraseList;
 	}
@@ -118,6 +132,14 @@ public class TreeAnswer {
 		this.subject = sub;
 	}
 	
+	public int getSubjectIndex() {
+		return this.subjectIndex;
+	}
+	
+	public void setSubjectIndex(int index) {
+		this.subjectIndex = index;
+	}
+	
 	/**
 	 * How many entries are there in <code>qaPairList</code>.
 	 */
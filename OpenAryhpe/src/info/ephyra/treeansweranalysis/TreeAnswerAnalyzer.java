@@ -1,9 +1,9 @@
 package info.ephyra.treeansweranalysis;
 
+import info.ephyra.answeranalysis.AnalysisContext;
 import info.ephyra.answeranalysis.Answer;
 import info.ephyra.answerselection.AnswerPattern;
 import info.ephyra.io.MsgPrinter;
-import info.ephyra.nlp.NETagger;
 import info.ephyra.nlp.OpenNLP;
 import info.ephyra.questionanalysis.Term;
 import info.ephyra.treequestiongeneration.QAPhraseGenerator;
@@ -11,8 +11,6 @@ import info.ephyra.treequestiongeneration.QAPhrasePair;
 import info.ephyra.treequestiongeneration.VerbDecomposer;
 import info.ephyra.util.Dictionary;
 import info.ephyra.util.FileUtils;
-import info.ephyra.util.RegexConverter;
-import info.ephyra.util.StringUtils;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -39,33 +37,20 @@ import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
 import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
 
 public class TreeAnswerAnalyzer {
-	private static Hashtable<String, String> reverseMap =
-		new Hashtable<String, String>();
 	private static Hashtable<String, HashSet<AnswerPattern>> props =
 		new Hashtable<String, HashSet<AnswerPattern>>();
 	private static Hashtable<String, Integer> nOfPassages =
 		new Hashtable<String, Integer>();
-	/** PROPERTY objects extracted from a <code>Result</code>. */
-	private static ArrayList<String> extr;
-	/** For each PROPERTY object the NE types. */
-	private static ArrayList<String[]> types;
-	/** For each PROPERTY object the sentence it was extracted from. */
-	private static ArrayList<String> sents;
-	/** For each PROPERTY object the answer pattern used to extract it. */
-	private static ArrayList<AnswerPattern> aps;
 	/** <code>Dictionaries</code> for term extraction. */
 	private static ArrayList<Dictionary> dicts = new ArrayList<Dictionary>();
 	
 	public static ArrayList<TreeAnswer> analyze (TreeAnswers ans) {
 		ArrayList<TreeAnswer> answerList = new ArrayList<TreeAnswer>();
-		extr = new ArrayList<String>();
-		types = new ArrayList<String[]>();
-		sents = new ArrayList<String>();
-		aps = new ArrayList<AnswerPattern>();
 		
 		String[] sentences = ans.getSentences();
 		Term[][] terms = ans.getTerms();
 		Tree[] trees = ans.getTrees();
+		AnalyzedSentence[] analyses = ans.getAnalyses();
 		
 		if (terms == null) return null;
 		for (int i=0; i<sentences.length; i++) {
@@ -73,7 +58,8 @@ public class TreeAnswerAnalyzer {
 			Tree compressedTree = TreeCompressor.compress(trees[i]);
 			// mark unmovable structures
 			Tree unmvMarkedTree = UnmovableTreeMarker.mark(compressedTree);
-			TreeAnswer treeAnswer = new TreeAnswer(sentences[i], terms[i], compressedTree, unmvMarkedTree);
+			TreeAnswer treeAnswer = new TreeAnswer(sentences[i], terms[i], compressedTree,
+					unmvMarkedTree, analyses[i]);
 			// decompose the main verb
 			treeAnswer = VerbDecomposer.decompose(treeAnswer);
 			if (treeAnswer == null) continue;
@@ -152,18 +138,19 @@ public class TreeAnswerAnalyzer {
 	
 	/**
 	 * Replaces tags in an extracted PROPERTY object with the original strings
-	 * stored in <code>reverseMap</code>.
+	 * stored in the reverse map of the context.
 	 * 
 	 * @param po PROPERTY object
+	 * @param ctx context of the current analysis
 	 * @return PROPERTY object without tags
 	 */
-	private static String replaceTags(String po) {
+	private static String replaceTags(String po, AnalysisContext ctx) {
 		Pattern p = Pattern.compile("<(TO|CO|NE).*?>");
 		Matcher m = p.matcher(po);
 		
 		while (m.find()) {
 			String tag = m.group(0);
-			String rep = reverseMap.get(tag);  // look up replacement
+			String rep = ctx.getReverse(tag);  // look up replacement
 			if (rep != null) po = po.replace(tag, rep);
 		}
 		
@@ -217,149 +204,6 @@ public class TreeAnswerAnalyzer {
 		return added;
 	}
 	
-	/**
-	 * Replaces all TARGET objects in the sentence. The reverse mappings are
-	 * stored in <code>reverseMap</code>.
-	 * 
-	 * @param sentence input sentence
-	 * @param to the TARGET object of the question
-	 * @param nes the NEs in the sentence
-	 * @return sentence with TARGET tags or <code>null</code>, if the sentence
-	 * 		   does not contain the TARGET
-	 */
-	private static String replaceTarget(String sentence, String to,
-										String[][] nes) {
-		HashSet<String> reps = new HashSet<String>();
-		String tag, result = sentence;
-		int id = 1;
-		
-		for (String[] neType : nes)
-			for (String ne : neType)
-				if (StringUtils.equalsCommonNorm(ne, to)) reps.add(ne);
-		to = "(?i)" + RegexConverter.strToRegexWithBounds(to);
-		Matcher m = Pattern.compile(to).matcher(result);
-		while (m.find()) reps.add(m.group(0));  // get proper case
-		
-		// sort expressions by length
-		String[] sorted = reps.toArray(new String[reps.size()]);
-		StringUtils.sortByLengthDesc(sorted);
-		
-		for (String rep : sorted) {
-			tag = "<TO_" + id++ + ">";  // add unique tag ID
-			reverseMap.put(tag, rep);  // remember reverse mapping
-			rep = RegexConverter.strToRegexWithBounds(rep);
-			result = result.replaceAll(rep, tag);
-		}
-		
-		return (result.equals(sentence)) ? null : result;
-	}
-	
-	/**
-	 * Replaces all CONTEXT objects in the sentence. The reverse mappings are
-	 * stored in <code>reverseMap</code>.
-	 * 
-	 * @param sentence input sentence
-	 * @param cos the CONTEXT objects of the question
-	 * @param nes the NEs in the sentence
-	 * @return sentence with CONTEXT tags
-	 */
-	private static String replaceContext(String sentence, String[] cos,
-										 String[][] nes) {
-		HashSet<String> reps = new HashSet<String>();
-		String tag;
-		int id = 1;
-		
-		for (String[] neType : nes)
-			for (String ne : neType)
-				for (String co : cos)
-					if (StringUtils.equalsCommonNorm(ne, co)) reps.add(ne);
-		for (String co : cos) {
-			co = "(?i)" + RegexConverter.strToRegexWithBounds(co);
-			Matcher m = Pattern.compile(co).matcher(sentence);
-			while (m.find()) reps.add(m.group(0));  // get proper case
-		}
-		
-		// sort expressions by length
-		String[] sorted = reps.toArray(new String[reps.size()]);
-		StringUtils.sortByLengthDesc(sorted);
-		
-		for (String rep : sorted) {
-			tag = "<CO_" + id++ + ">";  // add unique tag ID
-			reverseMap.put(tag, rep);  // remember reverse mapping
-			rep = RegexConverter.strToRegexWithBounds(rep);
-			sentence = sentence.replaceAll(rep, tag);
-		}
-		
-		return sentence;
-	}
-	
-	/**
-	 * Replaces all NEs in the sentence. The reverse mappings are stored in
-	 * <code>reverseMap</code>.
-	 * 
-	 * @param sentence input sentence
-	 * @param nes the NEs in the sentence
-	 * @return sentence with NE tags
-	 */
-	private static String replaceNes(String sentence, String[][] nes) {
-		Hashtable<String, String> reps = new Hashtable<String, String>();
-		String neType, tag;
-		int id = 1;
-		
-		for (int i = 0; i < nes.length; i++) {
-			neType = NETagger.getNeType(i);
-			
-			for (String ne : nes[i]) {
-				tag = reps.get(ne);
-				
-				if (tag == null) tag = "<" + neType;
-				else if (!tag.contains(neType))	tag += "_" + neType;
-				
-				reps.put(ne, tag);
-			}
-		}
-		
-		// sort expressions by length
-		String[] sorted = reps.keySet().toArray(new String[reps.size()]);
-		StringUtils.sortByLengthDesc(sorted);
-		
-		for (String rep : sorted) {
-			tag = reps.get(rep) + "_" + id++ + ">";  // add unique tag ID
-			reverseMap.put(tag, rep);  // remember reverse mapping
-			rep = RegexConverter.strToRegexWithBounds(rep);
-			sentence = sentence.replaceAll(rep, tag);
-		}
-		
-		return sentence;
-	}
-	
-	/**
-	 * Prepares a sentence for answer extraction.
-	 * 
-	 * @param sentence input sentence
-	 * @param to the TARGET object of the question
-	 * @param cos the CONTEXT objects of the question
-	 * @param nes the NEs in the sentence
-	 * @return sentence ready for answer extraction or <code>null</code>, if
-	 * 		   there is no TARGET object in the input sentence
-	 */
-	private static String prepSentence(String sentence, String to, String[] cos,
-									   String[][] nes) {
-		// initialize reverse map
-		reverseMap = new Hashtable<String, String>();
-		
-		// replace TARGET and CONTEXT objects and NEs
-		sentence = replaceTarget(sentence, to, nes);
-		if (sentence == null) return null;
-		sentence = replaceContext(sentence, cos, nes);
-		sentence = replaceNes(sentence, nes);
-		
-		// add '#' at beginning and end of sentence
-		sentence = "# " + sentence + " #";
-		
-		return sentence;
-	}
-	
 	public static void addDictionary(Dictionary dict) {
 		dicts.add(dict);
 	}
@@ -3,6 +3,7 @@ package info.ephyra.treeansweranalysis;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -10,6 +11,7 @@ import info.ephyra.answeranalysis.AnswerAnalyzer;
 import info.ephyra.answerselection.AnswerPattern;
 import info.ephyra.io.MsgPrinter;
 import info.ephyra.nlp.NETagger;
+import info.ephyra.nlp.NeAnnotation;
 import info.ephyra.nlp.OpenNLP;
 import info.ephyra.nlp.StanfordParser;
 import info.ephyra.nlp.TreeUtil;
@@ -29,18 +31,26 @@ public class TreeAnswers {
 	private String[] originalSentences;
 	private String[][] tokens;
 	private String[] sentences;
-	private String[][][] nes;
+	private NeAnnotation[] nes;
 	//private String[] parses;
 	private Tree[] trees;
 	//private ArrayList<String>[] to;
 	private Term[][] terms;
 	private boolean[] firstCapitalize;
+	// the analysis of every sentence, each sentence is parsed only once
+	private AnalyzedSentence[] analyses;
 
 	// Heavy constructor;-)
 	public TreeAnswers(String answers) {
+		this(toAnalyses(OpenNLP.sentDetect(answers)));
 		this.answers = answers;
-		this.originalSentences = OpenNLP.sentDetect(this.answers);
-		this.countOfSents = this.originalSentences.length;
+	}
+	
+	// sentences coming from TreeBreaker.breakSentences() are already parsed
+	public TreeAnswers(List<AnalyzedSentence> analyses) {
+		this.analyses = analyses.toArray(new AnalyzedSentence[analyses.size()]);
+		this.countOfSents = this.analyses.length;
+		this.originalSentences = new String[this.countOfSents];
 		this.tokens = new String[this.countOfSents][];
 		//this.parses = new String[this.countOfSents];
 		this.trees = new Tree[this.countOfSents];
@@ -48,25 +58,32 @@ public class TreeAnswers {
 		this.firstCapitalize = new boolean[this.countOfSents];
 		String firstWord="";
 		for (int i = 0; i < this.countOfSents; i++) {
+			originalSentences[i] = this.analyses[i].getSentence();
 			tokens[i] = NETagger.tokenize(this.originalSentences[i]);
-			//parses[i] = StanfordParser.parse(this.originalSentences[i]);
-			trees[i] = StanfordParser.parseTree(this.originalSentences[i]);
-			//give every leave a unique index
-			trees[i] = TreeUtil.indexLeaves(trees[i]);
+			this.analyses[i].setTokens(tokens[i]);
 			sentences[i] = StringUtils.concatWithSpaces(this.tokens[i]);
 			this.firstCapitalize[i] = false;
 		}
+		if (this.answers == null)
+			this.answers = StringUtils.concatWithSpaces(this.originalSentences);
 		this.terms = new Term[this.countOfSents][];
 		// extract named entities
-		this.nes = NETagger.extractNes(this.tokens);
+		this.nes = NETagger.annotateNes(this.tokens);
 		if (this.nes != null) {
 			for (int i=0; i<this.countOfSents; i++){
+				this.analyses[i].setNeAnnotation(this.nes[i]);
 				String ansNormalized = QuestionNormalizer.normalize(this.originalSentences[i]);
 				// resolve verb constructions with auxiliaries
 				// TODO return only one best string
 				String verbMod = (QuestionNormalizer.handleAuxiliaries(ansNormalized))[0];
-				this.terms[i] = TermExtractor.getTerms(verbMod, "", this.nes[i],
-						AnswerAnalyzer.getDictionaries());
+				// tokens, POS tags and chunks are kept with the analysis
+				String[] termTokens = OpenNLP.tokenize(verbMod);
+				String[] pos = OpenNLP.tagPos(termTokens);
+				String[] chunks = OpenNLP.tagChunks(termTokens, pos);
+				this.analyses[i].setTermTokens(termTokens, pos, chunks);
+				this.terms[i] = TermExtractor.getTerms(verbMod, termTokens, pos,
+						chunks, this.nes[i], AnswerAnalyzer.getDictionaries());
+				this.analyses[i].setTerms(this.terms[i]);
 				
 				// check whether the first letter of the first word of the sentence should be capitalized
 				// when the first word is moving to a non-initial position.
@@ -89,28 +106,43 @@ public class TreeAnswers {
 				}
 				
 				if (! this.firstCapitalize[i]) {
-					sentences[i] = sentences[i].replaceFirst(firstWord, StringUtils.lowercaseFirst(firstWord));
-					originalSentences[i] = originalSentences[i].replaceFirst(firstWord, StringUtils.lowercaseFirst(firstWord));
-					tokens[i][0] = firstWord;
+					sentences[i] = sentences[i].replaceFirst(Pattern.quote(firstWord),
+							Matcher.quoteReplacement(StringUtils.lowercaseFirst(firstWord)));
+					// fix the case in the analysis instead of parsing again
+					this.analyses[i].lowercaseFirst(firstWord);
+					originalSentences[i] = this.analyses[i].getSentence();
 				}
 				
 			}
 
 		}
 
-		// parse trees
+		// parse trees (only sentences that haven't been parsed yet)
 		for (int i = 0; i < this.countOfSents; i++) {
-			trees[i] = StanfordParser.parseTree(this.originalSentences[i]);
+			trees[i] = this.analyses[i].getTree();
 			//give every leave a unique index
 			trees[i] = TreeUtil.indexLeaves(trees[i]);
 		}
 	}
 	
+	private static ArrayList<AnalyzedSentence> toAnalyses(String[] sentences) {
+		ArrayList<AnalyzedSentence> analyses = new ArrayList<AnalyzedSentence>();
+		for (String sentence : sentences)
+			analyses.add(new AnalyzedSentence(sentence));
+		return analyses;
+	}
+	
 	public String[] getSentences() {
 		return sentences;
 	}
 	
 	public String[][][] getNes() {
+		String[][][] nes = new String[this.nes.length][][];
+		for (int i = 0; i < nes.length; i++) nes[i] = this.nes[i].getNes();
+		return nes;
+	}
+	
+	public NeAnnotation[] getNeAnnotations() {
 		return nes;
 	}
 	
@@ -130,6 +162,10 @@ public class TreeAnswers {
 		return trees;
 	}
 	
+	public AnalyzedSentence[] getAnalyses() {
+		return analyses;
+	}
+	
 	public static void main(String[] args) {
 		String answers  = "Al Gore was born in Washington DC.";
 		TreeAnswers ans = new TreeAnswers(answers);
@@ -4,17 +4,18 @@ import info.ephyra.io.MsgPrinter;
 import info.ephyra.nlp.NETagger;
 import info.ephyra.nlp.OpenNLP;
 import info.ephyra.nlp.StanfordParser;
+import info.ephyra.nlp.TreePatterns;
 import info.ephyra.nlp.TreeUtil;
 import info.ephyra.util.StringUtils;
 
+import java.util.ArrayList;
+
 import org.apache.log4j.Logger;
 
 import edu.stanford.nlp.trees.CollinsHeadFinder;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.tregex.TregexMatcher;
 import edu.stanford.nlp.trees.tregex.TregexPattern;
-import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
-import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
 
 // this class breaks a long sentence to several small sentences, cf. Table 2.
 public class TreeBreaker {
@@ -22,19 +23,16 @@ public class TreeBreaker {
 	private static boolean initialized = false;
 	private static Logger log = Logger.getLogger(TreeBreaker.class);
 	
-	//warning: older version of stanford parser will get it wrong here
-	//test sent: Average maturity of the funds' investments lengthened by a day to 41 days , the longest since early August , according to Donoghue's .
-	//in this case, the comma following August will not be the sister of "August" ($..), but in an upper position
-	//private static String tregexMatchNounApp = "NP !< CC !< CONJP < (NP=noun $.. (/,/ $.. (NP=app $.. /,/)))";
-	private static String tregexMatchNounApp = "NP !< CC !< CONJP < (NP=noun $.. (/,/ $.. (NP=app .. /,/)))";
+	// the patterns are loaded from res/nlp/treetransform/patterns
+	// into the TreePatterns registry, see there for comments
+	// the Tsurgeon operations are not shared between threads, they are
+	// fetched from the registry for the current thread when they are applied
 	private static TregexPattern tregexPatternMatchNounApp;
-	
-	private static String tregexMatchNounModifier = "NP=noun > NP $.. VP=modifier";
 	private static TregexPattern tregexPatternMatchNounModifier;
-
-	private static String tregexMatchFiniteS = "S=finite !> ROOT !>> NP|PP < NP < (VP < VBP|VB|VBZ|VBD|MD) ?< /\\./=punct";
 	private static TregexPattern tregexPatternMatchFiniteS;
-	
+	private static TregexPattern tregexPatternMatchRelativeClauseObject;
+	private static TregexPattern tregexPatternMatchRelativeClauseSubject;
+	private static TregexPattern tregexPatternMatchCC;
 	
 	/*
 	// As an indication of subject and object, NP-SBJ and -NONE- are free gifts from PTB so sadly we can't use it here.
@@ -49,53 +47,22 @@ public class TreeBreaker {
 	private static TsurgeonPattern tsurgeonPatternReplaceObject;
 	*/
 	
-	private static String tregexMatchRelativeClauseObject = 
-      "NP=object > NP $.. (SBAR " +
-		                        " <  (S=rel " +
-		                                    " <, NP " +
-		                                    " < (VP  < (/VB/=verb !. /VB/ " + //verb is the last VB of VP (no VB follows verb)
-		                                                          "!$+ NP " + //avoid looping caused by insertion.
-		                                               ") " +
-		                                         ") " +
-		                              ") " +
-		                        "!< WHADVP " +
-		                        "!< WHADJP " +
-		                   ")";
-	private static TregexPattern tregexPatternMatchRelativeClauseObject;
-	private static String operationInsertObject = "insert object $- verb";
-	private static TsurgeonPattern tsurgeonPatternInsertObject;
-	
-	private static String tregexMatchRelativeClauseSubject = 
-	      "NP=subject > NP $.. (SBAR " +
-			                        " <  (S=rel " +
-			                                    " < (VP  !, NP  ) " +
-			                              ") " +
-			                        "!< WHADVP " +
-			                        "!< WHADJP " +
-			                   ")";
-	private static TregexPattern tregexPatternMatchRelativeClauseSubject;
-	
-	private static String tregexMatchCC = "VP < (CC=cc ,, VP=vp1 .. VP=vp2) > (S > ROOT)";
-	private static TregexPattern tregexPatternMatchCC;
-	
 	// initialize all the matching patterns
-	// must be called before running other operations
+	// must be called after TreePatterns.loadPatterns() and before running other operations
 	public static boolean initialize() {
 		
 		try {
-			tregexPatternMatchNounApp = TregexPattern.compile(tregexMatchNounApp);
-			tregexPatternMatchNounModifier = TregexPattern.compile(tregexMatchNounModifier);
-			tregexPatternMatchFiniteS = TregexPattern.compile(tregexMatchFiniteS);
-			
-			tregexPatternMatchRelativeClauseObject = TregexPattern.compile(tregexMatchRelativeClauseObject);
-			tsurgeonPatternInsertObject = Tsurgeon.parseOperation(operationInsertObject);
-			
-			tregexPatternMatchRelativeClauseSubject = TregexPattern.compile(tregexMatchRelativeClauseSubject);
-			tregexPatternMatchCC = TregexPattern.compile(tregexMatchCC);
-			
+			tregexPatternMatchNounApp = TreePatterns.getTregex("tb.matchNounApp");
+			tregexPatternMatchNounModifier = TreePatterns.getTregex("tb.matchNounModifier");
+			tregexPatternMatchFiniteS = TreePatterns.getTregex("tb.matchFiniteS");
+			tregexPatternMatchRelativeClauseObject = TreePatterns.getTregex("tb.matchRelativeClauseObject");
+			tregexPatternMatchRelativeClauseSubject = TreePatterns.getTregex("tb.matchRelativeClauseSubject");
+			tregexPatternMatchCC = TreePatterns.getTregex("tb.matchCC");
+			// check that the Tsurgeon operations exist
+			TreePatterns.getTsurgeon("tb.insertObject");
 			initialized = true;
-		} catch (edu.stanford.nlp.trees.tregex.ParseException e) {
-			log.error("Error parsing regex pattern for TreeBreaker."+e);
+		} catch (IllegalArgumentException e) {
+			MsgPrinter.printErrorMsg(e.getMessage());
 			return false;
 		}
 		
@@ -103,15 +70,52 @@ public class TreeBreaker {
 	}
 	
 	public static String doBreak(String answers) {
+		return doBreak(answers, new ArrayList<AnalyzedSentence>());
+	}
+	
+	/**
+	 * Breaks the sentences in <code>answers</code> and returns the original
+	 * and the new sentences in the same order as <code>doBreak()</code> does.
+	 * The original sentences carry their parse trees, thus they don't need to
+	 * be parsed again by <code>TreeAnswers</code>.
+	 * 
+	 * @param answers text to break
+	 * @return analyses of the sentences or <code>null</code>
+	 */
+	public static ArrayList<AnalyzedSentence> breakSentences(String answers) {
+		ArrayList<AnalyzedSentence> analyses = new ArrayList<AnalyzedSentence>();
+		if (doBreak(answers, analyses) == null) return null;
+		return analyses;
+	}
+	
+	/**
+	 * Breaks sentences that have already been split by the sentence detector,
+	 * like <code>breakSentences(String)</code>.
+	 * 
+	 * @param sentences sentences to break
+	 * @return analyses of the sentences or <code>null</code>
+	 */
+	public static ArrayList<AnalyzedSentence> breakSentences(String[] sentences) {
+		ArrayList<AnalyzedSentence> analyses = new ArrayList<AnalyzedSentence>();
+		if (doBreak(sentences, analyses) == null) return null;
+		return analyses;
+	}
+	
+	// fills analyses with one entry per sentence of the returned text
+	private static String doBreak(String answers, ArrayList<AnalyzedSentence> analyses) {
+		if (answers == null) return null;
+		return doBreak(OpenNLP.sentDetect(answers), analyses);
+	}
+	
+	private static String doBreak(String[] originalSentences, ArrayList<AnalyzedSentence> analyses) {
 		if (!initialized) {
 			MsgPrinter.printErrorMsg("Must initialize TreeBreaker first. Returning null");
 			return null;
 		}
-		if (answers == null) return null;
+		if (originalSentences == null) return null;
 		
 		log.debug("Breaking sentences.");
 		String newAnswers="";
-		String[] originalSentences = OpenNLP.sentDetect(answers);
 		int countOfSents = originalSentences.length;
 		log.debug("Count of original one: "+countOfSents);
 
@@ -123,6 +127,7 @@ public class TreeBreaker {
 			original = originalSentences[i];
 			newAnswers += original+" ";
 			tree = StanfordParser.parseTree(original);
+			analyses.add(new AnalyzedSentence(original, tree));
 			log.debug("Sentence "+i+" :"+original);
 			log.debug(tree.pennString()+"\n");
 			
@@ -148,6 +153,7 @@ public class TreeBreaker {
 				log.debug("New sent: "+newSent);
 				if (! newAnswers.contains(newSent)) {
 					newAnswers += newSent;
+					analyses.add(new AnalyzedSentence(newSent.trim()));
 				}
 			}
 			
@@ -175,6 +181,7 @@ public class TreeBreaker {
 				// if we append newSent to newAnswers, the sentence detector of opennlp won't
 				// recgonize it as two sentences! Extremely wierd...
 				newAnswers = newSent+newAnswers;
+				analyses.add(0, new AnalyzedSentence(newSent.trim()));
 			}
 			
 			
@@ -200,6 +207,7 @@ public class TreeBreaker {
 				log.debug("New sent: "+newSent);
 				if (! newAnswers.contains(newSent)) {
 					newAnswers += newSent;
+					analyses.add(new AnalyzedSentence(newSent.trim()));
 				}
 			}
 			
@@ -214,8 +222,8 @@ public class TreeBreaker {
 			while (tregexMatcher.find()) {
 				log.debug("Enter object in relative clause");
 				// replace the NONE object with noun
-				aTree = Tsurgeon.processPattern(tregexPatternMatchRelativeClauseObject, 
-						tsurgeonPatternInsertObject, aTree);
+				aTree = TreePatterns.process(tregexPatternMatchRelativeClauseObject, 
+						TreePatterns.getTsurgeon("tb.insertObject"), aTree);
 				Tree sTree = tregexMatcher.getNode("rel");
 				
 				String newSent = TreeUtil.getLabel(sTree);
@@ -223,6 +231,7 @@ public class TreeBreaker {
 				log.debug("New sent: "+newSent);
 				if (! newAnswers.contains(newSent)) {
 					newAnswers = newSent+newAnswers;
+					analyses.add(0, new AnalyzedSentence(newSent.trim()));
 				}
 			}
 			
@@ -238,6 +247,7 @@ public class TreeBreaker {
 				log.debug("New sent: "+newSent);
 				if (! newAnswers.contains(newSent)) {
 					newAnswers = newSent+newAnswers;
+					analyses.add(0, new AnalyzedSentence(newSent.trim()));
 				}
 			}
 			
@@ -268,6 +278,7 @@ public class TreeBreaker {
 				if (! newAnswers.contains(newSent)) {
 					log.debug("New sent: "+newSent);
 					newAnswers = newSent+newAnswers;
+					analyses.add(0, new AnalyzedSentence(newSent.trim()));
 				}
 				log.debug("wholesent: "+wholeSent);
 				newSent = wholeSent.replaceFirst(ccvp2Sent+" ", "")+" ";
@@ -277,6 +288,7 @@ public class TreeBreaker {
 				if (! newAnswers.contains(newSent)) {
 					log.debug("New sent: "+newSent);
 					newAnswers = newSent+newAnswers;
+					analyses.add(0, new AnalyzedSentence(newSent.trim()));
 				}
 			}
 		}
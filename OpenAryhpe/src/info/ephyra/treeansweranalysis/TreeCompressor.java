@@ -1,15 +1,14 @@
 package info.ephyra.treeansweranalysis;
 
 import info.ephyra.io.MsgPrinter;
-import info.ephyra.treequestiongeneration.VerbDecomposer;
+import info.ephyra.nlp.TreePatterns;
+import info.ephyra.nlp.TreeUtil;
 
 import org.apache.log4j.Logger;
 
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.tregex.TregexMatcher;
 import edu.stanford.nlp.trees.tregex.TregexPattern;
-import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
-import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
 
 // this class removes conj, adjunct and appositives of a tree, described in Table 1.
 public class TreeCompressor {
@@ -17,41 +16,30 @@ public class TreeCompressor {
 	private static boolean initialized = false;
 	private static Logger log = Logger.getLogger(TreeCompressor.class);
 	
-	private static String tregexMatchConj = "ROOT < (S < CC=conj)";
+	// the patterns are loaded from res/nlp/treetransform/patterns
+	// into the TreePatterns registry, see there for comments
+	// the Tsurgeon operations are not shared between threads, they are
+	// fetched from the registry for the current thread when they are applied
 	private static TregexPattern tregexPatternMatchConj;
-	// Sentence-initial conjuctions are removed by deleting conj.
-	private static String operationDelConj = "delete conj";
-	private static TsurgeonPattern tsurgeonPatternDelConj;
-
-	// TODO: test whether it needs to remove adjunct.
-	private static String tregexMatchAdjunct = "ROOT < (S < (/[^,]/=adjunct $.. (/,/ $.. VP)))";
 	private static TregexPattern tregexPatternMatchAdjunct;
-	// Sentence-initial adjunct phrases are removed by deleting adjunct.
-	private static String operationDelAdjunct = "delete adjunct";
-	private static TsurgeonPattern tsurgeonPatternDelAdjunct;
-
-	private static String tregexMatchAppo = "SBAR|VP|NP=app $, /,/=lead $. /,/=trail !$ CC !$ CONJP";
 	private static TregexPattern tregexPatternMatchAppo;
-	// Appositives are removed by deleting app, lead, and trail.
-	private static String operationDelAppo = "delete app lead trail";
-	private static TsurgeonPattern tsurgeonPatternDelAppo;
 
 	// initialize all the matching patterns
-	// must be called before running other operations
+	// must be called after TreePatterns.loadPatterns() and before running other operations
 	public static boolean initialize() {
 		
 		//log.setLevel(Level.DEBUG);
 		try {
-			tregexPatternMatchConj = TregexPattern.compile(tregexMatchConj);
-			tregexPatternMatchAdjunct = TregexPattern.compile(tregexMatchAdjunct);
-			tregexPatternMatchAppo = TregexPattern.compile(tregexMatchAppo);
-
-			tsurgeonPatternDelConj = Tsurgeon.parseOperation(operationDelConj);
-			tsurgeonPatternDelAdjunct = Tsurgeon.parseOperation(operationDelAdjunct);
-			tsurgeonPatternDelAppo = Tsurgeon.parseOperation(operationDelAppo);
+			tregexPatternMatchConj = TreePatterns.getTregex("tc.matchConj");
+			tregexPatternMatchAdjunct = TreePatterns.getTregex("tc.matchAdjunct");
+			tregexPatternMatchAppo = TreePatterns.getTregex("tc.matchAppo");
+			// check that the Tsurgeon operations exist
+			TreePatterns.getTsurgeon("tc.delConj");
+			TreePatterns.getTsurgeon("tc.delAdjunct");
+			TreePatterns.getTsurgeon("tc.delAppo");
 			initialized = true;
-		} catch (edu.stanford.nlp.trees.tregex.ParseException e) {
-			log.error("Error parsing regex pattern.");
+		} catch (IllegalArgumentException e) {
+			MsgPrinter.printErrorMsg(e.getMessage());
 			return false;
 		}
 		
@@ -69,17 +57,19 @@ public class TreeCompressor {
 		}
 		
 		TregexMatcher tregexMatcher;
-		Tree outTree = inTree.deeperCopy();
+		Tree outTree = TreeUtil.copy(inTree);
 		
 		tregexMatcher = tregexPatternMatchConj.matcher(outTree);
-		if (tregexMatcher.find()) {
-			outTree = Tsurgeon.processPattern(tregexPatternMatchConj, tsurgeonPatternDelConj, outTree);
+		if (TreePatterns.find(tregexMatcher)) {
+			outTree = TreePatterns.process(tregexPatternMatchConj,
+					TreePatterns.getTsurgeon("tc.delConj"), outTree);
 			log.debug("Sentence-initial conjunction found. Performing deletion.");
 			log.debug("Tree: "+outTree.pennString());
 		}
 		tregexMatcher = tregexPatternMatchAppo.matcher(outTree);
-		if (tregexMatcher.find()) {
-			outTree = Tsurgeon.processPattern(tregexPatternMatchAppo, tsurgeonPatternDelAppo, outTree);
+		if (TreePatterns.find(tregexMatcher)) {
+			outTree = TreePatterns.process(tregexPatternMatchAppo,
+					TreePatterns.getTsurgeon("tc.delAppo"), outTree);
 			log.debug("Appositives found. Performing deletion.");
 			log.debug("Tree: "+outTree.pennString());
 		}
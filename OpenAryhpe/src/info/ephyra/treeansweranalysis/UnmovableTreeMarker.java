@@ -1,72 +1,145 @@
 package info.ephyra.treeansweranalysis;
 
 import info.ephyra.io.MsgPrinter;
-import info.ephyra.treequestiongeneration.VerbDecomposer;
+import info.ephyra.nlp.TreePatterns;
+import info.ephyra.nlp.TreeUtil;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
+import edu.stanford.nlp.trees.PennTreebankLanguagePack;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.tregex.TregexMatcher;
 import edu.stanford.nlp.trees.tregex.TregexPattern;
-//import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
-//import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
 
 // this class marks phrases which may not undergo WH-movement
 public class UnmovableTreeMarker {
 	
-	private static ArrayList<String> regexList = new ArrayList<String>();
-	private static ArrayList<TregexPattern> regexPatternList= new ArrayList<TregexPattern>();
 	private static Logger log = Logger.getLogger(UnmovableTreeMarker.class);
+	
+	// the constraints in res/nlp/treetransform/unmovable that mark() evaluates in
+	// a single traversal of the tree, see matchRule(). Other Tregex patterns in
+	// the file are matched with Tregex as before, and the patterns are applied in
+	// the order of the file. UnmovableTreeMarkerCheck compares the result to
+	// running all patterns with Tregex one after the other.
+	static final String[] CONSTRAINTS = {
+		"VP < (S=unmv $,, /,/)",
+		"S < PP|ADJP|ADVP|S|SBAR=unmv",
+		"/\\\\.*/ < CC << NP|ADJP|VP|ADVP|PP=unmv",
+		"SBAR < (IN|DT < /[^that]/) << NP|PP=unmv",
+		"SBAR < /^WH.*P$/ << NP|ADJP|VP|ADVP|PP=unmv",
+		"SBAR <, IN|DT < (S < (NP=unmv !$,, VP))",
+		"@UNMV << NP|ADJP|VP|ADVP|PP=unmv",
+		"S < (NP=unmv $ NP|UNMV-NP)",
+		"NP=unmv < EX",
+		"NP=unmv >> PRN"
+	};
+	
+	// a run of CONSTRAINTS in their order, which is evaluated in a single pass,
+	// or a pattern that is not one of the CONSTRAINTS
+	private static class Stage {
+		// enabled[k] is true iff constraint k (counting from 1) is in the run
+		boolean[] enabled;
+		TregexPattern pattern;
+		// the last constraint in the run
+		int last;
+	}
+	private static ArrayList<Stage> stages = new ArrayList<Stage>();
+	
+	// node labels and regular expressions used by the constraints
+	private static final HashSet<String> MODIFIERS =
+		new HashSet<String>(Arrays.asList("PP", "ADJP", "ADVP", "S", "SBAR"));
+	private static final HashSet<String> PHRASES =
+		new HashSet<String>(Arrays.asList("NP", "ADJP", "VP", "ADVP", "PP"));
+	private static final HashSet<String> NP_PP =
+		new HashSet<String>(Arrays.asList("NP", "PP"));
+	private static final Pattern CONJUNCTION_PARENT = Pattern.compile("\\\\.*");
+	private static final Pattern NOT_THAT = Pattern.compile("[^that]");
+	private static final Pattern WH_PHRASE = Pattern.compile("^WH.*P$");
+	private static final PennTreebankLanguagePack tlp = new PennTreebankLanguagePack();
+	
+	// constraints that mark the descendants of a node are inherited as flags
+	private static final int UNDER_CONJUNCTION = 1;
+	private static final int UNDER_ADJUNCT_CLAUSE = 2;
+	private static final int UNDER_WH_PHRASE = 4;
+	private static final int UNDER_UNMV = 8;
+	private static final int UNDER_PRN = 16;
 
 	UnmovableTreeMarker() {
 //		regexList = new ArrayList<String>();
 //		regexPatternList = new ArrayList<TregexPattern>();
 	}
 	
+	// loads the constraints and returns false if the file could not be read,
+	// is empty or contains an invalid Tregex pattern
 	public static boolean loadUnmvRegex (String path) {
-		File file = new File(path);
-		
-		try {
-			BufferedReader in = new BufferedReader(new FileReader(file));
-			String line = null;
-			while(in.ready()) {
-				line = in.readLine().trim();
-				if (line.length() == 0 || line.startsWith("#"))
-					continue;  // skip blank lines and comments
-				if (line != null) {
-					regexList.add(line);
-				}
-			}
-			in.close();
-		} catch (IOException e) {
+		ArrayList<String> regexList = readConstraints(path);
+		if (regexList == null || regexList.isEmpty()) {
 			return false;
 		}
 		
-		if (regexList.isEmpty()) {
-			return false;
+		ArrayList<Stage> loaded = new ArrayList<Stage>();
+		Stage stage = null;
+		for (String regex : regexList) {
+			int rule = Arrays.asList(CONSTRAINTS).indexOf(regex) + 1;
+			if (rule == 0) {
+				// not a known constraint, so it is matched with Tregex
+				stage = new Stage();
+				stage.pattern = TreePatterns.compileTregex(regex);
+				if (stage.pattern == null) {
+					return false;
+				}
+				loaded.add(stage);
+				stage = null;
+				continue;
+			}
+			// constraints that are out of order start a new pass
+			if (stage == null || rule <= stage.last) {
+				stage = new Stage();
+				stage.enabled = new boolean[CONSTRAINTS.length + 1];
+				loaded.add(stage);
+			}
+			stage.enabled[rule] = true;
+			stage.last = rule;
 		}
 		
-		//MsgPrinter.printStatusMsg("Building Tregex patterns...");
-		Iterator<String> iter = regexList.iterator();
-		TregexPattern tPattern = null;
+		stages = loaded;
+		return true;
+	}
+	
+	// reads the patterns in a file of constraints, or returns null if the file
+	// could not be read
+	static ArrayList<String> readConstraints(String path) {
+		ArrayList<String> regexList = new ArrayList<String>();
+		BufferedReader in = null;
 		try {
-			while (iter.hasNext()) {
-				tPattern = TregexPattern.compile(iter.next());
-				regexPatternList.add(tPattern);
+			in = new BufferedReader(new FileReader(new File(path)));
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;  // skip blank lines and comments
+				regexList.add(line);
 			}
-		} catch (edu.stanford.nlp.trees.tregex.ParseException e) {
-			MsgPrinter.printErrorMsg("Error parsing regex pattern.");
-			return false;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			if (in != null)
+				try {
+					in.close();
+				} catch (IOException e) {}
 		}
-		
-		return true;
+		return regexList;
 	}
 	
 	// this method finds out all "unmv" node, insert "UNMV-" to the node label
@@ -76,42 +149,239 @@ public class UnmovableTreeMarker {
 			return null;
 		}
 		
-		Tree outTree = inTree.deeperCopy();
-		Iterator<TregexPattern> tregexPatternIter = regexPatternList.iterator();
-		TregexPattern tregexPattern = null;
-		TregexMatcher tregexMatcher = null;
-		//TsurgeonPattern tsurgeonPattern = null;
-		String lab, newlab;
-		//String operation;
-		while (tregexPatternIter.hasNext()) {
-			tregexPattern = tregexPatternIter.next();
-		
-			tregexMatcher = tregexPattern.matcher(outTree); 
-			try {
-				while (tregexMatcher.find()) {
-					log.debug("UNMV: "+tregexPattern.toString()+"\n");
-					Tree matchedTreeWithName = tregexMatcher.getNode("unmv");
-					// get the matched root label
-					lab = matchedTreeWithName.label().toString();
-					//lab = matchedTreeWithName.nodeString().replaceAll(" \\[[\\S]+\\]","");
-					newlab = "UNMV-"+lab;
-					// using setValue(newlab) here secretly changes outTree
-					matchedTreeWithName.label().setValue(newlab);
-					// reset() invokes recursive mathcing, still needs test here.
-					tregexMatcher.reset();
-					log.debug(outTree.pennString());
-					// in cases NP|PP=unwm, a Tsurgeon operation will rename every 
-					// match with UNMV-NP or UNMV-PP, so we can't use it.
-					//operation = "relabel unmv "+newlab;
-					//tsurgeonPattern = Tsurgeon.parseOperation(operation);
-					//outTree = Tsurgeon.processPattern(tregexPattern, tsurgeonPattern, outTree);
-					//Tsurgeon.processPattern(tregexPattern, tsurgeonPattern, matchedTreeWithName);
-				}
-			} catch (java.lang.NullPointerException e) {
+		Tree outTree = TreeUtil.copy(inTree);
+		for (Stage stage : stages) {
+			if (stage.pattern == null) {
+				markSinglePass(outTree, stage.enabled);
+			} else if (!markWithTregex(outTree, stage.pattern)) {
 				return outTree;
 			}
 		}
 		log.debug("After UNMV: "+outTree.pennString());
 		return outTree;
 	}
+	
+	// marks all matches of a pattern, one at a time because a match may depend
+	// on the nodes marked before. Returns false if Tregex failed on the tree, in
+	// which case the tree is only partly marked and the remaining patterns are
+	// skipped.
+	private static boolean markWithTregex(Tree tree, TregexPattern pattern) {
+		TregexMatcher matcher = pattern.matcher(tree);
+		try {
+			while (TreePatterns.find(matcher)) {
+				log.debug("UNMV: "+pattern.toString()+"\n");
+				Tree unmv = matcher.getNode("unmv");
+				unmv.label().setValue("UNMV-"+unmv.label().toString());
+				// the marked node may change the matches, so start over
+				matcher.reset();
+			}
+		} catch (NullPointerException e) {
+			return false;
+		}
+		return true;
+	}
+	
+	// Evaluates the enabled constraints in one top-down traversal. The result is
+	// the same as running their Tregex patterns one after the other: constraint k
+	// sees a node as "UNMV-" only if it was marked by a constraint before k.
+	// Constraints on the descendants of a node ("<<", ">>" and the "@UNMV"
+	// propagation) are passed down as flags instead of matching again from the root.
+	private static void markSinglePass(Tree tree, boolean[] enabled) {
+		// constraint that marked a node, the labels are changed at the end
+		IdentityHashMap<Tree, Integer> marked = new IdentityHashMap<Tree, Integer>();
+		
+		int rule = matchRule(tree, null, null, 0, marked, enabled, 1, CONSTRAINTS.length);
+		if (rule > 0)
+			marked.put(tree, rule);
+		markChildren(tree, null, 0, marked, enabled);
+		
+		// compute all new labels before changing any of them
+		ArrayList<Tree> nodes = new ArrayList<Tree>(marked.keySet());
+		ArrayList<String> labels = new ArrayList<String>();
+		for (Tree node : nodes)
+			labels.add("UNMV-"+node.label().toString());
+		for (int i = 0; i < nodes.size(); i++) {
+			log.debug("UNMV: "+CONSTRAINTS[marked.get(nodes.get(i)) - 1]+"\n");
+			nodes.get(i).label().setValue(labels.get(i));
+		}
+	}
+	
+	// decides the constraints for the children of a node, whose own constraints
+	// are already decided, and then descends into the children
+	private static void markChildren(Tree node, Tree parent, int flags,
+			Map<Tree, Integer> marked, boolean[] enabled) {
+		Tree[] children = node.children();
+		if (children.length == 0)
+			return;
+		int childFlags = inheritedFlags(node, flags, marked);
+		
+		// constraints 1 to 7 only look at the ancestors and left sisters of a node
+		for (Tree child : children) {
+			int rule = matchRule(child, node, parent, childFlags, marked, enabled, 1, 7);
+			if (rule > 0)
+				marked.put(child, rule);
+		}
+		// the remaining constraints may also look at right sisters
+		for (Tree child : children) {
+			if (marked.containsKey(child))
+				continue;
+			int rule = matchRule(child, node, parent, childFlags, marked, enabled,
+					8, CONSTRAINTS.length);
+			if (rule > 0)
+				marked.put(child, rule);
+		}
+		
+		for (Tree child : children)
+			markChildren(child, node, childFlags, marked, enabled);
+	}
+	
+	// returns the first enabled constraint between from and to that marks the
+	// node, or 0
+	private static int matchRule(Tree node, Tree parent, Tree grandparent, int flags,
+			Map<Tree, Integer> marked, boolean[] enabled, int from, int to) {
+		String lab = node.value();
+		for (int rule = from; rule <= to; rule++) {
+			if (!enabled[rule])
+				continue;
+			boolean match = false;
+			switch (rule) {
+			case 1:
+				// VP < (S=unmv $,, /,/)
+				match = lab.equals("S") && parent != null
+					&& label(parent, 1, marked).equals("VP")
+					&& followsComma(node, parent);
+				break;
+			case 2:
+				// S < PP|ADJP|ADVP|S|SBAR=unmv
+				// the parent may have been marked by this constraint itself
+				match = MODIFIERS.contains(lab) && parent != null
+					&& label(parent, 3, marked).equals("S");
+				break;
+			case 3:
+				// /\\.*/ < CC << NP|ADJP|VP|ADVP|PP=unmv
+				match = PHRASES.contains(lab) && (flags & UNDER_CONJUNCTION) != 0;
+				break;
+			case 4:
+				// SBAR < (IN|DT < /[^that]/) << NP|PP=unmv
+				match = NP_PP.contains(lab) && (flags & UNDER_ADJUNCT_CLAUSE) != 0;
+				break;
+			case 5:
+				// SBAR < /^WH.*P$/ << NP|ADJP|VP|ADVP|PP=unmv
+				match = PHRASES.contains(lab) && (flags & UNDER_WH_PHRASE) != 0;
+				break;
+			case 6:
+				// SBAR <, IN|DT < (S < (NP=unmv !$,, VP))
+				match = lab.equals("NP") && isComplementSubject(node, parent, grandparent, marked);
+				break;
+			case 7:
+				// @UNMV << NP|ADJP|VP|ADVP|PP=unmv
+				match = PHRASES.contains(lab) && (flags & UNDER_UNMV) != 0;
+				break;
+			case 8:
+				// S < (NP=unmv $ NP|UNMV-NP)
+				// sisters marked by this constraint itself are seen as UNMV-NP
+				match = lab.equals("NP") && parent != null
+					&& label(parent, 8, marked).equals("S")
+					&& hasNpSister(node, parent, marked);
+				break;
+			case 9:
+				// NP=unmv < EX
+				match = lab.equals("NP") && hasChild(node, "EX");
+				break;
+			case 10:
+				// NP=unmv >> PRN
+				match = lab.equals("NP") && (flags & UNDER_PRN) != 0;
+				break;
+			}
+			if (match)
+				return rule;
+		}
+		return 0;
+	}
+	
+	// flags inherited by the children of a node. Labels which are never marked
+	// (CC, IN, DT, WH phrases, PRN) are read directly from the tree.
+	private static int inheritedFlags(Tree node, int flags, Map<Tree, Integer> marked) {
+		if (CONJUNCTION_PARENT.matcher(label(node, 3, marked)).find()
+				&& hasChild(node, "CC"))
+			flags |= UNDER_CONJUNCTION;
+		if (label(node, 4, marked).equals("SBAR")) {
+			for (Tree child : node.children()) {
+				if (!child.value().equals("IN") && !child.value().equals("DT"))
+					continue;
+				// marked labels start with "UNMV-", so they always match [^that]
+				for (Tree grandchild : child.children())
+					if (NOT_THAT.matcher(grandchild.value()).find())
+						flags |= UNDER_ADJUNCT_CLAUSE;
+			}
+		}
+		if (label(node, 5, marked).equals("SBAR")) {
+			for (Tree child : node.children())
+				if (WH_PHRASE.matcher(child.value()).find())
+					flags |= UNDER_WH_PHRASE;
+		}
+		if (tlp.basicCategory(label(node, 8, marked)).equals("UNMV"))
+			flags |= UNDER_UNMV;
+		if (node.value().equals("PRN"))
+			flags |= UNDER_PRN;
+		return flags;
+	}
+	
+	// the label of a node as seen by a constraint, i.e. after all constraints
+	// before it have been applied
+	private static String label(Tree node, int rule, Map<Tree, Integer> marked) {
+		Integer markedBy = marked.get(node);
+		if (markedBy != null && markedBy < rule)
+			return "UNMV-"+node.label().toString();
+		return node.value();
+	}
+	
+	private static boolean hasChild(Tree node, String lab) {
+		for (Tree child : node.children())
+			if (child.value().equals(lab))
+				return true;
+		return false;
+	}
+	
+	// S $,, /,/
+	private static boolean followsComma(Tree node, Tree parent) {
+		for (Tree sister : parent.children()) {
+			if (sister == node)
+				return false;
+			if (sister.value().indexOf(',') >= 0)
+				return true;
+		}
+		return false;
+	}
+	
+	// SBAR <, IN|DT < (S < (NP=unmv !$,, VP))
+	private static boolean isComplementSubject(Tree node, Tree parent, Tree grandparent,
+			Map<Tree, Integer> marked) {
+		if (parent == null || grandparent == null
+				|| !label(parent, 6, marked).equals("S")
+				|| !label(grandparent, 6, marked).equals("SBAR"))
+			return false;
+		String first = grandparent.firstChild().value();
+		if (!first.equals("IN") && !first.equals("DT"))
+			return false;
+		for (Tree sister : parent.children()) {
+			if (sister == node)
+				return true;
+			if (label(sister, 6, marked).equals("VP"))
+				return false;
+		}
+		return true;
+	}
+	
+	// S < (NP=unmv $ NP|UNMV-NP)
+	private static boolean hasNpSister(Tree node, Tree parent, Map<Tree, Integer> marked) {
+		for (Tree sister : parent.children()) {
+			if (sister == node)
+				continue;
+			String lab = label(sister, 9, marked);
+			if (lab.equals("NP") || lab.equals("UNMV-NP"))
+				return true;
+		}
+		return false;
+	}
 }
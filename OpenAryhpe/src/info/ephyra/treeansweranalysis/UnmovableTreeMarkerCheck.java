@@ -0,0 +1,184 @@
+package info.ephyra.treeansweranalysis;
+
+import info.ephyra.nlp.TreePatterns;
+import info.ephyra.nlp.TreeUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.tregex.TregexMatcher;
+import edu.stanford.nlp.trees.tregex.TregexPattern;
+
+// this class checks that UnmovableTreeMarker marks the same nodes as the Tregex
+// patterns it replaced, which were matched one after the other. it compares both
+// on random trees and on the compressed parse trees of answer sentences. The
+// random trees are also marked with the optional patterns of the constraints
+// file, which are not among the constraints of the single pass.
+// usage: java UnmovableTreeMarkerCheck [answers [max_sentences]]
+// the answers file has lines "ANSWER: sentence", e.g. res/testdata/trec/trec10answers
+public class UnmovableTreeMarkerCheck {
+
+	private static final String CONSTRAINTS_FILE = "res/nlp/treetransform/unmovable";
+	private static final String PATTERNS_FILE = "res/nlp/treetransform/patterns";
+	private static final String MODEL_FILE =
+		"res/nlp/syntacticparser/stanford/englishPCFG.ser.gz";
+	private static final int RANDOM_TREES = 30000;
+	// the optional patterns in the constraints file and the constraints they
+	// follow, they are matched with Tregex
+	private static final String[][] OPTIONAL = {
+		{"@UNMV << NP|ADJP|VP|ADVP|PP=unmv", "NP|PP|ADJP|ADVP << NP|ADJP|VP|ADVP|PP=unmv"},
+		{"@UNMV << NP|ADJP|VP|ADVP|PP=unmv", "PP=unmv !< NP"}
+	};
+
+	// labels and leaves of the random trees, with near misses of the constraints
+	private static final String[] LABELS = {"ROOT", "S", "S", "SBAR", "SBAR", "VP",
+		"VP", "NP", "NP", "NP", "PP", "PP", "ADJP", "ADVP", "IN", "DT", "CC", "WHNP",
+		"WHADVP", "EX", "PRN", ",", "VB", "NN", "A\\B", "UNMV", "UNMV-NP", "NP-TMP",
+		"X", "SQ"};
+	private static final String[] LEAVES = {"that", "tha", "that-3", "the-1", "a",
+		"x,y", "UNMV", "NP", "a\\b"};
+
+	private static ArrayList<TregexPattern> patterns = new ArrayList<TregexPattern>();
+	// true iff the Tregex matcher threw a NullPointerException on the last tree,
+	// in which case the old code returned the partly marked tree
+	private static boolean aborted;
+
+	// marks the tree the way UnmovableTreeMarker did before it evaluated the
+	// constraints in a single traversal
+	private static Tree markWithTregex(Tree inTree) {
+		aborted = false;
+		Tree outTree = TreeUtil.copy(inTree);
+		for (TregexPattern pattern : patterns) {
+			TregexMatcher matcher = pattern.matcher(outTree);
+			try {
+				while (TreePatterns.find(matcher)) {
+					Tree unmv = matcher.getNode("unmv");
+					unmv.label().setValue("UNMV-" + unmv.label().toString());
+					matcher.reset();
+				}
+			} catch (NullPointerException e) {
+				aborted = true;
+				return outTree;
+			}
+		}
+		return outTree;
+	}
+
+	private static Tree randomTree(Random random, int depth) throws IOException {
+		if (depth == 0 || random.nextInt(6) == 0)
+			return Tree.valueOf("(" + LABELS[random.nextInt(LABELS.length)] + " " +
+					LEAVES[random.nextInt(LEAVES.length)] + ")");
+		StringBuilder tree = new StringBuilder("(" + LABELS[random.nextInt(LABELS.length)]);
+		int children = 1 + random.nextInt(3);
+		for (int i = 0; i < children; i++)
+			tree.append(" ").append(randomTree(random, depth - 1).toString());
+		return Tree.valueOf(tree.append(")").toString());
+	}
+
+	// counts of compared, differing, marked and aborted trees and the time taken
+	// by each implementation
+	private static int trees, diffs, marked, aborts;
+	private static long tregexTime, singlePassTime;
+
+	private static void compare(Tree tree) {
+		long start = System.nanoTime();
+		String expected = markWithTregex(tree).toString();
+		long middle = System.nanoTime();
+		String actual = UnmovableTreeMarker.mark(tree).toString();
+		singlePassTime += System.nanoTime() - middle;
+		tregexTime += middle - start;
+
+		trees++;
+		if (!expected.equals(tree.toString())) marked++;
+		if (aborted) {
+			aborts++;  // the old result depends on where Tregex failed
+		} else if (!expected.equals(actual)) {
+			if (diffs++ < 5)
+				System.out.println("DIFF " + tree + "\n  Tregex:      " + expected +
+						"\n  single pass: " + actual);
+		}
+	}
+
+	private static void report(String name) {
+		System.out.println(name + ": " + trees + " trees, " + marked + " marked, " +
+				diffs + " differ, " + aborts + " aborted by Tregex, Tregex " +
+				tregexTime / 1000000 + "ms, single pass " + singlePassTime / 1000000 + "ms");
+	}
+
+	// loads the constraints into UnmovableTreeMarker and the Tregex patterns
+	private static void load(String path) {
+		if (!UnmovableTreeMarker.loadUnmvRegex(path)) {
+			System.err.println("Could not load " + path);
+			System.exit(1);
+		}
+		patterns.clear();
+		for (String regex : UnmovableTreeMarker.readConstraints(path))
+			patterns.add(TreePatterns.compileTregex(regex));
+		trees = diffs = marked = aborts = 0;
+		tregexTime = singlePassTime = 0;
+	}
+
+	private static int compareRandom(String name) throws IOException {
+		Random random = new Random(42);
+		for (int i = 0; i < RANDOM_TREES; i++)
+			compare(randomTree(random, 2 + random.nextInt(6)));
+		report(name);
+		return diffs;
+	}
+
+	public static void main(String[] args) throws IOException {
+		// the Tregex patterns are timed without the debug output of mark()
+		Logger.getLogger(UnmovableTreeMarker.class).setLevel(Level.INFO);
+		int failed = 0;
+
+		load(CONSTRAINTS_FILE);
+		failed += compareRandom("random");
+
+		// the constraints file with the optional patterns uncommented
+		ArrayList<String> constraints = UnmovableTreeMarker.readConstraints(CONSTRAINTS_FILE);
+		for (String[] optional : OPTIONAL)
+			constraints.add(constraints.indexOf(optional[0]) + 1, optional[1]);
+		File file = File.createTempFile("unmovable", null);
+		file.deleteOnExit();
+		FileWriter out = new FileWriter(file);
+		for (String regex : constraints)
+			out.write(regex + "\n");
+		out.close();
+		load(file.getPath());
+		failed += compareRandom("random with optional patterns");
+		load(CONSTRAINTS_FILE);
+
+		if (args.length > 0) {
+			int max = (args.length > 1) ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+			if (!TreePatterns.loadPatterns(PATTERNS_FILE) || !TreeCompressor.initialize())
+				System.exit(1);
+			LexicalizedParser parser = new LexicalizedParser(MODEL_FILE);
+
+			BufferedReader in = new BufferedReader(new FileReader(args[0]));
+			String line;
+			while ((line = in.readLine()) != null && trees < max) {
+				if (!line.startsWith("ANSWER:")) continue;
+				String sentence = line.substring("ANSWER:".length()).trim();
+				if (sentence.length() == 0 || !parser.parse(sentence)) continue;
+				// the trees are prepared as in TreeAnswers and TreeAnswerAnalyzer
+				Tree tree = TreeUtil.indexLeaves(parser.getBestParse());
+				compare(TreeCompressor.compress(tree));
+			}
+			in.close();
+			report("parsed " + args[0]);
+			failed += diffs;
+		}
+
+		if (failed > 0) System.exit(1);
+	}
+}
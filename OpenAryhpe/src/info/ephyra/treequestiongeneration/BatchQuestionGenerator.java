@@ -0,0 +1,392 @@
+package info.ephyra.treequestiongeneration;
+
+import info.ephyra.io.MsgPrinter;
+import info.ephyra.nlp.OpenNLP;
+import info.ephyra.treeansweranalysis.AnalyzedSentence;
+import info.ephyra.treeansweranalysis.TreeAnswer;
+import info.ephyra.treeansweranalysis.TreeAnswerAnalyzer;
+import info.ephyra.treeansweranalysis.TreeAnswers;
+import info.ephyra.treeansweranalysis.TreeBreaker;
+import info.ephyra.util.Properties;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>Generates questions from a stream of paragraphs in a pipeline of stages
+ * that are connected by a bounded queue:</p>
+ *
+ * <ol>
+ * <li>a reader thread reads the paragraphs and splits them into
+ *     sentences,</li>
+ * <li>a pool of workers breaks and analyzes the sentences and generates
+ *     questions,</li>
+ * <li>the calling thread hands the results to a
+ *     <code>ParagraphHandler</code> in input order.</li>
+ * </ol>
+ *
+ * <p>When the queue is full, the reader waits until the handler has caught
+ * up, so only a fixed number of paragraphs is held in memory, no matter how
+ * long the input is. A paragraph with more than <code>maxSentences</code>
+ * sentences is processed in parts, which bounds the memory used by a single
+ * paragraph. Shorter paragraphs are processed as a whole, so the output is
+ * the same as with sequential processing.</p>
+ *
+ * <p>The number of workers and the maximum number of sentences per part are
+ * set by the properties <code>threads</code> and <code>maxSentences</code> in
+ * <code>conf/info.ephyra.treequestiongeneration.BatchQuestionGenerator.properties</code>.
+ * A value of 0 for <code>threads</code> uses one worker per processor.</p>
+ */
+public class BatchQuestionGenerator {
+	private static Logger log = Logger.getLogger(BatchQuestionGenerator.class);
+
+	/** Number of paragraph parts per worker that may be in process at a time. */
+	private static final int PARAGRAPHS_PER_THREAD = 4;
+	/** Default maximum number of sentences per part of a paragraph. */
+	private static final int MAX_SENTENCES = 50;
+
+	/**
+	 * Questions generated from a paragraph or, if the paragraph is long, from
+	 * a part of it.
+	 */
+	public static class Paragraph {
+		/** Position of the paragraph in the input, starting from 1. */
+		private int id;
+		/** The paragraph, only set for its first part. */
+		private String text;
+		/** Whether this is the first part of the paragraph. */
+		private boolean first;
+		/** Whether this is the last part of the paragraph. */
+		private boolean last;
+		/** Sentences of this part, released once they are processed. */
+		private String[] sentences;
+		/** Number of sentences in this part. */
+		private int oriSentCount;
+		/** Number of sentences after breaking complex sentences. */
+		private int actualSentCount;
+		/** Number of words in this part. */
+		private int wordCount;
+		/** Number of generated question-answer pairs. */
+		private int quesCount;
+		/** One entry per sentence that questions were generated from. */
+		private ArrayList<TreeAnswer> treeAnsList;
+
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * Returns the text of the paragraph.
+		 *
+		 * @return the paragraph or <code>null</code>, if this is not its
+		 *         first part
+		 */
+		public String getText() {
+			return text;
+		}
+
+		public boolean isFirst() {
+			return first;
+		}
+
+		public boolean isLast() {
+			return last;
+		}
+
+		public int getOriSentCount() {
+			return oriSentCount;
+		}
+
+		public int getActualSentCount() {
+			return actualSentCount;
+		}
+
+		public int getWordCount() {
+			return wordCount;
+		}
+
+		public int getQuesCount() {
+			return quesCount;
+		}
+
+		public ArrayList<TreeAnswer> getTreeAnsList() {
+			return treeAnsList;
+		}
+	}
+
+	/**
+	 * Receives the questions generated from each paragraph. The handler is
+	 * called on the thread that runs the batch, in input order, once for each
+	 * part of a paragraph.
+	 */
+	public interface ParagraphHandler {
+		public void handle(Paragraph paragraph) throws IOException;
+	}
+
+	/**
+	 * Breaks and analyzes the sentences of a paragraph and generates
+	 * questions.
+	 */
+	private static class Worker implements Callable<Paragraph> {
+		private Paragraph p;
+
+		public Worker(Paragraph p) {
+			this.p = p;
+		}
+
+		public Paragraph call() {
+			// break the sentences
+			ArrayList<AnalyzedSentence> analyses =
+				TreeBreaker.breakSentences(p.sentences);
+			p.sentences = null;
+			p.actualSentCount = analyses.size();
+
+			// generate questions
+			TreeAnswers treeAnswers = new TreeAnswers(analyses);
+			p.treeAnsList = TreeAnswerAnalyzer.analyze(treeAnswers);
+			for (TreeAnswer treeAnswer : p.treeAnsList) {
+				TreeQuestionGenerator.generate(treeAnswer);
+				p.quesCount += treeAnswer.size();
+			}
+
+			return p;
+		}
+	}
+
+	/**
+	 * Reads the paragraphs, splits them into sentences and passes them to the
+	 * workers. The pending results are put in the queue in input order,
+	 * followed by a result of <code>null</code> at the end of the input.
+	 */
+	private class Reader implements Runnable {
+		private BufferedReader in;
+		private ExecutorService pool;
+		private BlockingQueue<Future<Paragraph>> queue;
+		/** Exception that stopped the reader or <code>null</code>. */
+		private volatile Exception error;
+
+		public Reader(BufferedReader in, ExecutorService pool,
+				BlockingQueue<Future<Paragraph>> queue) {
+			this.in = in;
+			this.pool = pool;
+			this.queue = queue;
+		}
+
+		public void run() {
+			try {
+				int id = 0;
+				String line;
+				while ((line = in.readLine()) != null) {
+					String paragraph = line.trim();
+					if (paragraph.length() == 0 || paragraph.startsWith("//"))
+						continue;
+
+					MsgPrinter.printStatusMsg("processing paragraph " + ++id + "...");
+					split(id, paragraph);
+				}
+			} catch (InterruptedException e) {
+				return;  // the batch was aborted
+			} catch (Exception e) {
+				error = e;
+			}
+
+			// mark the end of the input
+			FutureTask<Paragraph> end = new FutureTask<Paragraph>(
+					new Callable<Paragraph>() {
+						public Paragraph call() {
+							return null;
+						}
+					});
+			end.run();
+			try {
+				queue.put(end);
+			} catch (InterruptedException e) {}
+		}
+
+		/**
+		 * Splits a paragraph into sentences and queues its parts.
+		 */
+		private void split(int id, String paragraph)
+				throws InterruptedException {
+			String[] sentences = OpenNLP.sentDetect(paragraph);
+			for (int start = 0; start == 0 || start < sentences.length;
+					start += maxSentences) {
+				Paragraph p = new Paragraph();
+				p.id = id;
+				p.first = start == 0;
+				p.last = start + maxSentences >= sentences.length;
+				if (p.first) p.text = paragraph;
+				p.sentences = Arrays.copyOfRange(sentences, start,
+						Math.min(start + maxSentences, sentences.length));
+				p.oriSentCount = p.sentences.length;
+				for (String sent : p.sentences)
+					p.wordCount += (new StringTokenizer(sent)).countTokens();
+
+				// waits if the queue is full
+				queue.put(pool.submit(new Worker(p)));
+			}
+		}
+	}
+
+	/** Number of worker threads. */
+	private int threads;
+	/** Maximum number of sentences per part of a paragraph. */
+	private int maxSentences;
+	/** Number of paragraphs processed. */
+	private int paragraphCount = 0;
+	/** Number of sentences processed, after breaking complex sentences. */
+	private int sentCount = 0;
+	/** Number of question-answer pairs generated. */
+	private int quesCount = 0;
+	/** Wall clock time spent in <code>process()</code> in milliseconds. */
+	private long time = 0;
+
+	/**
+	 * Creates a batch generator with the number of worker threads and the
+	 * maximum number of sentences per part from the properties file.
+	 */
+	public BatchQuestionGenerator() {
+		this(getConfiguredValue("threads", 0));
+	}
+
+	/**
+	 * Creates a batch generator with the given number of worker threads.
+	 *
+	 * @param threads number of worker threads, 0 for one per processor
+	 */
+	public BatchQuestionGenerator(int threads) {
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		this.threads = threads;
+		maxSentences = getConfiguredValue("maxSentences", MAX_SENTENCES);
+		if (maxSentences <= 0) maxSentences = MAX_SENTENCES;
+	}
+
+	/**
+	 * Reads an integer property from the properties file.
+	 *
+	 * @param name name of the property
+	 * @param defaultValue value used if the property is not configured
+	 * @return value of the property
+	 */
+	private static int getConfiguredValue(String name, int defaultValue) {
+		try {
+			Properties properties = Properties.loadFromClassName(
+					BatchQuestionGenerator.class.getName());
+			String value = properties.getProperty(name);
+			if (value != null) return Integer.parseInt(value.trim());
+		} catch (RuntimeException e) {
+			log.warn("Could not read " + name + ": " + e.getMessage());
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Returns the number of worker threads.
+	 *
+	 * @return number of worker threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Generates questions from the paragraphs read from <code>in</code>, one
+	 * paragraph per line. Empty lines and lines starting with "//" are
+	 * skipped.
+	 *
+	 * @param in input paragraphs
+	 * @param handler receives the results in input order
+	 * @throws IOException if reading the input or handling a result fails
+	 */
+	public void process(BufferedReader in, ParagraphHandler handler)
+			throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		BlockingQueue<Future<Paragraph>> queue =
+			new ArrayBlockingQueue<Future<Paragraph>>(threads * PARAGRAPHS_PER_THREAD);
+		Reader reader = new Reader(in, pool, queue);
+		Thread readerThread = new Thread(reader, "BatchQuestionGenerator reader");
+		readerThread.setDaemon(true);
+		long start = System.currentTimeMillis();
+
+		try {
+			readerThread.start();
+			while (handle(queue, handler))
+				continue;
+
+			// rethrow the exception of the reader
+			if (reader.error instanceof IOException)
+				throw (IOException) reader.error;
+			if (reader.error != null)
+				throw new RuntimeException(reader.error);
+		} finally {
+			readerThread.interrupt();
+			pool.shutdownNow();
+			time += System.currentTimeMillis() - start;
+		}
+	}
+
+	/**
+	 * Waits for the next part of a paragraph to be processed and passes the
+	 * result to the handler.
+	 *
+	 * @param queue pending results
+	 * @param handler receives the result
+	 * @return <code>false</code> at the end of the input
+	 * @throws IOException if handling the result fails
+	 */
+	private boolean handle(BlockingQueue<Future<Paragraph>> queue,
+			ParagraphHandler handler) throws IOException {
+		Paragraph p;
+		try {
+			p = queue.take().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Batch was interrupted.");
+		} catch (ExecutionException e) {
+			// rethrow the exception of the worker
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+		if (p == null) return false;
+
+		if (p.first) paragraphCount++;
+		sentCount += p.actualSentCount;
+		quesCount += p.quesCount;
+
+		handler.handle(p);
+		return true;
+	}
+
+	/**
+	 * Returns the throughput of all batches processed so far.
+	 *
+	 * @return processing time, sentences/sec and questions/sec
+	 */
+	public String getThroughput() {
+		double secs = Math.max(time, 1) / 1000.0;
+		return String.format("Threads: %d. Time: %.1fs. " +
+				"Paragraphs: %d. Sentences: %d. Questions: %d. " +
+				"Sentences/sec: %.2f. Questions/sec: %.2f.",
+				threads, secs, paragraphCount, sentCount, quesCount,
+				sentCount / secs, quesCount / secs);
+	}
+}
@@ -11,6 +11,8 @@ public class QAPhrasePair {
 	private String quesPhrase;
 	// answer phrase
 	private String ansPhrase;
+	// indices of the leaves of the answer phrase
+	private int[] ansLeaves;
 	// the whole question sentence
 	private String quesSentence;
 	// preposition/subordinating conjunction in a PP
@@ -64,6 +66,14 @@ public class QAPhrasePair {
 		this.ansPhrase = ans;
 	}
 	
+	public int[] getAnsLeaves() {
+		return ansLeaves;
+	}
+	
+	public void setAnsLeaves(int[] ansLeaves) {
+		this.ansLeaves = ansLeaves;
+	}
+	
 	public Tree getAnsTree() {
 		return ansTree;
 	}
@@ -7,9 +7,7 @@ import java.util.Iterator;
 import edu.stanford.nlp.trees.Tree;
 
 import info.ephyra.io.MsgPrinter;
-import info.ephyra.nlp.OpenNLP;
 import info.ephyra.nlp.TreeUtil;
-import info.ephyra.questionanalysis.Term;
 import info.ephyra.treeansweranalysis.TreeAnswer;
 import info.ephyra.util.StringUtils;
 
@@ -19,53 +17,32 @@ public class TreeQuestionGenerator {
 	public static void generate(TreeAnswer treeAnswer) {
 		ArrayList<QAPhrasePair> qaPhraseList = treeAnswer.getQAPhraseList();
 		QAPhrasePair pPair;
-		Tree ansTree, auxTree, invTree, sentTree;
-		Term ansTerm;
-		String ansPhrase, quesPhrase, quesSent, auxSent, invSent, subject, oriSent, idxSent;
-		auxTree = treeAnswer.getAuxTree();
+		Tree invTree, sentTree;
+		int[] ansLeaves;
+		String quesPhrase, quesSent;
+		int subject;
 		invTree = treeAnswer.getInvTree();
-		auxSent = treeAnswer.getAuxSentence();
-		invSent = treeAnswer.getInvSentence();
-		subject = treeAnswer.getSubject();
-		oriSent = treeAnswer.getSentence();
+		subject = treeAnswer.getSubjectIndex();
 		sentTree = treeAnswer.getTree();
-		idxSent = TreeUtil.getLabel(sentTree);
 		Iterator<QAPhrasePair> iter = qaPhraseList.iterator();
 		while (iter.hasNext()) {
 			pPair = iter.next();
-			ansTree = pPair.getAnsTree();
-			ansTerm = pPair.getAnsTerm();
-			//ansPhrase = OpenNLP.tokenizeWithSpaces(pPair.getAnsPhrase());
-			ansPhrase = pPair.getAnsPhrase();
-			// Java's weird regular expressions
-			// replace "(" with "\\(" and ")" with "\\)"
-			ansPhrase = ansPhrase.replaceAll("\\(", "\\\\(").replaceAll("\\)", "\\\\)");;
+			ansLeaves = pPair.getAnsLeaves();
 			quesPhrase = pPair.getQuesPhrase();
 			if (pPair.getQuesType().equals("Y/N")) {
-				quesSent = invSent.replaceFirst("<quesPhrase>", "");;
+				quesSent = new Realizer(null, null, "").realize(invTree);
 			} else {
-				// here we use "contains", not "equals" to include the following case:
-				// In "The New York Times wrote that.", the subject is "Times-4",
-				// but the answer phrase is "The-1 New-2 York-3 Times-4".
-				if (subject != null && ansPhrase.contains(subject)) {
+				// here we check whether the answer phrase contains the subject,
+				// not whether it is the subject, to include the following case:
+				// In "The New York Times wrote that.", the subject is "Times",
+				// but the answer phrase is "The New York Times".
+				if (subject >= 0 && contains(ansLeaves, subject)) {
 					// answer phrase is the subject
-					quesSent = idxSent.replaceFirst(ansPhrase, quesPhrase);
+					quesSent = new Realizer(ansLeaves, quesPhrase, null).realize(sentTree);
 				} else {
-					quesSent = invSent.replaceFirst(OpenNLP.tokenizeWithSpaces(ansPhrase), "");
-					quesSent = quesSent.replaceFirst("<quesPhrase>", quesPhrase);
+					quesSent = new Realizer(ansLeaves, "", quesPhrase).realize(invTree);
 				}
 			}
-			// remove the index
-			quesSent = quesSent.replaceAll("-\\d+\\b", "");
-			// recover ()
-			quesSent = quesSent.replaceAll("-LRB-", "(");
-			quesSent = quesSent.replaceAll("-RRB-", ")");
-			// remove the punctuation at the end and append with a question mark
-			quesSent = quesSent.replaceAll("(\\.|\\?|!)$", "").trim()+"?";
-			// remove extra spaces
-			quesSent = quesSent.replaceAll("\\s{2,}", " ");
-			// Capitalize the first letter
-			quesSent = quesSent.substring(0,1).toUpperCase() + quesSent.substring(1);
 			pPair.setQuesSentence(quesSent);
 			// generate another y/n question here, which should be invSent with the first capitalized
 			//TODO: post-processing here
@@ -74,6 +51,89 @@ public class TreeQuestionGenerator {
 		return;
 	}
 	
+	/**
+	 * Realizes a question from a tree in one traversal of its words. The
+	 * answer phrase is spliced out by the indices of its leaves and replaced
+	 * where it occurs, the leaf of the question phrase inserted by
+	 * the VerbDecomposer is filled in and brackets are recovered. Finally, the
+	 * punctuation at the end is replaced with a question mark and the first
+	 * letter is capitalized.
+	 */
+	private static class Realizer {
+		private int[] ansLeaves;
+		private String ansReplacement;
+		private String quesPhrase;
+		private boolean ansDone = false;
+		private StringBuilder ques = new StringBuilder();
+		
+		/**
+		 * @param ansLeaves indices of the leaves of the answer phrase or
+		 *                  <code>null</code>
+		 * @param ansReplacement replacement of the answer phrase, may be empty
+		 * @param quesPhrase replacement of the question phrase leaf or
+		 *                   <code>null</code> to keep it
+		 */
+		public Realizer(int[] ansLeaves, String ansReplacement, String quesPhrase) {
+			this.ansLeaves = (ansLeaves != null) ? ansLeaves : new int[0];
+			this.ansReplacement = ansReplacement;
+			this.quesPhrase = quesPhrase;
+		}
+		
+		public String realize(Tree tree) {
+			appendWords(tree);
+			
+			// remove the punctuation at the end and append with a question mark
+			int end = ques.length();
+			if (end > 0) {
+				char last = ques.charAt(end - 1);
+				if (last == '.' || last == '?' || last == '!') end--;
+			}
+			while (end > 0 && ques.charAt(end - 1) == ' ') end--;
+			ques.setLength(end);
+			ques.append('?');
+			// Capitalize the first letter
+			return ques.substring(0, 1).toUpperCase() + ques.substring(1);
+		}
+		
+		private void appendWords(Tree tree) {
+			Tree[] kids = tree.children();
+			if (kids.length == 1 && kids[0].isLeaf()) {
+				if (!tree.label().value().equals("-NONE-")) appendWord(kids[0]);
+			} else {
+				for (Tree kid : kids) appendWords(kid);
+			}
+		}
+		
+		private void appendWord(Tree leaf) {
+			String word;
+			int index = TreeUtil.getIndex(leaf);
+			if (index >= 0 && contains(ansLeaves, index)) {
+				if (ansDone) return;
+				word = ansReplacement;
+				ansDone = true;
+			} else {
+				word = leaf.label().value();
+				if (quesPhrase != null && word.equals("<quesPhrase>")) {
+					word = quesPhrase;
+					// only the first one is filled in
+					quesPhrase = null;
+				} else {
+					word = TreeUtil.getSurface(word);
+				}
+			}
+			if (word.length() == 0) return;
+			if (ques.length() > 0) ques.append(' ');
+			ques.append(word);
+		}
+	}
+	
+	private static boolean contains(int[] indices, int index) {
+		if (indices == null) return false;
+		for (int i : indices)
+			if (i == index) return true;
+		return false;
+	}
+	
 	public static void print(ArrayList<TreeAnswer> treeAnswerList) {
 		Iterator<TreeAnswer> tAnsIter = treeAnswerList.iterator();
 		TreeAnswer treeAnswer;
@@ -93,7 +153,7 @@ public class TreeQuestionGenerator {
 				pPair = pPairIter.next();
 				MsgPrinter.printStatusMsg("\t"+quesCount+". Q type: "+pPair.getQuesType()+" NE type: "+pPair.getAnsTerm());
 				MsgPrinter.printStatusMsg("\t\tQuestion: "+pPair.getQuesSentence());
-				MsgPrinter.printStatusMsg("\t\tAnswer: "+pPair.getAnsPhrase().replaceAll("-\\d+\\b", ""));
+				MsgPrinter.printStatusMsg("\t\tAnswer: "+pPair.getAnsPhrase());
 			}
 			
 		}
@@ -120,7 +180,7 @@ public class TreeQuestionGenerator {
 					pPair = pPairIter.next();
 					out.write("\t"+quesCount+". Question: "+pPair.getQuesSentence());
 					out.newLine();
-					out.write("\t\tPossible answer: "+pPair.getAnsPhrase().replaceAll("-\\d+\\b", ""));
+					out.write("\t\tPossible answer: "+pPair.getAnsPhrase());
 					out.newLine();
 					out.write("\t\tYour judgement: [Acceptable] [Ungram] [No sense] [Vague] [Obvious] [Missing] [Wrong WH] [Format] Other:");
 					out.newLine();
@@ -134,12 +194,25 @@ public class TreeQuestionGenerator {
 	}
 	
 	public static void printForICTevaluation(ArrayList<TreeAnswer> treeAnswerList, BufferedWriter out) {
+		printForICTevaluation(treeAnswerList, out, 0);
+	}
+	
+	/**
+	 * Prints the questions like <code>printForICTevaluation()</code>, numbering
+	 * the sentences from <code>sentCountBase + 1</code>.
+	 * 
+	 * @param treeAnswerList sentences with questions
+	 * @param out output
+	 * @param sentCountBase number of sentences printed before
+	 * @return number of sentences printed, including those printed before
+	 */
+	public static int printForICTevaluation(ArrayList<TreeAnswer> treeAnswerList, BufferedWriter out, int sentCountBase) {
 		Iterator<TreeAnswer> tAnsIter = treeAnswerList.iterator();
 		TreeAnswer treeAnswer;
 		ArrayList<QAPhrasePair> qaPhraseList;
 		Iterator<QAPhrasePair> pPairIter;
 		QAPhrasePair pPair;
-		int sentCount=0, quesCount=0;
+		int sentCount=sentCountBase, quesCount=0;
 		try {
 			while (tAnsIter.hasNext()) {
 				sentCount++;
@@ -154,7 +227,7 @@ public class TreeQuestionGenerator {
 					pPair = pPairIter.next();
 					out.write("\t"+quesCount+". Question: "+pPair.getQuesSentence());
 					out.newLine();
-					out.write("\t   Possible answer: "+pPair.getAnsPhrase().replaceAll("-\\d+\\b", ""));
+					out.write("\t   Possible answer: "+pPair.getAnsPhrase());
 					out.newLine();
 					out.write("\t       Your judgments:\n");
 					out.write("\t       [  ]  The question is understandable\n");
@@ -170,6 +243,7 @@ public class TreeQuestionGenerator {
 		} catch (java.io.IOException e) {
 			System.err.println(e);
 		}
+		return sentCount;
 	}
 	
 	// not used anymore
@@ -199,7 +273,7 @@ public class TreeQuestionGenerator {
 					pPair = pPairIter.next();
 					
 					question = pPair.getQuesSentence();
-					ansPhrase = pPair.getAnsPhrase().replaceAll("-\\d+\\b", "");
+					ansPhrase = pPair.getAnsPhrase();
 					question = StringUtils.replaceXMLspecials(question);
 					ansPhrase = StringUtils.replaceXMLspecials(ansPhrase);
 					// S1-S2: the 2nd q-a pair for sentence 1. the answer is a sentence. 
@@ -254,7 +328,7 @@ public class TreeQuestionGenerator {
 					pPair = pPairIter.next();
 					out.write("\t"+quesCount+". Question: "+pPair.getQuesSentence());
 					out.newLine();
-					out.write("\t   Possible answer: "+pPair.getAnsPhrase().replaceAll("-\\d+\\b", ""));
+					out.write("\t   Possible answer: "+pPair.getAnsPhrase());
 					out.newLine();
 					out.write("\t       Your judgments:\n");
 					out.write("\t       [  ]  The question is understandable\n");
@@ -10,9 +10,10 @@ import edu.stanford.nlp.ling.LabeledWord;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.tregex.TregexMatcher;
 import edu.stanford.nlp.trees.tregex.TregexPattern;
-import edu.stanford.nlp.trees.tregex.tsurgeon.Tsurgeon;
 import edu.stanford.nlp.trees.tregex.tsurgeon.TsurgeonPattern;
 import info.ephyra.io.MsgPrinter;
+import info.ephyra.nlp.TreePatterns;
+import info.ephyra.nlp.TreeUtil;
 import info.ephyra.nlp.semantics.ontologies.WordNet;
 import info.ephyra.questionanalysis.atype.FocusFinder;
 import info.ephyra.treeansweranalysis.TreeAnswer;
@@ -37,75 +38,39 @@ public class VerbDecomposer {
 	private static boolean initialized = false;
 	private static Logger log = Logger.getLogger(VerbDecomposer.class);
 	
-	// match the auxiliary word, could be model word, such as "should", "will",
-	// or could be the first verb of two verbs, such as "has been"
-	// one exception: "stopped doing(VBG)"
-	// TODO: the following doesn't match: "A large male can be 2 metres (6 ft 7 in) tall and weigh 90 kg (200 lb)."
-	private static String tregexMatchVb1Vb2 = "ROOT < (S=clause < (VP=mainvp < /(AUX.*|MD|VB.?)/=vb1 < (VP < /VB[^G]?/=vb2)))";
+	// the patterns are loaded from res/nlp/treetransform/patterns
+	// into the TreePatterns registry, see there for comments
+	// the Tsurgeon operations are not shared between threads, they are
+	// fetched from the registry for the current thread when they are applied
 	private static TregexPattern tregexPatternMatchVb1Vb2;
-	// move the auxiliary word to the be the first child of the main clause
-	private static String operationMoveAux = "move vb1 >1 clause";
-	private static TsurgeonPattern tsurgeonPatternMoveAux;
-	
-	// match vb which is the only verb in VP
-	// in this case a new auxiliary should be inserted
-	private static String tregexMatchVb1 = "ROOT < (S=clause < (VP=mainvp < /(AUX.*|^VB.?)/=vb1 !< (VP < /VB.?/)))";
 	private static TregexPattern tregexPatternMatchVb1;
-	
-	// match auxiliary in the auxiliarized tree
-	private static String tregexMatchAux = "ROOT < (S=clause < (VP=mainvp < /(Q-AUX|AUX-.?)/=vb1))";
 	private static TregexPattern tregexPatternMatchAux;
-	
-	// almost the same as tregexMatchVb1, used to invert aux to an auxlirized tree. 
-	// should have a negation ! to avoid looping when performing an insertion
-	private static String tregexNoLoopInsAux = "ROOT < (S=clause < (VP=mainvp < (/(^VB.?|AUX-.?)/=vb1 !$- /^AUX-.?/ !$- /Q-AUX/ )!< (VP < /VB.?/)))";
 	private static TregexPattern tregexPatternNoLoopInsAux;
-
-	// change the main clause from "S" to "SQ"
-	private static String tregexStoSQ = "ROOT < S=clause";
 	private static TregexPattern tregexPatternStoSQ;
-	private static String operationRelabel = "relabel clause SQ";
-	private static TsurgeonPattern tsurgeonPatternStoSQ;
-	
-	// match any PP adjunct after Q-AUX (quesPhrase+auxiliary)
-	// http://www.ucl.ac.uk/internet-grammar/phfunc/adjuncts.htm
-	private static String tregexAdjunct = "ROOT < (SQ=clause <1 /Q-AUX|AUX-.?/=qaux <2 ((/PP/=pp . /,/=comma)) )";
 	private static TregexPattern tregexPatternAdjunct;
-	// move Q-AUX to be the right sister of comma
-	private static String operationMoveAdjunct= "move qaux $- comma";
-	private static TsurgeonPattern tsurgeonPatternMoveAdjunct;
-	
-	// match aux in "MD VB" or "be" form to adjoin with Q-AUX
-	private static String tregexAdjoinNoLoop = "/^AUX-/=aux !> /Q-AUX/";
 	private static TregexPattern tregexPatternAdjoin;
-	private static String operationAdjoin = "adjoin (Q-AUX (Q <quesPhrase>) AUX@) aux";
-	private static TsurgeonPattern tsurgeonPatternAdjoin;
-	// almost the same as tregexMatchVb1, used to invert aux to an inverted tree. 
-	// should have a negation ! to avoid looping when performing an insertion
-	//private static String tregexNoLoopInsInv = "ROOT < (S=clause !< /^AUX-.?/ < (VP=mainvp < /^VB.?/=vb1 !< (VP < /VB.?/)))";
-	//private static TregexPattern tregexPatternNoLoopInsInv;
 	
 	// initialize all the matching patterns
-	// must be called before running other operations
+	// must be called after TreePatterns.loadPatterns() and before running other operations
 	public static boolean initialize() {
 		
 		//log.setLevel(Level.DEBUG);
 		try {
-			tregexPatternMatchVb1Vb2 = TregexPattern.compile(tregexMatchVb1Vb2);
-			tregexPatternMatchVb1 = TregexPattern.compile(tregexMatchVb1);
-			tregexPatternMatchAux = TregexPattern.compile(tregexMatchAux);
-			tregexPatternNoLoopInsAux = TregexPattern.compile(tregexNoLoopInsAux);
-			//tregexPatternNoLoopInsInv = TregexPattern.compile(tregexNoLoopInsInv);
-			tsurgeonPatternMoveAux = Tsurgeon.parseOperation(operationMoveAux);
-			tregexPatternStoSQ = TregexPattern.compile(tregexStoSQ);
-			tsurgeonPatternStoSQ = Tsurgeon.parseOperation(operationRelabel);
-			tregexPatternAdjunct = TregexPattern.compile(tregexAdjunct);
-			tsurgeonPatternMoveAdjunct = Tsurgeon.parseOperation(operationMoveAdjunct);
-			tregexPatternAdjoin = TregexPattern.compile(tregexAdjoinNoLoop);
-			tsurgeonPatternAdjoin = Tsurgeon.parseOperation(operationAdjoin);
+			tregexPatternMatchVb1Vb2 = TreePatterns.getTregex("vd.matchVb1Vb2");
+			tregexPatternMatchVb1 = TreePatterns.getTregex("vd.matchVb1");
+			tregexPatternMatchAux = TreePatterns.getTregex("vd.matchAux");
+			tregexPatternNoLoopInsAux = TreePatterns.getTregex("vd.noLoopInsAux");
+			tregexPatternStoSQ = TreePatterns.getTregex("vd.stoSQ");
+			tregexPatternAdjunct = TreePatterns.getTregex("vd.adjunct");
+			tregexPatternAdjoin = TreePatterns.getTregex("vd.adjoinNoLoop");
+			// check that the Tsurgeon operations exist
+			TreePatterns.getTsurgeon("vd.moveAux");
+			TreePatterns.getTsurgeon("vd.relabelSQ");
+			TreePatterns.getTsurgeon("vd.moveAdjunct");
+			TreePatterns.getTsurgeon("vd.adjoin");
 			initialized = true;
-		} catch (edu.stanford.nlp.trees.tregex.ParseException e) {
-			MsgPrinter.printErrorMsg("Error parsing regex pattern.");
+		} catch (IllegalArgumentException e) {
+			MsgPrinter.printErrorMsg(e.getMessage());
 			return false;
 		}
 		
@@ -130,7 +95,7 @@ public class VerbDecomposer {
 		Tree vpTree = null, vbTree = null;
 		String lab;
 		TregexMatcher tregexMatcher;
-		auxiliarizedTree = tree.deeperCopy();
+		auxiliarizedTree = TreeUtil.copy(tree);
 		
 		// VPs with two or more verbs, such as "has done", don't need to be decomposed
 		// VPs with model verb, such as "should be", don't need to be decomposed
@@ -141,7 +106,7 @@ public class VerbDecomposer {
 
 		log.debug("Decomposing the verb\n");
 		
-		if (tregexMatcher.find()) {
+		if (TreePatterns.find(tregexMatcher)) {
 			log.debug("VPs with two or more verbs.\n");
 			vpTree = tregexMatcher.getNode("mainvp");
 			vbTree = tregexMatcher.getNode("vb1");
@@ -151,7 +116,7 @@ public class VerbDecomposer {
 			// this changes the auxiliarizedTree
 			lab = "AUX-"+lab;
 			vbTree.label().setValue(lab);
-			auxiliarizedTree = Tsurgeon.processPattern(tregexPatternAdjoin, tsurgeonPatternAdjoin, auxiliarizedTree);
+			auxiliarizedTree = TreePatterns.process(tregexPatternAdjoin, TreePatterns.getTsurgeon("vd.adjoin"), auxiliarizedTree);
 		} else {
 
 			// the main verb of the main clause is only one verb
@@ -172,37 +137,38 @@ public class VerbDecomposer {
 
 			// must match auxiliarizedTree here, otherwise the original tree is changed
 			tregexMatcher = tregexPatternMatchVb1.matcher(auxiliarizedTree);
-			if (tregexMatcher.find()) {
+			if (TreePatterns.find(tregexMatcher)) {
 				vpTree = tregexMatcher.getNode("mainvp");
 				vbTree = tregexMatcher.getNode("vb1");
 				lab = vbTree.label().value();
-				String word = vbTree.firstChild().label().value().replaceFirst("-\\d+$", "");
+				String word = vbTree.firstChild().label().value();
 				// TODO: BUG: getLemma will return "saw" as the lemma of VBZ "saw", mostly it should return "see"
 				// ref: http://nlp.stanford.edu/nlp/javadoc/jwnl-docs/net/didion/jwnl/data/IndexWord.html
 				String lemma = WordNet.getLemma(word, WordNet.VERB);
 				if (lemma == null) 
 					return null;
-				String auxTree = "(AUX-VB do)";
+				// name of the auxiliary tree, e.g. "VBZ.does" for (AUX-VBZ does)
+				String auxTree = "VB.do";
 				if (lemma.equals("be")) {
 					// John is a man -> Is John a man
 					// rename vb with prefix "AUX-"
 					lab = "AUX-"+lab;
 					vbTree.label().setValue(lab);
 					// WARNING: auxiliarizedTree isn't grammatical after insertion.
-					auxiliarizedTree = Tsurgeon.processPattern(tregexPatternAdjoin, tsurgeonPatternAdjoin, auxiliarizedTree);
+					auxiliarizedTree = TreePatterns.process(tregexPatternAdjoin, TreePatterns.getTsurgeon("vd.adjoin"), auxiliarizedTree);
 				} else if (lemma != null) {
 					if (lab.equals("VBZ")) {
 						//VBZ verb, 3rd person sing. present, "takes"
-						auxTree = "(AUX-VBZ does)";
+						auxTree = "VBZ.does";
 					} else if (lab.equals("VBD")) {
 						//VBD verb, past tense, "took" 
-						auxTree = "(AUX-VBD did)";
+						auxTree = "VBD.did";
 					} else if (lab.equals("VBP")) {
 						//VBZ verb, 3rd person sing. present, "take"
-						auxTree = "(AUX-VB do)";
+						auxTree = "VB.do";
 					} else if (lab.equals("VB")) {
 						//VB verb, base form, "take"
-						auxTree = "(AUX-VB do)";
+						auxTree = "VB.do";
 					} else {
 						// VBG verb, gerund/present participle, "taking"
 						// VBN verb, past participle, "taken" 
@@ -210,27 +176,24 @@ public class VerbDecomposer {
 						// parser might be wrong, so we still use the cases here
 						if (lab.equals("VBG")) {
 							//VBZ verb, 3rd person sing. present, "take"
-							auxTree = "(AUX-VB does)";
+							auxTree = "VB.does";
 						} else if (lab.equals("VBN")) {
 							//VB verb, base form, "take"
-							auxTree = "(AUX-VB did)";
+							auxTree = "VB.did";
 						}	
 					
 					}
-					// construct a tree with the question phrase and auxiliary verb
-					auxTree = "(Q-AUX (Q <quesPhrase>)" + auxTree + " )";
 					// John does that -> (AuxTree) John does do that -> (InvTree) Does John do that
 					// John sees that -> (AuxTree) John does see that -> (InvTree)Does John see that
 					// change vb1 tree to its lemma's format (VB lemma)
 					vbTree.label().setValue("VB");
 					vbTree.firstChild().label().setValue(lemma);
 										
-					// insert auxiliary to the auxiliarizedTree
-					//e.g. String operationInsertAuxToAux = "insert (AUX-VBZ does) $+ vb1";
-					String operationInsertAuxToAux = "insert " + auxTree + " $+ vb1";
-					TsurgeonPattern tsurgeonPatternInsertAuxToAux = Tsurgeon.parseOperation(operationInsertAuxToAux);
+					// insert a tree with the question phrase and auxiliary verb to the auxiliarizedTree
+					//e.g. "insert (Q-AUX (Q <quesPhrase>)(AUX-VBZ does) ) $+ vb1";
+					TsurgeonPattern tsurgeonPatternInsertAuxToAux = TreePatterns.getTsurgeon("vd.insertAux." + auxTree);
 					// WARNING: auxiliarizedTree isn't grammatical after insertion.
-					auxiliarizedTree = Tsurgeon.processPattern(tregexPatternNoLoopInsAux, tsurgeonPatternInsertAuxToAux, auxiliarizedTree);
+					auxiliarizedTree = TreePatterns.process(tregexPatternNoLoopInsAux, tsurgeonPatternInsertAuxToAux, auxiliarizedTree);
 				} else {
 					// lemma == null
 					MsgPrinter.printErrorMsg("Lemma of word not found! Debugging someone else's code!");
@@ -245,28 +208,28 @@ public class VerbDecomposer {
 		}
 		
 		log.debug("Auxiliarized Tree:\n"+auxiliarizedTree.pennString());
-		invertedTree = auxiliarizedTree.deeperCopy();
+		invertedTree = TreeUtil.copy(auxiliarizedTree);
 		// move the Q-AUX tree to the first child of the main clause
 		// TODO: negation case, such as "does not do sth", should move "not" also (really?)
 		// TODO: make the original first word lower case
 		// WARNING: invertedTree isn't grammatical after the move operation.
 		log.debug("Moving the AUX tree to the first child of the main clause:\n");
-		invertedTree = Tsurgeon.processPattern(tregexPatternMatchAux, tsurgeonPatternMoveAux, invertedTree);
+		invertedTree = TreePatterns.process(tregexPatternMatchAux, TreePatterns.getTsurgeon("vd.moveAux"), invertedTree);
 		log.debug(invertedTree.pennString());
 		if (invertedTree.equals(auxiliarizedTree)) {
 			MsgPrinter.printErrorMsg("Auxiliary inversion operation failed.");
 			log.warn("Auxiliary inversion operation failed.");
 		}
 		// relabel S as SQ
-		invertedTree = Tsurgeon.processPattern(tregexPatternStoSQ, tsurgeonPatternStoSQ, invertedTree);
+		invertedTree = TreePatterns.process(tregexPatternStoSQ, TreePatterns.getTsurgeon("vd.relabelSQ"), invertedTree);
 		
 		tregexMatcher = tregexPatternAdjunct.matcher(invertedTree);
-		if (tregexMatcher.find()) {
+		if (TreePatterns.find(tregexMatcher)) {
 			// Move PP adjunct to the front, if any
 			//such as: <quesPhrase> in 2009, did Jackson die
 			//becomes: in 2009, <questionPhrase> did Jackson die
 			log.debug("Moving PP adjunct to the front:\n");
-			invertedTree = Tsurgeon.processPattern(tregexPatternAdjunct, tsurgeonPatternMoveAdjunct, invertedTree);
+			invertedTree = TreePatterns.process(tregexPatternAdjunct, TreePatterns.getTsurgeon("vd.moveAdjunct"), invertedTree);
 			log.debug(invertedTree.pennString());
 		}
 		
@@ -0,0 +1,164 @@
+package info.ephyra.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * <p>A BK-tree over a set of strings that finds the strings within a given
+ * Levenshtein distance of a query without comparing the query to every
+ * string.</p>
+ *
+ * <p>Each child of a node is stored under its distance to the node. By the
+ * triangle inequality, a string within distance <code>k</code> of the query
+ * can only be found below children with a distance in
+ * <code>[d - k, d + k]</code>, where <code>d</code> is the distance between
+ * the query and the node.</p>
+ *
+ * <p>Insertions are not thread-safe, lookups are.</p>
+ */
+public class BKTree {
+	/** A node of the tree. */
+	private static class Node {
+		/** The string stored in this node. */
+		private String word;
+		/** Child nodes by their distance to this node or <code>null</code>. */
+		private HashMap<Integer, Node> children;
+		/** Largest distance of a child node. */
+		private int maxChildDistance = 0;
+
+		private Node(String word) {
+			this.word = word;
+		}
+	}
+
+	/** Root of the tree or <code>null</code>, if the tree is empty. */
+	private Node root;
+	/** Number of strings in the tree. */
+	private int size = 0;
+
+	/**
+	 * Adds a string to the tree.
+	 *
+	 * @param word the string to add
+	 */
+	public void add(String word) {
+		if (root == null) {
+			root = new Node(word);
+			size++;
+			return;
+		}
+
+		Node node = root;
+		while (true) {
+			int distance = getDistance(word, node.word);
+			if (distance == 0) return;  // already contained
+
+			if (node.children == null)
+				node.children = new HashMap<Integer, Node>(4);
+			Node child = node.children.get(distance);
+			if (child == null) {
+				node.children.put(distance, new Node(word));
+				if (distance > node.maxChildDistance)
+					node.maxChildDistance = distance;
+				size++;
+				return;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Returns the number of strings in the tree.
+	 *
+	 * @return number of strings
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Checks whether there is a string in the tree within the given
+	 * Levenshtein distance of the query.
+	 *
+	 * @param word the query
+	 * @param maxDistance the maximum Levenshtein distance
+	 * @return <code>true</code> iff such a string was found
+	 */
+	public boolean containsWithin(String word, int maxDistance) {
+		if (root == null) return false;
+
+		ArrayList<Node> stack = new ArrayList<Node>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			Node node = stack.remove(stack.size() - 1);
+			// larger distances rule out the node and all its children
+			int distance = getDistance(word, node.word,
+									   node.maxChildDistance + maxDistance);
+			if (distance <= maxDistance) return true;
+
+			if (node.children == null) continue;
+			int min = distance - maxDistance;
+			int max = distance + maxDistance;
+			if (node.children.size() < max - min + 1) {
+				for (Integer d : node.children.keySet())
+					if (d >= min && d <= max) stack.add(node.children.get(d));
+			} else {
+				for (int d = min; d <= max; d++) {
+					Node child = node.children.get(d);
+					if (child != null) stack.add(child);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the Levenshtein distance of two strings, with unit costs for
+	 * insertions, deletions and substitutions.
+	 *
+	 * @param s1 the first string
+	 * @param s2 the second string
+	 * @return the Levenshtein distance
+	 */
+	public static int getDistance(String s1, String s2) {
+		return getDistance(s1, s2, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Computes the Levenshtein distance of two strings, with unit costs for
+	 * insertions, deletions and substitutions. The computation stops as soon
+	 * as the distance is known to exceed the limit.
+	 *
+	 * @param s1 the first string
+	 * @param s2 the second string
+	 * @param limit the largest distance of interest
+	 * @return the Levenshtein distance or <code>limit + 1</code>, if it
+	 *         exceeds the limit
+	 */
+	public static int getDistance(String s1, String s2, int limit) {
+		int n = s2.length();
+		if (Math.abs(s1.length() - n) > limit) return limit + 1;
+
+		int[] prev = new int[n + 1];
+		int[] curr = new int[n + 1];
+		for (int j = 0; j <= n; j++) prev[j] = j;
+
+		for (int i = 1; i <= s1.length(); i++) {
+			curr[0] = i;
+			int rowMin = i;
+			char c = s1.charAt(i - 1);
+			for (int j = 1; j <= n; j++) {
+				int cost = (c == s2.charAt(j - 1)) ? 0 : 1;
+				curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1),
+								   prev[j - 1] + cost);
+				if (curr[j] < rowMin) rowMin = curr[j];
+			}
+			// the minimum of a row never decreases
+			if (rowMin > limit) return limit + 1;
+			int[] swap = prev;
+			prev = curr;
+			curr = swap;
+		}
+		return (prev[n] > limit) ? limit + 1 : prev[n];
+	}
+}
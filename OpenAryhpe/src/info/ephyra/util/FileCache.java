@@ -1,28 +1,49 @@
 package info.ephyra.util;
 
+import info.ephyra.io.MsgPrinter;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * <p>The <code>FileCache</code> is a simple implementation of a permanent
  * cache. The entries of the cache are accessed by keys. Both keys and entries
  * are strings, and there may be an arbitrary number of entries for a key.</p>
  * 
- * <p>The entries are stored in files in a directory which is specified when the
- * cache handler is created. There is one file for each key and the MD5 checksum
- * of the key is used as the filename.</p>
+ * <p>The entries are stored in a directory which is specified when the cache
+ * handler is created. They are appended to a few segment files by a
+ * <code>SegmentStore</code>, which is shared by all handlers for the same
+ * directory. The size of the segments, the maximum size of the cache and the
+ * compaction threshold are read from
+ * <code>conf/info.ephyra.util.FileCache.properties</code>. If another process
+ * uses the same directory, the cache can only be read.</p>
+ * 
+ * <p>Caches created by earlier versions, with one file for each key named by
+ * the MD5 checksum of the key, are still read. An entry that is found in such a
+ * file is moved to the segments.</p>
  * 
  * @author Nico Schlaefer
  * @version 2006-11-27
  */
 public class FileCache {
+	/** Default size in bytes at which a segment is sealed. */
+	private static final long SEGMENT_SIZE = 64 * 1024 * 1024;
+	/** Default maximum size in bytes of a cache, 0 for no limit. */
+	private static final long MAX_SIZE = 0;
+	/** Default ratio of live bytes below which a segment is compacted. */
+	private static final double MIN_LIVE_RATIO = 0.5;
+	
+	/** Stores that have been opened, by directory. */
+	private static HashMap<File, SegmentStore> opened =
+		new HashMap<File, SegmentStore>();
+	
 	/** The directory where the files are stored. */
 	private String cacheDir;
 	
@@ -35,6 +56,54 @@ public class FileCache {
 		this.cacheDir = cacheDir;
 	}
 	
+	/**
+	 * Opens the store for the cache directory or returns it if it has already
+	 * been opened.
+	 * 
+	 * @return store, or <code>null</code> if it could not be opened
+	 */
+	private SegmentStore getStore() {
+		File dir;
+		try {
+			dir = new File(cacheDir).getCanonicalFile();
+		} catch (IOException e) {
+			dir = new File(cacheDir).getAbsoluteFile();
+		}
+		synchronized (opened) {
+			if (opened.containsKey(dir)) return opened.get(dir);
+			
+			long segmentSize = SEGMENT_SIZE, maxSize = MAX_SIZE;
+			double minLiveRatio = MIN_LIVE_RATIO;
+			boolean sync = false;
+			try {
+				Properties properties =
+					Properties.loadFromClassName(FileCache.class.getName());
+				segmentSize = Long.parseLong(properties.getProperty(
+						"segmentSize", Long.toString(segmentSize)).trim());
+				maxSize = Long.parseLong(properties.getProperty(
+						"maxSize", Long.toString(maxSize)).trim());
+				minLiveRatio = Double.parseDouble(properties.getProperty(
+						"minLiveRatio", Double.toString(minLiveRatio)).trim());
+				sync = Boolean.parseBoolean(properties.getProperty(
+						"sync", Boolean.toString(sync)).trim());
+			} catch (RuntimeException e) {
+				// use the defaults
+			}
+			
+			SegmentStore store = null;
+			try {
+				store = new SegmentStore(dir, segmentSize, maxSize,
+										 minLiveRatio, sync);
+			} catch (IOException e) {
+				MsgPrinter.printErrorMsg("Could not open cache " + cacheDir +
+						": " + e.getMessage());
+			}
+			opened.put(dir, store);  // do not retry if it failed
+			
+			return store;
+		}
+	}
+	
 	/**
 	 * Computes the MD5 checksum of a string.
 	 * 
@@ -61,21 +130,50 @@ public class FileCache {
 	 * @return the entries, or <code>null</code> if the key is not in the cache
 	 */
 	public String[] read(String key) {
+		SegmentStore store = getStore();
+		if (store == null) return null;
+		
+		try {
+			String[] entries = store.get(key);
+			if (entries != null) return entries;
+		} catch (IOException e) {
+			MsgPrinter.printErrorMsg("Could not read from cache " + cacheDir +
+					": " + e.getMessage());
+			return null;
+		}
+		
+		return readLegacy(key);
+	}
+	
+	/**
+	 * Reads the entries for the given key from a file written by an earlier
+	 * version of the cache and moves them to the segments.
+	 * 
+	 * @param key the key
+	 * @return the entries, or <code>null</code> if there is no such file
+	 */
+	private String[] readLegacy(String key) {
 		// compute checksum for the key
 		String checksum = getMD5(key);
 		if (checksum == null) return null;
 		
 		// read cache entries from a file, using the checksum as the filename
 		File file = new File(cacheDir, new String(checksum));
+		if (!file.isFile()) return null;
+		String[] entries;
 		try {
-			ArrayList<String> entries = new ArrayList<String>();
+			ArrayList<String> lines = new ArrayList<String>();
 			
 			BufferedReader in = new BufferedReader(new FileReader(file));
-			while (in.ready()) entries.add(in.readLine());
+			while (in.ready()) lines.add(in.readLine());
 			in.close();
 			
-			return entries.toArray(new String[entries.size()]);
+			entries = lines.toArray(new String[lines.size()]);
 		} catch (IOException e) {return null;}  // key is not in the cache
+		
+		if (write(key, entries)) file.delete();
+		
+		return entries;
 	}
 	
 	/**
@@ -87,16 +185,11 @@ public class FileCache {
 	 * @return <code>true<code> iff the entries could be written to the cache
 	 */
 	public boolean write(String key, String[] entries) {
-		// compute checksum for the key
-		String checksum = getMD5(key);
-		if (checksum == null) return false;
+		SegmentStore store = getStore();
+		if (store == null) return false;
 		
-		// write new cache entries to a file, using the checksum as the filename
-		File file = new File(cacheDir, new String(checksum));
 		try {
-			PrintWriter out = new PrintWriter(file);
-			for (String entry : entries) out.println(entry);
-			out.close();
+			store.put(key, entries);
 			
 			return true;
 		} catch (IOException e) {return false;}  // entries could not be written
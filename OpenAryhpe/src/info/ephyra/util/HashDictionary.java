@@ -4,6 +4,8 @@ import info.ephyra.nlp.NETagger;
 import info.ephyra.nlp.SnowballStemmer;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -33,6 +35,10 @@ public class HashDictionary implements Dictionary {
 	private int maxTokens = 1;
 	/** Whether strings should be stored in lower-case and compared in a case-insensitive way */
 	private boolean caseInsensitive = false;
+	/** BK-tree over the words for fuzzy lookups, built on the first lookup. */
+	private BKTree wordTree;
+	/** BK-tree over the tokens for fuzzy lookups, built on the first lookup. */
+	private BKTree tokenTree;
 	
 	/**
 	 * Creates an empty <code>HashDictionary</code>.
@@ -110,6 +116,12 @@ public class HashDictionary implements Dictionary {
 			if (tokens.length > maxTokens) maxTokens = tokens.length;
 			for (int p = 0; p < tokens.length; p++)
 				if (tokens[p].length() > 0) this.tokens.add(tokens[p]);
+			
+			// drop the trees for fuzzy lookups, they are rebuilt when needed
+			synchronized (this) {
+				wordTree = null;
+				tokenTree = null;
+			}
 		}
 	}
 	
@@ -164,11 +176,7 @@ public class HashDictionary implements Dictionary {
 		if (maxDistance == 0) return this.words.contains(word);
 		else if (this.words.contains(word)) return true;
 		
-		Iterator<String> wordIter = this.words.iterator();
-		while (wordIter.hasNext())
-			if (getLevenshteinDistance(word, wordIter.next(), maxDistance, true, 1, 1) <= maxDistance) return true;
-		
-		return false;
+		return getWordTree().containsWithin(word, maxDistance);
 	}
 	
 	/**
@@ -190,11 +198,33 @@ public class HashDictionary implements Dictionary {
 		if (maxDistance == 0) return this.tokens.contains(token);
 		else if (this.tokens.contains(token)) return true;
 		
-		Iterator<String> tokenIter = this.tokens.iterator();
-		while (tokenIter.hasNext())
-			if (getLevenshteinDistance(token, tokenIter.next(), maxDistance, true, 1, 1) <= maxDistance) return true;
-		
-		return false;
+		return getTokenTree().containsWithin(token, maxDistance);
+	}
+	
+	/**
+	 * Returns a BK-tree over the words, building it on the first call.
+	 * 
+	 * @return BK-tree over the words
+	 */
+	private synchronized BKTree getWordTree() {
+		if (wordTree == null) {
+			wordTree = new BKTree();
+			for (String word : words) wordTree.add(word);
+		}
+		return wordTree;
+	}
+	
+	/**
+	 * Returns a BK-tree over the tokens, building it on the first call.
+	 * 
+	 * @return BK-tree over the tokens
+	 */
+	private synchronized BKTree getTokenTree() {
+		if (tokenTree == null) {
+			tokenTree = new BKTree();
+			for (String token : tokens) tokenTree.add(token);
+		}
+		return tokenTree;
 	}
 	
 	/**	compute the Levenshtein distance of two Strings
@@ -325,6 +355,16 @@ public class HashDictionary implements Dictionary {
 		return words.iterator();
 	}
 	
+	/**
+	 * Checks whether the words are stored in lower case and compared in a
+	 * case-insensitive way.
+	 * 
+	 * @return <code>true</code> iff the dictionary is case-insensitive
+	 */
+	public boolean isCaseInsensitive() {
+		return caseInsensitive;
+	}
+	
 	/**	
 	 * Returns the maximum number of tokens of a word in the dictionary.
 	 * 
@@ -333,4 +373,40 @@ public class HashDictionary implements Dictionary {
 	public int getMaxTokens() {
 		return maxTokens;
 	}
+	
+	/**
+	 * Writes the normalized words and tokens of the dictionary to a stream, so
+	 * that it can be restored without tokenizing the words again.
+	 * 
+	 * @param out output stream
+	 * @throws IOException if the dictionary could not be written
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeBoolean(caseInsensitive);
+		out.writeInt(maxTokens);
+		out.writeInt(words.size());
+		for (String word : words) out.writeUTF(word);
+		out.writeInt(tokens.size());
+		for (String token : tokens) out.writeUTF(token);
+	}
+	
+	/**
+	 * Reads a dictionary that was written with <code>write()</code>.
+	 * 
+	 * @param in input stream
+	 * @return the dictionary
+	 * @throws IOException if the dictionary could not be read
+	 */
+	public static HashDictionary read(DataInputStream in) throws IOException {
+		HashDictionary dict = new HashDictionary();
+		dict.caseInsensitive = in.readBoolean();
+		dict.maxTokens = in.readInt();
+		int size = in.readInt();
+		dict.words = new HashSet<String>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) dict.words.add(in.readUTF());
+		size = in.readInt();
+		dict.tokens = new HashSet<String>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) dict.tokens.add(in.readUTF());
+		return dict;
+	}
 }
@@ -0,0 +1,58 @@
+package info.ephyra.util;
+
+import gnu.trove.TLongIntHashMap;
+
+/**
+ * <p>Assigns consecutive IDs, starting from 1, to distinct strings.</p>
+ *
+ * <p>Only a 64-bit fingerprint of each string is stored, so the memory used
+ * per string does not depend on its length. Two distinct strings get the same
+ * ID only if their fingerprints collide, which is very unlikely for the
+ * number of strings in a corpus.</p>
+ */
+public class IdMap {
+	/** IDs by fingerprint. */
+	private TLongIntHashMap ids = new TLongIntHashMap();
+
+	/**
+	 * Returns the ID of a string, assigning the next ID if the string has not
+	 * been seen before.
+	 *
+	 * @param s a string
+	 * @return ID of the string
+	 */
+	public int getId(String s) {
+		long key = fingerprint(s);
+		int id = ids.get(key);
+		if (id == 0) {
+			id = ids.size() + 1;
+			ids.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the number of distinct strings.
+	 *
+	 * @return number of strings
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Computes the 64-bit FNV-1a hash of a string.
+	 *
+	 * @param s a string
+	 * @return fingerprint
+	 */
+	private static long fingerprint(String s) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+			hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,115 @@
+package info.ephyra.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * <p>Finds all occurrences of a fixed set of keywords in a text in a single
+ * pass, using the Aho-Corasick algorithm. The comparison is case-insensitive
+ * and works on single characters, so the text is not copied.</p>
+ *
+ * <p>The keywords are identified by their index in the list given to the
+ * constructor. A matcher is not modified after it has been built and can be
+ * shared by several threads.</p>
+ */
+public class KeywordMatcher {
+	/** Number of keywords. */
+	private int numKeywords;
+	/** Transitions of the trie, by state and character. */
+	private ArrayList<HashMap<Character, Integer>> transitions =
+		new ArrayList<HashMap<Character, Integer>>();
+	/** State for the longest proper suffix that is also in the trie. */
+	private int[] fail;
+	/** Keywords that end in a state, including those of its suffixes. */
+	private int[][] outputs;
+
+	/**
+	 * Builds a matcher for the given keywords.
+	 *
+	 * @param keywords keywords to look for
+	 */
+	public KeywordMatcher(List<String> keywords) {
+		numKeywords = keywords.size();
+
+		// build the trie
+		ArrayList<ArrayList<Integer>> out = new ArrayList<ArrayList<Integer>>();
+		transitions.add(new HashMap<Character, Integer>());
+		out.add(new ArrayList<Integer>());
+		for (int id = 0; id < keywords.size(); id++) {
+			String keyword = keywords.get(id);
+			int state = 0;
+			for (int i = 0; i < keyword.length(); i++) {
+				Character c = Character.toLowerCase(keyword.charAt(i));
+				Integer next = transitions.get(state).get(c);
+				if (next == null) {
+					next = transitions.size();
+					transitions.add(new HashMap<Character, Integer>());
+					out.add(new ArrayList<Integer>());
+					transitions.get(state).put(c, next);
+				}
+				state = next;
+			}
+			out.get(state).add(id);
+		}
+
+		// compute the failure links in breadth-first order
+		fail = new int[transitions.size()];
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		for (Integer child : transitions.get(0).values()) queue.add(child);
+		while (!queue.isEmpty()) {
+			int state = queue.removeFirst();
+			for (Character c : transitions.get(state).keySet()) {
+				int child = transitions.get(state).get(c);
+				queue.add(child);
+
+				int f = fail[state];
+				while (f > 0 && !transitions.get(f).containsKey(c))
+					f = fail[f];
+				Integer target = transitions.get(f).get(c);
+				fail[child] = (target != null && target != child) ? target : 0;
+				out.get(child).addAll(out.get(fail[child]));
+			}
+		}
+
+		outputs = new int[out.size()][];
+		for (int state = 0; state < outputs.length; state++) {
+			outputs[state] = new int[out.get(state).size()];
+			for (int i = 0; i < outputs[state].length; i++)
+				outputs[state][i] = out.get(state).get(i);
+		}
+	}
+
+	/**
+	 * Returns the number of keywords.
+	 *
+	 * @return number of keywords
+	 */
+	public int size() {
+		return numKeywords;
+	}
+
+	/**
+	 * Determines which keywords occur in a text.
+	 *
+	 * @param text the text to search
+	 * @return for each keyword <code>true</code> iff it occurs in the text
+	 */
+	public boolean[] find(CharSequence text) {
+		boolean[] found = new boolean[numKeywords];
+
+		int state = 0;
+		for (int i = 0; i < text.length(); i++) {
+			Character c = Character.toLowerCase(text.charAt(i));
+			Integer next;
+			while ((next = transitions.get(state).get(c)) == null && state > 0)
+				state = fail[state];
+			state = (next == null) ? 0 : next;
+
+			for (int id : outputs[state]) found[id] = true;
+		}
+
+		return found;
+	}
+}
@@ -0,0 +1,101 @@
+package info.ephyra.util;
+
+import java.io.File;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <p>A <code>ResourcePool</code> holds a fixed number of instances of a
+ * resource that is not thread-safe, e.g. a parser or a tagger. A thread
+ * acquires an instance, uses it exclusively and releases it again:</p>
+ *
+ * <pre>
+ * Parser p = pool.acquire();
+ * try {
+ *     ...
+ * } finally {
+ *     pool.release(p);
+ * }
+ * </pre>
+ *
+ * <p>The pool size of a wrapper class is read from the property
+ * <code>poolSize</code> in <code>conf/&lt;class name&gt;.properties</code>.
+ * A size of 0 creates one instance per processor.</p>
+ */
+public class ResourcePool<T> {
+	/** Instances that are not in use. */
+	private BlockingQueue<T> free = new LinkedBlockingQueue<T>();
+	/** Total number of instances. */
+	private int size = 0;
+
+	/**
+	 * Adds a new instance to the pool.
+	 *
+	 * @param instance instance of the resource
+	 */
+	public void add(T instance) {
+		free.add(instance);
+		size++;
+	}
+
+	/**
+	 * Returns the total number of instances, including those in use.
+	 *
+	 * @return number of instances
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Takes an instance from the pool, waiting until one becomes available.
+	 *
+	 * @return instance of the resource
+	 */
+	public T acquire() {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return free.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			// restore the interrupt status for the caller
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns an instance to the pool.
+	 *
+	 * @param instance instance that was acquired from this pool
+	 */
+	public void release(T instance) {
+		free.add(instance);
+	}
+
+	/**
+	 * Reads the pool size for a wrapper class from the property
+	 * <code>poolSize</code>.
+	 *
+	 * @param className name of the wrapper class
+	 * @return pool size, 1 if the property is not set
+	 */
+	public static int getPoolSize(String className) {
+		int poolSize = 1;
+		if (new File("conf", className + ".properties").exists()) {
+			String value = Properties.loadFromClassName(className)
+				.getProperty("poolSize");
+			if (value != null)
+				try {
+					poolSize = Integer.parseInt(value.trim());
+				} catch (NumberFormatException e) {}
+		}
+		if (poolSize <= 0)
+			poolSize = Runtime.getRuntime().availableProcessors();
+		return poolSize;
+	}
+}
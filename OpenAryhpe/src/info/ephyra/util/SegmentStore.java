@@ -0,0 +1,514 @@
+package info.ephyra.util;
+
+import info.ephyra.io.MsgPrinter;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+/**
+ * <p>A persistent key-value store that keeps its records in a few append-only
+ * segment files. It is used by <code>FileCache</code>.</p>
+ *
+ * <p>Each record holds the MD5 digest of the key, the key and the entries and
+ * is protected by a CRC32 checksum. New records are appended to the last
+ * segment, which is sealed when it exceeds the segment size. An index in
+ * memory maps the digests to the latest records.</p>
+ *
+ * <p>When a new segment is started, sealed segments in which less than the
+ * minimum ratio of the bytes belongs to the latest records are compacted by
+ * copying these records to the last segment. If the segments exceed the
+ * maximum size, the oldest segments are evicted.</p>
+ *
+ * <p>When the store is opened, the index is rebuilt by scanning the segments.
+ * A segment is truncated at the first record that is incomplete or has a wrong
+ * checksum, e.g. because the process was killed while writing.</p>
+ *
+ * <p>Only one process can write to a store. It holds a lock on a file in the
+ * directory, and if the lock is held by another process, the store is opened
+ * read-only: it contains the records that existed when it was opened and new
+ * records are rejected.</p>
+ */
+class SegmentStore {
+	/** Prefix of the names of segment files. */
+	private static final String PREFIX = "segment-";
+	/** Suffix of the names of segment files. */
+	private static final String SUFFIX = ".dat";
+	/** Length of the header of a record: body length and checksum. */
+	private static final int HEADER = 8;
+	/** Length of an MD5 digest. */
+	private static final int DIGEST = 16;
+	/** Name of the lock file. */
+	private static final String LOCK = "segments.lock";
+
+	/** Digest of a key. */
+	private static class Key {
+		private long hi;
+		private long lo;
+
+		public Key(byte[] digest) {
+			ByteBuffer buffer = ByteBuffer.wrap(digest);
+			hi = buffer.getLong();
+			lo = buffer.getLong();
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return hi == other.hi && lo == other.lo;
+		}
+
+		public int hashCode() {
+			return (int) hi;
+		}
+	}
+
+	/** Location of a record. */
+	private static class Location {
+		private Key key;
+		private Segment segment;
+		private long offset;
+		private int length;
+
+		public Location(Key key, Segment segment, long offset, int length) {
+			this.key = key;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/** A segment file. */
+	private static class Segment {
+		private int id;
+		private File file;
+		private RandomAccessFile raf;
+		private FileChannel channel;
+		/** Length of the file. */
+		private long size;
+		/** Number of bytes in the latest records. */
+		private long live;
+
+		public Segment(File dir, int id, boolean readOnly)
+				throws IOException {
+			this.id = id;
+			file = new File(dir, PREFIX + id + SUFFIX);
+			raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+			channel = raf.getChannel();
+			size = channel.size();
+		}
+
+		public void delete() {
+			try {
+				raf.close();
+			} catch (IOException e) {}
+			file.delete();
+		}
+	}
+
+	/** The directory of the segment files. */
+	private File dir;
+	/** Size in bytes at which a segment is sealed. */
+	private long segmentSize;
+	/** Maximum total size in bytes of the segments, 0 for no limit. */
+	private long maxSize;
+	/** Sealed segments with a lower ratio of live bytes are compacted. */
+	private double minLiveRatio;
+	/** <code>true</code> iff records are forced to the storage device. */
+	private boolean sync;
+	/** Lock held while the store is open, <code>null</code> if read-only. */
+	private FileLock lock;
+
+	/** The segments, from oldest to newest. */
+	private ArrayList<Segment> segments = new ArrayList<Segment>();
+	/** Maps the digests of the keys to the latest records. */
+	private HashMap<Key, Location> index = new HashMap<Key, Location>();
+
+	/**
+	 * Opens the store in the given directory and rebuilds the index from the
+	 * segment files. The directory is created if it does not exist. If
+	 * another process has opened the store for writing, it is opened
+	 * read-only.
+	 *
+	 * @param dir directory of the segment files
+	 * @param segmentSize size in bytes at which a segment is sealed
+	 * @param maxSize maximum total size in bytes, 0 for no limit
+	 * @param minLiveRatio sealed segments with a lower ratio of live bytes are
+	 *                     compacted
+	 * @param sync <code>true</code> to force each record to the storage device
+	 * @throws IOException if the segments could not be read
+	 */
+	public SegmentStore(File dir, long segmentSize, long maxSize,
+						double minLiveRatio, boolean sync) throws IOException {
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		this.maxSize = maxSize;
+		this.minLiveRatio = minLiveRatio;
+		this.sync = sync;
+
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Could not create directory " + dir);
+
+		// the lock is released when the process exits
+		FileChannel lockChannel =
+			new RandomAccessFile(new File(dir, LOCK), "rw").getChannel();
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// held by another store in this process
+		}
+		if (lock == null) {
+			lockChannel.close();
+			MsgPrinter.printErrorMsg("Cache " + dir + " is in use by another " +
+					"process, opening it read-only.");
+		}
+
+		// open the segments in the order they were created
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		for (String name : dir.list())
+			if (name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+				try {
+					ids.add(Integer.parseInt(name.substring(PREFIX.length(),
+							name.length() - SUFFIX.length())));
+				} catch (NumberFormatException e) {}
+		Integer[] sorted = ids.toArray(new Integer[ids.size()]);
+		Arrays.sort(sorted);
+		for (int id : sorted) {
+			Segment segment;
+			try {
+				segment = new Segment(dir, id, isReadOnly());
+			} catch (FileNotFoundException e) {
+				if (isReadOnly()) continue;  // deleted by the writer
+				throw e;
+			}
+			segments.add(segment);
+			recover(segment);
+		}
+		if (segments.isEmpty() && !isReadOnly())
+			segments.add(new Segment(dir, 0, false));
+	}
+
+	/**
+	 * Checks if the store is read-only because another process writes to it.
+	 *
+	 * @return <code>true</code> iff new records are rejected
+	 */
+	public boolean isReadOnly() {
+		return lock == null;
+	}
+
+	/**
+	 * Closes the segment files and releases the lock. Afterwards, the store is
+	 * empty and read-only.
+	 */
+	public synchronized void close() {
+		for (Segment segment : segments)
+			try {
+				segment.raf.close();
+			} catch (IOException e) {}
+		segments.clear();
+		index.clear();
+		if (lock != null)
+			try {
+				lock.channel().close();
+			} catch (IOException e) {}
+		lock = null;
+	}
+
+	/**
+	 * Computes the MD5 digest of a key.
+	 *
+	 * @param key the key
+	 * @return digest
+	 */
+	private static byte[] getDigest(byte[] key) {
+		try {
+			return MessageDigest.getInstance("MD5").digest(key);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] getBytes(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining())
+			throw new IllegalArgumentException();
+		try {
+			String s = new String(buffer.array(), buffer.position(), length,
+								  "UTF-8");
+			buffer.position(buffer.position() + length);
+			return s;
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static int getChecksum(byte[] bytes, int offset) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, bytes.length - offset);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Scans a segment, adds its records to the index and truncates the segment
+	 * at the first record that is incomplete or damaged. A read-only store
+	 * ignores the rest of the segment instead, as the writer may still be
+	 * appending to it.
+	 *
+	 * @param segment the segment
+	 * @throws IOException if the segment could not be read
+	 */
+	private void recover(Segment segment) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		long offset = 0;
+		while (offset < segment.size) {
+			header.clear();
+			if (!readFully(segment.channel, header, offset)) break;
+			header.flip();
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if (length < DIGEST || length > segment.size - offset - HEADER)
+				break;
+			ByteBuffer body = ByteBuffer.allocate(length);
+			if (!readFully(segment.channel, body, offset + HEADER) ||
+					getChecksum(body.array(), 0) != checksum) break;
+
+			byte[] digest = new byte[DIGEST];
+			body.rewind();
+			body.get(digest);
+			put(new Location(new Key(digest), segment, offset,
+							 HEADER + length));
+			offset += HEADER + length;
+		}
+
+		if (offset < segment.size && isReadOnly()) {
+			segment.size = offset;
+		} else if (offset < segment.size) {
+			MsgPrinter.printErrorMsg("Damaged record in cache file " +
+					segment.file + ", truncating it from offset " + offset +
+					".");
+			segment.channel.truncate(offset);
+			segment.size = offset;
+		}
+	}
+
+	/**
+	 * Reads bytes from a channel until the buffer is full.
+	 *
+	 * @return <code>false</code> iff the end of the file was reached
+	 */
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer,
+									 long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, offset);
+			if (n < 0) return false;
+			offset += n;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a record to the index and updates the live bytes of the segments.
+	 */
+	private void put(Location location) {
+		Location old = index.put(location.key, location);
+		if (old != null) old.segment.live -= old.length;
+		location.segment.live += location.length;
+	}
+
+	/**
+	 * Reads a record.
+	 *
+	 * @return the record, or <code>null</code> if it is damaged
+	 */
+	private ByteBuffer readRecord(Location location) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(location.length);
+		if (!readFully(location.segment.channel, record, location.offset))
+			return null;
+		if (getChecksum(record.array(), HEADER) != record.getInt(4))
+			return null;
+		return record;
+	}
+
+	/**
+	 * Appends a record to the last segment. A new segment is started if the
+	 * last segment has reached the segment size.
+	 *
+	 * @param key digest of the key
+	 * @param record the record
+	 * @return location of the record
+	 */
+	private Location append(Key key, ByteBuffer record) throws IOException {
+		Segment segment = segments.get(segments.size() - 1);
+		if (segment.size >= segmentSize) {
+			segment = new Segment(dir, segment.id + 1, false);
+			segments.add(segment);
+		}
+
+		long offset = segment.size;
+		int length = record.remaining();
+		while (record.hasRemaining())
+			segment.channel.write(record, offset + record.position());
+		segment.size += length;
+		if (sync) segment.channel.force(false);
+
+		return new Location(key, segment, offset, length);
+	}
+
+	/**
+	 * Looks up the entries for a key.
+	 *
+	 * @param key the key
+	 * @return the entries, or <code>null</code> if the key is not in the store
+	 * @throws IOException if the record could not be read
+	 */
+	public synchronized String[] get(String key) throws IOException {
+		byte[] keyBytes = getBytes(key);
+		Key digest = new Key(getDigest(keyBytes));
+		Location location = index.get(digest);
+		if (location == null) return null;
+
+		ByteBuffer record = readRecord(location);
+		if (record == null) {
+			MsgPrinter.printErrorMsg("Damaged record in cache file " +
+					location.segment.file + " at offset " + location.offset +
+					".");
+			index.remove(digest);
+			location.segment.live -= location.length;
+			return null;
+		}
+
+		record.position(HEADER + DIGEST);
+		if (!key.equals(getString(record))) return null;  // digest collision
+		String[] entries = new String[record.getInt()];
+		for (int i = 0; i < entries.length; i++)
+			entries[i] = getString(record);
+
+		return entries;
+	}
+
+	/**
+	 * Stores the entries for a key. A previous record for the key becomes
+	 * stale.
+	 *
+	 * @param key the key
+	 * @param entries the entries
+	 * @throws IOException if the record could not be written or the store is
+	 *                     read-only
+	 */
+	public synchronized void put(String key, String[] entries)
+			throws IOException {
+		if (isReadOnly())
+			throw new IOException("Cache " + dir + " is read-only");
+
+		byte[] keyBytes = getBytes(key);
+		byte[] digest = getDigest(keyBytes);
+		byte[][] entryBytes = new byte[entries.length][];
+		int length = DIGEST + 4 + keyBytes.length + 4;
+		for (int i = 0; i < entries.length; i++) {
+			entryBytes[i] = getBytes(entries[i]);
+			length += 4 + entryBytes[i].length;
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(HEADER + length);
+		record.putInt(length);
+		record.putInt(0);  // checksum
+		record.put(digest);
+		record.putInt(keyBytes.length).put(keyBytes);
+		record.putInt(entries.length);
+		for (byte[] bytes : entryBytes) record.putInt(bytes.length).put(bytes);
+		record.putInt(4, getChecksum(record.array(), HEADER));
+		record.flip();
+
+		int count = segments.size();
+		put(append(new Key(digest), record));
+		if (segments.size() > count) {
+			compact();
+			evict();
+		}
+	}
+
+	/**
+	 * Compacts the sealed segments with few live bytes by copying the latest
+	 * records to the last segment and deleting the segments.
+	 */
+	private void compact() throws IOException {
+		Segment last = segments.get(segments.size() - 1);
+		for (Segment segment : new ArrayList<Segment>(segments)) {
+			if (segment == last || segment.live >= minLiveRatio * segment.size)
+				continue;
+
+			// copy the latest records in the order they were written
+			ArrayList<Location> latest = new ArrayList<Location>();
+			for (Location location : index.values())
+				if (location.segment == segment) latest.add(location);
+			Collections.sort(latest, new Comparator<Location>() {
+				public int compare(Location l1, Location l2) {
+					return (l1.offset < l2.offset) ? -1 :
+						((l1.offset > l2.offset) ? 1 : 0);
+				}
+			});
+			ArrayList<Segment> targets = new ArrayList<Segment>();
+			for (Location location : latest) {
+				ByteBuffer record = ByteBuffer.allocate(location.length);
+				if (readFully(segment.channel, record, location.offset)) {
+					record.flip();
+					Location copy = append(location.key, record);
+					put(copy);
+					if (!targets.contains(copy.segment))
+						targets.add(copy.segment);
+				} else {
+					index.remove(location.key);
+				}
+			}
+
+			// the copies must be on disk before the segment is deleted, they
+			// may have been spread over several segments
+			for (Segment target : targets) target.channel.force(false);
+			segments.remove(segment);
+			segment.delete();
+		}
+	}
+
+	/**
+	 * Evicts the oldest segments until the total size is within the limit.
+	 * The last segment is never evicted.
+	 */
+	private void evict() {
+		if (maxSize <= 0) return;
+
+		long size = 0;
+		for (Segment segment : segments) size += segment.size;
+		while (size > maxSize && segments.size() > 1) {
+			Segment segment = segments.remove(0);
+			Iterator<Location> locations = index.values().iterator();
+			while (locations.hasNext())
+				if (locations.next().segment == segment) locations.remove();
+			size -= segment.size;
+			segment.delete();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package info.ephyra.util;
+
+import info.ephyra.io.MsgPrinter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>Loads the resources of the system concurrently.</p>
+ *
+ * <p>Each resource is loaded by a task that declares the tasks it depends on.
+ * A task is started as soon as all of its dependencies have finished, so
+ * independent resources are loaded at the same time. Dependencies only order
+ * the tasks: a task is also run if one of its dependencies failed. Tasks that
+ * share state which is not thread-safe, e.g. a parser with static fields, must
+ * depend on each other.</p>
+ *
+ * <p>After all tasks have finished, <code>getReport()</code> returns the time
+ * spent in each task.</p>
+ */
+public class StartupLoader {
+	private static Logger log = Logger.getLogger(StartupLoader.class);
+
+	/** Loads a resource. */
+	public static abstract class Task {
+		/**
+		 * Loads the resource.
+		 *
+		 * @return <code>true</code>, iff the resource was loaded successfully
+		 * @throws Exception if the resource could not be loaded
+		 */
+		public abstract boolean load() throws Exception;
+	}
+
+	/** A task and its state. */
+	private static class Entry implements Callable<Entry> {
+		private String name;
+		/** Whether the system cannot run without the resource. */
+		private boolean required;
+		private Task task;
+		/** Tasks that depend on this task. */
+		private ArrayList<Entry> dependents = new ArrayList<Entry>();
+		/** Number of dependencies that have not finished yet. */
+		private int pending;
+		private boolean success;
+		/** Start and end time in milliseconds. */
+		private long start, end;
+		private String thread;
+
+		public Entry call() {
+			thread = Thread.currentThread().getName();
+			start = System.currentTimeMillis();
+			try {
+				success = task.load();
+			} catch (Exception e) {
+				log.error("Could not load " + name, e);
+				MsgPrinter.printErrorMsg("Could not load " + name + ": " + e);
+				success = false;
+			}
+			end = System.currentTimeMillis();
+			return this;
+		}
+	}
+
+	/** Tasks in the order they were added. */
+	private LinkedHashMap<String, Entry> entries =
+		new LinkedHashMap<String, Entry>();
+	/** Number of threads used by the last run. */
+	private int threads;
+	/** Start and end time of the last run in milliseconds. */
+	private long start, end;
+
+	/**
+	 * Adds a task. The dependencies must have been added before, which rules
+	 * out cycles.
+	 *
+	 * @param name unique name of the task
+	 * @param required if <code>true</code>, <code>run()</code> fails if the
+	 *                 task fails
+	 * @param dependencies names of the tasks that must finish first
+	 * @param task the task
+	 */
+	public void add(String name, boolean required, String[] dependencies,
+			Task task) {
+		if (entries.containsKey(name))
+			throw new IllegalArgumentException("Duplicate task: " + name);
+
+		Entry entry = new Entry();
+		entry.name = name;
+		entry.required = required;
+		entry.task = task;
+		for (String dependency : dependencies) {
+			Entry other = entries.get(dependency);
+			if (other == null)
+				throw new IllegalArgumentException("Unknown dependency of " +
+						name + ": " + dependency);
+			other.dependents.add(entry);
+			entry.pending++;
+		}
+		entries.put(name, entry);
+	}
+
+	/**
+	 * Runs all tasks and waits until they have finished.
+	 *
+	 * @param threads maximum number of tasks that run at the same time, 0 for
+	 *                one per processor
+	 * @return <code>true</code>, iff all required tasks succeeded
+	 */
+	public boolean run(int threads) {
+		if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+		this.threads = threads;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<Entry> finished =
+			new ExecutorCompletionService<Entry>(pool);
+		start = System.currentTimeMillis();
+
+		try {
+			int running = 0;
+			for (Entry entry : entries.values())
+				if (entry.pending == 0) {
+					finished.submit(entry);
+					running++;
+				}
+
+			// start the dependents of each task that finishes
+			while (running > 0) {
+				Entry entry = finished.take().get();
+				running--;
+				for (Entry dependent : entry.dependents)
+					if (--dependent.pending == 0) {
+						finished.submit(dependent);
+						running++;
+					}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			// only errors get here, exceptions are caught by the tasks
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+			end = System.currentTimeMillis();
+		}
+
+		boolean success = true;
+		for (Entry entry : entries.values())
+			if (entry.required && !entry.success) success = false;
+		return success;
+	}
+
+	/**
+	 * Returns the start time, duration and outcome of each task of the last
+	 * run, in the order the tasks were added.
+	 *
+	 * @return startup timing report
+	 */
+	public String getReport() {
+		long total = 0;
+		StringBuilder tasks = new StringBuilder();
+		for (Entry entry : entries.values()) {
+			if (entry.thread == null) {
+				tasks.append(String.format("%n  %-36s not run", entry.name));
+				continue;
+			}
+			total += entry.end - entry.start;
+			tasks.append(String.format("%n  %-36s start %6dms  took %6dms  %s  (%s)",
+					entry.name, entry.start - start, entry.end - entry.start,
+					entry.success ? "ok" : "FAILED", entry.thread));
+		}
+		return String.format("Startup took %dms with %d threads, " +
+				"%dms spent in tasks:", end - start, threads, total) + tasks;
+	}
+}
@@ -284,30 +284,37 @@ public class StringUtils {
 	 * @return true, iff the normalizations are equal
 	 */
 	public static boolean equalsCommonNorm(String s1, String s2) {
-		// convert to lower-case
-		s1 = s1.toLowerCase();
-		s2 = s2.toLowerCase();
-		
-		// tokenize
-		String tokens1[] = NETagger.tokenize(s1);
-		String tokens2[] = NETagger.tokenize(s2);
-		
-		// eliminate function words and tokens of length < 2, stemm all tokens
-		ArrayList<String> tks1 = new ArrayList<String>();
-		for (String token1 : tokens1)
-			if (token1.length() > 1 && !FunctionWords.lookup(token1))
-				tks1.add(SnowballStemmer.stem(token1));
-		HashSet<String> tks2 = new HashSet<String>();
-		for (String token2 : tokens2)
-			if (token2.length() > 1 && !FunctionWords.lookup(token2))
-				tks2.add(SnowballStemmer.stem(token2));
+		HashSet<String> tks2 = getCommonNormTokens(s2);
 		
 		// check for common token
-		for (String token : tks1) if (tks2.contains(token)) return true;
+		for (String token : getCommonNormTokens(s1))
+			if (tks2.contains(token)) return true;
 		
 		return false;
 	}
 	
+	/**
+	 * Returns the tokens that <code>equalsCommonNorm()</code> compares: the
+	 * stemmed lower-case tokens, without function words and tokens of length
+	 * < 2. Two strings are equal by that criterion, iff their token sets
+	 * intersect.
+	 * 
+	 * @param s a string
+	 * @return normalized tokens
+	 */
+	public static HashSet<String> getCommonNormTokens(String s) {
+		// convert to lower-case and tokenize
+		String tokens[] = NETagger.tokenize(s.toLowerCase());
+		
+		// eliminate function words and tokens of length < 2, stemm all tokens
+		HashSet<String> tks = new HashSet<String>();
+		for (String token : tokens)
+			if (token.length() > 1 && !FunctionWords.lookup(token))
+				tks.add(SnowballStemmer.stem(token));
+		
+		return tks;
+	}
+	
 	/**
 	 * Compares two strings, using the same criterion as the <code>equalsCommonNorm()</code> method, but considers only words starting with a capital letter (proper nouns)
 	 * 